@@ -116,14 +116,14 @@ public class HttpExt_Instrumentation {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(AkkaCoreUtils.NR_SEC_CUSTOM_ATTRIB_NAME, this.hashCode());
+            GenericHelper.releaseLock(AkkaCoreUtils.NR_SEC_LOCK_ID, this.hashCode());
         } catch (Throwable ignored) {
         }
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(AkkaCoreUtils.NR_SEC_CUSTOM_ATTRIB_NAME, this.hashCode());
+            return GenericHelper.acquireLockIfPossible(AkkaCoreUtils.NR_SEC_LOCK_ID, this.hashCode());
         } catch (Throwable ignored) {
         }
         return false;
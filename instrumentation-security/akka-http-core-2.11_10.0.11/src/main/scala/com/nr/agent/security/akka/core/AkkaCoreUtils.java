@@ -1,8 +1,11 @@
 package com.nr.agent.security.akka.core;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class AkkaCoreUtils {
 
     public static final String METHOD_SINGLE_REQUEST_IMPL = "singleRequestImpl";
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "HTTPREQUEST_OPERATION_LOCK_AKKA-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 }
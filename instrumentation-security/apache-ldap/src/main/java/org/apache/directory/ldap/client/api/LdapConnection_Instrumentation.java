@@ -51,13 +51,13 @@ public abstract class LdapConnection_Instrumentation {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
         return false;
     }
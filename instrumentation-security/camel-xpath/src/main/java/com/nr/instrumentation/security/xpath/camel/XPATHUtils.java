@@ -1,7 +1,10 @@
 package com.nr.instrumentation.security.xpath.camel;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class XPATHUtils {
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "XPATH_OPERATION_LOCK_CAMEL-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     public static final String METHOD_XPATH = "xpath";
 }
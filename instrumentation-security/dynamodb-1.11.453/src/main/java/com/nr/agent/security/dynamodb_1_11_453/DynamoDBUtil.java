@@ -40,6 +40,7 @@ import java.util.Set;
  */
 public abstract class DynamoDBUtil {
     private static final String NR_SEC_CUSTOM_ATTRIB_NAME = "NR_SEC_CUSTOM_ATTRIB_NAME";
+    private static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     private static final String OP_READ = "read";
     private static final String OP_CREATE = "create";
     private static final String OP_WRITE = "write";
@@ -84,14 +85,14 @@ public abstract class DynamoDBUtil {
 
     public static void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
     }
 
     public static boolean acquireLockIfPossible(int hashCode) {
         try {
-            return GenericHelper.acquireLockIfPossible(NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            return GenericHelper.acquireLockIfPossible(NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
         return false;
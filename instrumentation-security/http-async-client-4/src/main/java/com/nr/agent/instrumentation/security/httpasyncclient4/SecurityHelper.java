@@ -1,8 +1,11 @@
 package com.nr.agent.instrumentation.security.httpasyncclient4;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class SecurityHelper {
     public static final String METHOD_NAME_EXECUTE = "execute";
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "SSRF_OPERATION_LOCK_APACHE_ASYNC4-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 
 }
@@ -129,14 +129,14 @@ public abstract class HttpMethodBase_Instrumentation implements HttpMethod {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(SecurityHelper.NR_SEC_CUSTOM_ATTRIB_NAME, this.hashCode());
+            GenericHelper.releaseLock(SecurityHelper.NR_SEC_LOCK_ID, this.hashCode());
         } catch (Throwable ignored) {
         }
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(SecurityHelper.NR_SEC_CUSTOM_ATTRIB_NAME, this.hashCode());
+            return GenericHelper.acquireLockIfPossible(SecurityHelper.NR_SEC_LOCK_ID, this.hashCode());
         } catch (Throwable ignored) {
         }
         return false;
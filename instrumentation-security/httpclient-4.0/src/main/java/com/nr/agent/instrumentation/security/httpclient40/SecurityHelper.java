@@ -1,11 +1,14 @@
 package com.nr.agent.instrumentation.security.httpclient40;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class SecurityHelper {
 
     public static final String METHOD_NAME_EXECUTE = "execute";
     public static final String NULL_STRING = "null";
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "SSRF_OPERATION_LOCK_APACHE4-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 
     public static String getURI(String scheme, String host, int port, String path) {
         StringBuilder sb = new StringBuilder();
@@ -1,6 +1,9 @@
 package nr.security.java.net.http.helper;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class SecurityHelper {
     public static final String METHOD_NAME_SEND = "sendAsync";
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "HTTPCLIENT_JDK11_REQ_BUILDER_";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 }
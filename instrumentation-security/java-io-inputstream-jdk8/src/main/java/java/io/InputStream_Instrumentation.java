@@ -17,7 +17,7 @@ public abstract class InputStream_Instrumentation {
     private boolean acquireLockIfPossible(int hashCode) {
         try {
             if(InputStreamHelper.processRequestInputStreamHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(InputStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+                return GenericHelper.acquireLockIfPossible(InputStreamHelper.NR_SEC_LOCK_ID, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -25,7 +25,7 @@ public abstract class InputStream_Instrumentation {
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(InputStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(InputStreamHelper.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {}
     }
 
@@ -76,12 +76,7 @@ public abstract class InputStream_Instrumentation {
     private void postProcessSecurityHook(byte[] dataBuffer, boolean isLockAcquired, int offset, int readDataLength) {
         try {
             if(isLockAcquired && readDataLength>0){
-                char[] data = new char[readDataLength];
-                for (int i = offset, y = 0; i < offset + readDataLength; i++, y++) {
-                    data[y] = (char) dataBuffer[i];
-                }
-                //                            System.out.println("Writing from IS 2" + this.hashCode() + " : " + String.valueOf(data));
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(data);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(dataBuffer, offset, readDataLength);
 
             }
 //                System.out.println("Done out IS2 "+ this.hashCode());
@@ -1,5 +1,6 @@
 package com.nr.instrumentation.security.javaio;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
 import com.newrelic.api.agent.security.NewRelicSecurity;
 
 import java.util.Set;
@@ -10,6 +11,7 @@ public class InputStreamHelper {
     private static final String REQUEST_INPUTSTREAM_HASH = "REQUEST_INPUTSTREAM_HASH";
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "SERVLET_IS_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 
     public static final String LF = "\n";
 
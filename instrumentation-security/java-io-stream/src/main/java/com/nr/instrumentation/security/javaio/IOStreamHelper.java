@@ -8,8 +8,11 @@ import java.util.Set;
 
 public class IOStreamHelper {
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME_READER = "SERVLET_READER_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID_READER = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME_READER);
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME_WRITER = "SERVLET_WRITER_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID_WRITER = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME_WRITER);
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME_OUTPUT_STREAM = "SERVLET_OS_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID_OUTPUT_STREAM = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME_OUTPUT_STREAM);
 
     private static final String REQUEST_READER_HASH = "REQUEST_READER_HASH";
 
@@ -59,12 +62,7 @@ public class IOStreamHelper {
                                         int offset, int writeDataLength) {
         try {
             if (writeDataLength > -1) {
-                char[] data = new char[writeDataLength];
-                for (int i = offset, y = 0; i < offset + writeDataLength; i++, y++) {
-                    data[y] = (char) dataBuffer[i];
-                }
-//                        System.out.println("Writing from IS 2" + this.hashCode() + " : " + String.valueOf(data));
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(data);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(dataBuffer, offset, writeDataLength);
             }
         } catch(Throwable ignored) {}
     }
@@ -21,7 +21,7 @@ public abstract class BufferedReader_Instrumentation {
     private boolean acquireLockIfPossible(int hashCode) {
         try {
             if(IOStreamHelper.processRequestReaderHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_READER, hashCode);
+                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_LOCK_ID_READER, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -29,7 +29,7 @@ public abstract class BufferedReader_Instrumentation {
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_READER, hashCode);
+            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_LOCK_ID_READER, hashCode);
         } catch (Throwable ignored) {}
     }
 
@@ -53,7 +53,7 @@ public abstract class BufferedReader_Instrumentation {
         // Postprocess Phase
         if (isLockAcquired && returnData > 0) {
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append((char) returnData);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody((char) returnData);
             } catch (Throwable ignored) {
 //                    ignored.printStackTrace(System.out);
             }
@@ -81,7 +81,7 @@ public abstract class BufferedReader_Instrumentation {
         // Postprocess Phase
         if (isLockAcquired && returnData > 0) {
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(cbuf, off, returnData);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(cbuf, off, returnData);
             } catch (Throwable ignored) {
 //                    ignored.printStackTrace(System.out);
             }
@@ -107,7 +107,7 @@ public abstract class BufferedReader_Instrumentation {
         // Postprocess Phase
         if (isLockAcquired && returnData != null) {
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(returnData);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(returnData);
             } catch (Throwable ignored) {
 //                    ignored.printStackTrace(System.out);
             }
@@ -18,7 +18,7 @@ public abstract class OutputStream_Instrumentation {
     private static boolean acquireLockIfPossible(int hashCode) {
         try {
             if(IOStreamHelper.processResponseOutputStreamHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_OUTPUT_STREAM, hashCode);
+                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_LOCK_ID_OUTPUT_STREAM, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -26,7 +26,7 @@ public abstract class OutputStream_Instrumentation {
 
     private static void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_OUTPUT_STREAM, hashCode);
+            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_LOCK_ID_OUTPUT_STREAM, hashCode);
         } catch (Throwable ignored) {}
     }
     
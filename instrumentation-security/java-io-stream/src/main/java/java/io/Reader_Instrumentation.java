@@ -22,7 +22,7 @@ public abstract class Reader_Instrumentation {
     private boolean acquireLockIfPossible(int hashCode) {
         try {
             if(IOStreamHelper.processRequestReaderHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_READER, hashCode);
+                return GenericHelper.acquireLockIfPossible(IOStreamHelper.NR_SEC_LOCK_ID_READER, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -30,7 +30,7 @@ public abstract class Reader_Instrumentation {
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_CUSTOM_ATTRIB_NAME_READER, hashCode);
+            GenericHelper.releaseLock(IOStreamHelper.NR_SEC_LOCK_ID_READER, hashCode);
         } catch (Throwable ignored) {}
     }
 
@@ -54,7 +54,7 @@ public abstract class Reader_Instrumentation {
         // Postprocess Phase
         if (isLockAcquired && returnData > 0) {
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(cbuf, 0, returnData);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(cbuf, 0, returnData);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -81,7 +81,7 @@ public abstract class Reader_Instrumentation {
         // Postprocess Phase
         if (isLockAcquired && returnData > 0) {
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(target.array(), 0, returnData);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(target.array(), 0, returnData);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -1,5 +1,6 @@
 package com.nr.instrumentation.security.javax;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
 import com.newrelic.api.agent.security.NewRelicSecurity;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.StringUtils;
@@ -14,6 +15,7 @@ import java.util.List;
 public class JNDIUtils {
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "JNDI_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     public static final String METHOD_LOOKUP = "lookup";
 
     public static List<AbstractOperation> handleJNDIHook(Enumeration<String> names, String methodName, String className) {
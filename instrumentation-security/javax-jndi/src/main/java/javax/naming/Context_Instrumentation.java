@@ -150,13 +150,13 @@ public abstract class Context_Instrumentation {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(JNDIUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(JNDIUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(JNDIUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(JNDIUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
         return false;
     }
@@ -130,14 +130,14 @@ public abstract class DirContext_Instrumentation implements Context {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {
         }
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {
         }
         return false;
@@ -132,13 +132,13 @@ public abstract class XPath_Instrumentation {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(XPATHUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(XPATHUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(XPATHUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(XPATHUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
         return false;
     }
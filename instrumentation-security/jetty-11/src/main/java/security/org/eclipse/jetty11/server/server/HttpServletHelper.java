@@ -1,13 +1,13 @@
 package security.org.eclipse.jetty11.server.server;
 
 import com.newrelic.api.agent.security.NewRelicSecurity;
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
 import com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper;
 import com.newrelic.api.agent.security.schema.AgentMetaData;
 import com.newrelic.api.agent.security.schema.HttpRequest;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.exceptions.NewRelicSecurityException;
 import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
-import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 
@@ -23,22 +23,19 @@ public class HttpServletHelper {
     public static final String SERVICE_ASYNC_METHOD_NAME = "handleAsync";
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "SERVLET_LOCK-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 
     public static void processHttpRequestHeader(HttpServletRequest request, HttpRequest securityRequest) {
         Enumeration<String> headerNames = request.getHeaderNames();
+        boolean ipDetectViaXFF = NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIpDetectViaXFF();
+        AgentMetaData agentMetaData = NewRelicSecurity.getAgent().getSecurityMetaData().getMetaData();
         while (headerNames.hasMoreElements()) {
             boolean takeNextValue = false;
             String headerKey = headerNames.nextElement();
             if (headerKey != null) {
                 headerKey = headerKey.toLowerCase();
             }
-            AgentPolicy agentPolicy = NewRelicSecurity.getAgent().getCurrentPolicy();
-            AgentMetaData agentMetaData = NewRelicSecurity.getAgent().getSecurityMetaData().getMetaData();
-            if (agentPolicy != null
-                    && agentPolicy.getProtectionMode().getEnabled()
-                    && agentPolicy.getProtectionMode().getIpBlocking().getEnabled()
-                    && agentPolicy.getProtectionMode().getIpBlocking().getIpDetectViaXFF()
-                    && X_FORWARDED_FOR.equals(headerKey)) {
+            if (ipDetectViaXFF && X_FORWARDED_FOR.equals(headerKey)) {
                 takeNextValue = true;
             } else if (ServletHelper.CSEC_IAST_FUZZ_REQUEST_ID.equals(headerKey)) {
                 // TODO: May think of removing this intermediate obj and directly create K2 Identifier.
@@ -81,37 +78,15 @@ public class HttpServletHelper {
     }
 
     public static boolean isServletLockAcquired() {
-        try {
-            return NewRelicSecurity.isHookProcessingActive() &&
-                    Boolean.TRUE.equals(NewRelicSecurity.getAgent().getSecurityMetaData().getCustomAttribute(getNrSecCustomAttribName(), Boolean.class));
-        } catch (Throwable ignored) {
-        }
-        return false;
+        return GenericHelper.isLockAcquired(NR_SEC_LOCK_ID);
     }
 
     public static boolean acquireServletLockIfPossible() {
-        try {
-            if (NewRelicSecurity.isHookProcessingActive() &&
-                    !isServletLockAcquired()) {
-                NewRelicSecurity.getAgent().getSecurityMetaData().addCustomAttribute(getNrSecCustomAttribName(), true);
-                return true;
-            }
-        } catch (Throwable ignored) {
-        }
-        return false;
+        return GenericHelper.acquireLockIfPossible(NR_SEC_LOCK_ID);
     }
 
     public static void releaseServletLock() {
-        try {
-            if (NewRelicSecurity.isHookProcessingActive()) {
-                NewRelicSecurity.getAgent().getSecurityMetaData().addCustomAttribute(getNrSecCustomAttribName(), null);
-            }
-        } catch (Throwable ignored) {
-        }
-    }
-
-    private static String getNrSecCustomAttribName() {
-        return NR_SEC_CUSTOM_ATTRIB_NAME;
+        GenericHelper.releaseLock(NR_SEC_LOCK_ID);
     }
 
     public static void preprocessSecurityHook(HttpServletRequest httpServletRequest) {
@@ -1,8 +1,11 @@
 package com.nr.instrumentation.security.ldaptive2x.ldap;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class LDAPUtils {
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "LDAP_OPERATION_LOCK_LDAPTIVE-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     public static final String METHOD_CONFIGURE_REQUEST = "configureRequest";
 
     public static final String NR_SEC_CUSTOM_ATTR_FILTER_NAME = "LDAP_FILTER-";
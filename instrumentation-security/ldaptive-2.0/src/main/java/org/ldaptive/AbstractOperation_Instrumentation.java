@@ -66,13 +66,13 @@ public abstract class AbstractOperation_Instrumentation<Q extends Request, S ext
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(LDAPUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
         return false;
     }
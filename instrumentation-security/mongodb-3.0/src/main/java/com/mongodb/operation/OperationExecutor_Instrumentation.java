@@ -37,14 +37,14 @@ public abstract class OperationExecutor_Instrumentation {
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(MongoUtil.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(MongoUtil.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
     }
 
     private boolean acquireLockIfPossible(int hashCode) {
         try {
-            return GenericHelper.acquireLockIfPossible(MongoUtil.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            return GenericHelper.acquireLockIfPossible(MongoUtil.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
         return false;
@@ -0,0 +1,35 @@
+/*
+ *
+ *  * Copyright 2020 New Relic Corporation. All rights reserved.
+ *  * SPDX-License-Identifier: Apache-2.0
+ *
+ */
+
+package com.nr.agent.security.mongo;
+
+import com.newrelic.api.agent.security.schema.operation.NoSQLOperation;
+import org.bson.BsonDocument;
+import org.bson.RawBsonDocument;
+import org.bson.codecs.BsonDocumentCodec;
+
+/**
+ * Mongo payload captured as raw BSON bytes on the application thread, and rendered as JSON only when the event is
+ * dispatched.
+ */
+public class BsonPayload implements NoSQLOperation.DeferredPayload {
+
+    private static final BsonDocumentCodec CODEC = new BsonDocumentCodec();
+
+    private final RawBsonDocument document;
+
+    public BsonPayload(BsonDocument document) {
+        // Encoding copies the document once, later changes by the application are not seen
+        this.document = document instanceof RawBsonDocument ? (RawBsonDocument) document : new RawBsonDocument(document, CODEC);
+    }
+
+    @Override
+    public String toJson() {
+        // Written straight from the raw bytes, without building an intermediate BsonDocument
+        return document.toJson();
+    }
+}
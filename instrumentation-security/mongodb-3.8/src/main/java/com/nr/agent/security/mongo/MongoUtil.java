@@ -26,6 +26,7 @@ public class MongoUtil {
 
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "MONGO_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     public static final String OP_READ = "read";
     public static final String OP_WRITE = "write";
     public static final String OP_FIND = "find";
@@ -47,7 +48,8 @@ public class MongoUtil {
         try {
             if (NewRelicSecurity.isHookProcessingActive() &&
                     !NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().isEmpty() && command != null) {
-                operation = new NoSQLOperation(command.toJson(), typeOfOperation, klassName, methodName);
+                operation = new NoSQLOperation(typeOfOperation, klassName, methodName);
+                operation.addDeferredPayload(new BsonPayload(command));
                 NewRelicSecurity.getAgent().registerOperation(operation);
             }
         } catch (Throwable e) {
@@ -64,13 +66,12 @@ public class MongoUtil {
         try {
             if (NewRelicSecurity.isHookProcessingActive() &&
                     !NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().isEmpty()) {
-                List<String> operations = new ArrayList<>();
+                operation = new NoSQLOperation(typeOfOperation, klassName, methodName);
                 for (BsonDocument cmd : command) {
                     if(cmd != null) {
-                        operations.add(cmd.toJson());
+                        operation.addDeferredPayload(new BsonPayload(cmd));
                     }
                 }
-                operation = new NoSQLOperation(operations, typeOfOperation, klassName, methodName);
                 NewRelicSecurity.getAgent().registerOperation(operation);
             }
         } catch (Throwable e) {
@@ -95,14 +96,14 @@ public class MongoUtil {
 
     public static void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(MongoUtil.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(MongoUtil.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
     }
 
     public static boolean acquireLockIfPossible(int hashCode) {
         try {
-            return GenericHelper.acquireLockIfPossible(MongoUtil.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            return GenericHelper.acquireLockIfPossible(MongoUtil.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {
         }
         return false;
@@ -113,21 +114,20 @@ public class MongoUtil {
         try {
             if (NewRelicSecurity.isHookProcessingActive() &&
                     !NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().isEmpty()) {
-                List<String> operations = new ArrayList<>();
+                operation = new NoSQLOperation(OP_WRITE, klassName, methodName);
                 for (WriteRequest request : writeRequest) {
                     if(request instanceof InsertRequest){
                         InsertRequest insertRequest = (InsertRequest) request;
-                        operations.add(insertRequest.getDocument().toJson());
+                        operation.addDeferredPayload(new BsonPayload(insertRequest.getDocument()));
                     } else if (request instanceof DeleteRequest){
                         DeleteRequest deleteRequest = (DeleteRequest) request;
-                        operations.add(deleteRequest.getFilter().toJson());
+                        operation.addDeferredPayload(new BsonPayload(deleteRequest.getFilter()));
                     } else if (request instanceof UpdateRequest){
                         UpdateRequest updateRequest = (UpdateRequest) request;
-                        operations.add(updateRequest.getUpdate().toJson());
-                        operations.add(updateRequest.getFilter().toJson());
+                        operation.addDeferredPayload(new BsonPayload(updateRequest.getUpdate()));
+                        operation.addDeferredPayload(new BsonPayload(updateRequest.getFilter()));
                     }
                 }
-                operation = new NoSQLOperation(operations, OP_WRITE, klassName, methodName);
                 NewRelicSecurity.getAgent().registerOperation(operation);
             }
         } catch (Throwable e) {
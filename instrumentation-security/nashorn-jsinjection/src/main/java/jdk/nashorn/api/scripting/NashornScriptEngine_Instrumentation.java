@@ -109,13 +109,13 @@ public class NashornScriptEngine_Instrumentation {
 
     private void releaseLock() {
         try {
-            GenericHelper.releaseLock(JSEngineUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            GenericHelper.releaseLock(JSEngineUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
     }
 
     private boolean acquireLockIfPossible() {
         try {
-            return GenericHelper.acquireLockIfPossible(JSEngineUtils.NR_SEC_CUSTOM_ATTRIB_NAME);
+            return GenericHelper.acquireLockIfPossible(JSEngineUtils.NR_SEC_LOCK_ID);
         } catch (Throwable ignored) {}
         return false;
     }
@@ -9,7 +9,6 @@ import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.StringUtils;
 import com.newrelic.api.agent.security.schema.exceptions.NewRelicSecurityException;
 import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
-import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.http.FullHttpResponse;
 import io.netty.handler.codec.http.HttpContent;
@@ -73,7 +72,7 @@ public class NettyUtils {
                 if (reqBodyTrackerContextId.equals(ctx.hashCode())) {
                     com.newrelic.api.agent.security.schema.HttpRequest securityRequest =
                             NewRelicSecurity.getAgent().getSecurityMetaData().getRequest();
-                    securityRequest.getBody().append(((HttpContent) msg).content().toString(StandardCharsets.UTF_8));
+                    securityRequest.captureBody(((HttpContent) msg).content().toString(StandardCharsets.UTF_8));
                 }
             }
         } catch (Throwable ignored) {
@@ -106,18 +105,14 @@ public class NettyUtils {
 
     public static void processHttpRequestHeader(HttpRequest request, com.newrelic.api.agent.security.schema.HttpRequest securityRequest) {
         Set<String> headerNames = request.headers().names();
+        boolean ipDetectViaXFF = NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIpDetectViaXFF();
+        AgentMetaData agentMetaData = NewRelicSecurity.getAgent().getSecurityMetaData().getMetaData();
         for (String headerKey : headerNames) {
             boolean takeNextValue = false;
             if (headerKey != null) {
                 headerKey = headerKey.toLowerCase();
             }
-            AgentPolicy agentPolicy = NewRelicSecurity.getAgent().getCurrentPolicy();
-            AgentMetaData agentMetaData = NewRelicSecurity.getAgent().getSecurityMetaData().getMetaData();
-            if (agentPolicy != null
-                    && agentPolicy.getProtectionMode().getEnabled()
-                    && agentPolicy.getProtectionMode().getIpBlocking().getEnabled()
-                    && agentPolicy.getProtectionMode().getIpBlocking().getIpDetectViaXFF()
-                    && X_FORWARDED_FOR.equals(headerKey)) {
+            if (ipDetectViaXFF && X_FORWARDED_FOR.equals(headerKey)) {
                 takeNextValue = true;
             } else if (ServletHelper.CSEC_IAST_FUZZ_REQUEST_ID.equals(headerKey)) {
                 // TODO: May think of removing this intermediate obj and directly create K2 Identifier.
@@ -172,7 +167,9 @@ public class NettyUtils {
                         securityMetaData.getResponse();
                 processResponseHeaders((HttpResponse) msg, securityResponse);
                 securityResponse.setResponseContentType(((FullHttpResponse) msg).headers().get("content-type"));
-                securityResponse.getResponseBody().append(((FullHttpResponse) msg).content().toString(StandardCharsets.UTF_8));
+                if (ServletHelper.isResponseBodyCaptureRequired(securityMetaData)) {
+                    securityResponse.captureBody(((FullHttpResponse) msg).content().toString(StandardCharsets.UTF_8));
+                }
             }
         } catch (Throwable e) {
             e.printStackTrace();
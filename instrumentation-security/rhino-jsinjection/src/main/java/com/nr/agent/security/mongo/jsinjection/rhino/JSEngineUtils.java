@@ -1,8 +1,11 @@
 package com.nr.agent.security.mongo.jsinjection.rhino;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+
 public class JSEngineUtils {
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "JSENGINE_OPERATION_LOCK_RIHNO-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
 
     public static final String NR_SEC_CUSTOM_ATTRIB_SCRIPT_NAME = "JSENGINE_RIHNO_SCRIPT-";
 
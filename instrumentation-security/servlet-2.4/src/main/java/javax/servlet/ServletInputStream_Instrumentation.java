@@ -25,7 +25,7 @@ public abstract class ServletInputStream_Instrumentation{
     private boolean acquireLockIfPossible(int hashCode) {
         try {
             if(ServletRequestCallback.processRequestInputStreamHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(ServletRequestCallback.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+                return GenericHelper.acquireLockIfPossible(ServletRequestCallback.NR_SEC_LOCK_ID, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -33,7 +33,7 @@ public abstract class ServletInputStream_Instrumentation{
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(ServletRequestCallback.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(ServletRequestCallback.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {}
     }
 
@@ -51,7 +51,7 @@ public abstract class ServletInputStream_Instrumentation{
         }
 
         if(isLockAcquired && returnData>0){
-            NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append((char) returnData);
+            NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(returnData);
         }
 
         // Normal return
@@ -74,12 +74,7 @@ public abstract class ServletInputStream_Instrumentation{
         // Postprocess Phase
         if(isLockAcquired && returnData>0){
             try {
-                char[] data = new char[returnData];
-                for (int i = off, y = 0; i < off + returnData; i++, y++) {
-                    data[y] = (char) b[i];
-                }
-//                System.out.println("Writing from IS 4" + this.hashCode() + " : " + String.valueOf(data));
-                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().getBody().append(data);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getRequest().captureBody(b, off, returnData);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -19,8 +19,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.util.Map;
 
-import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_IS_OPERATION_LOCK;
-import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_READER_OPERATION_LOCK;
+import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_IS_OPERATION_LOCK_ID;
+import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_READER_OPERATION_LOCK_ID;
 
 @Weave(type = MatchType.Interface, originalName = "javax.servlet.ServletRequest")
 public abstract class ServletRequest_Instrumentation {
@@ -29,14 +29,14 @@ public abstract class ServletRequest_Instrumentation {
         boolean isLockAcquired = false;
         ServletInputStream_Instrumentation obj;
         try {
-            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_IS_OPERATION_LOCK);
+            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_IS_OPERATION_LOCK_ID);
             obj = Weaver.callOriginal();
             if (isLockAcquired && NewRelicSecurity.isHookProcessingActive() && obj != null) {
                 ServletRequestCallback.registerInputStreamHashIfNeeded(obj.hashCode());
             }
         } finally {
             if(isLockAcquired) {
-                GenericHelper.releaseLock(SERVLET_GET_IS_OPERATION_LOCK);
+                GenericHelper.releaseLock(SERVLET_GET_IS_OPERATION_LOCK_ID);
             }
         }
         return obj;
@@ -47,7 +47,7 @@ public abstract class ServletRequest_Instrumentation {
         boolean isLockAcquired = false;
         BufferedReader obj;
         try {
-            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_READER_OPERATION_LOCK);
+            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_READER_OPERATION_LOCK_ID);
             obj = Weaver.callOriginal();
             if (isLockAcquired && NewRelicSecurity.isHookProcessingActive() && obj != null) {
                 ServletRequestCallback.registerReaderHashIfNeeded(obj.hashCode());
@@ -55,7 +55,7 @@ public abstract class ServletRequest_Instrumentation {
             }
         } finally {
             if(isLockAcquired) {
-                GenericHelper.releaseLock(SERVLET_GET_READER_OPERATION_LOCK);
+                GenericHelper.releaseLock(SERVLET_GET_READER_OPERATION_LOCK_ID);
             }
         }
         return obj;
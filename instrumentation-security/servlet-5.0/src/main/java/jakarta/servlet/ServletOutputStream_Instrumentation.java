@@ -23,7 +23,7 @@ public abstract class ServletOutputStream_Instrumentation {
     private boolean acquireLockIfPossible(int hashCode) {
         try {
             if(ServletResponseCallback.processResponseOutputStreamHookData(hashCode)) {
-                return GenericHelper.acquireLockIfPossible(ServletResponseCallback.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+                return GenericHelper.acquireLockIfPossible(ServletResponseCallback.NR_SEC_LOCK_ID, hashCode);
             }
         } catch (Throwable ignored) {}
         return false;
@@ -31,7 +31,7 @@ public abstract class ServletOutputStream_Instrumentation {
 
     private void releaseLock(int hashCode) {
         try {
-            GenericHelper.releaseLock(ServletResponseCallback.NR_SEC_CUSTOM_ATTRIB_NAME, hashCode);
+            GenericHelper.releaseLock(ServletResponseCallback.NR_SEC_LOCK_ID, hashCode);
         } catch (Throwable ignored) {}
     }
 
@@ -43,7 +43,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append((char) b);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody((char) b);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -65,7 +65,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(o);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -87,7 +87,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -108,7 +108,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(o);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -129,7 +129,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -150,7 +150,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -171,7 +171,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -192,7 +192,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -213,7 +213,7 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -234,8 +234,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -256,8 +256,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -278,8 +278,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(o);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -300,8 +300,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -322,8 +322,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -344,8 +344,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
@@ -366,8 +366,8 @@ public abstract class ServletOutputStream_Instrumentation {
         // Preprocess Phase
         if(isLockAcquired){
             try {
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(o);
-                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().getResponseBody().append(ServletResponseCallback.LF);
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(String.valueOf(o));
+                NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().captureBody(ServletResponseCallback.LF);
             } catch (Throwable ignored) {
 //                ignored.printStackTrace(System.out);
             }
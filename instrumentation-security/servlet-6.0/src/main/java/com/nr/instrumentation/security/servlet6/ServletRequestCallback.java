@@ -1,5 +1,6 @@
 package com.nr.instrumentation.security.servlet6;
 
+import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
 import com.newrelic.api.agent.security.NewRelicSecurity;
 
 import java.util.HashSet;
@@ -8,6 +9,7 @@ import java.util.Set;
 public class ServletRequestCallback {
 
     public static final String NR_SEC_CUSTOM_ATTRIB_NAME = "SERVLET_IS_OPERATION_LOCK-";
+    public static final int NR_SEC_LOCK_ID = GenericHelper.getLockId(NR_SEC_CUSTOM_ATTRIB_NAME);
     private static final String REQUEST_STREAM_OR_READER_CALLED = "REQUEST_STREAM_OR_READER_CALLED";
     private static final String REQUEST_READER_HASH = "REQUEST_READER_HASH";
 
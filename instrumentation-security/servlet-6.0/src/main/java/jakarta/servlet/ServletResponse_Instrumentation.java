@@ -9,6 +9,7 @@ package jakarta.servlet;
 
 import com.newrelic.api.agent.security.NewRelicSecurity;
 import com.newrelic.api.agent.security.instrumentation.helpers.GenericHelper;
+import com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper;
 import com.newrelic.api.agent.weaver.MatchType;
 import com.newrelic.api.agent.weaver.Weave;
 import com.newrelic.api.agent.weaver.Weaver;
@@ -17,8 +18,8 @@ import com.nr.instrumentation.security.servlet6.ServletResponseCallback;
 import java.io.IOException;
 import java.io.PrintWriter;
 
-import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_OS_OPERATION_LOCK;
-import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_WRITER_OPERATION_LOCK;
+import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_OS_OPERATION_LOCK_ID;
+import static com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper.SERVLET_GET_WRITER_OPERATION_LOCK_ID;
 
 @Weave(type = MatchType.Interface, originalName = "jakarta.servlet.ServletResponse")
 public abstract class ServletResponse_Instrumentation {
@@ -27,15 +28,17 @@ public abstract class ServletResponse_Instrumentation {
         boolean isLockAcquired = false;
         ServletOutputStream_Instrumentation obj;
         try {
-            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_OS_OPERATION_LOCK);
+            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_OS_OPERATION_LOCK_ID);
             obj = Weaver.callOriginal();
             if (isLockAcquired && NewRelicSecurity.isHookProcessingActive() && obj != null) {
-                ServletResponseCallback.registerOutputStreamHashIfNeeded(obj.hashCode());
                 NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().setResponseContentType(getContentType());
+                if (ServletHelper.isResponseBodyCaptureRequired(NewRelicSecurity.getAgent().getSecurityMetaData())) {
+                    ServletResponseCallback.registerOutputStreamHashIfNeeded(obj.hashCode());
+                }
             }
         } finally {
             if(isLockAcquired) {
-                GenericHelper.releaseLock(SERVLET_GET_OS_OPERATION_LOCK);
+                GenericHelper.releaseLock(SERVLET_GET_OS_OPERATION_LOCK_ID);
             }
         }
         return obj;
@@ -46,15 +49,17 @@ public abstract class ServletResponse_Instrumentation {
         boolean isLockAcquired = false;
         PrintWriter obj;
         try {
-            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_WRITER_OPERATION_LOCK);
+            isLockAcquired = GenericHelper.acquireLockIfPossible(SERVLET_GET_WRITER_OPERATION_LOCK_ID);
             obj = Weaver.callOriginal();
             if (isLockAcquired && NewRelicSecurity.isHookProcessingActive() && obj != null) {
-                ServletResponseCallback.registerWriterHashIfNeeded(obj.hashCode());
                 NewRelicSecurity.getAgent().getSecurityMetaData().getResponse().setResponseContentType(getContentType());
+                if (ServletHelper.isResponseBodyCaptureRequired(NewRelicSecurity.getAgent().getSecurityMetaData())) {
+                    ServletResponseCallback.registerWriterHashIfNeeded(obj.hashCode());
+                }
             }
         } finally {
             if(isLockAcquired) {
-                GenericHelper.releaseLock(SERVLET_GET_WRITER_OPERATION_LOCK);
+                GenericHelper.releaseLock(SERVLET_GET_WRITER_OPERATION_LOCK_ID);
             }
         }
         return obj;
@@ -0,0 +1,75 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * XSS construct extraction by {@link XSSConstructScanner} against the regex extraction it replaced,
+ * {@link RegexXSSConstructExtractor} kept under src/test, over typical form input and over malformed markup on
+ * which the regex backtracks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class XSSConstructScannerBenchmark {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+    @Param({"form", "markup", "unbalancedQuotes", "unclosedTags"})
+    private String input;
+
+    @Param({"4096"})
+    private int size;
+
+    private String data;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        String unit;
+        switch (input) {
+            case "form":
+                unit = "name=John+Doe&comment=Nice+post%2C+thanks&page=3&";
+                break;
+            case "markup":
+                unit = "<p class=\"c\">text <a href=\"/x\">link</a></p><img src=x onerror=alert(1)>";
+                break;
+            case "unbalancedQuotes":
+                unit = "<a b=\"x ";
+                break;
+            default:
+                unit = "<script src=x ";
+                break;
+        }
+        StringBuilder builder = new StringBuilder(size + unit.length());
+        while (builder.length() < size) {
+            builder.append(unit);
+        }
+        data = builder.toString();
+    }
+
+    @Benchmark
+    public Set<String> regex() {
+        return RegexXSSConstructExtractor.getXSSConstructs(data);
+    }
+
+    @Benchmark
+    public Set<String> scanner() {
+        return XSSConstructScanner.scan(data, NO_DEADLINE);
+    }
+}
@@ -0,0 +1,203 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Event hand over from request threads to the dispatcher threads: the {@link RingBuffer} of the dispatcher pool, 4
+ * consumers draining up to 4 events at a time from 512 slots, against the {@link ThreadPoolExecutor} it replaced,
+ * 4 to 7 threads over a queue of 300 with an abort policy.
+ * <p>
+ * Each operation has every producer offer {@link #EVENTS_PER_PRODUCER} events, dropped when no slot is free. Each
+ * event costs the consumer some CPU work standing for its dispatch. The offered, handled and dropped event counts are
+ * reported per second.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RingBufferBenchmark {
+
+    private static final int EVENTS_PER_PRODUCER = 1_000;
+
+    private static final int CONSUMERS = 4;
+
+    private static final int BATCH_SIZE = 4;
+
+    private static final int DISPATCH_TOKENS = 200;
+
+    @Param({"8", "64", "256"})
+    private int producers;
+
+    private ExecutorService producerThreads;
+
+    private List<Callable<Void>> ringProducers;
+
+    private List<Callable<Void>> executorProducers;
+
+    private RingBuffer<Event> ringBuffer;
+
+    private Thread[] consumers;
+
+    private volatile boolean running;
+
+    private ThreadPoolExecutor executor;
+
+    private final AtomicLong handled = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    static class Event {
+        private long value;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long offered;
+        public long handled;
+        public long dropped;
+    }
+
+    private final RingBuffer.EventHandler<Event> handler = new RingBuffer.EventHandler<Event>() {
+        @Override
+        public void moveOut(Event slot, Event holder) {
+            holder.value = slot.value;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            Blackhole.consumeCPU(DISPATCH_TOKENS);
+            handled.incrementAndGet();
+        }
+
+        @Override
+        public void onException(Event event, Throwable throwable) {
+        }
+    };
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        producerThreads = Executors.newFixedThreadPool(producers);
+        ringProducers = new ArrayList<>();
+        executorProducers = new ArrayList<>();
+        for (int i = 0; i < producers; i++) {
+            ringProducers.add(this::offerToRing);
+            executorProducers.add(this::submitToExecutor);
+        }
+
+        ringBuffer = new RingBuffer<>(512, Event::new, WaitStrategy.forName(WaitStrategy.BLOCKING));
+        running = true;
+        consumers = new Thread[CONSUMERS];
+        for (int i = 0; i < CONSUMERS; i++) {
+            consumers[i] = new Thread(this::consume);
+            consumers[i].setDaemon(true);
+            consumers[i].start();
+        }
+
+        executor = new ThreadPoolExecutor(4, 7, 10, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(300),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        running = false;
+        ringBuffer.signalConsumers();
+        for (Thread consumer : consumers) {
+            consumer.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        executor.shutdownNow();
+        producerThreads.shutdownNow();
+    }
+
+    private void consume() {
+        Event[] holders = new Event[BATCH_SIZE];
+        for (int i = 0; i < holders.length; i++) {
+            holders[i] = new Event();
+        }
+        int idleCount = 0;
+        while (running) {
+            try {
+                if (ringBuffer.drain(handler, holders) > 0) {
+                    idleCount = 0;
+                } else {
+                    ringBuffer.awaitEvents(idleCount++);
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private Void offerToRing() {
+        for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+            long sequence = ringBuffer.tryClaim();
+            if (sequence < 0) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            ringBuffer.get(sequence).value = i;
+            ringBuffer.publish(sequence);
+        }
+        return null;
+    }
+
+    private Void submitToExecutor() {
+        for (int i = 0; i < EVENTS_PER_PRODUCER; i++) {
+            try {
+                executor.submit(() -> {
+                    Blackhole.consumeCPU(DISPATCH_TOKENS);
+                    handled.incrementAndGet();
+                });
+            } catch (RejectedExecutionException e) {
+                dropped.incrementAndGet();
+            }
+        }
+        return null;
+    }
+
+    private void run(List<Callable<Void>> tasks, Counters counters) throws InterruptedException {
+        long handledBefore = handled.get();
+        long droppedBefore = dropped.get();
+        producerThreads.invokeAll(tasks);
+        counters.offered += (long) producers * EVENTS_PER_PRODUCER;
+        counters.dropped += dropped.get() - droppedBefore;
+        counters.handled += handled.get() - handledBefore;
+    }
+
+    @Benchmark
+    public void ringBuffer(Counters counters) throws InterruptedException {
+        run(ringProducers, counters);
+    }
+
+    @Benchmark
+    public void threadPoolExecutor(Counters counters) throws InterruptedException {
+        run(executorProducers, counters);
+    }
+}
@@ -0,0 +1,97 @@
+package com.newrelic.api.agent.security.schema;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background file copy loop, outside of any transaction, looking up the security metadata on every read and write
+ * as the java.io hooks do. Compares a {@link SecurityMetaData} allocated per lookup, as returned before, with the
+ * shared {@link NoContextSecurityMetaData}. Run with {@code -prof gc} to compare the allocation rates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoContextSecurityMetaDataBenchmark {
+
+    private static final int FILE_SIZE = 64 * 1024;
+
+    private static final String OUTPUT_STREAM_HASH = "RESPONSE_OUTPUTSTREAM_HASH";
+
+    private File source;
+
+    private File target;
+
+    private final byte[] buffer = new byte[1024];
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        source = File.createTempFile("nr-csec-bench", ".src");
+        target = File.createTempFile("nr-csec-bench", ".dst");
+        byte[] content = new byte[FILE_SIZE];
+        new Random(42).nextBytes(content);
+        Files.write(source.toPath(), content);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        source.delete();
+        target.delete();
+    }
+
+    @Benchmark
+    public void fileCopyNewSecurityMetaData(Blackhole blackhole) throws IOException {
+        try (FileInputStream in = new FileInputStream(source); FileOutputStream out = new FileOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                hook(new SecurityMetaData(), blackhole);
+                out.write(buffer, 0, read);
+                hook(new SecurityMetaData(), blackhole);
+            }
+        }
+    }
+
+    @Benchmark
+    public void fileCopyNoContextSecurityMetaData(Blackhole blackhole) throws IOException {
+        try (FileInputStream in = new FileInputStream(source); FileOutputStream out = new FileOutputStream(target)) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                hook(NoContextSecurityMetaData.getInstance(), blackhole);
+                out.write(buffer, 0, read);
+                hook(NoContextSecurityMetaData.getInstance(), blackhole);
+            }
+        }
+    }
+
+    /**
+     * Metadata accesses of the stream hooks outside a transaction.
+     */
+    private static void hook(SecurityMetaData securityMetaData, Blackhole blackhole) {
+        blackhole.consume(securityMetaData.getCustomAttribute(OUTPUT_STREAM_HASH, Set.class));
+        blackhole.consume(securityMetaData.getFuzzRequestIdentifier().getK2Request());
+        blackhole.consume(securityMetaData.getRequest().isEmpty());
+        blackhole.consume(securityMetaData.getRequest().getBody());
+    }
+}
@@ -4,25 +4,22 @@ import com.newrelic.agent.security.AgentInfo;
 import com.newrelic.agent.security.instrumentator.helper.DynamoDBRequestConverter;
 import com.newrelic.agent.security.instrumentator.utils.AgentUtils;
 import com.newrelic.agent.security.instrumentator.utils.CallbackUtils;
-import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.instrumentator.utils.DetectionSettings;
 import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
 import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
 import com.newrelic.agent.security.intcodeagent.logging.DeployedApplication;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.EventParameters;
 import com.newrelic.agent.security.intcodeagent.models.javaagent.ExitEventBean;
 import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
 import com.newrelic.agent.security.intcodeagent.websocket.EventSendPool;
-import com.newrelic.api.agent.NewRelic;
 import com.newrelic.api.agent.security.schema.*;
 import com.newrelic.api.agent.security.schema.helper.DynamoDBRequest;
 import com.newrelic.api.agent.security.schema.operation.*;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
-import org.json.simple.parser.JSONParser;
-import org.json.simple.parser.ParseException;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -83,9 +80,16 @@ public class Dispatcher implements Runnable {
     private static AtomicBoolean firstEventSent = new AtomicBoolean(false);
 
     public Dispatcher(AbstractOperation operation, SecurityMetaData securityMetaData) {
+        this(operation, securityMetaData, System.currentTimeMillis());
+    }
+
+    /**
+     * @param blockingEndTime time at which the operation was handed over for dispatch
+     */
+    public Dispatcher(AbstractOperation operation, SecurityMetaData securityMetaData, long blockingEndTime) {
         this.securityMetaData = securityMetaData;
         this.operation = operation;
-        extraInfo.put(BLOCKING_END_TIME, System.currentTimeMillis());
+        extraInfo.put(BLOCKING_END_TIME, blockingEndTime);
     }
 
 
@@ -233,8 +237,7 @@ public class Dispatcher implements Runnable {
     private JavaAgentEventBean processFileOperationEvent(JavaAgentEventBean eventBean, FileOperation fileOperationalBean) {
         prepareFileEvent(eventBean, fileOperationalBean);
         String URL = StringUtils.substringBefore(securityMetaData.getRequest().getUrl(), QUESTION_CHAR);
-        if (!(AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getEnabled()
-                && AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getIastScan().getEnabled()) && allowedExtensionFileIO(eventBean.getParameters(), eventBean.getSourceMethod(), URL)) {
+        if (!AgentUtils.getInstance().getPolicySnapshot().isIastScanEnabled() && allowedExtensionFileIO(eventBean.getParameters(), eventBean.getSourceMethod(), URL)) {
             // Event is bypassed. Drop it.
             return null;
         }
@@ -246,17 +249,13 @@ public class Dispatcher implements Runnable {
      * Validate and send if required event for REFLECTED XSS
      */
     private void processReflectedXSSEvent(JavaAgentEventBean eventBean) {
-        if (!NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DETECTION_RXSS_ENABLED, true)) {
+        if (!DetectionSettings.get().isRxssEnabled()) {
             return;
         }
         Set<String> xssConstructs = CallbackUtils.checkForReflectedXSS(securityMetaData.getRequest(), securityMetaData.getResponse());
         if ((!xssConstructs.isEmpty() && !actuallyEmpty(xssConstructs) && StringUtils.isNotBlank(securityMetaData.getResponse().getResponseBody())) ||
-                (AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getEnabled()
-                        && AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getIastScan().getEnabled())) {
-            JSONArray params = new JSONArray();
-            params.addAll(xssConstructs);
-            params.add(securityMetaData.getResponse().getResponseBody());
-            eventBean.setParameters(params);
+                AgentUtils.getInstance().getPolicySnapshot().isIastScanEnabled()) {
+            eventBean.setParameters(EventParameters.of(xssConstructs, securityMetaData.getResponse().getResponseBody()));
             eventBean.setApplicationUUID(AgentInfo.getInstance().getApplicationUUID());
             eventBean.setPid(AgentInfo.getInstance().getVMPID());
             eventBean.setId(operation.getExecutionId());
@@ -311,48 +310,32 @@ public class Dispatcher implements Runnable {
 
     private JavaAgentEventBean prepareJSInjectionEvent(JavaAgentEventBean eventBean,
             JSInjectionOperation jsInjectionOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(jsInjectionOperationalBean.getJavaScriptCode());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(jsInjectionOperationalBean.getJavaScriptCode()));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareXQueryInjectionEvent(JavaAgentEventBean eventBean,
             XQueryOperation xQueryOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(xQueryOperationalBean.getExpression());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(xQueryOperationalBean.getExpression()));
         return eventBean;
     }
 
 
     private JavaAgentEventBean prepareXPATHEvent(JavaAgentEventBean eventBean,
             XPathOperation xPathOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(xPathOperationalBean.getExpression());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(xPathOperationalBean.getExpression()));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareHashEvent(JavaAgentEventBean eventBean,
             HashCryptoOperation hashOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(hashOperationalBean.getName());
-        if (StringUtils.isNotBlank(hashOperationalBean.getProvider())) {
-            params.add(hashOperationalBean.getProvider());
-        }
-        eventBean.setParameters(params);
+        eventBean.setParameters(hashCryptoParameters(hashOperationalBean));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareCryptoEvent(JavaAgentEventBean eventBean,
             HashCryptoOperation hashCryptoOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(hashCryptoOperationalBean.getName());
-        if (StringUtils.isNotBlank(hashCryptoOperationalBean.getProvider())) {
-            params.add(hashCryptoOperationalBean.getProvider());
-        }
-        eventBean.setParameters(params);
+        eventBean.setParameters(hashCryptoParameters(hashCryptoOperationalBean));
         if (eventBean.getSourceMethod().equals(JAVAX_CRYPTO_CIPHER_GETINSTANCE_STRING)
                 || eventBean.getSourceMethod().equals(JAVAX_CRYPTO_CIPHER_GETINSTANCE_STRING_PROVIDER)) {
             eventBean.setEventCategory(CIPHER);
@@ -368,47 +351,41 @@ public class Dispatcher implements Runnable {
         return eventBean;
     }
 
+    private static EventParameters hashCryptoParameters(HashCryptoOperation operation) {
+        if (StringUtils.isNotBlank(operation.getProvider())) {
+            return EventParameters.of(operation.getName(), operation.getProvider());
+        }
+        return EventParameters.of(operation.getName());
+    }
+
     private JavaAgentEventBean prepareTrustBoundaryEvent(JavaAgentEventBean eventBean,
             TrustBoundaryOperation trustBoundaryOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(trustBoundaryOperationalBean.getKey());
-        params.add(trustBoundaryOperationalBean.getValue());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(trustBoundaryOperationalBean.getKey(), trustBoundaryOperationalBean.getValue()));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareRandomEvent(JavaAgentEventBean eventBean,
             RandomOperation randomOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(randomOperationalBean.getClassName());
         eventBean.setEventCategory(randomOperationalBean.getEventCatgory());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(randomOperationalBean.getClassName()));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareSecureCookieEvent(JavaAgentEventBean eventBean,
             SecureCookieOperation secureCookieOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(secureCookieOperationalBean.getValue());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(secureCookieOperationalBean.getValue()));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareLDAPEvent(JavaAgentEventBean eventBean, LDAPOperation ldapOperationalBean) {
-        JSONArray params = new JSONArray();
-        JSONObject object = new JSONObject();
-        object.put(NAME, ldapOperationalBean.getName());
-        object.put(FILTER, ldapOperationalBean.getFilter());
-        params.add(object);
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(
+                new EventParameters.LDAPQuery(ldapOperationalBean.getName(), ldapOperationalBean.getFilter())));
         return eventBean;
     }
 
     private JavaAgentEventBean prepareFileIntegrityEvent(JavaAgentEventBean eventBean,
             FileIntegrityOperation fileIntegrityBean) {
-        JSONArray params = new JSONArray();
-        params.add(fileIntegrityBean.getFileName());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(fileIntegrityBean.getFileName()));
 //		eventBean.setUserAPIInfo(fileIntegrityBean.getLineNumber(), fileIntegrityBean.getClassName(),
 //				fileIntegrityBean.getUserMethodName());
         return eventBean;
@@ -416,63 +393,57 @@ public class Dispatcher implements Runnable {
 
     private JavaAgentEventBean prepareSQLDbCommandEvent(List<SQLOperation> operationalList,
             JavaAgentEventBean eventBean) {
-        JSONArray params = new JSONArray();
+        List<EventParameters.SQLQuery> queries = new ArrayList<>(operationalList.size());
         for (SQLOperation operationalBean : operationalList) {
-            JSONObject query = new JSONObject();
-            query.put(QUERY, operationalBean.getQuery());
-            if(operationalBean.getParams() != null) {
-                query.put(PARAMETERS, new JSONObject(operationalBean.getParams()));
-            }
-            params.add(query);
+            queries.add(new EventParameters.SQLQuery(operationalBean.getQuery(), operationalBean.getParams()));
         }
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(queries));
         eventBean.setEventCategory(operationalList.get(0).getDbName());
         return eventBean;
     }
 
     private JavaAgentEventBean prepareSystemCommandEvent(JavaAgentEventBean eventBean,
             ForkExecOperation operationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(operationalBean.getCommand());
         if (operationalBean.getEnvironment() != null) {
-            params.add(new JSONObject(operationalBean.getEnvironment()));
+            eventBean.setParameters(EventParameters.of(operationalBean.getCommand(), operationalBean.getEnvironment()));
+        } else {
+            eventBean.setParameters(EventParameters.of(operationalBean.getCommand()));
         }
-        eventBean.setParameters(params);
         return eventBean;
     }
 
     private static JavaAgentEventBean prepareFileEvent(JavaAgentEventBean eventBean,
             FileOperation fileOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.addAll(fileOperationalBean.getFileName());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(fileOperationalBean.getFileName()));
         return eventBean;
     }
 
     private static JavaAgentEventBean prepareNoSQLEvent(JavaAgentEventBean eventBean,
-            NoSQLOperation noSQLOperationalBean) throws ParseException {
-        JSONArray params = new JSONArray();
+            NoSQLOperation noSQLOperationalBean) throws IOException {
         eventBean.setEventCategory(MONGO);
-        JSONParser jsonParser = new JSONParser();
-        for (String data : noSQLOperationalBean.getPayload()) {
-            JSONObject jsonObject = new JSONObject();
-            jsonObject.put("payload", jsonParser.parse(data));
-            jsonObject.put("payloadType", noSQLOperationalBean.getPayloadType());
-            params.add(jsonObject);
+        List<String> jsonPayload = noSQLOperationalBean.getJsonPayload();
+        List<NoSQLOperation.DeferredPayload> deferredPayload = noSQLOperationalBean.getDeferredPayload();
+        List<EventParameters.NoSQLPayload> payloads = new ArrayList<>(jsonPayload.size() + deferredPayload.size());
+        for (String data : jsonPayload) {
+            payloads.add(EventParameters.NoSQLPayload.of(data, noSQLOperationalBean.getPayloadType()));
+        }
+        // Captured by the instrumentation and rendered here, on the dispatcher thread
+        for (NoSQLOperation.DeferredPayload data : deferredPayload) {
+            payloads.add(EventParameters.NoSQLPayload.ofRendered(data.toJson(), noSQLOperationalBean.getPayloadType()));
         }
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(payloads));
         return eventBean;
     }
 
-    private static JavaAgentEventBean prepareDynamoDBEvent(JavaAgentEventBean eventBean, DynamoDBOperation dynamoDBOperation) throws ParseException {
-        JSONArray params = new JSONArray();
+    private static JavaAgentEventBean prepareDynamoDBEvent(JavaAgentEventBean eventBean, DynamoDBOperation dynamoDBOperation) {
+        List<Map<String, Object>> params = new ArrayList<>();
         eventBean.setEventCategory(dynamoDBOperation.getCategory().toString());
         List<DynamoDBRequest> originalPayloads = dynamoDBOperation.getPayload();
         try {
             for (DynamoDBRequest data : originalPayloads) {
                 params.add(DynamoDBRequestConverter.convert(dynamoDBOperation.getCategory(), data));
             }
-            eventBean.setParameters(params);
+            eventBean.setParameters(EventParameters.of(params));
         } catch (Exception exception) {
             exception.printStackTrace();
         }
@@ -481,16 +452,14 @@ public class Dispatcher implements Runnable {
 
     private static JavaAgentEventBean prepareSSRFEvent(JavaAgentEventBean eventBean,
             SSRFOperation ssrfOperationalBean) {
-        JSONArray params = new JSONArray();
-        params.add(ssrfOperationalBean.getArg());
-        eventBean.setParameters(params);
+        eventBean.setParameters(EventParameters.of(ssrfOperationalBean.getArg()));
         if (ssrfOperationalBean.isJNDILookup()) {
             eventBean.setEventCategory("JNDILookup");
         }
         return eventBean;
     }
 
-    private boolean allowedExtensionFileIO(JSONArray params, String sourceString, String url) {
+    private boolean allowedExtensionFileIO(EventParameters params, String sourceString, String url) {
         if (JAVA_IO_FILE_INPUTSTREAM_OPEN.equals(sourceString)) {
             for (int i = 0; i < params.size(); i++) {
                 String filePath = params.get(i).toString();
@@ -512,27 +481,29 @@ public class Dispatcher implements Runnable {
 
     private JavaAgentEventBean processStackTrace(JavaAgentEventBean eventBean,
             VulnerabilityCaseType vulnerabilityCaseType, boolean deserialisationCheck) {
-
+        if (!(VulnerabilityCaseType.SYSTEM_COMMAND.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.SQL_DB_COMMAND.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.FILE_INTEGRITY.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.NOSQL_DB_COMMAND.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.FILE_OPERATION.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.HTTP_REQUEST.equals(vulnerabilityCaseType)
+                || VulnerabilityCaseType.SYSTEM_EXIT.equals(vulnerabilityCaseType))) {
+            return eventBean;
+        }
+        boolean deserialisationEnabled = deserialisationCheck && DetectionSettings.get().isDeserializationEnabled();
+        StackTraceElement[] stackTrace = operation.getStackTrace();
         String klassName = null;
-        for (int i = 0; i < operation.getStackTrace().length; i++) {
+        for (int i = 0; i < stackTrace.length; i++) {
             // TODO : check this sequence. Why this is being set from inside Deserialisation check.
             if (isNRCode) {
                 logger.log(LogLevel.FINER, DROPPING_EVENT_AS_IT_WAS_GENERATED_BY_K_2_INTERNAL_API_CALL + eventBean,
                         Dispatcher.class.getName());
                 return null;
             }
-            klassName = operation.getStackTrace()[i].getClassName();
-            if (VulnerabilityCaseType.SYSTEM_COMMAND.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.SQL_DB_COMMAND.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.FILE_INTEGRITY.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.NOSQL_DB_COMMAND.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.FILE_OPERATION.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.HTTP_REQUEST.equals(vulnerabilityCaseType)
-                    || VulnerabilityCaseType.SYSTEM_EXIT.equals(vulnerabilityCaseType)) {
-                xxeTriggerCheck(i, eventBean, klassName);
-                if (deserialisationCheck) {
-                    deserializationTriggerCheck(i, eventBean, klassName);
-                }
+            klassName = stackTrace[i].getClassName();
+            xxeTriggerCheck(i, eventBean, klassName);
+            if (deserialisationEnabled) {
+                deserializationTriggerCheck(i, eventBean, klassName);
             }
         }
         return eventBean;
@@ -549,9 +520,6 @@ public class Dispatcher implements Runnable {
     }
 
     private void deserializationTriggerCheck(int index, JavaAgentEventBean eventBean, String klassName) {
-        if (!NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DETECTION_DESERIALIZATION_ENABLED, true)) {
-            return;
-        }
         if (ObjectInputStream.class.getName().equals(klassName)
                 && StringUtils.equals(operation.getStackTrace()[index].getMethodName(), READ_OBJECT)) {
             eventBean.getMetaData().setTriggerViaDeserialisation(true);
@@ -563,7 +531,7 @@ public class Dispatcher implements Runnable {
     }
 
     private void rciTriggerCheck(int index, JavaAgentEventBean eventBean, String klassName) {
-        if (!NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, true)) {
+        if (!DetectionSettings.get().isRciEnabled()) {
             return;
         }
 
@@ -589,9 +557,11 @@ public class Dispatcher implements Runnable {
         eventBean.setStartTime(objectBean.getStartTime());
         eventBean.setBlockingProcessingTime((Long) extraInfo.get(BLOCKING_END_TIME) - eventBean.getStartTime());
         eventBean.setApiId(objectBean.getApiID());
-        eventBean.setUserAPIInfo(operation.getUserClassEntity().getUserClassElement().getLineNumber(),
-                operation.getUserClassEntity().getUserClassElement().getClassName(),
-                operation.getUserClassEntity().getUserClassElement().getMethodName());
+        StackTraceElement userClassElement = operation.getUserClassEntity().getUserClassElement();
+        if (userClassElement != null) {
+            eventBean.setUserAPIInfo(userClassElement.getLineNumber(), userClassElement.getClassName(),
+                    userClassElement.getMethodName());
+        }
         return eventBean;
     }
 
@@ -604,7 +574,7 @@ public class Dispatcher implements Runnable {
         eventBean.setIsAPIBlocked(metaData.isApiBlocked());
         eventBean.setStacktrace(operation.getStackTrace());
         eventBean.setIsIASTRequest(k2RequestIdentifier.getK2Request());
-        if (AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getEnabled() && AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getIastScan().getEnabled()) {
+        if (AgentUtils.getInstance().getPolicySnapshot().isIastScanEnabled()) {
             eventBean.setIsIASTEnable(true);
         }
         return eventBean;
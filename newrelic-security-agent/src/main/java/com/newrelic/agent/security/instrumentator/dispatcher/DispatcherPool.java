@@ -1,108 +1,374 @@
 package com.newrelic.agent.security.instrumentator.dispatcher;
 
 import com.newrelic.agent.security.AgentInfo;
+import com.newrelic.agent.security.instrumentator.utils.CapturedStackTrace;
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.executor.RingBuffer;
+import com.newrelic.agent.security.intcodeagent.executor.WaitStrategy;
 import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
 import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
 import com.newrelic.agent.security.intcodeagent.logging.IAgentConstants;
 import com.newrelic.agent.security.intcodeagent.models.javaagent.ExitEventBean;
+import com.newrelic.api.agent.NewRelic;
+import com.newrelic.api.agent.security.Agent;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
+import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Set;
-import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
 
 public class DispatcherPool {
 
     /**
-     * Thread pool executor.
+     * Pre-allocated holders of the events waiting for dispatch.
      */
-    private ThreadPoolExecutor executor;
+    private final RingBuffer<DispatchEvent> ringBuffer;
     private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
 
 
-    private static DispatcherPool instance;
+    private static volatile DispatcherPool instance;
 
-    final int queueSize = 300;
-    final int maxPoolSize = 7;
-    final int corePoolSize = 4;
-    final long keepAliveTime = 10;
-    final TimeUnit timeUnit = TimeUnit.SECONDS;
-    final boolean allowCoreThreadTimeOut = false;
+    final int queueSize = 512;
+    final int consumerCount = 4;
+    final int batchSize = 4;
+    private static final int DEFAULT_TYPE_QUOTA_PERCENT = 50;
+    private static final int DEFAULT_BLOCK_TIMEOUT_MILLIS = 50;
+    private static final String EXIT_EVENT = "EXIT_EVENT";
     private static Object mutex = new Object();
 
     private Set<String> eid;
 
+    private final Thread[] consumers;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Number of queued events per vulnerability case type, checked against {@link #typeQuota}.
+     */
+    private final AtomicIntegerArray queuedByType = new AtomicIntegerArray(VulnerabilityCaseType.values().length);
+
+    /**
+     * Maximum number of queued events of a single vulnerability case type, so that a noisy sink cannot take all slots.
+     */
+    private final int typeQuota;
+
+    /**
+     * What to do with an event when all slots are taken, {@link OverflowPolicy.DropLowestPriority} unless another
+     * policy is configured. {@link OverflowPolicy.Block} is never picked by default, it stalls the application
+     * threads and has to be opted in to.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Drops the events in {@link RingBuffer.EventHandler#moveOut}, so that the holders given along are never written.
+     */
+    private final RingBuffer.EventHandler<DispatchEvent> discardHandler = new RingBuffer.EventHandler<DispatchEvent>() {
+        @Override
+        public void moveOut(DispatchEvent slot, DispatchEvent holder) {
+            dequeued(slot);
+            dropped(slot.caseType());
+            slot.clear();
+        }
+
+        @Override
+        public void onEvent(DispatchEvent event) {
+        }
+
+        @Override
+        public void onException(DispatchEvent event, Throwable throwable) {
+        }
+    };
+
+    private final DispatchEvent[] discardHolders = new DispatchEvent[]{new DispatchEvent()};
 
     /**
-     * A handler for rejected tasks that throws a
-     * {@code RejectedExecutionException}.
+     * Reusable slot of the {@link #ringBuffer}, holding either an operation with its metadata or an exit event.
+     * Operations captured by {@link #dispatchCapturedEvent} are not enriched yet.
      */
-    public static class EventAbortPolicy implements RejectedExecutionHandler {
+    static class DispatchEvent {
+        private AbstractOperation operation;
+        private SecurityMetaData securityMetaData;
+        private ExitEventBean exitEventBean;
+        private long dispatchTime;
+        private boolean captured;
+        private CapturedStackTrace capturedStackTrace;
+
+        private Dispatcher toDispatcher() {
+            if (exitEventBean != null) {
+                return new Dispatcher(exitEventBean);
+            }
+            return new Dispatcher(operation, securityMetaData, dispatchTime);
+        }
+
         /**
-         * Creates an {@code ValidationAbortPolicy}.
+         * @return the case type of the operation, {@code null} for exit events.
          */
-        public EventAbortPolicy() {
+        private VulnerabilityCaseType caseType() {
+            return operation != null ? operation.getCaseType() : null;
         }
 
         /**
-         * Always throws RejectedExecutionException.
-         *
-         * @param r the runnable task requested to be executed
-         * @param e the executor attempting to execute this task
-         * @throws RejectedExecutionException always
+         * Moves the content of this holder into the given one and clears this one.
          */
-        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
-            AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+        private void moveTo(DispatchEvent holder) {
+            holder.operation = operation;
+            holder.securityMetaData = securityMetaData;
+            holder.exitEventBean = exitEventBean;
+            holder.dispatchTime = dispatchTime;
+            holder.captured = captured;
+            holder.capturedStackTrace = capturedStackTrace;
+            clear();
+        }
+
+        private void clear() {
+            operation = null;
+            securityMetaData = null;
+            exitEventBean = null;
+            captured = false;
+            capturedStackTrace = null;
+        }
+    }
+
+    private class DispatchHandler implements RingBuffer.EventHandler<DispatchEvent> {
+
+        /**
+         * Holders of the events moved out of the ring, one set per consumer thread.
+         */
+        private final DispatchEvent[] holders = new DispatchEvent[batchSize];
+
+        private DispatchHandler() {
+            for (int i = 0; i < holders.length; i++) {
+                holders[i] = new DispatchEvent();
+            }
+        }
+
+        @Override
+        public void moveOut(DispatchEvent slot, DispatchEvent holder) {
+            dequeued(slot);
+            slot.moveTo(holder);
+        }
+
+        @Override
+        public void onEvent(DispatchEvent event) {
+            if (event.captured && !completeCapturedEvent(event)) {
+                event.clear();
+                return;
+            }
+            Dispatcher dispatcher = event.toDispatcher();
+            event.clear();
+            dispatcher.run();
             AgentInfo.getInstance().getJaHealthCheck().incrementProcessedCount();
-//			logger.log(LogLevel.FINE,"Event Task " + r.toString() + " rejected from  " + e.toString(), EventThreadPool.class.getName());
+        }
+
+        @Override
+        public void onException(DispatchEvent event, Throwable throwable) {
+            event.clear();
+            AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
         }
     }
 
+    /**
+     * Does the enrichment, policy and rate limit checks skipped by the hook for a captured operation.
+     *
+     * @return {@code true} if an event is to be generated for the operation
+     */
+    private static boolean completeCapturedEvent(DispatchEvent event) {
+        if (!Agent.completeCapturedOperation(event.operation, event.securityMetaData, event.capturedStackTrace)) {
+            return false;
+        }
+        return EventRateLimiter.getInstance().tryAcquire(event.operation, event.securityMetaData);
+    }
+
     private DispatcherPool() {
-        LinkedBlockingQueue<Runnable> processQueue;
-        // load the settings
-        processQueue = new LinkedBlockingQueue<>(queueSize);
         eid = ConcurrentHashMap.newKeySet();
-        executor = new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, timeUnit, processQueue,
-                new EventAbortPolicy()) {
-
-            @Override
-            protected void afterExecute(Runnable r, Throwable t) {
-                if (r instanceof Future<?>) {
-                    try {
-                        Future<?> future = (Future<?>) r;
-                        if (future.isDone()) {
-                            AgentInfo.getInstance().getJaHealthCheck().incrementProcessedCount();
-                            future.get();
-                        }
-                    } catch (Throwable e) {
-                        AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+        String waitStrategy = WaitStrategy.BLOCKING;
+        String overflowPolicyName = null;
+        int typeQuotaPercent = DEFAULT_TYPE_QUOTA_PERCENT;
+        int blockTimeoutMillis = DEFAULT_BLOCK_TIMEOUT_MILLIS;
+        try {
+            waitStrategy = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DISPATCHER_WAIT_STRATEGY, WaitStrategy.BLOCKING);
+            overflowPolicyName = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DISPATCHER_OVERFLOW_POLICY);
+            typeQuotaPercent = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DISPATCHER_TYPE_QUOTA_PERCENT, DEFAULT_TYPE_QUOTA_PERCENT);
+            blockTimeoutMillis = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_DISPATCHER_OVERFLOW_BLOCK_TIMEOUT_MS, DEFAULT_BLOCK_TIMEOUT_MILLIS);
+        } catch (Throwable ignored) {
+        }
+        ringBuffer = new RingBuffer<>(queueSize, DispatchEvent::new, WaitStrategy.forName(waitStrategy));
+        typeQuota = Math.max(1, ringBuffer.capacity() * Math.min(100, Math.max(1, typeQuotaPercent)) / 100);
+        OverflowPolicy configuredPolicy = OverflowPolicy.forName(overflowPolicyName, blockTimeoutMillis);
+        overflowPolicy = configuredPolicy != null ? configuredPolicy : new OverflowPolicy.DropLowestPriority();
+        consumers = new Thread[consumerCount];
+        for (int i = 0; i < consumerCount; i++) {
+            DispatchHandler handler = new DispatchHandler();
+            Thread t = new Thread(Thread.currentThread().getThreadGroup(), () -> consume(handler),
+                    IAgentConstants.K2_JAVA_AGENT + (i + 1));
+            t.setDaemon(true);
+            consumers[i] = t;
+            t.start();
+        }
+    }
+
+    private void consume(DispatchHandler handler) {
+        int idleCount = 0;
+        while (!shutdown) {
+            try {
+                if (ringBuffer.drain(handler, handler.holders) > 0) {
+                    idleCount = 0;
+                } else {
+                    ringBuffer.awaitEvents(idleCount);
+                    // Kept from overflowing, wait strategies back off on it
+                    if (idleCount < Integer.MAX_VALUE) {
+                        idleCount++;
                     }
                 }
-                super.afterExecute(r, t);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable ignored) {
             }
+        }
+    }
 
-            @Override
-            protected void beforeExecute(Thread t, Runnable r) {
-                // TODO increment event proccessed count
-                super.beforeExecute(t, r);
-            }
+    /**
+     * Priority of the events of a vulnerability case type when slots run out. Exit events come first, as IAST
+     * validation waits for them, then injection sinks, then file access, then weak configuration checks.
+     */
+    static int priorityOf(VulnerabilityCaseType caseType) {
+        if (caseType == null) {
+            return 3;
+        }
+        switch (caseType) {
+            case SYSTEM_COMMAND:
+            case SQL_DB_COMMAND:
+            case NOSQL_DB_COMMAND:
+            case DYNAMO_DB_COMMAND:
+            case LDAP:
+            case XPATH:
+            case XQUERY_INJECTION:
+            case JAVASCRIPT_INJECTION:
+            case CODE_INJECTION:
+            case HTTP_REQUEST:
+            case REFLECTED_XSS:
+                return 2;
+            case FILE_OPERATION:
+            case FILE_INTEGRITY:
+            case DYNAMIC_CLASS_LOADING:
+                return 1;
+            default:
+                return 0;
+        }
+    }
+
+    private void offer(AbstractOperation operation, SecurityMetaData metaData, boolean captured,
+                       CapturedStackTrace capturedStackTrace, ExitEventBean exitEventBean) {
+        VulnerabilityCaseType caseType = operation != null ? operation.getCaseType() : null;
+        if (caseType != null && queuedByType.get(caseType.ordinal()) >= typeQuota) {
+            dropped(caseType);
+            return;
+        }
+        long dispatchTime = System.currentTimeMillis();
+        long sequence = ringBuffer.tryClaim();
+        if (sequence >= 0) {
+            // Nothing may fail between claim and publish, consumers wait for claimed slots in order
+            fill(ringBuffer.get(sequence), operation, metaData, dispatchTime, captured, capturedStackTrace, exitEventBean);
+            ringBuffer.publish(sequence);
+            return;
+        }
+        boolean queued = overflowPolicy.offer(this, priorityOf(caseType),
+                event -> fill(event, operation, metaData, dispatchTime, captured, capturedStackTrace, exitEventBean));
+        if (!queued) {
+            dropped(caseType);
+        }
+    }
+
+    private void fill(DispatchEvent event, AbstractOperation operation, SecurityMetaData metaData, long dispatchTime,
+                      boolean captured, CapturedStackTrace capturedStackTrace, ExitEventBean exitEventBean) {
+        event.operation = operation;
+        event.securityMetaData = metaData;
+        event.dispatchTime = dispatchTime;
+        event.captured = captured;
+        event.capturedStackTrace = capturedStackTrace;
+        event.exitEventBean = exitEventBean;
+        VulnerabilityCaseType caseType = event.caseType();
+        if (caseType != null) {
+            queuedByType.incrementAndGet(caseType.ordinal());
+        }
+    }
+
+    private void dequeued(DispatchEvent event) {
+        VulnerabilityCaseType caseType = event.caseType();
+        if (caseType != null) {
+            queuedByType.decrementAndGet(caseType.ordinal());
+        }
+    }
+
+    /**
+     * Counts an event dropped because all slots are taken or its type is over quota.
+     */
+    private void dropped(VulnerabilityCaseType caseType) {
+        AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+        AgentInfo.getInstance().getJaHealthCheck().incrementProcessedCount();
+        AgentInfo.getInstance().getJaHealthCheck().incrementDropCount(caseType != null ? caseType.getCaseType() : EXIT_EVENT);
+    }
+
+    /**
+     * Claims a free slot, if any, and publishes the event written into it.
+     */
+    boolean tryPublish(Consumer<DispatchEvent> writer) {
+        long sequence = ringBuffer.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        writer.accept(ringBuffer.get(sequence));
+        ringBuffer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Waits up to the given timeout for a free slot and publishes the event written into it.
+     */
+    boolean publish(Consumer<DispatchEvent> writer, long timeoutMillis) {
+        long sequence = ringBuffer.claim(timeoutMillis, TimeUnit.MILLISECONDS);
+        if (sequence < 0) {
+            return false;
+        }
+        writer.accept(ringBuffer.get(sequence));
+        ringBuffer.publish(sequence);
+        return true;
+    }
+
+    /**
+     * Drops the oldest queued event.
+     *
+     * @return {@code true} if an event was dropped
+     */
+    boolean discardOldest() {
+        return ringBuffer.drain(discardHandler, discardHolders) > 0;
+    }
 
-        };
-        executor.allowCoreThreadTimeOut(allowCoreThreadTimeOut);
-        executor.setThreadFactory(new ThreadFactory() {
-            private final AtomicInteger threadNumber = new AtomicInteger(1);
-
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(Thread.currentThread().getThreadGroup(), r,
-                        IAgentConstants.K2_JAVA_AGENT + threadNumber.getAndIncrement());
-                t.setDaemon(true);
-                return t;
+    /**
+     * Replaces the oldest of the lowest priority queued events by the event written, if its priority is lower than
+     * the given one.
+     *
+     * @return {@code true} if an event was replaced
+     */
+    boolean replaceLowerPriority(int priority, Consumer<DispatchEvent> writer) {
+        for (int lowest = 0; lowest < priority; lowest++) {
+            int victimPriority = lowest;
+            boolean replaced = ringBuffer.replace(event -> priorityOf(event.caseType()) == victimPriority, event -> {
+                dequeued(event);
+                dropped(event.caseType());
+                event.clear();
+                writer.accept(event);
+            });
+            if (replaced) {
+                return true;
             }
-        });
+        }
+        return false;
     }
 
     public static DispatcherPool getInstance() {
@@ -124,22 +390,39 @@ public class DispatcherPool {
 
 
     public void dispatchEvent(AbstractOperation operation, SecurityMetaData securityMetaData) {
-        if (executor.isShutdown()) {
+        if (shutdown) {
             return;
         }
-        if (!operation.isEmpty() && securityMetaData.getFuzzRequestIdentifier().getK2Request()) {
+        boolean k2Request = securityMetaData.getFuzzRequestIdentifier().getK2Request();
+        if (!operation.isEmpty() && k2Request) {
             if (StringUtils.equals(securityMetaData.getFuzzRequestIdentifier().getApiRecordId(), operation.getApiID()) && StringUtils.equals(securityMetaData.getFuzzRequestIdentifier().getNextStage().getStatus(), IAgentConstants.VULNERABLE)) {
                 eid.add(operation.getExecutionId());
             }
         }
-        this.executor.submit(new Dispatcher(operation, new SecurityMetaData(securityMetaData)));
+        // Events of IAST fuzz requests are never limited, each of them is expected by the validator.
+        if (!k2Request && !EventRateLimiter.getInstance().tryAcquire(operation, securityMetaData)) {
+            return;
+        }
+        offer(operation, new SecurityMetaData(securityMetaData), false, null, null);
+    }
+
+    /**
+     * Hands over an operation captured by the hook, along with its raw stack trace. Stack processing, API ID,
+     * policy and rate limit checks are done on the dispatcher thread, see {@link Agent#completeCapturedOperation}.
+     */
+    public void dispatchCapturedEvent(AbstractOperation operation, SecurityMetaData securityMetaData,
+                                      CapturedStackTrace capturedStackTrace) {
+        if (shutdown) {
+            return;
+        }
+        offer(operation, new SecurityMetaData(securityMetaData), true, capturedStackTrace, null);
     }
 
     public void dispatchExitEvent(ExitEventBean exitEventBean) {
-        if (executor.isShutdown()) {
+        if (shutdown) {
             return;
         }
-        this.executor.submit(new Dispatcher(exitEventBean));
+        offer(null, null, false, null, exitEventBean);
     }
 
     public static void shutDownPool() {
@@ -149,21 +432,24 @@ public class DispatcherPool {
     }
 
     public void shutDownThreadPoolExecutor() {
-
-        if (executor != null) {
-            try {
-                executor.shutdown(); // disable new tasks from being submitted
-                if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-                    // wait for termination for a timeout
-                    executor.shutdownNow(); // cancel currently executing tasks
-
-                    if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-                        logger.log(LogLevel.SEVERE, "Thread pool executor did not terminate",
-                                DispatcherPool.class.getName());
-                    }
+        shutdown = true;
+        ringBuffer.signalConsumers();
+        try {
+            for (Thread consumer : consumers) {
+                // Let the event in hand complete, the remaining ones are dropped as on executor shutdown
+                consumer.join(TimeUnit.SECONDS.toMillis(1));
+                if (consumer.isAlive()) {
+                    consumer.interrupt();
+                }
+            }
+            for (Thread consumer : consumers) {
+                consumer.join(TimeUnit.SECONDS.toMillis(1));
+                if (consumer.isAlive()) {
+                    logger.log(LogLevel.SEVERE, "Dispatcher thread did not terminate",
+                            DispatcherPool.class.getName());
                 }
-            } catch (InterruptedException e) {
             }
+        } catch (InterruptedException e) {
         }
 
     }
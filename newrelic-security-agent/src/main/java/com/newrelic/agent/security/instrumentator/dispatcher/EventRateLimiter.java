@@ -0,0 +1,242 @@
+package com.newrelic.agent.security.instrumentator.dispatcher;
+
+import com.newrelic.agent.security.AgentInfo;
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
+import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.api.agent.NewRelic;
+import com.newrelic.api.agent.security.schema.AbstractOperation;
+import com.newrelic.api.agent.security.schema.AgentMetaData;
+import com.newrelic.api.agent.security.schema.SecurityMetaData;
+import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits the events dispatched for the same API ID before they are handed over to the {@link DispatcherPool}.
+ * Disabled unless {@code security.event.rate_limit.enabled} is set.
+ * <p>
+ * Each API ID gets a token bucket refilled at {@code security.event.rate_limit.per_second} tokens per second and holding
+ * at most {@code security.event.rate_limit.burst} tokens. Independently, an operation equal to one already dispatched for
+ * the same API ID within {@code security.event.duplicate_window_ms} is suppressed. Duplicate detection only applies to
+ * operations defining payload equality: SQL, LDAP, XPath and JavaScript injection operations.
+ * <p>
+ * Events flagged as an attack or for blocking before dispatch are never limited: reflected XSS checks, operations
+ * triggered via RCI, deserialisation or XXE, and blocked APIs. Suppressed events are counted in the health check.
+ * <p>
+ * Both maps are bounded; once full, API IDs without a bucket are not limited.
+ */
+public class EventRateLimiter {
+
+    private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
+
+    private static final String RATE_LIMITER_SETTINGS = "Event rate limiter settings, enabled : %s, per second : %s, burst : %s, duplicate window : %s ms";
+
+    private static final int MAX_BUCKETS = 4096;
+
+    private static final int MAX_RECENT_OPERATIONS = 4096;
+
+    private static final int DEFAULT_PER_SECOND = 50;
+
+    private static final int DEFAULT_BURST = 100;
+
+    private static final long DEFAULT_DUPLICATE_WINDOW_MILLIS = 1000;
+
+    private static final ClassValue<Boolean> PAYLOAD_EQUALITY = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            try {
+                return type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+            } catch (NoSuchMethodException e) {
+                return false;
+            }
+        }
+    };
+
+    private static volatile EventRateLimiter instance;
+
+    private static final Object lock = new Object();
+
+    private final boolean enabled;
+
+    /**
+     * Interval between two tokens, in nanoseconds.
+     */
+    private final long emissionInterval;
+
+    /**
+     * How far ahead of the current time a bucket may be drawn, in nanoseconds, i.e. the burst capacity.
+     */
+    private final long burstTolerance;
+
+    private final long duplicateWindowMillis;
+
+    private final Map<String, AtomicLong> buckets = new ConcurrentHashMap<>();
+
+    private final Map<RecentOperation, Long> recentOperations = new ConcurrentHashMap<>();
+
+    EventRateLimiter(boolean enabled, int perSecond, int burst, long duplicateWindowMillis) {
+        perSecond = Math.max(1, perSecond);
+        burst = Math.max(1, burst);
+        this.enabled = enabled;
+        this.emissionInterval = TimeUnit.SECONDS.toNanos(1) / perSecond;
+        this.burstTolerance = emissionInterval * (burst - 1);
+        this.duplicateWindowMillis = Math.max(0, duplicateWindowMillis);
+        logger.log(LogLevel.INFO, String.format(RATE_LIMITER_SETTINGS, enabled, perSecond, burst, this.duplicateWindowMillis),
+                EventRateLimiter.class.getName());
+    }
+
+    private static EventRateLimiter fromConfig() {
+        boolean enabled = false;
+        int perSecond = DEFAULT_PER_SECOND;
+        int burst = DEFAULT_BURST;
+        long duplicateWindowMillis = DEFAULT_DUPLICATE_WINDOW_MILLIS;
+        try {
+            enabled = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_RATE_LIMIT_ENABLED, false);
+            perSecond = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_RATE_LIMIT_PER_SECOND, DEFAULT_PER_SECOND);
+            burst = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_RATE_LIMIT_BURST, DEFAULT_BURST);
+            duplicateWindowMillis = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_DUPLICATE_WINDOW_MS,
+                    (int) DEFAULT_DUPLICATE_WINDOW_MILLIS);
+        } catch (Throwable ignored) {
+        }
+        return new EventRateLimiter(enabled, perSecond, burst, duplicateWindowMillis);
+    }
+
+    public static EventRateLimiter getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = fromConfig();
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Checks whether an event is to be generated for the given operation, accounting suppressed events in the health check.
+     *
+     * @param operation        operation about to be dispatched
+     * @param securityMetaData metadata of the transaction of the operation
+     * @return {@code true} if the event is to be dispatched, {@code false} if it is suppressed.
+     */
+    public boolean tryAcquire(AbstractOperation operation, SecurityMetaData securityMetaData) {
+        if (!enabled || operation.getApiID() == null || isExempt(operation, securityMetaData)) {
+            return true;
+        }
+        if (isDuplicate(operation)) {
+            AgentInfo.getInstance().getJaHealthCheck().incrementDuplicateSuppressedCount();
+            return false;
+        }
+        if (!tryAcquireToken(operation.getApiID())) {
+            AgentInfo.getInstance().getJaHealthCheck().incrementRateLimitedCount();
+            return false;
+        }
+        return true;
+    }
+
+    private static boolean isExempt(AbstractOperation operation, SecurityMetaData securityMetaData) {
+        if (operation instanceof RXSSOperation) {
+            return true;
+        }
+        AgentMetaData metaData = securityMetaData != null ? securityMetaData.getMetaData() : null;
+        return metaData != null && (metaData.isTriggerViaRCI() || metaData.isTriggerViaDeserialisation()
+                || metaData.isTriggerViaXXE() || metaData.isApiBlocked());
+    }
+
+    private boolean tryAcquireToken(String apiID) {
+        AtomicLong bucket = buckets.get(apiID);
+        if (bucket == null) {
+            if (buckets.size() >= MAX_BUCKETS) {
+                return true;
+            }
+            bucket = buckets.computeIfAbsent(apiID, key -> new AtomicLong(System.nanoTime()));
+        }
+        // The bucket holds the time at which it will be full again; each token moves it one interval ahead.
+        while (true) {
+            long now = System.nanoTime();
+            long fullAt = bucket.get();
+            long next = Math.max(fullAt, now) + emissionInterval;
+            if (next - now > burstTolerance + emissionInterval) {
+                return false;
+            }
+            if (bucket.compareAndSet(fullAt, next)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean isDuplicate(AbstractOperation operation) {
+        if (duplicateWindowMillis == 0 || !PAYLOAD_EQUALITY.get(operation.getClass())) {
+            return false;
+        }
+        try {
+            long now = System.currentTimeMillis();
+            RecentOperation key = new RecentOperation(operation);
+            Long expiresAt = recentOperations.get(key);
+            if (expiresAt != null && expiresAt > now) {
+                return true;
+            }
+            if (expiresAt == null && recentOperations.size() >= MAX_RECENT_OPERATIONS) {
+                purgeExpired(now);
+                if (recentOperations.size() >= MAX_RECENT_OPERATIONS) {
+                    return false;
+                }
+            }
+            recentOperations.put(key, now + duplicateWindowMillis);
+        } catch (Throwable ignored) {
+            // Operations with incomplete payloads may fail equality checks, these are never suppressed.
+        }
+        return false;
+    }
+
+    private void purgeExpired(long now) {
+        Iterator<Long> iterator = recentOperations.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next() <= now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+        recentOperations.clear();
+    }
+
+    private static class RecentOperation {
+
+        private final String apiID;
+
+        private final AbstractOperation operation;
+
+        private final int hashCode;
+
+        private RecentOperation(AbstractOperation operation) {
+            this.apiID = operation.getApiID();
+            this.operation = operation;
+            this.hashCode = 31 * apiID.hashCode() + operation.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof RecentOperation)) {
+                return false;
+            }
+            RecentOperation that = (RecentOperation) o;
+            return hashCode == that.hashCode && apiID.equals(that.apiID) && operation.equals(that.operation);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
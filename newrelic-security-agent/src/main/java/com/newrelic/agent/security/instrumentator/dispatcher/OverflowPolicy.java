@@ -0,0 +1,100 @@
+package com.newrelic.agent.security.instrumentator.dispatcher;
+
+import com.newrelic.agent.security.instrumentator.dispatcher.DispatcherPool.DispatchEvent;
+
+import java.util.function.Consumer;
+
+/**
+ * What {@link DispatcherPool} does with an event when all its slots are taken.
+ * <ul>
+ *     <li>{@link DropNewest}: drops the incoming event.</li>
+ *     <li>{@link DropOldest}: drops the oldest queued event to make room for the incoming one.</li>
+ *     <li>{@link DropLowestPriority}: replaces the lowest priority queued event, if it has a lower priority than the
+ *     incoming one, see {@link DispatcherPool#priorityOf}.</li>
+ *     <li>{@link Block}: waits for a free slot up to a timeout, meant for IAST where every event is expected, only used when configured.</li>
+ * </ul>
+ * Dropped events are counted per vulnerability case type in the health check.
+ */
+public interface OverflowPolicy {
+
+    String DROP_NEWEST = "drop_newest";
+    String DROP_OLDEST = "drop_oldest";
+    String DROP_LOWEST_PRIORITY = "drop_lowest_priority";
+    String BLOCK = "block";
+
+    /**
+     * Tries to queue an event for which no slot was free.
+     *
+     * @param pool     the pool the event is dispatched to
+     * @param priority priority of the incoming event
+     * @param writer   fills a slot with the incoming event
+     * @return {@code true} if the event was queued, {@code false} if it is to be dropped
+     */
+    boolean offer(DispatcherPool pool, int priority, Consumer<DispatchEvent> writer);
+
+    /**
+     * @return the overflow policy of the given name, or {@code null} if the name is unknown.
+     */
+    static OverflowPolicy forName(String name, long blockTimeoutMillis) {
+        if (DROP_NEWEST.equalsIgnoreCase(name)) {
+            return new DropNewest();
+        }
+        if (DROP_OLDEST.equalsIgnoreCase(name)) {
+            return new DropOldest();
+        }
+        if (DROP_LOWEST_PRIORITY.equalsIgnoreCase(name)) {
+            return new DropLowestPriority();
+        }
+        if (BLOCK.equalsIgnoreCase(name)) {
+            return new Block(blockTimeoutMillis);
+        }
+        return null;
+    }
+
+    class DropNewest implements OverflowPolicy {
+        @Override
+        public boolean offer(DispatcherPool pool, int priority, Consumer<DispatchEvent> writer) {
+            return false;
+        }
+    }
+
+    class DropOldest implements OverflowPolicy {
+
+        private static final int MAX_TRIES = 2;
+
+        @Override
+        public boolean offer(DispatcherPool pool, int priority, Consumer<DispatchEvent> writer) {
+            for (int i = 0; i < MAX_TRIES; i++) {
+                // Another producer may take the freed slot first
+                if (!pool.discardOldest()) {
+                    return pool.tryPublish(writer);
+                }
+                if (pool.tryPublish(writer)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    class DropLowestPriority implements OverflowPolicy {
+        @Override
+        public boolean offer(DispatcherPool pool, int priority, Consumer<DispatchEvent> writer) {
+            return pool.replaceLowerPriority(priority, writer);
+        }
+    }
+
+    class Block implements OverflowPolicy {
+
+        private final long timeoutMillis;
+
+        public Block(long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public boolean offer(DispatcherPool pool, int priority, Consumer<DispatchEvent> writer) {
+            return pool.publish(writer, timeoutMillis);
+        }
+    }
+}
@@ -2,7 +2,6 @@ package com.newrelic.agent.security.instrumentator.helper;
 
 import com.newrelic.api.agent.security.schema.helper.DynamoDBRequest;
 import com.newrelic.api.agent.security.schema.operation.DynamoDBOperation;
-import org.json.simple.JSONObject;
 
 import java.lang.reflect.Field;
 import java.util.Arrays;
@@ -12,8 +11,8 @@ import java.util.Map;
 
 public class DynamoDBRequestConverter {
     private static List<String> allowedFields = Arrays.asList("s","n","b","ss","ns","bs","m","l");
-    public static JSONObject convert(DynamoDBOperation.Category category, DynamoDBRequest request) {
-        JSONObject json = new JSONObject();
+    public static Map<String, Object> convert(DynamoDBOperation.Category category, DynamoDBRequest request) {
+        Map<String, Object> json = new HashMap<>();
         if (category==DynamoDBOperation.Category.DQL) {
             json.put("payloadType", request.getQueryType());
             try {
@@ -33,8 +32,8 @@ public class DynamoDBRequestConverter {
         return json;
     }
 
-    private static JSONObject convertQuery(DynamoDBRequest.Query query) throws NoSuchFieldException, IllegalAccessException {
-        JSONObject json = new JSONObject();
+    private static Map<String, Object> convertQuery(DynamoDBRequest.Query query) throws NoSuchFieldException, IllegalAccessException {
+        Map<String, Object> json = new HashMap<>();
         if (query.getKey() != null) {
             json.put("key", convertAttributeValue(query.getKey()));
         }
@@ -91,7 +90,7 @@ public class DynamoDBRequestConverter {
 
     private static Object convertAttributeValue(Object value) throws NoSuchFieldException, IllegalAccessException {
         if (value instanceof Map) {
-            JSONObject json = new JSONObject();
+            Map<String, Object> json = new HashMap<>();
             for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
                 json.put(entry.getKey().toString(), convertAttributeValue(entry.getValue()));
             }
@@ -126,7 +125,7 @@ public class DynamoDBRequestConverter {
                     }
                 }
             }
-            return new JSONObject(map);
+            return map;
         }
         else {
             return value;
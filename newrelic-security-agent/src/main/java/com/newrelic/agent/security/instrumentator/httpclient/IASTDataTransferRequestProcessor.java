@@ -60,8 +60,8 @@ public class IASTDataTransferRequestProcessor {
 
             int currentFetchThreshold = NewRelic.getAgent().getConfig()
                     .getValue(SECURITY_POLICY_VULNERABILITY_SCAN_IAST_SCAN_PROBING_THRESHOLD, 300);
-            int remainingRecordCapacity = RestRequestThreadPool.getInstance().getQueue().remainingCapacity();
-            int currentRecordBacklog = RestRequestThreadPool.getInstance().getQueue().size();
+            int remainingRecordCapacity = RestRequestThreadPool.getInstance().getRemainingCapacity();
+            int currentRecordBacklog = RestRequestThreadPool.getInstance().getQueueSize();
             int batchSize = currentFetchThreshold - currentRecordBacklog;
             if (batchSize > 100 && remainingRecordCapacity > batchSize) {
                 request = new IASTDataTransferRequest(NewRelicSecurity.getAgent().getAgentUUID());
@@ -1,9 +1,13 @@
 package com.newrelic.agent.security.instrumentator.httpclient;
 
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
 import com.newrelic.agent.security.intcodeagent.executor.CustomFutureTask;
 import com.newrelic.agent.security.intcodeagent.executor.CustomThreadPoolExecutor;
+import com.newrelic.agent.security.intcodeagent.executor.SemaphoreBoundedExecutor;
+import com.newrelic.agent.security.intcodeagent.executor.VirtualThreadExecutorFactory;
 import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
 import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.api.agent.NewRelic;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Set;
@@ -14,9 +18,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class RestRequestThreadPool {
 
     /**
-     * Thread pool executor.
+     * Thread pool executor, or a {@link SemaphoreBoundedExecutor} on virtual threads.
      */
-    protected ThreadPoolExecutor executor;
+    protected ExecutorService executor;
     private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
 
 
@@ -28,6 +32,8 @@ public class RestRequestThreadPool {
     private final long keepAliveTime = 10;
     private final TimeUnit timeUnit = TimeUnit.SECONDS;
     private final boolean allowCoreThreadTimeOut = false;
+    private static final int DEFAULT_VIRTUAL_THREAD_CONCURRENCY = 20;
+    private static final String THREAD_NAME_PREFIX = "NewRelic-IAST-RequestRepeater";
     private static final Object mutex = new Object();
 
     private static final AtomicBoolean isWaiting = new AtomicBoolean(false);
@@ -35,19 +41,29 @@ public class RestRequestThreadPool {
     private Set<String> processedIds = ConcurrentHashMap.newKeySet();
 
     private RestRequestThreadPool() {
+        if (VirtualThreadExecutorFactory.isEnabled()) {
+            ThreadFactory virtualThreadFactory = VirtualThreadExecutorFactory.newVirtualThreadFactory(THREAD_NAME_PREFIX);
+            if (virtualThreadFactory != null) {
+                // Replays block on HTTP calls, a virtual thread each lets more of them wait at once
+                executor = new SemaphoreBoundedExecutor(virtualThreadFactory, getVirtualThreadConcurrency(), queueSize,
+                        r -> logger.log(LogLevel.WARNING, "Fuzz request " + r.toString() + " rejected from  " + THREAD_NAME_PREFIX, RestRequestThreadPool.class.getName())) {
+                    @Override
+                    protected void afterExecute(Runnable r, Throwable t) {
+                        markProcessed(r);
+                        super.afterExecute(r, t);
+                    }
+                };
+                return;
+            }
+        }
         LinkedBlockingQueue<Runnable> processQueue;
         // load the settings
         processQueue = new LinkedBlockingQueue<>(queueSize);
-        executor = new CustomThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, timeUnit, processQueue, new EventAbortPolicy()) {
+        ThreadPoolExecutor threadPoolExecutor = new CustomThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, timeUnit, processQueue, new EventAbortPolicy()) {
 
             @Override
             protected void afterExecute(Runnable r, Throwable t) {
-                if (r instanceof CustomFutureTask<?> && ((CustomFutureTask<?>) r).getTask() instanceof RestRequestProcessor) {
-                    RestRequestProcessor task = (RestRequestProcessor) ((CustomFutureTask<?>) r).getTask();
-                    if(StringUtils.isNotBlank(task.getControlCommand().getId())){
-                        processedIds.add(task.getControlCommand().getId());
-                    }
-                }
+                markProcessed(r);
                 super.afterExecute(r, t);
             }
 
@@ -57,18 +73,36 @@ public class RestRequestThreadPool {
             }
 
         };
-        executor.allowCoreThreadTimeOut(allowCoreThreadTimeOut);
-        executor.setThreadFactory(new ThreadFactory() {
+        threadPoolExecutor.allowCoreThreadTimeOut(allowCoreThreadTimeOut);
+        threadPoolExecutor.setThreadFactory(new ThreadFactory() {
             private final AtomicInteger threadNumber = new AtomicInteger(1);
 
             @Override
             public Thread newThread(Runnable r) {
                 Thread t = new Thread(Thread.currentThread().getThreadGroup(), r,
-                        "NewRelic-IAST-RequestRepeater" + threadNumber.getAndIncrement());
+                        THREAD_NAME_PREFIX + threadNumber.getAndIncrement());
                 t.setDaemon(true);
                 return t;
             }
         });
+        executor = threadPoolExecutor;
+    }
+
+    private void markProcessed(Runnable r) {
+        if (r instanceof CustomFutureTask<?> && ((CustomFutureTask<?>) r).getTask() instanceof RestRequestProcessor) {
+            RestRequestProcessor task = (RestRequestProcessor) ((CustomFutureTask<?>) r).getTask();
+            if(StringUtils.isNotBlank(task.getControlCommand().getId())){
+                processedIds.add(task.getControlCommand().getId());
+            }
+        }
+    }
+
+    private static int getVirtualThreadConcurrency() {
+        try {
+            return NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_IAST_REPLAY_CONCURRENCY, DEFAULT_VIRTUAL_THREAD_CONCURRENCY);
+        } catch (Throwable ignored) {
+            return DEFAULT_VIRTUAL_THREAD_CONCURRENCY;
+        }
     }
 
     public static RestRequestThreadPool getInstance() {
@@ -104,18 +138,34 @@ public class RestRequestThreadPool {
     }
 
     public int getQueueSize() {
-        return this.executor.getQueue().size();
+        if (executor instanceof SemaphoreBoundedExecutor) {
+            return ((SemaphoreBoundedExecutor) executor).getQueueSize();
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().size();
     }
 
-    public BlockingQueue<Runnable> getQueue() {
-        return this.executor.getQueue();
+    /**
+     * @return the number of replays that may still be queued before replays get rejected.
+     */
+    public int getRemainingCapacity() {
+        if (executor instanceof SemaphoreBoundedExecutor) {
+            return ((SemaphoreBoundedExecutor) executor).getRemainingCapacity();
+        }
+        return ((ThreadPoolExecutor) executor).getQueue().remainingCapacity();
+    }
+
+    public int getActiveCount() {
+        if (executor instanceof SemaphoreBoundedExecutor) {
+            return ((SemaphoreBoundedExecutor) executor).getActiveCount();
+        }
+        return ((ThreadPoolExecutor) executor).getActiveCount();
     }
 
     public AtomicBoolean isWaiting() {
         return isWaiting;
     }
 
-    public ThreadPoolExecutor getExecutor() {
+    public ExecutorService getExecutor() {
         return executor;
     }
 
@@ -16,6 +16,7 @@ import com.newrelic.api.agent.NewRelic;
 import com.newrelic.api.agent.security.Agent;
 import com.newrelic.api.agent.security.NewRelicSecurity;
 import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
+import com.newrelic.api.agent.security.schema.policy.PolicySnapshot;
 import com.sun.jna.Pointer;
 import com.sun.jna.platform.win32.Kernel32;
 import com.sun.jna.platform.win32.WinNT;
@@ -107,6 +108,10 @@ public class AgentUtils {
 
     private AgentPolicyParameters agentPolicyParameters = new AgentPolicyParameters();
 
+    private volatile PolicySnapshot policySnapshot = PolicySnapshot.getDefault();
+
+    private final Object policyLock = new Object();
+
     private AtomicInteger outboundHttpConnectionId = new AtomicInteger(1000);
 
     private boolean collectAppInfoFromEnv = false;
@@ -167,7 +172,33 @@ public class AgentUtils {
     }
 
     public void setAgentPolicyParameters(AgentPolicyParameters agentPolicyParameters) {
-        this.agentPolicyParameters = agentPolicyParameters;
+        synchronized (policyLock) {
+            this.agentPolicyParameters = agentPolicyParameters;
+            publishPolicySnapshot();
+        }
+    }
+
+    /**
+     * Returns the compiled snapshot of the current policy and policy parameters.
+     */
+    public PolicySnapshot getPolicySnapshot() {
+        return policySnapshot;
+    }
+
+    /**
+     * Compiles the current policy and policy parameters and publishes them as the new snapshot.
+     * Must be called after any in place modification of the current policy.
+     */
+    public void publishPolicySnapshot() {
+        synchronized (policyLock) {
+            AgentPolicyParameters parameters = agentPolicyParameters;
+            if (parameters == null) {
+                policySnapshot = PolicySnapshot.compile(agentPolicy);
+            } else {
+                policySnapshot = PolicySnapshot.compile(agentPolicy, parameters.getAllowedIps(), parameters.getBlockedIps(),
+                        parameters.getAllowedApis(), parameters.getBlockedApis());
+            }
+        }
     }
 
     public boolean isPolicyOverridden() {
@@ -360,13 +391,17 @@ public class AgentUtils {
     }
 
     public void setAgentPolicy(AgentPolicy agentPolicy) {
-        this.agentPolicy = agentPolicy;
+        synchronized (policyLock) {
+            this.agentPolicy = agentPolicy;
+            publishPolicySnapshot();
+        }
     }
 
     public boolean applyPolicyOverrideIfApplicable() {
         AgentUtils.getInstance().applyNRPolicyOverride();
         if (AgentUtils.getInstance().isPolicyOverridden()) {
             AgentUtils.getInstance().getAgentPolicy().setVersion(OVERRIDDEN);
+            AgentUtils.getInstance().publishPolicySnapshot();
             logger.log(LogLevel.INFO, String.format(NR_POLICY_OVER_RIDE_IN_PLACE_UPDATED_POLICY_S,
                     JsonConverter.toJSON(AgentUtils.getInstance().getAgentPolicy())), AgentUtils.class.getName());
             try {
@@ -400,9 +435,7 @@ public class AgentUtils {
             EventSendPool.getInstance().sendEvent(AgentInfo.getInstance().getApplicationInfo());
 
             // Start IAST data pull if policy allows
-            if (NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getEnabled() &&
-                    NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getIastScan().getEnabled()
-            ) {
+            if (AgentUtils.getInstance().getPolicySnapshot().isIastScanEnabled()) {
                 IASTDataTransferRequestProcessor.getInstance().startDataRequestSchedule(
                         NewRelicSecurity.getAgent().getCurrentPolicy()
                                 .getVulnerabilityScan().getIastScan().getProbing().getInterval(), TimeUnit.SECONDS);
@@ -0,0 +1,219 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds which of a set of attack constructs occur in a text, ignoring case, in a single pass over the text.
+ * <p>
+ * The constructs are compiled into an Aho-Corasick automaton over case folded chars. Folding is a table free
+ * fast path for ASCII and otherwise follows {@link String#regionMatches(boolean, int, String, int, int)}, so a
+ * construct is found wherever {@code StringUtils.containsIgnoreCase} would find it. Texts are fed one by one through
+ * {@link #match(CharSequence)}, matches accumulate across texts.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class AttackConstructMatcher {
+
+    private static final int ROOT = 0;
+
+    private final String[] constructs;
+
+    private final boolean stopAtFirstMatch;
+
+    /**
+     * Sorted transition chars of each node.
+     */
+    private final char[][] transitionChars;
+
+    private final int[][] transitionTargets;
+
+    private final int[] failure;
+
+    /**
+     * Indices of the constructs ending at each node, including those ending at its failure nodes.
+     */
+    private final int[][] outputs;
+
+    private final boolean[] matched;
+
+    private int remaining;
+
+    /**
+     * @param constructs       constructs to look for
+     * @param stopAtFirstMatch whether matching is done once any construct is found, rather than all of them
+     */
+    public AttackConstructMatcher(Collection<String> constructs, boolean stopAtFirstMatch) {
+        this.constructs = constructs.toArray(new String[0]);
+        this.stopAtFirstMatch = stopAtFirstMatch;
+        this.matched = new boolean[this.constructs.length];
+        this.remaining = this.constructs.length;
+
+        List<Map<Character, Integer>> trie = new ArrayList<>();
+        List<List<Integer>> ends = new ArrayList<>();
+        trie.add(new HashMap<>());
+        ends.add(new ArrayList<>());
+        for (int i = 0; i < this.constructs.length; i++) {
+            String construct = this.constructs[i];
+            if (construct.isEmpty()) {
+                // An empty construct is contained in any text
+                markMatched(i);
+                continue;
+            }
+            int node = ROOT;
+            for (int j = 0; j < construct.length(); j++) {
+                char c = fold(construct.charAt(j));
+                Integer next = trie.get(node).get(c);
+                if (next == null) {
+                    next = trie.size();
+                    trie.add(new HashMap<>());
+                    ends.add(new ArrayList<>());
+                    trie.get(node).put(c, next);
+                }
+                node = next;
+            }
+            ends.get(node).add(i);
+        }
+
+        int nodeCount = trie.size();
+        transitionChars = new char[nodeCount][];
+        transitionTargets = new int[nodeCount][];
+        failure = new int[nodeCount];
+        outputs = new int[nodeCount][];
+        for (int node = 0; node < nodeCount; node++) {
+            Map<Character, Integer> transitions = trie.get(node);
+            char[] chars = new char[transitions.size()];
+            int k = 0;
+            for (Character c : transitions.keySet()) {
+                chars[k++] = c;
+            }
+            Arrays.sort(chars);
+            int[] targets = new int[chars.length];
+            for (k = 0; k < chars.length; k++) {
+                targets[k] = transitions.get(chars[k]);
+            }
+            transitionChars[node] = chars;
+            transitionTargets[node] = targets;
+        }
+
+        // Breadth first, so that the failure node of a node is complete before the node itself
+        Deque<Integer> queue = new ArrayDeque<>();
+        outputs[ROOT] = toArray(ends.get(ROOT));
+        for (int child : transitionTargets[ROOT]) {
+            failure[child] = ROOT;
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            Set<Integer> output = new HashSet<>(ends.get(node));
+            for (int index : outputs[failure[node]]) {
+                output.add(index);
+            }
+            outputs[node] = toArray(output);
+            for (int k = 0; k < transitionChars[node].length; k++) {
+                char c = transitionChars[node][k];
+                int child = transitionTargets[node][k];
+                int state = failure[node];
+                int next;
+                while ((next = transition(state, c)) == -1 && state != ROOT) {
+                    state = failure[state];
+                }
+                failure[child] = next == -1 ? ROOT : next;
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * Scans the given text for the constructs not found yet.
+     *
+     * @return {@code true} if matching is done, i.e. all constructs, or the first one when stopping at the first
+     * match, have been found
+     */
+    public boolean match(CharSequence text) {
+        if (isDone()) {
+            return true;
+        }
+        int state = ROOT;
+        int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = fold(text.charAt(i));
+            int next;
+            while ((next = transition(state, c)) == -1 && state != ROOT) {
+                state = failure[state];
+            }
+            state = next == -1 ? ROOT : next;
+            int[] output = outputs[state];
+            for (int index : output) {
+                if (markMatched(index) && isDone()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the constructs found so far.
+     */
+    public Set<String> getMatched() {
+        Set<String> result = new HashSet<>();
+        for (int i = 0; i < constructs.length; i++) {
+            if (matched[i]) {
+                result.add(constructs[i]);
+            }
+        }
+        return result;
+    }
+
+    private boolean isDone() {
+        return remaining == 0 || (stopAtFirstMatch && remaining < constructs.length);
+    }
+
+    private boolean markMatched(int index) {
+        if (matched[index]) {
+            return false;
+        }
+        matched[index] = true;
+        remaining--;
+        return true;
+    }
+
+    private int transition(int node, char c) {
+        char[] chars = transitionChars[node];
+        if (chars.length <= 8) {
+            for (int k = 0; k < chars.length; k++) {
+                if (chars[k] == c) {
+                    return transitionTargets[node][k];
+                }
+            }
+            return -1;
+        }
+        int k = Arrays.binarySearch(chars, c);
+        return k < 0 ? -1 : transitionTargets[node][k];
+    }
+
+    private static char fold(char c) {
+        if (c < 128) {
+            return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+        }
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    private static int[] toArray(Collection<Integer> values) {
+        int[] array = new int[values.size()];
+        int i = 0;
+        for (int value : values) {
+            array[i++] = value;
+        }
+        return array;
+    }
+}
@@ -0,0 +1,143 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded cache of {@link CallSiteInfo} keyed by the frames of the captured stack and the case type.
+ * <p>
+ * Keys are equal only if all their frames are, the fingerprint of the stack is only used as hash. The cache is split
+ * in segments, by hash, each holding up to {@link #SEGMENT_ENTRIES} call sites and evicting its least recently used
+ * one once full, so that a lookup only locks its own segment.
+ */
+public class CallSiteCache {
+
+    private static final int SEGMENTS = 16;
+
+    private static final int SEGMENT_ENTRIES = 128;
+
+    private static volatile CallSiteCache instance;
+
+    private static final Object lock = new Object();
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+
+    CallSiteCache() {
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    public static CallSiteCache getInstance() {
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new CallSiteCache();
+                }
+            }
+        }
+        return instance;
+    }
+
+    public CallSiteInfo get(VulnerabilityCaseType caseType, CapturedStackTrace stackTrace) {
+        CallSiteKey key = new CallSiteKey(caseType, stackTrace);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            return segment.get(key);
+        }
+    }
+
+    public void put(VulnerabilityCaseType caseType, CapturedStackTrace stackTrace, CallSiteInfo callSiteInfo) {
+        CallSiteKey key = new CallSiteKey(caseType, stackTrace);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            segment.putIfAbsent(key, callSiteInfo);
+        }
+    }
+
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private Segment segmentFor(CallSiteKey key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * Least recently used call sites of a segment, guarded by the segment itself.
+     */
+    private static class Segment extends LinkedHashMap<CallSiteKey, CallSiteInfo> {
+
+        private static final long serialVersionUID = -6046742499477433321L;
+
+        private Segment() {
+            super(SEGMENT_ENTRIES * 4 / 3 + 1, 0.75f, true);
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<CallSiteKey, CallSiteInfo> eldest) {
+            return size() > SEGMENT_ENTRIES;
+        }
+    }
+
+    private static class CallSiteKey {
+
+        private final VulnerabilityCaseType caseType;
+
+        private final long fingerprint;
+
+        private final String[] classNames;
+
+        private final String[] methodNames;
+
+        private final int[] positions;
+
+        private final boolean byteCodeIndexed;
+
+        private CallSiteKey(VulnerabilityCaseType caseType, CapturedStackTrace stackTrace) {
+            this.caseType = caseType;
+            this.fingerprint = stackTrace.getFingerprint();
+            this.classNames = stackTrace.getClassNames();
+            this.methodNames = stackTrace.getMethodNames();
+            this.positions = stackTrace.getPositions();
+            this.byteCodeIndexed = stackTrace.isByteCodeIndexed();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof CallSiteKey)) {
+                return false;
+            }
+            CallSiteKey that = (CallSiteKey) o;
+            return fingerprint == that.fingerprint && caseType == that.caseType && byteCodeIndexed == that.byteCodeIndexed
+                    && Arrays.equals(positions, that.positions) && Arrays.equals(methodNames, that.methodNames)
+                    && Arrays.equals(classNames, that.classNames);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * caseType.hashCode() + Long.hashCode(fingerprint);
+        }
+    }
+}
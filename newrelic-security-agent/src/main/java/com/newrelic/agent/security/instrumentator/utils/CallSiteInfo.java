@@ -0,0 +1,54 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import java.util.List;
+
+/**
+ * Call site dependent results of operation stack processing, cached in {@link CallSiteCache}.
+ */
+public class CallSiteInfo {
+
+    private final StackTraceElement[] stackTrace;
+
+    private final StackTraceElement userClassElement;
+
+    private final String sourceMethod;
+
+    private final String apiID;
+
+    private final List<String> rciMethodsCalls;
+
+    public CallSiteInfo(StackTraceElement[] stackTrace, StackTraceElement userClassElement, String sourceMethod,
+                        String apiID, List<String> rciMethodsCalls) {
+        this.stackTrace = stackTrace;
+        this.userClassElement = userClassElement;
+        this.sourceMethod = sourceMethod;
+        this.apiID = apiID;
+        this.rciMethodsCalls = rciMethodsCalls;
+    }
+
+    public StackTraceElement[] getStackTrace() {
+        return stackTrace;
+    }
+
+    /**
+     * Frame the operation is attributed to, {@code null} for an empty stack trace.
+     */
+    public StackTraceElement getUserClassElement() {
+        return userClassElement;
+    }
+
+    public String getSourceMethod() {
+        return sourceMethod;
+    }
+
+    public String getApiID() {
+        return apiID;
+    }
+
+    /**
+     * Frames flagging RCI, in the order they are reported.
+     */
+    public List<String> getRciMethodsCalls() {
+        return rciMethodsCalls;
+    }
+}
@@ -5,22 +5,18 @@ import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
 import com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper;
 import com.newrelic.api.agent.security.schema.HttpRequest;
 import com.newrelic.api.agent.security.schema.HttpResponse;
-import org.apache.commons.lang3.RegExUtils;
+import com.newrelic.api.agent.security.schema.UserInputIndex;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
-import org.unbescape.html.HtmlEscape;
 
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.Map.Entry;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 public class CallbackUtils {
 
-    private static final String HTML_COMMENT_END = "-->";
-    private static final String HTML_COMMENT_START = "!--";
     private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
     public static final String ANGLE_END = ">";
     public static final String JAVASCRIPT = "javascript:";
@@ -42,13 +38,7 @@ public class CallbackUtils {
     public static final String SRCDOC = "srcdoc";
     public static final String DATA = "data";
     public static final String CAME_TO_XSS_CHECK = "Came to XSS check : ";
-    private static final Pattern REGEX_SPACE = Pattern.compile("\\s+");
-
-    public static Pattern tagNameRegex = Pattern.compile("<([a-zA-Z_\\-]+[0-9]*|!--)",
-            Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
-    public static Pattern attribRegex = Pattern.compile(
-            "([^(\\/\\s<'\">)]+?)(?:\\s*)=\\s*(('|\")([\\s\\S]*?)(?:(?=(\\\\?))\\5.)*?\\3|.+?(?=\\/>|>|\\?>|\\s|<\\/|$))",
-            Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final String XSS_CHECK_TIME_BUDGET_EXCEEDED = "XSS check time budget exceeded, remaining request data skipped";
 
 
     // TODO: use complete response instead of just response body.
@@ -60,26 +50,17 @@ public class CallbackUtils {
             toReturn.add(StringUtils.EMPTY);
             return toReturn;
         }
-        Set<String> combinedResponseData = decodeResponseData(httpResponse);
-        if (combinedResponseData.isEmpty()) {
-            toReturn.add(StringUtils.EMPTY);
-            return toReturn;
-        }
-        String combinedResponseDataString = StringUtils.joinWith(FIVE_COLON, combinedResponseData);
 
-        logger.log(LogLevel.FINER, String.format("Checking reflected XSS : %s :: %s", combinedRequestData, combinedResponseDataString), CallbackUtils.class.getName());
+        if (logger.isLogLevelEnabled(LogLevel.FINER)) {
+            logger.log(LogLevel.FINER, String.format("Checking reflected XSS : %s :: %s", combinedRequestData, httpResponse.getResponseBody()), CallbackUtils.class.getName());
+        }
 
         Set<String> attackContructs = isXSS(combinedRequestData);
-
-        for (String construct : attackContructs) {
-            if (StringUtils.containsIgnoreCase(combinedResponseDataString, construct)) {
-                toReturn.add(construct);
-
-                if (!(AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getEnabled()
-                        && AgentUtils.getInstance().getAgentPolicy().getVulnerabilityScan().getIastScan().getEnabled())) {
-                    break;
-                }
-            }
+        if (!attackContructs.isEmpty()) {
+            AttackConstructMatcher matcher = new AttackConstructMatcher(attackContructs,
+                    !AgentUtils.getInstance().getPolicySnapshot().isIastScanEnabled());
+            matchResponseData(httpResponse, matcher);
+            toReturn.addAll(matcher.getMatched());
         }
         if (toReturn.isEmpty()) {
             toReturn.add(StringUtils.EMPTY);
@@ -105,175 +86,85 @@ public class CallbackUtils {
     }
 
 
-    static Set<String> getXSSConstructs(String data) {
+    static Set<String> getXSSConstructs(String data, long deadline) {
         logger.log(LogLevel.FINER, CAME_TO_XSS_CHECK + data, CallbackUtils.class.getName());
-        List<String> construct = new ArrayList<>();
-        boolean isAttackConstruct = false;
-
-        // indicates the actual current position in the data where the processing ptr is.
-        int currPos = 0;
-
-        //
-        int startPos = 0;
-
-        //
-        int tmpCurrPos = 0;
-
-        //
-        int tmpStartPos = 0;
-
-        // iterate over the complete data string.
-        while (currPos < data.length()) {
-            Matcher matcher = tagNameRegex.matcher(data);
-            if (!matcher.find(currPos)) {
-                return new HashSet<>(construct);
-            }
-            isAttackConstruct = false;
-            String tagName = matcher.group(1);
-            if (StringUtils.isBlank(tagName)) {
-                return new HashSet<>(construct);
-            }
-            startPos = matcher.start();
-            currPos = matcher.end() - 1;
-            if (StringUtils.equals(HTML_COMMENT_START, tagName)) {
-                tmpCurrPos = StringUtils.indexOf(data, HTML_COMMENT_END, startPos);
-                if (tmpCurrPos == -1) {
-                    break;
-                } else {
-                    currPos = tmpCurrPos;
-                    continue;
-                }
-            }
-            tmpStartPos = tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, startPos);
-
-            if (tmpCurrPos == -1) {
-                tmpStartPos = startPos;
-            }
-
-            Matcher attribMatcher = attribRegex.matcher(data);
-            while (attribMatcher.find(currPos)) {
-                String attribData = attribMatcher.group().trim();
-                currPos = attribMatcher.end() - 1;
-                tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, tmpStartPos);
-
-                if ((tmpCurrPos == -1 || attribMatcher.start() < tmpCurrPos)) {
-                    tmpStartPos = tmpCurrPos = attribMatcher.end() - 1;
-                    tmpStartPos++;
-                    if (StringUtils.isBlank(attribMatcher.group(3)) && attribMatcher.end() >= tmpCurrPos) {
-                        tmpStartPos = tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, attribMatcher.start());
-                        if (tmpStartPos == -1) {
-                            tmpStartPos = data.length() - 1;
-                        }
-                        attribData = StringUtils.substring(attribData, 0, tmpStartPos);
-                    }
-
-                    String key = StringUtils.substringBefore(attribData, EQUALS);
-                    String val = StringUtils.substringAfter(attribData, EQUALS);
-
-                    if (StringUtils.isNotBlank(key) && (StringUtils.startsWithIgnoreCase(key, ON1)
-                            || StringUtils.equalsIgnoreCase(key, SRC) || StringUtils.equalsIgnoreCase(key, HREF)
-                            || StringUtils.equalsIgnoreCase(key, ACTION)
-                            || StringUtils.equalsIgnoreCase(key, FORMACTION)
-                            || StringUtils.equalsIgnoreCase(key, SRCDOC) || StringUtils.equalsIgnoreCase(key, DATA)
-                            || StringUtils.containsIgnoreCase(
-                            RegExUtils.removeAll(HtmlEscape.unescapeHtml(val), REGEX_SPACE), JAVASCRIPT))) {
-                        isAttackConstruct = true;
-                    }
-                } else {
-                    break;
-                }
-            }
-            if (tmpCurrPos > 0) {
-                currPos = tmpCurrPos;
-            }
-            if (data.charAt(currPos) != ANGLE_END_CHAR) {
-                int tmp = StringUtils.indexOf(data, ANGLE_END, currPos);
-
-                if (tmp != -1) {
-                    currPos = tmp;
-                } else if (!isAttackConstruct) {
-                    continue;
-                }
-            }
-            if (StringUtils.equalsIgnoreCase(tagName.trim(), SCRIPT)) {
-                int locationOfEndTag = StringUtils.indexOfIgnoreCase(data, SCRIPT_END, currPos);
-                if (locationOfEndTag != -1) {
-                    String body = StringUtils.substring(data, currPos + 1, locationOfEndTag);
-                    if (StringUtils.isNotBlank(body)) {
-                        construct.add(StringUtils.substring(data, startPos, currPos + 1) + body);
-
-                        continue;
-                    }
-                } else {
-                    String body = StringUtils.substring(data, currPos + 1);
-                    int tagEnd = StringUtils.indexOf(body, ANGLE_END);
-                    if (StringUtils.isNotBlank(body) && tagEnd != -1) {
-                        body = StringUtils.substring(body, tagEnd);
-                        construct.add(StringUtils.substring(data, startPos, currPos + 1) + body);
-                        break;
-                    }
-                }
-            }
-
-            if (isAttackConstruct) {
-                construct.add(StringUtils.substring(data, startPos, currPos + 1));
-            }
-        }
-        return new HashSet<>(construct);
+        return XSSConstructScanner.scan(data, deadline);
     }
 
+    /**
+     * Extracts the XSS constructs from the given request data, within the RXSS time budget of
+     * {@link DetectionSettings#getRxssTimeBudgetMillis()}. Once the budget is exhausted, scanning stops and the
+     * constructs found so far are returned, the remaining data is not scanned.
+     */
     public static Set<String> isXSS(Set<String> combinedData) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DetectionSettings.get().getRxssTimeBudgetMillis());
         Set<String> attackConstructs = new HashSet<>();
         for (String data : combinedData) {
-            attackConstructs.addAll(getXSSConstructs(data));
+            if (System.nanoTime() - deadline >= 0) {
+                logger.log(LogLevel.FINER, XSS_CHECK_TIME_BUDGET_EXCEEDED, CallbackUtils.class.getName());
+                break;
+            }
+            attackConstructs.addAll(getXSSConstructs(data, deadline));
         }
         return attackConstructs;
     }
 
-    public static Set<String> decodeResponseData(HttpResponse httpResponse) {
-        Set<String> processedData = new HashSet<>();
-        String contentType = httpResponse.getResponseContentType();
-        String responseBody = httpResponse.getResponseBody().toString();
-        String processedBody = responseBody;
-
-
+    /**
+     * Matches the response body and, for JSON and XML responses, each of its successively unescaped forms against the
+     * given matcher. Forms are produced one at a time and matching stops as soon as the matcher is done.
+     */
+    private static void matchResponseData(HttpResponse httpResponse, AttackConstructMatcher matcher) {
+        StringBuilder responseBody = httpResponse.getResponseBody();
         try {
-            processedData.add(processedBody);
-
+            if (matcher.match(responseBody) || responseBody.length() == 0) {
+                return;
+            }
+            String processedBody = responseBody.toString();
             String oldProcessedBody;
-
-            if (StringUtils.isNoneEmpty(responseBody)) {
-                switch (contentType) {
-                    case APPLICATION_JSON:
-                        do {
-                            oldProcessedBody = processedBody;
-                            processedBody = StringEscapeUtils.unescapeJson(processedBody);
-                            if (!StringUtils.equals(oldProcessedBody, processedBody)) {
-                                processedData.add(processedBody);
-                                // System.out.println("Decoding JSON: " + processedBody);
-                            }
-                        } while (!StringUtils.equals(oldProcessedBody, processedBody));
-                        break;
-                    case APPLICATION_XML:
-                        do {
-                            oldProcessedBody = processedBody;
-                            processedBody = StringEscapeUtils.unescapeXml(processedBody);
-                            if (!StringUtils.equals(oldProcessedBody, processedBody)) {
-                                processedData.add(processedBody);
-                                // System.out.println("Decoding XML: " + processedBody);
-                            }
-                        } while (!StringUtils.equals(oldProcessedBody, processedBody));
-                        break;
-
-                }
+            switch (httpResponse.getResponseContentType()) {
+                case APPLICATION_JSON:
+                    do {
+                        oldProcessedBody = processedBody;
+                        processedBody = StringEscapeUtils.unescapeJson(processedBody);
+                    } while (!StringUtils.equals(oldProcessedBody, processedBody) && !matcher.match(processedBody));
+                    break;
+                case APPLICATION_XML:
+                    do {
+                        oldProcessedBody = processedBody;
+                        processedBody = StringEscapeUtils.unescapeXml(processedBody);
+                    } while (!StringUtils.equals(oldProcessedBody, processedBody) && !matcher.match(processedBody));
+                    break;
             }
         } catch (Throwable e) {
             logger.log(LogLevel.SEVERE, ERROR, e, CallbackUtils.class.getName());
         }
-        return processedData;
     }
 
+    /**
+     * @return the request data checked for reflected XSS, i.e. the forms of the request inputs that may carry markup.
+     */
     public static Set<String> decodeRequestData(HttpRequest httpRequest) {
+        return getUserInputIndex(httpRequest).getMarkupInputs();
+    }
+
+    /**
+     * Returns the user input index of the given request, building it on first need. The index is cached on request
+     * snapshots, so that the reflected XSS checks of all the events dispatched for the same request state decode its
+     * inputs only once.
+     *
+     * @param httpRequest request, usually the snapshot held by the event's {@code SecurityMetaData}
+     * @return the user input index
+     */
+    public static UserInputIndex getUserInputIndex(HttpRequest httpRequest) {
+        UserInputIndex index = httpRequest.userInputIndex();
+        if (index == null) {
+            index = buildUserInputIndex(httpRequest);
+            httpRequest.cacheUserInputIndex(index);
+        }
+        return index;
+    }
+
+    private static UserInputIndex buildUserInputIndex(HttpRequest httpRequest) {
         Set<String> processedData = new HashSet<>();
         String contentType = httpRequest.getContentType();
         String body = httpRequest.getBody().toString();
@@ -316,42 +207,32 @@ public class CallbackUtils {
                 String oldProcessedBody;
                 switch (contentType) {
                     case APPLICATION_JSON:
-//					do {
                         oldProcessedBody = processedBody;
                         processedBody = StringEscapeUtils.unescapeJson(processedBody);
                         if (!StringUtils.equals(oldProcessedBody, processedBody)
                                 && StringUtils.contains(processedBody, ANGLE_START)) {
                             processedData.add(processedBody);
-                            // System.out.println("Decoding JSON: " + processedBody);
                         }
-//					} while (!StringUtils.equals(oldProcessedBody, processedBody));
                         break;
                     case APPLICATION_XML:
-//					do {
                         oldProcessedBody = processedBody;
                         processedBody = StringEscapeUtils.unescapeXml(processedBody);
                         if (!StringUtils.equals(oldProcessedBody, processedBody)
                                 && StringUtils.contains(processedBody, ANGLE_START)) {
                             processedData.add(processedBody);
-                            // System.out.println("Decoding XML: " + processedBody);
                         }
-//					} while (!StringUtils.equals(oldProcessedBody, processedBody));
                         break;
 
                     case APPLICATION_X_WWW_FORM_URLENCODED:
                         processedBody = urlDecode(processedBody);
                         processedData.add(processedBody);
 
-//					do {
                         oldProcessedBody = processedBody;
                         processedBody = urlDecode(processedBody);
                         if (!StringUtils.equals(oldProcessedBody, processedBody)
                                 && StringUtils.contains(processedBody, ANGLE_START)) {
                             processedData.add(processedBody);
-                            // System.out.println("Decoding URL: " + processedBody);
                         }
-//					} while (!StringUtils.equals(oldProcessedBody, processedBody));
-
                         break;
                 }
 
@@ -359,7 +240,7 @@ public class CallbackUtils {
         } catch (Throwable e) {
             logger.log(LogLevel.SEVERE, ERROR, e, CallbackUtils.class.getName());
         }
-        return processedData;
+        return new UserInputIndex(processedData);
     }
 
     private static void processURLEncodedDataForXSS(Set<String> processedData, String data) {
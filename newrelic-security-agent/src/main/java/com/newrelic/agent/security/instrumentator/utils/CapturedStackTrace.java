@@ -0,0 +1,98 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import java.util.List;
+
+/**
+ * Stack trace captured by {@link StackTraceUtils} along with the identities of its frames, the class and method names
+ * and the bytecode index or line number of each frame, and a fingerprint of them. The call site is identified by the
+ * frame identities without converting the frames to {@link StackTraceElement}, the fingerprint only serves as hash.
+ */
+public class CapturedStackTrace {
+
+    static final long FINGERPRINT_SEED = 0xcbf29ce484222325L;
+
+    private static final long FINGERPRINT_PRIME = 0x100000001b3L;
+
+    private List<Object> frames;
+
+    private StackTraceElement[] stackTrace;
+
+    private final String[] classNames;
+
+    private final String[] methodNames;
+
+    private final int[] positions;
+
+    /**
+     * Whether {@link #positions} are bytecode indexes, or line numbers.
+     */
+    private final boolean byteCodeIndexed;
+
+    private final long fingerprint;
+
+    CapturedStackTrace(List<Object> frames, String[] classNames, String[] methodNames, int[] byteCodeIndexes, long fingerprint) {
+        this.frames = frames;
+        this.classNames = classNames;
+        this.methodNames = methodNames;
+        this.positions = byteCodeIndexes;
+        this.byteCodeIndexed = true;
+        this.fingerprint = fingerprint;
+    }
+
+    CapturedStackTrace(StackTraceElement[] stackTrace) {
+        this.stackTrace = stackTrace;
+        this.classNames = new String[stackTrace.length];
+        this.methodNames = new String[stackTrace.length];
+        this.positions = new int[stackTrace.length];
+        this.byteCodeIndexed = false;
+        long fingerprint = FINGERPRINT_SEED;
+        for (int i = 0; i < stackTrace.length; i++) {
+            classNames[i] = stackTrace[i].getClassName();
+            methodNames[i] = stackTrace[i].getMethodName();
+            positions[i] = stackTrace[i].getLineNumber();
+            fingerprint = fingerprint(fingerprint, classNames[i], methodNames[i], positions[i]);
+        }
+        this.fingerprint = fingerprint;
+    }
+
+    static long fingerprint(long fingerprint, String className, String methodName, int position) {
+        fingerprint = (fingerprint ^ className.hashCode()) * FINGERPRINT_PRIME;
+        fingerprint = (fingerprint ^ methodName.hashCode()) * FINGERPRINT_PRIME;
+        return (fingerprint ^ position) * FINGERPRINT_PRIME;
+    }
+
+    /**
+     * Returns the captured frames, converting them on first access.
+     */
+    public StackTraceElement[] getStackTrace() {
+        if (stackTrace == null) {
+            stackTrace = StackTraceUtils.toStackTraceElements(frames);
+            frames = null;
+        }
+        return stackTrace;
+    }
+
+    public int getDepth() {
+        return positions.length;
+    }
+
+    public long getFingerprint() {
+        return fingerprint;
+    }
+
+    String[] getClassNames() {
+        return classNames;
+    }
+
+    String[] getMethodNames() {
+        return methodNames;
+    }
+
+    int[] getPositions() {
+        return positions;
+    }
+
+    boolean isByteCodeIndexed() {
+        return byteCodeIndexed;
+    }
+}
@@ -0,0 +1,127 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.Config;
+import com.newrelic.api.agent.NewRelic;
+import com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of the detection switches read from the NR agent config.
+ * <p>
+ * The config is read once per {@link #REFRESH_INTERVAL_MILLIS}, so that event processing loops can check a plain field
+ * instead of looking up the config for every stack frame. Changes to these keys take effect within the refresh
+ * interval, or immediately after {@link #refresh()}.
+ */
+public class DetectionSettings {
+
+    static final long REFRESH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    private static final int DEFAULT_RXSS_TIME_BUDGET_MILLIS = 50;
+
+    private static volatile DetectionSettings current = read(getConfig(), System.currentTimeMillis());
+
+    private final boolean rciEnabled;
+
+    private final boolean rxssEnabled;
+
+    private final boolean deserializationEnabled;
+
+    private final long rxssTimeBudgetMillis;
+
+    private final boolean deferredEnrichmentEnabled;
+
+    private final long expiresAt;
+
+    private DetectionSettings(boolean rciEnabled, boolean rxssEnabled, boolean deserializationEnabled,
+                              long rxssTimeBudgetMillis, boolean deferredEnrichmentEnabled, long expiresAt) {
+        this.rciEnabled = rciEnabled;
+        this.rxssEnabled = rxssEnabled;
+        this.deserializationEnabled = deserializationEnabled;
+        this.rxssTimeBudgetMillis = rxssTimeBudgetMillis;
+        this.deferredEnrichmentEnabled = deferredEnrichmentEnabled;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Returns the current detection settings, re-reading the config if the snapshot has expired.
+     */
+    public static DetectionSettings get() {
+        return get(System.currentTimeMillis());
+    }
+
+    static DetectionSettings get(long now) {
+        DetectionSettings settings = current;
+        if (now >= settings.expiresAt) {
+            settings = refresh(getConfig(), now);
+        }
+        return settings;
+    }
+
+    /**
+     * Re-reads the detection settings from the NR agent config. The RXSS switch is also handed over to
+     * {@link ServletHelper}, which decides on response body capture.
+     */
+    public static DetectionSettings refresh() {
+        return refresh(getConfig(), System.currentTimeMillis());
+    }
+
+    static DetectionSettings refresh(Config config, long now) {
+        DetectionSettings settings = read(config, now);
+        current = settings;
+        ServletHelper.setRxssEnabled(settings.isRxssEnabled());
+        return settings;
+    }
+
+    private static Config getConfig() {
+        try {
+            return NewRelic.getAgent().getConfig();
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    private static DetectionSettings read(Config config, long now) {
+        boolean rciEnabled = true;
+        boolean rxssEnabled = true;
+        boolean deserializationEnabled = true;
+        int rxssTimeBudgetMillis = DEFAULT_RXSS_TIME_BUDGET_MILLIS;
+        boolean deferredEnrichmentEnabled = false;
+        try {
+            rciEnabled = config.getValue(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, true);
+            rxssEnabled = config.getValue(INRSettingsKey.SECURITY_DETECTION_RXSS_ENABLED, true);
+            deserializationEnabled = config.getValue(INRSettingsKey.SECURITY_DETECTION_DESERIALIZATION_ENABLED, true);
+            rxssTimeBudgetMillis = config.getValue(INRSettingsKey.SECURITY_DETECTION_RXSS_TIME_BUDGET_MS, DEFAULT_RXSS_TIME_BUDGET_MILLIS);
+            deferredEnrichmentEnabled = config.getValue(INRSettingsKey.SECURITY_DISPATCHER_DEFERRED_ENRICHMENT, false);
+        } catch (Throwable ignored) {
+        }
+        return new DetectionSettings(rciEnabled, rxssEnabled, deserializationEnabled, Math.max(1, rxssTimeBudgetMillis),
+                deferredEnrichmentEnabled, now + REFRESH_INTERVAL_MILLIS);
+    }
+
+    public boolean isRciEnabled() {
+        return rciEnabled;
+    }
+
+    public boolean isRxssEnabled() {
+        return rxssEnabled;
+    }
+
+    public boolean isDeserializationEnabled() {
+        return deserializationEnabled;
+    }
+
+    /**
+     * @return the time, in milliseconds, the reflected XSS check may spend extracting constructs from the request data of an event.
+     */
+    public long getRxssTimeBudgetMillis() {
+        return rxssTimeBudgetMillis;
+    }
+
+    /**
+     * @return whether operations of live traffic are only captured by the hook, and enriched on the dispatcher thread.
+     */
+    public boolean isDeferredEnrichmentEnabled() {
+        return deferredEnrichmentEnabled;
+    }
+}
@@ -1,14 +1,58 @@
 package com.newrelic.agent.security.instrumentator.utils;
 
+import com.newrelic.api.agent.security.schema.AbstractOperation;
+
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Generates execution IDs of the form {@code <threadId>:<sequence>}.
+ * <p>
+ * Each thread reserves a block of sequence numbers from a shared counter and hands them out locally, so the shared
+ * counter is only touched once every {@link #BLOCK_SIZE} IDs and no lock is taken. Sequence numbers remain unique
+ * across threads, but are no longer strictly ordered between threads.
+ */
 public class ExecutionIDGenerator {
 
     private static final AtomicLong COUNTER = new AtomicLong(0);
     public static final String COLON = ":";
 
-    public synchronized static final String getExecutionId() {
-        long counter = COUNTER.getAndIncrement();
-        return Thread.currentThread().getId() + COLON + counter;
+    static final int BLOCK_SIZE = 1024;
+
+    private static final ThreadLocal<SequenceBlock> BLOCKS = ThreadLocal.withInitial(SequenceBlock::new);
+
+    private static final class SequenceBlock {
+        private long next;
+        private long limit;
+
+        private long nextSequence() {
+            if (next == limit) {
+                next = COUNTER.getAndAdd(BLOCK_SIZE);
+                limit = next + BLOCK_SIZE;
+            }
+            return next++;
+        }
+    }
+
+    /**
+     * Returns the next sequence number for the current thread.
+     */
+    public static long nextSequence() {
+        return BLOCKS.get().nextSequence();
+    }
+
+    /**
+     * Assigns the next execution ID to the given operation in its numeric form. The string form is only built when
+     * {@link AbstractOperation#getExecutionId()} is first called.
+     */
+    public static void assignExecutionId(AbstractOperation operation) {
+        operation.setExecutionId(Thread.currentThread().getId(), nextSequence());
+    }
+
+    public static String getExecutionId() {
+        return toExecutionId(Thread.currentThread().getId(), nextSequence());
+    }
+
+    public static String toExecutionId(long threadId, long sequence) {
+        return threadId + COLON + sequence;
     }
 }
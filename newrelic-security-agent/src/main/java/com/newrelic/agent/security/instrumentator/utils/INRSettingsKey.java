@@ -16,6 +16,30 @@ public interface INRSettingsKey {
     String SECURITY_DETECTION_RCI_ENABLED = "security.detection.rci.enabled";
     String SECURITY_DETECTION_RXSS_ENABLED = "security.detection.rxss.enabled";
     String SECURITY_DETECTION_DESERIALIZATION_ENABLED = "security.detection.deserialization.enabled";
+    String SECURITY_DETECTION_RXSS_TIME_BUDGET_MS = "security.detection.rxss.time_budget_ms";
+    String SECURITY_EVENT_RATE_LIMIT_ENABLED = "security.event.rate_limit.enabled";
+    String SECURITY_EVENT_RATE_LIMIT_PER_SECOND = "security.event.rate_limit.per_second";
+    String SECURITY_EVENT_RATE_LIMIT_BURST = "security.event.rate_limit.burst";
+    String SECURITY_EVENT_DUPLICATE_WINDOW_MS = "security.event.duplicate_window_ms";
+    String SECURITY_REQUEST_BODY_LIMIT = "security.request.body_limit";
+    String SECURITY_RESPONSE_BODY_LIMIT = "security.response.body_limit";
+    String SECURITY_DISPATCHER_WAIT_STRATEGY = "security.dispatcher.wait_strategy";
+    String SECURITY_DISPATCHER_DEFERRED_ENRICHMENT = "security.dispatcher.deferred_enrichment";
+    String SECURITY_DISPATCHER_OVERFLOW_POLICY = "security.dispatcher.overflow_policy";
+    String SECURITY_DISPATCHER_OVERFLOW_BLOCK_TIMEOUT_MS = "security.dispatcher.overflow_block_timeout_ms";
+    String SECURITY_DISPATCHER_TYPE_QUOTA_PERCENT = "security.dispatcher.type_quota_percent";
+    String SECURITY_VIRTUAL_THREADS_ENABLED = "security.virtual_threads.enabled";
+    String SECURITY_IAST_REPLAY_CONCURRENCY = "security.iast.replay_concurrency";
+    String SECURITY_EVENT_STREAMING_SERIALIZATION = "security.event.streaming_serialization";
+    String SECURITY_EVENT_BATCH_ENABLED = "security.event.batch.enabled";
+    String SECURITY_EVENT_BATCH_MAX_EVENTS = "security.event.batch.max_events";
+    String SECURITY_EVENT_BATCH_MAX_BYTES = "security.event.batch.max_bytes";
+    String SECURITY_EVENT_BATCH_LINGER_MS = "security.event.batch.linger_ms";
+    String SECURITY_EVENT_ENCODING = "security.event.encoding";
+    String SECURITY_WEBSOCKET_COMPRESSION_ENABLED = "security.websocket.compression.enabled";
+    String SECURITY_WEBSOCKET_COMPRESSION_LEVEL = "security.websocket.compression.level";
+    String SECURITY_WEBSOCKET_COMPRESSION_THRESHOLD = "security.websocket.compression.threshold";
+    String SECURITY_WEBSOCKET_COMPRESSION_NO_CONTEXT_TAKEOVER = "security.websocket.compression.no_context_takeover";
 
     String SECURITY_POLICY_ENFORCE = "security.policy.enforce";
 
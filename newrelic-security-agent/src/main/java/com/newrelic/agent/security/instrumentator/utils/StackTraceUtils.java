@@ -0,0 +1,211 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
+import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Captures the stack of the current thread for operation registration.
+ * <p>
+ * On Java 9+ the stack is walked once using {@code java.lang.StackWalker} (resolved reflectively as the agent is
+ * compiled for Java 8) and only the frames between the hook and the service trace boundary are converted to
+ * {@link StackTraceElement}. Consecutive agent frames at the top of the stack are skipped without conversion.
+ * On Java 8 the full {@link Thread#getStackTrace()} is taken and trimmed to the same shape.
+ */
+public class StackTraceUtils {
+
+    private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
+
+    private static final String STACK_WALKER_CLASS = "java.lang.StackWalker";
+    private static final String STACK_WALKER_OPTION_CLASS = "java.lang.StackWalker$Option";
+    private static final String STACK_FRAME_CLASS = "java.lang.StackWalker$StackFrame";
+    private static final String SHOW_REFLECT_FRAMES = "SHOW_REFLECT_FRAMES";
+    private static final String STACK_WALKER_UNAVAILABLE = "StackWalker unavailable, falling back to Thread.getStackTrace() : ";
+
+    private static final String[] AGENT_PACKAGES = new String[]{"com.newrelic.", "com.nr."};
+
+    /**
+     * Number of frames kept below the service trace boundary.
+     */
+    private static final int SERVICE_BOUNDARY_SLACK = 3;
+
+    /**
+     * Extra frame on top of a stack captured from within this class, compared to one captured by the caller.
+     */
+    private static final int OWN_FRAMES = 1;
+
+    private static final Function<Stream<Object>, List<Object>> FRAME_COLLECTOR = frames -> frames.collect(Collectors.toCollection(ArrayList::new));
+
+    private static final Object STACK_WALKER;
+
+    private static final MethodHandle WALK;
+
+    private static final MethodHandle GET_CLASS_NAME;
+
+    private static final MethodHandle GET_METHOD_NAME;
+
+    private static final MethodHandle GET_BYTE_CODE_INDEX;
+
+    private static final MethodHandle TO_STACK_TRACE_ELEMENT;
+
+    static {
+        Object stackWalker = null;
+        MethodHandle walk = null;
+        MethodHandle getClassName = null;
+        MethodHandle getMethodName = null;
+        MethodHandle getByteCodeIndex = null;
+        MethodHandle toStackTraceElement = null;
+        try {
+            Class<?> walkerClass = Class.forName(STACK_WALKER_CLASS);
+            Class<?> frameClass = Class.forName(STACK_FRAME_CLASS);
+            // StackWalker.walk is caller sensitive and cannot be resolved via the public lookup
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            // Reflection frames are retained to keep the frame count and RCI detection identical to Thread.getStackTrace()
+            Object showReflectFrames = getOption(Class.forName(STACK_WALKER_OPTION_CLASS));
+            stackWalker = lookup.findStatic(walkerClass, "getInstance", MethodType.methodType(walkerClass, Set.class))
+                    .invoke(Collections.singleton(showReflectFrames));
+            walk = lookup.findVirtual(walkerClass, "walk", MethodType.methodType(Object.class, Function.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Function.class));
+            getClassName = lookup.findVirtual(frameClass, "getClassName", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+            getMethodName = lookup.findVirtual(frameClass, "getMethodName", MethodType.methodType(String.class))
+                    .asType(MethodType.methodType(String.class, Object.class));
+            getByteCodeIndex = lookup.findVirtual(frameClass, "getByteCodeIndex", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            toStackTraceElement = lookup.findVirtual(frameClass, "toStackTraceElement", MethodType.methodType(StackTraceElement.class))
+                    .asType(MethodType.methodType(StackTraceElement.class, Object.class));
+        } catch (Throwable e) {
+            stackWalker = null;
+            logger.log(LogLevel.FINER, STACK_WALKER_UNAVAILABLE + e, StackTraceUtils.class.getName());
+        }
+        STACK_WALKER = stackWalker;
+        WALK = walk;
+        GET_CLASS_NAME = getClassName;
+        GET_METHOD_NAME = getMethodName;
+        GET_BYTE_CODE_INDEX = getByteCodeIndex;
+        TO_STACK_TRACE_ELEMENT = toStackTraceElement;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object getOption(Class optionClass) {
+        return Enum.valueOf(optionClass, SHOW_REFLECT_FRAMES);
+    }
+
+    public static boolean isStackWalkerAvailable() {
+        return STACK_WALKER != null;
+    }
+
+    /**
+     * Captures the stack of the calling thread, bottom aligned against the service trace.
+     * The captured trace starts at the first non agent frame and ends a few frames below the service entry point.
+     * Frames are converted to {@link StackTraceElement} only when {@link CapturedStackTrace#getStackTrace()} is called.
+     *
+     * @param serviceTraceLength length of the stack captured at service method entry
+     * @return the trimmed stack trace of the calling thread
+     */
+    public static CapturedStackTrace captureRequiredStackTrace(int serviceTraceLength) {
+        if (STACK_WALKER != null) {
+            try {
+                return walkRequiredStackTrace(serviceTraceLength);
+            } catch (Throwable ignored) {
+            }
+        }
+        return new CapturedStackTrace(trim(Thread.currentThread().getStackTrace(), OWN_FRAMES, serviceTraceLength));
+    }
+
+    /**
+     * Trims an already captured stack trace, where index 0 is the capturing frame, to the shape returned by
+     * {@link #captureRequiredStackTrace(int)}.
+     */
+    public static StackTraceElement[] trimToRequiredStackTrace(StackTraceElement[] stackTrace, int serviceTraceLength) {
+        return trim(stackTrace, 0, serviceTraceLength);
+    }
+
+    /**
+     * Returns the frame an operation raised with an already captured stack trace is attributed to. It is taken from
+     * the bounded trace before the agent frames on top are dropped, as a trace captured from within the
+     * instrumentation may have a single frame left once trimmed by {@link #trimToRequiredStackTrace(StackTraceElement[], int)}.
+     */
+    public static StackTraceElement getRequiredUserClassElement(StackTraceElement[] stackTrace, int serviceTraceLength) {
+        return getUserClassElement(stackTrace, requiredEnd(stackTrace.length, 0, serviceTraceLength));
+    }
+
+    /**
+     * Returns the frame a trimmed stack trace is attributed to, the one before the last or the only one.
+     *
+     * @return the user class frame, {@code null} for an empty trace
+     */
+    public static StackTraceElement getUserClassElement(StackTraceElement[] stackTrace) {
+        return getUserClassElement(stackTrace, stackTrace.length);
+    }
+
+    private static StackTraceElement getUserClassElement(StackTraceElement[] stackTrace, int end) {
+        if (end <= 0) {
+            return null;
+        }
+        return stackTrace[Math.max(0, end - 2)];
+    }
+
+    private static StackTraceElement[] trim(StackTraceElement[] stackTrace, int base, int serviceTraceLength) {
+        int end = requiredEnd(stackTrace.length, base, serviceTraceLength);
+        int start = base + 1;
+        while (start < end && StringUtils.startsWithAny(stackTrace[start].getClassName(), AGENT_PACKAGES)) {
+            start++;
+        }
+        return Arrays.copyOfRange(stackTrace, Math.min(start, end), end);
+    }
+
+    private static int requiredEnd(int depth, int base, int serviceTraceLength) {
+        int length = depth - base;
+        return base + Math.max(0, Math.min(length, length - serviceTraceLength + SERVICE_BOUNDARY_SLACK));
+    }
+
+    private static CapturedStackTrace walkRequiredStackTrace(int serviceTraceLength) throws Throwable {
+        // Frame objects are cheap; conversion to StackTraceElement is deferred until the trace is actually needed.
+        Object walked = (Object) WALK.invokeExact(STACK_WALKER, (Function) FRAME_COLLECTOR);
+        @SuppressWarnings("unchecked")
+        List<Object> frames = (List<Object>) walked;
+        int end = requiredEnd(frames.size(), OWN_FRAMES, serviceTraceLength);
+        int start = OWN_FRAMES + 1;
+        while (start < end && StringUtils.startsWithAny((String) GET_CLASS_NAME.invokeExact(frames.get(start)), AGENT_PACKAGES)) {
+            start++;
+        }
+        start = Math.min(start, end);
+        String[] classNames = new String[end - start];
+        String[] methodNames = new String[end - start];
+        int[] byteCodeIndexes = new int[end - start];
+        long fingerprint = CapturedStackTrace.FINGERPRINT_SEED;
+        for (int i = 0; i < byteCodeIndexes.length; i++) {
+            Object frame = frames.get(start + i);
+            classNames[i] = (String) GET_CLASS_NAME.invokeExact(frame);
+            methodNames[i] = (String) GET_METHOD_NAME.invokeExact(frame);
+            byteCodeIndexes[i] = (int) GET_BYTE_CODE_INDEX.invokeExact(frame);
+            fingerprint = CapturedStackTrace.fingerprint(fingerprint, classNames[i], methodNames[i], byteCodeIndexes[i]);
+        }
+        return new CapturedStackTrace(frames.subList(start, end), classNames, methodNames, byteCodeIndexes, fingerprint);
+    }
+
+    static StackTraceElement[] toStackTraceElements(List<Object> frames) {
+        StackTraceElement[] stackTrace = new StackTraceElement[frames.size()];
+        try {
+            for (int i = 0; i < stackTrace.length; i++) {
+                stackTrace[i] = (StackTraceElement) TO_STACK_TRACE_ELEMENT.invokeExact(frames.get(i));
+            }
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+        return stackTrace;
+    }
+}
@@ -0,0 +1,330 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Single pass scanner extracting HTML constructs usable for XSS from request data.
+ * <p>
+ * The data is walked once, tag by tag, without regular expressions. A construct is reported for
+ * <ul>
+ *     <li>a tag with an event handler or URL bearing attribute ({@code on*}, {@code src}, {@code href}, {@code action},
+ *     {@code formaction}, {@code srcdoc}, {@code data}), or any attribute whose value contains {@code javascript:},</li>
+ *     <li>a {@code script} tag along with its non blank body.</li>
+ * </ul>
+ * HTML comments are skipped. Scanning stops at the given deadline, returning the constructs found so far.
+ */
+public class XSSConstructScanner {
+
+    private static final String SCRIPT = "script";
+    private static final String SCRIPT_END = "</script";
+    private static final String COMMENT_END = "-->";
+    private static final String JAVASCRIPT = "javascript:";
+
+    private static final String[] URL_ATTRIBUTES = new String[]{"src", "href", "action", "formaction", "srcdoc", "data"};
+
+    /**
+     * Number of tags scanned between two deadline checks.
+     */
+    private static final int DEADLINE_CHECK_INTERVAL = 64;
+
+    private final String data;
+
+    private final int length;
+
+    private final long deadline;
+
+    /**
+     * Position right after the last attribute parsed by {@link #scanAttributes(int)}.
+     */
+    private int attributesEnd;
+
+    private boolean noDoubleQuote;
+
+    private boolean noSingleQuote;
+
+    /**
+     * Whether there is no {@code >} left after an unclosed {@code script} tag, so that it is not searched for again.
+     */
+    private boolean noTagEndLeft;
+
+    /**
+     * Position of the first {@code </script} found, {@code -1} once there is none left and {@code -2} until searched.
+     */
+    private int scriptEndTag = -2;
+
+    private XSSConstructScanner(String data, long deadline) {
+        this.data = data;
+        this.length = data.length();
+        this.deadline = deadline;
+    }
+
+    /**
+     * Extracts the XSS constructs from the given data.
+     *
+     * @param data     data to scan
+     * @param deadline {@link System#nanoTime()} after which scanning is aborted
+     * @return the constructs found, possibly incomplete if the deadline was hit
+     */
+    public static Set<String> scan(String data, long deadline) {
+        return new XSSConstructScanner(data, deadline).scan();
+    }
+
+    private Set<String> scan() {
+        Set<String> constructs = new HashSet<>();
+        int pos = 0;
+        int tags = 0;
+        while (pos < length) {
+            int start = data.indexOf('<', pos);
+            if (start == -1) {
+                break;
+            }
+            if (++tags % DEADLINE_CHECK_INTERVAL == 0 && System.nanoTime() - deadline >= 0) {
+                break;
+            }
+            int nameEnd = scanTagName(start + 1);
+            if (nameEnd == -1) {
+                pos = start + 1;
+                continue;
+            }
+            if (data.charAt(start + 1) == '!') {
+                int commentEnd = data.indexOf(COMMENT_END, start);
+                if (commentEnd == -1) {
+                    break;
+                }
+                pos = commentEnd + COMMENT_END.length();
+                continue;
+            }
+
+            boolean isAttackConstruct = scanAttributes(nameEnd);
+            int end = attributesEnd < length && data.charAt(attributesEnd) == '>' ? attributesEnd : -1;
+            if (end == -1) {
+                if (!isAttackConstruct) {
+                    pos = nameEnd;
+                    continue;
+                }
+                end = attributesEnd - 1;
+            }
+
+            if (nameEnd - start - 1 == SCRIPT.length() && data.regionMatches(true, start + 1, SCRIPT, 0, SCRIPT.length())) {
+                int endTag = indexOfScriptEnd(end);
+                if (endTag != -1) {
+                    String body = data.substring(end + 1, endTag);
+                    if (StringUtils.isNotBlank(body)) {
+                        constructs.add(data.substring(start, end + 1) + body);
+                        pos = end + 1;
+                        continue;
+                    }
+                } else {
+                    // A body holding a '>' is never blank
+                    int tagEnd = noTagEndLeft ? -1 : data.indexOf('>', end + 1);
+                    if (tagEnd != -1) {
+                        constructs.add(data.substring(start, end + 1) + data.substring(tagEnd));
+                        break;
+                    }
+                    noTagEndLeft = true;
+                }
+            }
+            if (isAttackConstruct) {
+                constructs.add(data.substring(start, end + 1));
+            }
+            pos = end + 1;
+        }
+        return constructs;
+    }
+
+    /**
+     * Finds the first {@code </script} at or after the given position. Positions only grow along the scan, so the last
+     * one found is reused until it is passed and a missing end tag is not searched for again, otherwise each
+     * {@code script} tag would search the rest of the data.
+     */
+    private int indexOfScriptEnd(int pos) {
+        if (scriptEndTag == -1 || scriptEndTag >= pos) {
+            return scriptEndTag;
+        }
+        scriptEndTag = StringUtils.indexOfIgnoreCase(data, SCRIPT_END, pos);
+        return scriptEndTag;
+    }
+
+    /**
+     * Matches a tag name, i.e. letters, {@code _} or {@code -} optionally followed by digits, or a comment start.
+     *
+     * @return the position right after the tag name, or {@code -1} if there is none at the given position
+     */
+    private int scanTagName(int pos) {
+        if (data.startsWith("!--", pos)) {
+            return pos + 3;
+        }
+        int p = pos;
+        while (p < length && isTagNameChar(data.charAt(p))) {
+            p++;
+        }
+        if (p == pos) {
+            return -1;
+        }
+        while (p < length && data.charAt(p) >= '0' && data.charAt(p) <= '9') {
+            p++;
+        }
+        return p;
+    }
+
+    /**
+     * Parses the attributes of the tag from the given position up to the closing {@code >}, which may not appear in
+     * quoted values. Sets {@link #attributesEnd} to the position of the closing {@code >}, or right after the last
+     * attribute if the tag is not closed. A {@code <} outside quoted values is taken as the start of the next tag, so
+     * that no part of the data is parsed as attributes of more than one tag.
+     *
+     * @return {@code true} if any of the attributes makes this tag an attack construct
+     */
+    private boolean scanAttributes(int pos) {
+        boolean isAttackConstruct = false;
+        int lastAttributeEnd = pos;
+        int p = pos;
+        while (p < length) {
+            char c = data.charAt(p);
+            if (c == '>') {
+                attributesEnd = p;
+                return isAttackConstruct;
+            }
+            if (c == '<') {
+                break;
+            }
+            if (!isAttributeNameChar(c)) {
+                p++;
+                continue;
+            }
+            int nameStart = p;
+            while (p < length && isAttributeNameChar(data.charAt(p))) {
+                p++;
+            }
+            int nameEnd = p;
+            while (p < length && Character.isWhitespace(data.charAt(p))) {
+                p++;
+            }
+            if (p >= length || data.charAt(p) != '=') {
+                continue;
+            }
+            p++;
+            while (p < length && Character.isWhitespace(data.charAt(p))) {
+                p++;
+            }
+            int valueStart = p;
+            int valueEnd;
+            char quote = p < length ? data.charAt(p) : 0;
+            int closingQuote = quote == '"' || quote == '\'' ? indexOfQuote(quote, p + 1) : -1;
+            if (closingQuote != -1) {
+                valueEnd = closingQuote + 1;
+            } else {
+                valueEnd = scanUnquotedValue(p);
+            }
+            p = valueEnd;
+            lastAttributeEnd = valueEnd;
+            if (!isAttackConstruct && isAttackAttribute(nameStart, nameEnd, valueStart, valueEnd)) {
+                isAttackConstruct = true;
+            }
+        }
+        attributesEnd = lastAttributeEnd;
+        return isAttackConstruct;
+    }
+
+    /**
+     * Finds the closing quote, remembering when there is none left so that unbalanced quotes are not searched for
+     * again, which would make scanning quadratic.
+     */
+    private int indexOfQuote(char quote, int pos) {
+        if (quote == '"' ? noDoubleQuote : noSingleQuote) {
+            return -1;
+        }
+        int index = data.indexOf(quote, pos);
+        if (index == -1) {
+            if (quote == '"') {
+                noDoubleQuote = true;
+            } else {
+                noSingleQuote = true;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * @return the end of an unquoted value, before whitespace, {@code >}, {@code />}, {@code ?>} or {@code <}.
+     */
+    private int scanUnquotedValue(int pos) {
+        int p = pos;
+        while (p < length) {
+            char c = data.charAt(p);
+            if (Character.isWhitespace(c) || c == '>') {
+                break;
+            }
+            if ((c == '/' || c == '?') && p + 1 < length && data.charAt(p + 1) == '>') {
+                break;
+            }
+            if (c == '<') {
+                break;
+            }
+            p++;
+        }
+        return p;
+    }
+
+    private boolean isAttackAttribute(int nameStart, int nameEnd, int valueStart, int valueEnd) {
+        int nameLength = nameEnd - nameStart;
+        if (nameLength >= 2 && data.regionMatches(true, nameStart, "on", 0, 2)) {
+            return true;
+        }
+        for (String attribute : URL_ATTRIBUTES) {
+            if (nameLength == attribute.length() && data.regionMatches(true, nameStart, attribute, 0, nameLength)) {
+                return true;
+            }
+        }
+        return containsJavascriptScheme(valueStart, valueEnd);
+    }
+
+    /**
+     * Checks the value for {@code javascript:}, ignoring case and whitespace and after unescaping HTML entities.
+     */
+    private boolean containsJavascriptScheme(int valueStart, int valueEnd) {
+        boolean hasColon = false;
+        boolean hasEntity = false;
+        for (int i = valueStart; i < valueEnd; i++) {
+            char c = data.charAt(i);
+            hasColon |= c == ':';
+            hasEntity |= c == '&';
+        }
+        if (!hasColon && !hasEntity) {
+            return false;
+        }
+        String value = data.substring(valueStart, valueEnd);
+        if (hasEntity) {
+            value = HtmlEscape.unescapeHtml(value);
+        }
+        int matched = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (Character.isWhitespace(c)) {
+                continue;
+            }
+            if (Character.toLowerCase(c) == JAVASCRIPT.charAt(matched)) {
+                if (++matched == JAVASCRIPT.length()) {
+                    return true;
+                }
+            } else {
+                // "javascript:" has no repeated prefix, a mismatch can only restart at the current char
+                matched = Character.toLowerCase(c) == JAVASCRIPT.charAt(0) ? 1 : 0;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTagNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '-';
+    }
+
+    private static boolean isAttributeNameChar(char c) {
+        return !Character.isWhitespace(c) && c != '(' && c != '/' && c != '<' && c != '\'' && c != '"' && c != '>'
+                && c != ')' && c != '=';
+    }
+}
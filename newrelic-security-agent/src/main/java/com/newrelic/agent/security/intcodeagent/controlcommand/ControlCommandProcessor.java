@@ -212,16 +212,14 @@ public class ControlCommandProcessor implements Runnable {
                  */
                 try {
                     logger.log(LogLevel.INFO, RECEIVED_WS_RECONNECT_COMMAND_FROM_SERVER_INITIATING_SEQUENCE, this.getClass().getName());
-                    if (NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getEnabled() &&
-                            NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getIastScan().getEnabled()
-                    ) {
+                    if (NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIastScanEnabled()) {
                         WSUtils.getInstance().setReconnecting(true);
-                        while (EventSendPool.getInstance().getExecutor().getActiveCount() > 0 && !EventSendPool.getInstance().isWaiting().get()) {
+                        while (EventSendPool.getInstance().getActiveCount() > 0 && !EventSendPool.getInstance().isWaiting().get()) {
                             Thread.sleep(100);
                         }
                         logger.log(LogLevel.FINER, WS_RECONNECT_EVENT_SEND_POOL_DRAINED, this.getClass().getName());
 
-                        while (RestRequestThreadPool.getInstance().getExecutor().getActiveCount() > 0 && !RestRequestThreadPool.getInstance().isWaiting().get()) {
+                        while (RestRequestThreadPool.getInstance().getActiveCount() > 0 && !RestRequestThreadPool.getInstance().isWaiting().get()) {
                             Thread.sleep(100);
                         }
                         logger.log(LogLevel.FINER, WS_RECONNECT_IAST_REQUEST_REPLAY_POOL_DRAINED, this.getClass().getName());
@@ -0,0 +1,267 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded multi producer, multi consumer ring of pre-allocated, reused event holders.
+ * <p>
+ * A producer claims a slot with {@link #tryClaim()}, fills the holder returned by {@link #get(long)} and makes it
+ * visible with {@link #publish(long)}. Consumers claim runs of published slots with {@link #drain(EventHandler, Object[])},
+ * move each event out of its slot into a holder of their own and free the slot, before handling any of the events, so
+ * that slots are never held while events are handled. Claiming never blocks, a full buffer is reported to the
+ * producer, which decides what to do with the event.
+ * <p>
+ * Each slot carries a sequence telling its state: equal to its position when free, to its position + 1 when published.
+ * Producers and consumers only race on the claim counters. A published event may still be overwritten in place with
+ * {@link #replace(Predicate, Consumer)}, consumers take a per slot guard before moving it out to exclude that.
+ *
+ * @param <E> type of the event holders
+ */
+public class RingBuffer<E> {
+
+    /**
+     * Handles the events consumed from a {@link RingBuffer}.
+     */
+    public interface EventHandler<E> {
+
+        /**
+         * Moves the event out of the holder of its slot into a holder of the consumer, e.g. by copying its references
+         * and clearing the slot holder. The slot is freed and may be reused as soon as this returns. Called with the
+         * slot guard held, it must be quick and must not block.
+         */
+        void moveOut(E slot, E holder);
+
+        /**
+         * Handles an event moved out by {@link #moveOut(Object, Object)}, its slot being already free.
+         */
+        void onEvent(E event) throws Exception;
+
+        /**
+         * Called with events for which {@link #moveOut(Object, Object)} or {@link #onEvent(Object)} failed.
+         */
+        void onException(E event, Throwable throwable);
+    }
+
+    /**
+     * Maximum number of events drained at once, failures being tracked in a {@code long} bit set.
+     */
+    private static final int MAX_BATCH = Long.SIZE;
+
+    private final Object[] slots;
+
+    private final AtomicLongArray sequences;
+
+    /**
+     * Per slot guard, held by a consumer handing the event over or by {@link #replace(Predicate, Consumer)}.
+     */
+    private final AtomicIntegerArray guards;
+
+    private final int mask;
+
+    private final AtomicLong claimed = new AtomicLong();
+
+    private final AtomicLong consumed = new AtomicLong();
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * @param capacity     number of slots, rounded up to a power of two
+     * @param factory      creates the event holder of each slot
+     * @param waitStrategy how consumers wait for events
+     */
+    public RingBuffer(int capacity, Supplier<E> factory, WaitStrategy waitStrategy) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        this.slots = new Object[size];
+        this.sequences = new AtomicLongArray(size);
+        this.guards = new AtomicIntegerArray(size);
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        for (int i = 0; i < size; i++) {
+            slots[i] = factory.get();
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Claims the next free slot.
+     *
+     * @return the sequence of the claimed slot, or {@code -1} if the buffer is full
+     */
+    public long tryClaim() {
+        while (true) {
+            long position = claimed.get();
+            long sequence = sequences.get((int) position & mask);
+            if (sequence == position) {
+                if (claimed.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (sequence < position) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Claims the next free slot, waiting for one up to the given timeout.
+     *
+     * @return the sequence of the claimed slot, or {@code -1} if none was freed in time
+     */
+    public long claim(long timeout, TimeUnit unit) {
+        long sequence = tryClaim();
+        if (sequence >= 0) {
+            return sequence;
+        }
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        long parkNanos = TimeUnit.MICROSECONDS.toNanos(10);
+        while (System.nanoTime() - deadline < 0) {
+            LockSupport.parkNanos(parkNanos);
+            parkNanos = Math.min(parkNanos * 2, TimeUnit.MILLISECONDS.toNanos(1));
+            sequence = tryClaim();
+            if (sequence >= 0) {
+                return sequence;
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the event holder of a claimed slot.
+     */
+    @SuppressWarnings("unchecked")
+    public E get(long sequence) {
+        return (E) slots[(int) sequence & mask];
+    }
+
+    /**
+     * Makes the event of a claimed slot available to consumers.
+     */
+    public void publish(long sequence) {
+        sequences.set((int) sequence & mask, sequence + 1);
+        waitStrategy.signal();
+    }
+
+    /**
+     * Claims up to {@code holders.length} consecutive published events, at most 64, moves them out into
+     * {@code holders} and frees their slots, then hands them to the handler, in order.
+     *
+     * @param holders holders owned by the consumer, not shared with other consumers unless the handler does not use
+     *                them
+     * @return the number of events handled, {@code 0} if none was published
+     */
+    public int drain(EventHandler<E> handler, E[] holders) {
+        int maxBatch = Math.min(holders.length, MAX_BATCH);
+        long position;
+        int count;
+        do {
+            position = consumed.get();
+            count = 0;
+            while (count < maxBatch && sequences.get((int) (position + count) & mask) == position + count + 1) {
+                count++;
+            }
+            if (count == 0) {
+                return 0;
+            }
+        } while (!consumed.compareAndSet(position, position + count));
+
+        long failed = 0;
+        for (int i = 0; i < count; i++) {
+            long sequence = position + i;
+            int index = (int) sequence & mask;
+            while (!guards.compareAndSet(index, 0, 1)) {
+                Thread.yield();
+            }
+            try {
+                handler.moveOut(get(sequence), holders[i]);
+            } catch (Throwable e) {
+                failed |= 1L << i;
+                handler.onException(holders[i], e);
+            } finally {
+                // Released before the guard, so that a replacement waiting on it sees the slot is gone
+                sequences.set(index, sequence + slots.length);
+                guards.set(index, 0);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            if ((failed & (1L << i)) != 0) {
+                continue;
+            }
+            try {
+                handler.onEvent(holders[i]);
+            } catch (Throwable e) {
+                handler.onException(holders[i], e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Overwrites the oldest published, not yet consumed event matching {@code victim}. The writer is given the holder
+     * while the victim is still in it, and must replace its content.
+     *
+     * @return {@code true} if an event was replaced
+     */
+    public boolean replace(Predicate<E> victim, Consumer<E> writer) {
+        long end = claimed.get();
+        for (long position = consumed.get(); position < end; position++) {
+            int index = (int) position & mask;
+            E event = get(position);
+            // Tested without the guard first, the slot is only guarded to confirm a likely victim
+            if (sequences.get(index) != position + 1 || !victim.test(event)) {
+                continue;
+            }
+            if (!guards.compareAndSet(index, 0, 1)) {
+                continue;
+            }
+            try {
+                if (sequences.get(index) == position + 1 && victim.test(event)) {
+                    writer.accept(event);
+                    return true;
+                }
+            } finally {
+                guards.set(index, 0);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Waits with the configured {@link WaitStrategy} until events may be available.
+     */
+    public void awaitEvents(int idleCount) throws InterruptedException {
+        waitStrategy.await(this::hasPublished, idleCount);
+    }
+
+    /**
+     * Wakes up the consumers waiting in {@link #awaitEvents(int)}, e.g. on shutdown.
+     */
+    public void signalConsumers() {
+        waitStrategy.signal();
+    }
+
+    public boolean hasPublished() {
+        long position = consumed.get();
+        return sequences.get((int) position & mask) == position + 1;
+    }
+
+    /**
+     * @return the number of claimed slots not consumed yet, published or not.
+     */
+    public int size() {
+        return (int) Math.max(0, claimed.get() - consumed.get());
+    }
+
+    public int capacity() {
+        return slots.length;
+    }
+}
@@ -0,0 +1,202 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Executor starting a thread per task, meant for virtual threads, see {@link VirtualThreadExecutorFactory}.
+ * <p>
+ * Concurrency is bounded by a semaphore instead of a pool size: at most {@code maxConcurrency} tasks run at once, the
+ * others wait for a permit in their own thread. At most {@code maxQueued} tasks may wait, further tasks are handed to
+ * the rejection handler, as a {@code ThreadPoolExecutor} with a bounded queue would do.
+ */
+public class SemaphoreBoundedExecutor extends AbstractExecutorService {
+
+    private final ThreadFactory threadFactory;
+
+    private final Semaphore permits;
+
+    private final int maxQueued;
+
+    private final Consumer<Runnable> rejectionHandler;
+
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+    private final Object terminationLock = new Object();
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * @param threadFactory    factory of the per task threads
+     * @param maxConcurrency   maximum number of tasks running at once
+     * @param maxQueued        maximum number of tasks waiting for a permit
+     * @param rejectionHandler called with the tasks rejected because too many are waiting or the executor is shut down
+     */
+    public SemaphoreBoundedExecutor(ThreadFactory threadFactory, int maxConcurrency, int maxQueued, Consumer<Runnable> rejectionHandler) {
+        this.threadFactory = threadFactory;
+        this.permits = new Semaphore(Math.max(1, maxConcurrency));
+        this.maxQueued = Math.max(0, maxQueued);
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (shutdown) {
+            rejectionHandler.accept(command);
+            return;
+        }
+        if (queued.incrementAndGet() > maxQueued) {
+            queued.decrementAndGet();
+            rejectionHandler.accept(command);
+            return;
+        }
+        Thread thread = null;
+        try {
+            thread = threadFactory.newThread(() -> run(command));
+            threads.add(thread);
+            thread.start();
+        } catch (Throwable e) {
+            if (thread != null) {
+                threads.remove(thread);
+            }
+            queued.decrementAndGet();
+            rejectionHandler.accept(command);
+        }
+    }
+
+    private void run(Runnable command) {
+        Thread current = Thread.currentThread();
+        boolean acquired = false;
+        try {
+            permits.acquire();
+            acquired = true;
+            queued.decrementAndGet();
+            active.incrementAndGet();
+            beforeExecute(current, command);
+            Throwable thrown = null;
+            try {
+                command.run();
+            } catch (RuntimeException | Error e) {
+                thrown = e;
+                throw e;
+            } finally {
+                afterExecute(command, thrown);
+            }
+        } catch (InterruptedException e) {
+            // Interrupted by shutdownNow while waiting for a permit, the task is dropped
+        } finally {
+            if (acquired) {
+                active.decrementAndGet();
+                permits.release();
+            } else {
+                queued.decrementAndGet();
+            }
+            threads.remove(current);
+            if (shutdown && threads.isEmpty()) {
+                synchronized (terminationLock) {
+                    terminationLock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Called in the task thread before running the task, as {@code ThreadPoolExecutor#beforeExecute}.
+     */
+    protected void beforeExecute(Thread t, Runnable r) {
+    }
+
+    /**
+     * Called in the task thread after running the task, as {@code ThreadPoolExecutor#afterExecute}.
+     */
+    protected void afterExecute(Runnable r, Throwable t) {
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+        return new CustomFutureTask<>(runnable, value);
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new CustomFutureTask<>(callable);
+    }
+
+    /**
+     * @return the number of tasks waiting for a permit.
+     */
+    public int getQueueSize() {
+        return queued.get();
+    }
+
+    /**
+     * @return the number of tasks that may still wait for a permit before tasks get rejected.
+     */
+    public int getRemainingCapacity() {
+        return Math.max(0, maxQueued - queued.get());
+    }
+
+    /**
+     * @return the number of tasks running.
+     */
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    /**
+     * Interrupts all task threads, running or waiting for a permit. Tasks waiting for a permit are dropped and not
+     * returned, they have no thread of their own to be returned from.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        for (Thread thread : threads) {
+            thread.interrupt();
+        }
+        return Collections.emptyList();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown && threads.isEmpty();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        synchronized (terminationLock) {
+            while (!isTerminated()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                TimeUnit.NANOSECONDS.timedWait(terminationLock, remaining);
+            }
+        }
+        return true;
+    }
+}
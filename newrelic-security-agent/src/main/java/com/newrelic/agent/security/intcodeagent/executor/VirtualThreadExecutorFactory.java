@@ -0,0 +1,122 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.api.agent.NewRelic;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+/**
+ * Creates the executors of the agent worker pools on virtual threads, when enabled through
+ * {@link INRSettingsKey#SECURITY_VIRTUAL_THREADS_ENABLED} and supported by the runtime (JDK 21+).
+ * <p>
+ * Virtual threads are looked up by reflection, as the agent is built for Java 8. Pools fall back to their platform
+ * thread executor whenever {@link #newBoundedExecutor(String, int, int, Consumer)} returns {@code null}.
+ */
+public class VirtualThreadExecutorFactory {
+
+    private static final Object lock = new Object();
+
+    private static volatile Boolean enabled;
+
+    /**
+     * {@code Thread.ofVirtual()}, {@code null} if not supported.
+     */
+    private static final Method OF_VIRTUAL;
+
+    /**
+     * {@code Thread.Builder#name(String, long)}.
+     */
+    private static final Method NAME;
+
+    /**
+     * {@code Thread.Builder#factory()}.
+     */
+    private static final Method FACTORY;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        try {
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+        } catch (Throwable ignored) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+    }
+
+    private VirtualThreadExecutorFactory() {
+    }
+
+    /**
+     * @return {@code true} if the runtime supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * @return {@code true} if virtual threads are enabled and supported.
+     */
+    public static boolean isEnabled() {
+        if (enabled == null) {
+            synchronized (lock) {
+                if (enabled == null) {
+                    boolean configured = false;
+                    try {
+                        configured = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_VIRTUAL_THREADS_ENABLED, false);
+                    } catch (Throwable ignored) {
+                    }
+                    enabled = configured && isSupported();
+                }
+            }
+        }
+        return enabled;
+    }
+
+    /**
+     * @param namePrefix prefix of the thread names, followed by a counter
+     * @return a factory of virtual threads, {@code null} if not supported.
+     */
+    public static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+        if (!isSupported()) {
+            return null;
+        }
+        try {
+            Object builder = OF_VIRTUAL.invoke(null);
+            builder = NAME.invoke(builder, namePrefix, 1L);
+            return (ThreadFactory) FACTORY.invoke(builder);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Creates an executor running each task in its own virtual thread, with at most {@code maxConcurrency} tasks
+     * running at once.
+     *
+     * @param namePrefix       prefix of the thread names
+     * @param maxConcurrency   maximum number of tasks running at once
+     * @param maxQueued        maximum number of tasks waiting to run
+     * @param rejectionHandler called with the rejected tasks
+     * @return the executor, {@code null} if virtual threads are disabled or not supported.
+     */
+    public static SemaphoreBoundedExecutor newBoundedExecutor(String namePrefix, int maxConcurrency, int maxQueued,
+            Consumer<Runnable> rejectionHandler) {
+        if (!isEnabled()) {
+            return null;
+        }
+        ThreadFactory threadFactory = newVirtualThreadFactory(namePrefix);
+        if (threadFactory == null) {
+            return null;
+        }
+        return new SemaphoreBoundedExecutor(threadFactory, maxConcurrency, maxQueued, rejectionHandler);
+    }
+}
@@ -0,0 +1,130 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * How a {@link RingBuffer} consumer waits for events once the buffer is drained.
+ * <ul>
+ *     <li>{@link Blocking}: sleeps on a condition, producers only signal when a consumer is asleep. Lowest CPU usage.</li>
+ *     <li>{@link Yielding}: spins, then yields the CPU. Lowest latency, keeps consumer cores busy.</li>
+ *     <li>{@link Parking}: parks for increasing periods up to {@link Parking#MAX_PARK_NANOS}. In between.</li>
+ * </ul>
+ */
+public interface WaitStrategy {
+
+    String BLOCKING = "blocking";
+    String YIELDING = "yielding";
+    String PARKING = "parking";
+
+    /**
+     * Waits until events may be available.
+     *
+     * @param available  checks whether events are available
+     * @param idleCount  number of consecutive waits without any event consumed, starting at 0
+     */
+    void await(BooleanSupplier available, int idleCount) throws InterruptedException;
+
+    /**
+     * Called by producers after publishing an event.
+     */
+    void signal();
+
+    /**
+     * @return the wait strategy of the given name, {@link Blocking} by default.
+     */
+    static WaitStrategy forName(String name) {
+        if (YIELDING.equalsIgnoreCase(name)) {
+            return new Yielding();
+        }
+        if (PARKING.equalsIgnoreCase(name)) {
+            return new Parking();
+        }
+        return new Blocking();
+    }
+
+    class Blocking implements WaitStrategy {
+
+        /**
+         * Upper bound of a single wait, so that a consumer notices shutdown without being signalled.
+         */
+        private static final long MAX_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition notEmpty = lock.newCondition();
+
+        private final AtomicInteger waiters = new AtomicInteger();
+
+        @Override
+        public void await(BooleanSupplier available, int idleCount) throws InterruptedException {
+            lock.lock();
+            try {
+                // Registering before checking again, so that a producer publishing meanwhile sees the waiter
+                waiters.incrementAndGet();
+                if (!available.getAsBoolean()) {
+                    notEmpty.awaitNanos(MAX_WAIT_NANOS);
+                }
+            } finally {
+                waiters.decrementAndGet();
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void signal() {
+            if (waiters.get() == 0) {
+                return;
+            }
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    class Yielding implements WaitStrategy {
+
+        private static final int SPIN_TRIES = 100;
+
+        @Override
+        public void await(BooleanSupplier available, int idleCount) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (idleCount >= SPIN_TRIES) {
+                Thread.yield();
+            }
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+
+    class Parking implements WaitStrategy {
+
+        private static final long MIN_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+        static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+        @Override
+        public void await(BooleanSupplier available, int idleCount) throws InterruptedException {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long nanos = MIN_PARK_NANOS << Math.min(idleCount, 7);
+            LockSupport.parkNanos(Math.min(nanos, MAX_PARK_NANOS));
+        }
+
+        @Override
+        public void signal() {
+        }
+    }
+}
@@ -9,6 +9,8 @@ import com.newrelic.agent.security.instrumentator.utils.AgentUtils;
 import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
 import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
 import com.newrelic.agent.security.intcodeagent.models.javaagent.JAHealthCheck;
+import com.newrelic.agent.security.intcodeagent.websocket.EventDeflateExtension;
+import com.newrelic.agent.security.intcodeagent.websocket.EventSendPool;
 import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
 import com.newrelic.agent.security.intcodeagent.websocket.WSClient;
 import com.newrelic.agent.security.intcodeagent.websocket.WSUtils;
@@ -68,6 +70,8 @@ public class HealthCheckScheduleThread {
 
                 AgentInfo.getInstance().getJaHealthCheck().setStats(populateJVMStats());
                 AgentInfo.getInstance().getJaHealthCheck().setServiceStatus(getServiceStatus());
+                AgentInfo.getInstance().getJaHealthCheck().setEventSendLanes(EventSendPool.getInstance().getLaneStats());
+                AgentInfo.getInstance().getJaHealthCheck().setWebsocketCompression(EventDeflateExtension.getStats());
 
                 if (!AgentInfo.getInstance().isAgentActive()) {
                     return;
@@ -79,10 +83,15 @@ public class HealthCheckScheduleThread {
                 if (WSClient.getInstance().isOpen()) {
                     WSClient.getInstance().send(JsonConverter.toJSON(new JAHealthCheck(AgentInfo.getInstance().getJaHealthCheck())));
                     AgentInfo.getInstance().getJaHealthCheck().setEventDropCount(0);
+                    AgentInfo.getInstance().getJaHealthCheck().resetEventDropCountByType();
+                    EventSendPool.getInstance().resetLaneStats();
+                    EventDeflateExtension.resetStats();
                     AgentInfo.getInstance().getJaHealthCheck().setEventProcessed(0);
                     AgentInfo.getInstance().getJaHealthCheck().setEventSentCount(0);
                     AgentInfo.getInstance().getJaHealthCheck().setHttpRequestCount(0);
                     AgentInfo.getInstance().getJaHealthCheck().setExitEventSentCount(0);
+                    AgentInfo.getInstance().getJaHealthCheck().setEventRateLimitedCount(0);
+                    AgentInfo.getInstance().getJaHealthCheck().setEventDuplicateSuppressedCount(0);
                 }
 
             } catch (NullPointerException ex) {
@@ -1,10 +1,12 @@
 package com.newrelic.agent.security.intcodeagent.models.javaagent;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.newrelic.agent.security.AgentConfig;
 import com.newrelic.agent.security.AgentInfo;
 import com.newrelic.agent.security.instrumentator.utils.AgentUtils;
 import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.websocket.PreEncodedValueSerializer;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Map;
@@ -143,6 +145,7 @@ public class AgentBasicInfo {
      *
      * @return the version
      */
+    @JsonSerialize(using = PreEncodedValueSerializer.class)
     public String getJsonVersion() {
         return jsonVersion;
     }
@@ -160,6 +163,7 @@ public class AgentBasicInfo {
         return language;
     }
 
+    @JsonSerialize(using = PreEncodedValueSerializer.class)
     public String getFramework() {
         return framework;
     }
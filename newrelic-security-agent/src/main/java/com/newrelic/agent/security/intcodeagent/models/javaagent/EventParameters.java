@@ -0,0 +1,227 @@
+package com.newrelic.agent.security.intcodeagent.models.javaagent;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.type.WritableTypeId;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+import com.newrelic.agent.security.intcodeagent.websocket.EventEncoders;
+import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+
+import static com.newrelic.agent.security.intcodeagent.logging.IAgentConstants.*;
+
+/**
+ * Parameters of an event, i.e. the {@code parameters} array of {@link JavaAgentEventBean}.
+ * <p>
+ * Values are strings, maps or one of the typed records below, and are written straight to the JSON generator when the
+ * event is serialized, without building an intermediate JSON tree. Instances are immutable.
+ */
+public final class EventParameters extends JsonSerializable.Base {
+
+    private static final JsonFactory PAYLOAD_FACTORY = new JsonFactory();
+
+    private final Object[] values;
+
+    private EventParameters(Object[] values) {
+        this.values = values;
+    }
+
+    public static EventParameters of(Object... values) {
+        return new EventParameters(values.clone());
+    }
+
+    public static EventParameters of(Collection<?> values) {
+        return new EventParameters(values.toArray());
+    }
+
+    /**
+     * @return the given values followed by {@code last}.
+     */
+    public static EventParameters of(Collection<?> values, Object last) {
+        Object[] array = values.toArray(new Object[values.size() + 1]);
+        array[values.size()] = last;
+        return new EventParameters(array);
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public Object get(int index) {
+        return values[index];
+    }
+
+    @Override
+    public void serialize(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartArray(this, values.length);
+        writeValues(gen, serializers);
+        gen.writeEndArray();
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator gen, SerializerProvider serializers, TypeSerializer typeSer) throws IOException {
+        WritableTypeId typeId = typeSer.writeTypePrefix(gen, typeSer.typeId(this, JsonToken.START_ARRAY));
+        writeValues(gen, serializers);
+        typeSer.writeTypeSuffix(gen, typeId);
+    }
+
+    private void writeValues(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        for (Object value : values) {
+            writeValue(gen, serializers, value);
+        }
+    }
+
+    private static void writeValue(JsonGenerator gen, SerializerProvider serializers, Object value) throws IOException {
+        if (value == null) {
+            gen.writeNull();
+        } else if (value instanceof Parameter) {
+            ((Parameter) value).writeTo(gen, serializers);
+        } else if (value instanceof CharSequence) {
+            gen.writeString(value.toString());
+        } else {
+            serializers.defaultSerializeValue(value, gen);
+        }
+    }
+
+    @Override
+    public String toString() {
+        try {
+            return JsonConverter.getObjectMapper().writeValueAsString(this);
+        } catch (JsonProcessingException e) {
+            return StringUtils.EMPTY;
+        }
+    }
+
+    /**
+     * Typed parameter record, writing itself as a JSON value.
+     */
+    public interface Parameter {
+        void writeTo(JsonGenerator gen, SerializerProvider serializers) throws IOException;
+    }
+
+    /**
+     * A SQL query along with its bound parameters.
+     */
+    public static final class SQLQuery implements Parameter {
+        private final String query;
+
+        private final Map<?, ?> parameters;
+
+        public SQLQuery(String query, Map<?, ?> parameters) {
+            this.query = query;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField(QUERY, query);
+            if (parameters != null) {
+                gen.writeFieldName(PARAMETERS);
+                serializers.defaultSerializeValue(parameters, gen);
+            }
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * An LDAP search, by base name and filter.
+     */
+    public static final class LDAPQuery implements Parameter {
+        private final String name;
+
+        private final String filter;
+
+        public LDAPQuery(String name, String filter) {
+            this.name = name;
+            this.filter = filter;
+        }
+
+        @Override
+        public void writeTo(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            gen.writeStringField(NAME, name);
+            gen.writeStringField(FILTER, filter);
+            gen.writeEndObject();
+        }
+    }
+
+    /**
+     * A NoSQL payload, already rendered as JSON and embedded as is in JSON events. For binary encodings its tokens are
+     * copied one by one to the generator, without building a tree.
+     */
+    public static final class NoSQLPayload implements Parameter {
+        public static final String PAYLOAD = "payload";
+        public static final String PAYLOAD_TYPE = "payloadType";
+
+        private final String payload;
+
+        private final String payloadType;
+
+        private NoSQLPayload(String payload, String payloadType) {
+            this.payload = payload;
+            this.payloadType = payloadType;
+        }
+
+        /**
+         * @param payload     JSON rendering of the payload, checked to be a single well formed JSON value by scanning
+         *                    its tokens
+         * @param payloadType type of the operation
+         * @throws IOException if the payload is not well formed JSON
+         */
+        public static NoSQLPayload of(String payload, String payloadType) throws IOException {
+            validate(payload);
+            return new NoSQLPayload(payload, payloadType);
+        }
+
+        /**
+         * @param payload     JSON rendering of the payload by the instrumentation, trusted to be well formed and
+         *                    embedded without any check
+         * @param payloadType type of the operation
+         */
+        public static NoSQLPayload ofRendered(String payload, String payloadType) {
+            return new NoSQLPayload(payload, payloadType);
+        }
+
+        @Override
+        public void writeTo(JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            gen.writeFieldName(PAYLOAD);
+            if (EventEncoders.writesJsonText(gen)) {
+                gen.writeRawValue(payload);
+            } else {
+                try (JsonParser parser = PAYLOAD_FACTORY.createParser(payload)) {
+                    parser.nextToken();
+                    gen.copyCurrentStructure(parser);
+                }
+            }
+            gen.writeStringField(PAYLOAD_TYPE, payloadType);
+            gen.writeEndObject();
+        }
+
+        private static void validate(String payload) throws IOException {
+            if (payload == null) {
+                throw new IOException("Null payload");
+            }
+            try (JsonParser parser = PAYLOAD_FACTORY.createParser(payload)) {
+                if (parser.nextToken() == null) {
+                    throw new JsonParseException(parser, "Empty payload");
+                }
+                parser.skipChildren();
+                if (parser.nextToken() != null) {
+                    throw new JsonParseException(parser, "Trailing content after payload");
+                }
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.newrelic.agent.security.intcodeagent.models.javaagent;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.newrelic.agent.security.AgentInfo;
 import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
+import com.newrelic.agent.security.intcodeagent.websocket.PreEncodedValueSerializer;
 
 public class ExitEventBean extends AgentBasicInfo {
     private String executionId;
@@ -44,6 +46,7 @@ public class ExitEventBean extends AgentBasicInfo {
         this.k2RequestIdentifier = k2RequestIdentifier;
     }
 
+    @JsonSerialize(using = PreEncodedValueSerializer.class)
     public String getApplicationUUID() {
         return applicationUUID;
     }
@@ -7,6 +7,7 @@ import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class JAHealthCheck extends AgentBasicInfo {
@@ -22,6 +23,8 @@ public class JAHealthCheck extends AgentBasicInfo {
 
     private AtomicInteger eventDropCount;
 
+    private Map<String, AtomicInteger> eventDropCountByType;
+
     private IdentifierEnvs kind;
 
     private AtomicInteger eventProcessed;
@@ -32,10 +35,18 @@ public class JAHealthCheck extends AgentBasicInfo {
 
     private AtomicInteger httpRequestCount;
 
+    private AtomicInteger eventRateLimitedCount;
+
+    private AtomicInteger eventDuplicateSuppressedCount;
+
     private Map<String, Object> stats;
 
     private Map<String, Object> serviceStatus;
 
+    private Map<String, Object> eventSendLanes;
+
+    private Map<String, Object> websocketCompression;
+
 //    private Set protectedVulnerabilities;
 
     private Integer dsBackLog;
@@ -44,13 +55,20 @@ public class JAHealthCheck extends AgentBasicInfo {
         super();
         this.applicationUUID = applicationUUID;
         this.eventDropCount = new AtomicInteger(0);
+        this.eventDropCountByType = new ConcurrentHashMap<>();
         this.eventProcessed = new AtomicInteger(0);
         this.eventSentCount = new AtomicInteger(0);
         this.httpRequestCount = new AtomicInteger(0);
         this.exitEventSentCount = new AtomicInteger(0);
+        this.eventRateLimitedCount = new AtomicInteger(0);
+        this.eventDuplicateSuppressedCount = new AtomicInteger(0);
         this.stats = new HashMap<>();
         this.serviceStatus = new HashMap<>();
-        this.setKind(AgentInfo.getInstance().getApplicationInfo().getIdentifier().getKind());
+        this.eventSendLanes = new HashMap<>();
+        this.websocketCompression = new HashMap<>();
+        if (AgentInfo.getInstance().getApplicationInfo() != null) {
+            this.setKind(AgentInfo.getInstance().getApplicationInfo().getIdentifier().getKind());
+        }
         logger.log(LogLevel.INFO, String.format(HC_CREATED, JsonConverter.toJSON(this)), JAHealthCheck.class.getName());
     }
 
@@ -58,13 +76,18 @@ public class JAHealthCheck extends AgentBasicInfo {
         super();
         this.applicationUUID = jaHealthCheck.applicationUUID;
         this.eventDropCount = jaHealthCheck.eventDropCount;
+        this.eventDropCountByType = jaHealthCheck.eventDropCountByType;
         this.eventProcessed = jaHealthCheck.eventProcessed;
         this.eventSentCount = jaHealthCheck.eventSentCount;
         this.exitEventSentCount = jaHealthCheck.exitEventSentCount;
         this.httpRequestCount = jaHealthCheck.httpRequestCount;
+        this.eventRateLimitedCount = jaHealthCheck.eventRateLimitedCount;
+        this.eventDuplicateSuppressedCount = jaHealthCheck.eventDuplicateSuppressedCount;
         this.kind = jaHealthCheck.kind;
         this.stats = jaHealthCheck.stats;
         this.serviceStatus = jaHealthCheck.serviceStatus;
+        this.eventSendLanes = jaHealthCheck.eventSendLanes;
+        this.websocketCompression = jaHealthCheck.websocketCompression;
         this.dsBackLog = jaHealthCheck.dsBackLog;
         logger.log(LogLevel.INFO, String.format(HC_CREATED, JsonConverter.toJSON(this)), JAHealthCheck.class.getName());
     }
@@ -109,6 +132,25 @@ public class JAHealthCheck extends AgentBasicInfo {
         this.eventDropCount.getAndIncrement();
     }
 
+    /**
+     * @return the events dropped because of a full dispatch queue or a type quota, per vulnerability case type.
+     */
+    public Map<String, Integer> getEventDropCountByType() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Map.Entry<String, AtomicInteger> entry : eventDropCountByType.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().get());
+        }
+        return counts;
+    }
+
+    public void incrementDropCount(String caseType) {
+        this.eventDropCountByType.computeIfAbsent(caseType, k -> new AtomicInteger()).getAndIncrement();
+    }
+
+    public void resetEventDropCountByType() {
+        this.eventDropCountByType.clear();
+    }
+
     public void incrementProcessedCount() {
         this.eventProcessed.getAndIncrement();
     }
@@ -186,6 +228,30 @@ public class JAHealthCheck extends AgentBasicInfo {
         this.httpRequestCount.set(httpRequestCount);
     }
 
+    public Integer getEventRateLimitedCount() {
+        return eventRateLimitedCount.get();
+    }
+
+    public void setEventRateLimitedCount(Integer eventRateLimitedCount) {
+        this.eventRateLimitedCount.set(eventRateLimitedCount);
+    }
+
+    public void incrementRateLimitedCount() {
+        this.eventRateLimitedCount.getAndIncrement();
+    }
+
+    public Integer getEventDuplicateSuppressedCount() {
+        return eventDuplicateSuppressedCount.get();
+    }
+
+    public void setEventDuplicateSuppressedCount(Integer eventDuplicateSuppressedCount) {
+        this.eventDuplicateSuppressedCount.set(eventDuplicateSuppressedCount);
+    }
+
+    public void incrementDuplicateSuppressedCount() {
+        this.eventDuplicateSuppressedCount.getAndIncrement();
+    }
+
     public Integer getDsBackLog() {
         return dsBackLog;
     }
@@ -209,4 +275,23 @@ public class JAHealthCheck extends AgentBasicInfo {
     public void setServiceStatus(Map<String, Object> serviceStatus) {
         this.serviceStatus = serviceStatus;
     }
+
+    /**
+     * @return depth, sent and dropped counts and wait times of each event send lane, see {@code EventSendPool}.
+     */
+    public Map<String, Object> getEventSendLanes() {
+        return eventSendLanes;
+    }
+
+    public void setEventSendLanes(Map<String, Object> eventSendLanes) {
+        this.eventSendLanes = eventSendLanes;
+    }
+
+    public Map<String, Object> getWebsocketCompression() {
+        return websocketCompression;
+    }
+
+    public void setWebsocketCompression(Map<String, Object> websocketCompression) {
+        this.websocketCompression = websocketCompression;
+    }
 }
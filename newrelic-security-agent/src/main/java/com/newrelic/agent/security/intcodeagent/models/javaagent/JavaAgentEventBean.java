@@ -1,10 +1,11 @@
 package com.newrelic.agent.security.intcodeagent.models.javaagent;
 
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.newrelic.agent.security.intcodeagent.logging.DeployedApplication;
 import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
+import com.newrelic.agent.security.intcodeagent.websocket.PreEncodedValueSerializer;
 import com.newrelic.api.agent.security.schema.AgentMetaData;
 import com.newrelic.api.agent.security.schema.HttpRequest;
-import org.json.simple.JSONArray;
 
 public class JavaAgentEventBean extends AgentBasicInfo {
     private Integer pid;
@@ -16,7 +17,7 @@ public class JavaAgentEventBean extends AgentBasicInfo {
     private String currentMethod;
     private Boolean validationBypass;
     private Integer lineNumber;
-    private JSONArray parameters;
+    private EventParameters parameters;
     private Long eventGenerationTime;
     private HttpRequest httpRequest;
     private String id;
@@ -84,11 +85,11 @@ public class JavaAgentEventBean extends AgentBasicInfo {
         this.lineNumber = lineNumber;
     }
 
-    public JSONArray getParameters() {
+    public EventParameters getParameters() {
         return parameters;
     }
 
-    public void setParameters(JSONArray parameters) {
+    public void setParameters(EventParameters parameters) {
         this.parameters = parameters;
     }
 
@@ -116,6 +117,7 @@ public class JavaAgentEventBean extends AgentBasicInfo {
     /**
      * @return the pid
      */
+    @JsonSerialize(using = PreEncodedValueSerializer.class)
     public Integer getPid() {
         return pid;
     }
@@ -158,6 +160,7 @@ public class JavaAgentEventBean extends AgentBasicInfo {
     /**
      * @return the applicationUUID
      */
+    @JsonSerialize(using = PreEncodedValueSerializer.class)
     public String getApplicationUUID() {
         return applicationUUID;
     }
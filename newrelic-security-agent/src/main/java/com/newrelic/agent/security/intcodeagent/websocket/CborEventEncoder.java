@@ -0,0 +1,69 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.java_websocket.enums.Opcode;
+
+/**
+ * Binary CBOR encoding (RFC 8949) of the JSON event schema, sent in binary messages. Batches are indefinite length
+ * arrays.
+ * <p>
+ * The mapper is a copy of {@link JsonConverter#getObjectMapper()} over a {@link CBORFactory}, created on first use.
+ */
+public class CborEventEncoder implements EventEncoder {
+
+    public static final String NAME = "cbor";
+
+    /**
+     * Major type 4 (array) with indefinite length.
+     */
+    private static final byte[] BATCH_START = {(byte) 0x9f};
+
+    private static final byte[] BATCH_SEPARATOR = {};
+
+    /**
+     * Break stop code, ending the indefinite length array.
+     */
+    private static final byte[] BATCH_END = {(byte) 0xff};
+
+    private static final Object lock = new Object();
+
+    private volatile ObjectMapper mapper;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Opcode getOpcode() {
+        return Opcode.BINARY;
+    }
+
+    @Override
+    public ObjectMapper getObjectMapper() {
+        if (mapper == null) {
+            synchronized (lock) {
+                if (mapper == null) {
+                    mapper = JsonConverter.getObjectMapper().copyWith(new CBORFactory());
+                }
+            }
+        }
+        return mapper;
+    }
+
+    @Override
+    public byte[] getBatchStart() {
+        return BATCH_START.clone();
+    }
+
+    @Override
+    public byte[] getBatchSeparator() {
+        return BATCH_SEPARATOR.clone();
+    }
+
+    @Override
+    public byte[] getBatchEnd() {
+        return BATCH_END.clone();
+    }
+}
@@ -0,0 +1,184 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.newrelic.agent.security.AgentInfo;
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
+import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
+import com.newrelic.api.agent.NewRelic;
+import org.apache.commons.lang3.StringUtils;
+
+import java.net.URISyntaxException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Events sent together as a single websocket message, an array of events, instead of a message per event. Batches are
+ * JSON arrays, or arrays of the negotiated {@link EventEncoder}.
+ * <p>
+ * Batches are negotiated with the validator: when enabled through {@link INRSettingsKey#SECURITY_EVENT_BATCH_ENABLED},
+ * the agent offers {@link #EVENT_BATCH_HEADER} with {@link #JSON_ARRAY} on connection, and events are batched only if
+ * the validator answers with the same header and value, see {@link WSUtils#isEventBatchAccepted()}.
+ * <p>
+ * A batch is sent once it holds {@link INRSettingsKey#SECURITY_EVENT_BATCH_MAX_EVENTS} events, reaches
+ * {@link INRSettingsKey#SECURITY_EVENT_BATCH_MAX_BYTES} bytes, or {@link INRSettingsKey#SECURITY_EVENT_BATCH_LINGER_MS}
+ * milliseconds after its first event was added. Events of all lanes of {@link EventSendPool} ride in the same batches.
+ * <p>
+ * Only used by the event sender thread.
+ */
+public class EventBatch {
+
+    public static final String EVENT_BATCH_HEADER = "NR-CSEC-EVENT-BATCH";
+
+    public static final String JSON_ARRAY = "JSON-ARRAY";
+
+    private static final int DEFAULT_MAX_EVENTS = 100;
+
+    private static final int DEFAULT_MAX_BYTES = 256 * 1024;
+
+    private static final int DEFAULT_LINGER_MILLIS = 20;
+
+    private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
+
+    private final int maxEvents;
+
+    private final long maxBytes;
+
+    private final long lingerNanos;
+
+    /**
+     * Whether the events are streamed into pooled chunks, see {@link StreamingEventSerializer}, or appended as text.
+     */
+    private final boolean streaming;
+
+    private final StringBuilder text = new StringBuilder();
+
+    /**
+     * Encoder of the streamed batch.
+     */
+    private EventEncoder encoder;
+
+    private int eventCount = 0;
+
+    private long deadline;
+
+    EventBatch() {
+        this.maxEvents = Math.max(1, getConfigValue(INRSettingsKey.SECURITY_EVENT_BATCH_MAX_EVENTS, DEFAULT_MAX_EVENTS));
+        this.maxBytes = Math.max(1, getConfigValue(INRSettingsKey.SECURITY_EVENT_BATCH_MAX_BYTES, DEFAULT_MAX_BYTES));
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, getConfigValue(INRSettingsKey.SECURITY_EVENT_BATCH_LINGER_MS, DEFAULT_LINGER_MILLIS)));
+        this.streaming = StreamingEventSerializer.isEnabled();
+    }
+
+    private static int getConfigValue(String key, int defaultValue) {
+        try {
+            return NewRelic.getAgent().getConfig().getValue(key, defaultValue);
+        } catch (Throwable ignored) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * @return {@code true} if batches are offered to the validator on connection.
+     */
+    public static boolean isEnabled() {
+        try {
+            return NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_BATCH_ENABLED, false);
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * Adds an event to the batch. An event that could not be serialized is left out, as it would not be sent on its
+     * own either.
+     *
+     * @return {@code true} if the batch is full and is to be sent.
+     */
+    boolean add(Object event) {
+        if (eventCount == 0) {
+            deadline = System.nanoTime() + lingerNanos;
+            if (streaming) {
+                encoder = WSUtils.getInstance().getEventEncoder();
+                StreamingEventSerializer.forCurrentThread().beginBatch(encoder);
+            } else {
+                text.append('[');
+            }
+        }
+        if (event instanceof JavaAgentEventBean) {
+            ((JavaAgentEventBean) event).setEventGenerationTime(System.currentTimeMillis());
+        }
+        if (streaming) {
+            if (StreamingEventSerializer.forCurrentThread().appendToBatch(event)) {
+                eventCount++;
+            }
+        } else {
+            String json = JsonConverter.toJSON(event);
+            if (StringUtils.isNotBlank(json)) {
+                if (eventCount > 0) {
+                    text.append(',');
+                }
+                text.append(json);
+                eventCount++;
+            }
+        }
+        return eventCount >= maxEvents || byteCount() >= maxBytes;
+    }
+
+    boolean isEmpty() {
+        return eventCount == 0;
+    }
+
+    int getEventCount() {
+        return eventCount;
+    }
+
+    /**
+     * @return the size of the batch in bytes, in chars if not streamed.
+     */
+    private long byteCount() {
+        return streaming ? StreamingEventSerializer.forCurrentThread().size() : text.length();
+    }
+
+    /**
+     * @return the nanoseconds left before the batch is to be sent.
+     */
+    long remainingLingerNanos() {
+        return deadline - System.nanoTime();
+    }
+
+    /**
+     * Sends the batch, if not empty, and starts a new one. The batch is dropped if the validator did not accept
+     * batches, or the encoding of the batch, on the current connection, as happens when reconnecting in the middle of
+     * a batch.
+     */
+    void send() throws InterruptedException, URISyntaxException {
+        if (eventCount == 0) {
+            return;
+        }
+        try {
+            EventSender.awaitReconnection();
+            if (!WSUtils.getInstance().isEventBatchAccepted() || (streaming && WSUtils.getInstance().getEventEncoder() != encoder)) {
+                logger.log(LogLevel.FINER, String.format("Batch of %s events dropped, not accepted by the validator on the current connection", eventCount), EventBatch.class.getName());
+                for (int i = 0; i < eventCount; i++) {
+                    AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+                }
+                return;
+            }
+            if (streaming) {
+                WSClient.getInstance().sendFragments(StreamingEventSerializer.forCurrentThread().finishBatch(), encoder.getOpcode());
+            } else {
+                WSClient.getInstance().send(text.append(']').toString());
+            }
+        } finally {
+            reset();
+        }
+    }
+
+    private void reset() {
+        eventCount = 0;
+        if (streaming) {
+            StreamingEventSerializer.forCurrentThread().release();
+        } else {
+            text.setLength(0);
+        }
+    }
+}
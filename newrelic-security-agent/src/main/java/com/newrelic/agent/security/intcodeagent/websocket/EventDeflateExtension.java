@@ -0,0 +1,304 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
+import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.agent.security.intcodeagent.utils.CommonUtils;
+import com.newrelic.api.agent.NewRelic;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.ContinuousFrame;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.Adler32;
+import java.util.zip.Deflater;
+
+/**
+ * permessage-deflate extension (RFC 7692) of the validator websocket, enabled through
+ * {@link INRSettingsKey#SECURITY_WEBSOCKET_COMPRESSION_ENABLED}.
+ * <p>
+ * Outgoing messages are compressed here rather than by {@link PerMessageDeflateExtension}, which decides frame by
+ * frame: a message is compressed as a whole, from its first frame on, if it is fragmented or its single frame reaches
+ * the threshold. Only the remaining bytes of the frame payload are read, as frames may wrap the pooled chunks of
+ * {@link StreamingEventSerializer}. Incoming messages are inflated by {@link PerMessageDeflateExtension}.
+ * <p>
+ * The deflate context is kept from one message to the next, unless the validator asks for
+ * {@code client_no_context_takeover} or it is offered through
+ * {@link INRSettingsKey#SECURITY_WEBSOCKET_COMPRESSION_NO_CONTEXT_TAKEOVER}. The context starts from a preset
+ * dictionary of the common event keys, {@link #DICTIONARY_RESOURCE}, identified by its Adler-32 checksum in hex. The
+ * agent offers it through {@link #DICTIONARY_HEADER} and uses it only if the validator answers with the same id in
+ * the {@link #DICTIONARY_PARAMETER} extension parameter. Without context takeover, each message starts from the
+ * dictionary.
+ * <p>
+ * Payload bytes before and after compression are counted over all connections, see {@link #getStats()}.
+ */
+public class EventDeflateExtension extends PerMessageDeflateExtension {
+
+    public static final String DICTIONARY_HEADER = "NR-CSEC-DEFLATE-DICTIONARY";
+
+    public static final String DICTIONARY_PARAMETER = "x-nr-csec-dictionary";
+
+    public static final String DICTIONARY_RESOURCE = "event-deflate-dictionary.txt";
+
+    private static final String EXTENSION_NAME = "permessage-deflate";
+
+    private static final String CLIENT_NO_CONTEXT_TAKEOVER = "client_no_context_takeover";
+
+    private static final String SERVER_NO_CONTEXT_TAKEOVER = "server_no_context_takeover";
+
+    /**
+     * Empty stored block ending each sync flush, left out at the end of a message, see RFC 7692 section 7.2.1.
+     */
+    private static final int SYNC_FLUSH_TAIL_LENGTH = 4;
+
+    private static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
+
+    private static final LongAdder bytesIn = new LongAdder();
+
+    private static final LongAdder bytesOnWire = new LongAdder();
+
+    private static final byte[] dictionary = loadDictionary();
+
+    private static final String dictionaryId = dictionaryId(dictionary);
+
+    private static volatile boolean negotiated = false;
+
+    private final int compressionLevel;
+
+    private final boolean offerNoContextTakeover;
+
+    private final byte[] buffer = new byte[8 * 1024];
+
+    private Deflater deflater;
+
+    /**
+     * Settings negotiated on the connection, {@link #acceptProvidedExtensionAsClient(String)} being called on the
+     * extension copied for the connection.
+     */
+    private boolean noContextTakeover;
+
+    private boolean useDictionary;
+
+    /**
+     * Whether the message being sent is compressed, decided on its first frame.
+     */
+    private boolean compressing;
+
+    /**
+     * @param compressionLevel       deflate level, from 0 to 9 or {@link Deflater#DEFAULT_COMPRESSION}
+     * @param threshold              minimum size of the messages sent in a single frame to be compressed
+     * @param offerNoContextTakeover whether {@code client_no_context_takeover} is offered to the validator
+     */
+    public EventDeflateExtension(int compressionLevel, int threshold, boolean offerNoContextTakeover) {
+        this.compressionLevel = compressionLevel;
+        this.offerNoContextTakeover = offerNoContextTakeover;
+        setThreshold(threshold);
+        setServerNoContextTakeover(true);
+        // Java-WebSocket 1.5.3 has no compression level setting, the inherited deflater is replaced
+        this.deflater = new Deflater(compressionLevel, true);
+        setDeflater(deflater);
+    }
+
+    /**
+     * @return {@code true} if compression is offered to the validator.
+     */
+    public static boolean isEnabled() {
+        try {
+            return NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_WEBSOCKET_COMPRESSION_ENABLED, false);
+        } catch (Throwable ignored) {
+            return false;
+        }
+    }
+
+    /**
+     * @return the extension configured through {@link INRSettingsKey}, {@code null} if compression is disabled.
+     */
+    public static EventDeflateExtension fromConfig() {
+        if (!isEnabled()) {
+            return null;
+        }
+        int level = Deflater.DEFAULT_COMPRESSION;
+        int threshold = DEFAULT_THRESHOLD;
+        boolean noContextTakeover = false;
+        try {
+            level = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_WEBSOCKET_COMPRESSION_LEVEL, Deflater.DEFAULT_COMPRESSION);
+            threshold = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_WEBSOCKET_COMPRESSION_THRESHOLD, DEFAULT_THRESHOLD);
+            noContextTakeover = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_WEBSOCKET_COMPRESSION_NO_CONTEXT_TAKEOVER, false);
+        } catch (Throwable ignored) {
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            logger.log(LogLevel.WARNING, String.format("Invalid websocket compression level %s, using the default", level), EventDeflateExtension.class.getName());
+            level = Deflater.DEFAULT_COMPRESSION;
+        }
+        return new EventDeflateExtension(level, Math.max(0, threshold), noContextTakeover);
+    }
+
+    @Override
+    public String getProvidedExtensionAsClient() {
+        StringBuilder offer = new StringBuilder(EXTENSION_NAME).append("; ").append(SERVER_NO_CONTEXT_TAKEOVER);
+        if (offerNoContextTakeover) {
+            offer.append("; ").append(CLIENT_NO_CONTEXT_TAKEOVER);
+        }
+        return offer.toString();
+    }
+
+    @Override
+    public boolean acceptProvidedExtensionAsClient(String inputExtensionHeader) {
+        if (inputExtensionHeader == null) {
+            return false;
+        }
+        for (String extension : StringUtils.split(inputExtensionHeader, ',')) {
+            String[] parameters = StringUtils.split(extension, ';');
+            if (parameters.length == 0 || !StringUtils.equalsIgnoreCase(parameters[0].trim(), EXTENSION_NAME)) {
+                continue;
+            }
+            noContextTakeover = offerNoContextTakeover;
+            useDictionary = false;
+            for (int i = 1; i < parameters.length; i++) {
+                String name = StringUtils.substringBefore(parameters[i], "=").trim();
+                String value = StringUtils.strip(StringUtils.substringAfter(parameters[i], "=").trim(), "\"");
+                if (StringUtils.equalsIgnoreCase(name, CLIENT_NO_CONTEXT_TAKEOVER)) {
+                    noContextTakeover = true;
+                } else if (StringUtils.equalsIgnoreCase(name, DICTIONARY_PARAMETER)) {
+                    useDictionary = dictionary.length > 0 && StringUtils.equalsIgnoreCase(value, dictionaryId);
+                }
+            }
+            resetDeflater();
+            negotiated = true;
+            logger.log(LogLevel.INFO, String.format("Websocket compression negotiated : %s, preset dictionary %s, context takeover %s",
+                    extension.trim(), useDictionary, !noContextTakeover), EventDeflateExtension.class.getName());
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public synchronized void encodeFrame(Framedata inputFrame) {
+        if (!(inputFrame instanceof DataFrame)) {
+            return;
+        }
+        ByteBuffer payload = inputFrame.getPayloadData();
+        int length = payload.remaining();
+        bytesIn.add(length);
+        if (!(inputFrame instanceof ContinuousFrame)) {
+            compressing = !inputFrame.isFin() || length >= getThreshold();
+            if (compressing) {
+                // Only the first frame of a message is flagged as compressed
+                ((DataFrame) inputFrame).setRSV1(true);
+            }
+        }
+        if (compressing) {
+            ByteBuffer compressed = deflate(payload, inputFrame.isFin());
+            ((DataFrame) inputFrame).setPayload(compressed);
+            length = compressed.remaining();
+        }
+        bytesOnWire.add(length);
+    }
+
+    private ByteBuffer deflate(ByteBuffer payload, boolean fin) {
+        byte[] input;
+        int offset;
+        int length = payload.remaining();
+        if (payload.hasArray()) {
+            input = payload.array();
+            offset = payload.arrayOffset() + payload.position();
+        } else {
+            input = new byte[length];
+            payload.duplicate().get(input);
+            offset = 0;
+        }
+        deflater.setInput(input, offset, length);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, length / 4));
+        int count;
+        do {
+            count = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+            out.write(buffer, 0, count);
+        } while (count == buffer.length);
+        byte[] compressed = out.toByteArray();
+        int compressedLength = compressed.length;
+        if (fin) {
+            compressedLength = Math.max(0, compressedLength - SYNC_FLUSH_TAIL_LENGTH);
+            if (noContextTakeover) {
+                resetDeflater();
+            }
+        }
+        return ByteBuffer.wrap(compressed, 0, compressedLength);
+    }
+
+    private void resetDeflater() {
+        deflater.reset();
+        if (useDictionary) {
+            deflater.setDictionary(dictionary);
+        }
+    }
+
+    @Override
+    public IExtension copyInstance() {
+        return new EventDeflateExtension(compressionLevel, getThreshold(), offerNoContextTakeover);
+    }
+
+    /**
+     * @return the id of the preset dictionary, {@code null} if it could not be loaded.
+     */
+    public static String getDictionaryId() {
+        return dictionaryId;
+    }
+
+    private static byte[] loadDictionary() {
+        try (InputStream stream = CommonUtils.getResourceStreamFromAgentJar(DICTIONARY_RESOURCE)) {
+            if (stream != null) {
+                return IOUtils.toByteArray(stream);
+            }
+        } catch (Throwable e) {
+            logger.log(LogLevel.WARNING, "Unable to load the websocket compression dictionary", e, EventDeflateExtension.class.getName());
+        }
+        return new byte[0];
+    }
+
+    private static String dictionaryId(byte[] dictionary) {
+        if (dictionary.length == 0) {
+            return null;
+        }
+        Adler32 checksum = new Adler32();
+        checksum.update(dictionary, 0, dictionary.length);
+        return Long.toHexString(checksum.getValue());
+    }
+
+    /**
+     * @return whether compression was negotiated on the last connection, payload bytes before compression, after
+     * compression and their ratio, since the last reset.
+     */
+    public static Map<String, Object> getStats() {
+        long in = bytesIn.sum();
+        long onWire = bytesOnWire.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("negotiated", negotiated);
+        stats.put("bytesIn", in);
+        stats.put("bytesOnWire", onWire);
+        stats.put("compressionRatio", onWire == 0 ? 0 : Math.round(in * 100.0 / onWire) / 100.0);
+        return stats;
+    }
+
+    public static void resetStats() {
+        bytesIn.reset();
+        bytesOnWire.reset();
+    }
+
+    /**
+     * Called once the connection is closed.
+     */
+    static void resetNegotiated() {
+        negotiated = false;
+    }
+}
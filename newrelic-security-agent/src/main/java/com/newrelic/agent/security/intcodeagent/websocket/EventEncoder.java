@@ -0,0 +1,45 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.enums.Opcode;
+
+/**
+ * Encoding of the events sent to the validator, negotiated on connection, see {@link EventEncoders}.
+ * <p>
+ * Encoders write events through a Jackson {@link ObjectMapper} configured as {@link JsonConverter#getObjectMapper()},
+ * so that every encoding carries the same event schema. Batches of events, see {@link EventBatch}, are framed by the
+ * raw bytes given by the encoder.
+ */
+public interface EventEncoder {
+
+    /**
+     * @return the name of the encoding, as negotiated through {@link EventEncoders#EVENT_ENCODING_HEADER}.
+     */
+    String getName();
+
+    /**
+     * @return the opcode of the messages, {@link Opcode#TEXT} for UTF-8 text encodings, {@link Opcode#BINARY}
+     * otherwise.
+     */
+    Opcode getOpcode();
+
+    /**
+     * @return the mapper writing the events, and reading them back.
+     */
+    ObjectMapper getObjectMapper();
+
+    /**
+     * @return the bytes written before the first event of a batch.
+     */
+    byte[] getBatchStart();
+
+    /**
+     * @return the bytes written between two events of a batch.
+     */
+    byte[] getBatchSeparator();
+
+    /**
+     * @return the bytes written after the last event of a batch.
+     */
+    byte[] getBatchEnd();
+}
@@ -0,0 +1,88 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
+import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.api.agent.NewRelic;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the {@link EventEncoder}s, by name.
+ * <p>
+ * The encoder configured through {@link INRSettingsKey#SECURITY_EVENT_ENCODING} is offered to the validator with
+ * {@link #EVENT_ENCODING_HEADER} on connection, and events are encoded with it only if the validator answers with the
+ * same header and name, see {@link WSUtils#getEventEncoder()}. Otherwise events are sent as JSON text, as are the
+ * messages not sent through the {@link EventSendPool}, such as the application info or health checks.
+ */
+public class EventEncoders {
+
+    public static final String EVENT_ENCODING_HEADER = "NR-CSEC-EVENT-ENCODING";
+
+    public static final EventEncoder JSON = new JsonEventEncoder();
+
+    public static final EventEncoder CBOR = new CborEventEncoder();
+
+    private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
+
+    private static final Map<String, EventEncoder> encoders = new ConcurrentHashMap<>();
+
+    static {
+        register(JSON);
+        register(CBOR);
+    }
+
+    private EventEncoders() {
+    }
+
+    /**
+     * Registers an encoder, replacing any encoder of the same name.
+     */
+    public static void register(EventEncoder encoder) {
+        encoders.put(encoder.getName().toLowerCase(Locale.ROOT), encoder);
+    }
+
+    /**
+     * @return the encoder of the given name, {@code null} if none.
+     */
+    public static EventEncoder get(String name) {
+        if (StringUtils.isBlank(name)) {
+            return null;
+        }
+        return encoders.get(name.trim().toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * @return the encoder offered to the validator, {@link #JSON} if the configured one is unknown, or if events are
+     * not streamed, see {@link StreamingEventSerializer#isEnabled()}.
+     */
+    public static EventEncoder getConfigured() {
+        String name = JsonEventEncoder.NAME;
+        try {
+            name = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_ENCODING, JsonEventEncoder.NAME);
+        } catch (Throwable ignored) {
+        }
+        EventEncoder encoder = get(name);
+        if (encoder == null) {
+            logger.log(LogLevel.WARNING, String.format("Unknown event encoding %s, using %s", name, JsonEventEncoder.NAME), EventEncoders.class.getName());
+            return JSON;
+        }
+        if (encoder != JSON && !StreamingEventSerializer.isEnabled()) {
+            logger.log(LogLevel.WARNING, String.format("Event encoding %s requires streaming serialization, using %s", name, JsonEventEncoder.NAME), EventEncoders.class.getName());
+            return JSON;
+        }
+        return encoder;
+    }
+
+    /**
+     * @return {@code true} if the generator writes JSON text, taking raw JSON values.
+     */
+    public static boolean writesJsonText(JsonGenerator generator) {
+        return generator instanceof JsonGeneratorImpl;
+    }
+}
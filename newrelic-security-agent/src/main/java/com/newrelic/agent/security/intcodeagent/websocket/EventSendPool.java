@@ -3,20 +3,48 @@ package com.newrelic.agent.security.intcodeagent.websocket;
 import com.newrelic.agent.security.AgentInfo;
 import com.newrelic.agent.security.intcodeagent.filelogging.FileLoggerThreadPool;
 import com.newrelic.agent.security.intcodeagent.filelogging.LogLevel;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.ExitEventBean;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.FuzzFailEvent;
 import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
 
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Sends events over the websocket from a single thread, drawing them from separate lanes:
+ * <ul>
+ *     <li>{@link #CONTROL}: application info, log messages, connection stats and other control messages,</li>
+ *     <li>{@link #LIVE}: events of live traffic,</li>
+ *     <li>{@link #REPLAY}: events of IAST replayed requests, exit events and fuzz failures.</li>
+ * </ul>
+ * Lanes are drained by weighted round robin, a lane sending up to its weight of events in a row while it has any,
+ * so that a burst of IAST replay events does not hold back live traffic events or control messages. Each lane is
+ * bounded, events offered to a full lane are dropped. Lane depths, drops and wait times are exported with the health
+ * check, see {@link #getLaneStats()}.
+ * <p>
+ * When the validator accepts batches, events are sent in batches rather than one by one, see {@link EventBatch}.
+ */
 public class EventSendPool {
 
-    /**
-     * Thread pool executor.
-     */
-    private ThreadPoolExecutor executor;
+    public static final String CONTROL = "control";
+    public static final String LIVE = "live";
+    public static final String REPLAY = "replay";
+
+    private static final String SENDER_THREAD_NAME = "NR-CSEC-EventSender";
 
-    private static EventSendPool instance;
+    private static volatile EventSendPool instance;
+
+    private static final Object lock = new Object();
 
     private static final FileLoggerThreadPool logger = FileLoggerThreadPool.getInstance();
 
@@ -27,113 +55,298 @@ public class EventSendPool {
     private Map<String, Long> eventMap = new ConcurrentHashMap<>();
     private AtomicBoolean isWaiting = new AtomicBoolean(false);
 
+    private final Lane controlLane = new Lane(CONTROL, 500, 8);
+    private final Lane liveLane = new Lane(LIVE, 1500, 4);
+    private final Lane replayLane = new Lane(REPLAY, 1500, 1);
+
+    private final Lane[] lanes = new Lane[]{controlLane, liveLane, replayLane};
+
+    /**
+     * Number of queued events over all lanes.
+     */
+    private final Semaphore queued = new Semaphore(0);
+
+    /**
+     * Number of events or batches being sent, {@code 0} or {@code 1}.
+     */
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    /**
+     * Batch being filled by the sender, when the validator accepted batches, see {@link EventBatch}.
+     */
+    private final EventBatch batch = new EventBatch();
+
+    private final Thread sender;
+
+    /**
+     * Sends a single event, through {@link EventSender} unless given in tests.
+     */
+    private final Sink sink;
+
+    private volatile boolean shutdown = false;
+
+    /**
+     * Lane drained by the sender and the credit it has left in the current round, only used by the sender thread.
+     */
+    private int currentLane = 0;
+
+    private int credit = lanes[0].weight;
+
+    /**
+     * Event waiting in a lane, along with the time it was queued.
+     */
+    private static class QueuedEvent {
+        private final Object event;
+        private final long queuedAt;
+
+        private QueuedEvent(Object event) {
+            this.event = event;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Sends events one by one, when they are not batched.
+     */
+    interface Sink {
+        void send(Object event) throws Exception;
+    }
+
+    private static class Lane {
+        private final String name;
+        private final int weight;
+        private final BlockingQueue<QueuedEvent> queue;
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder dropped = new LongAdder();
+        private final LongAdder totalWaitNanos = new LongAdder();
+        private final LongAccumulator maxWaitNanos = new LongAccumulator(Math::max, 0);
+
+        private Lane(String name, int capacity, int weight) {
+            this.name = name;
+            this.weight = weight;
+            this.queue = new LinkedBlockingQueue<>(capacity);
+        }
+
+        private Map<String, Object> stats() {
+            long sentCount = sent.sum();
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("depth", queue.size());
+            stats.put("sent", sentCount);
+            stats.put("dropped", dropped.sum());
+            stats.put("avgWaitMillis", sentCount == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.sum() / sentCount));
+            stats.put("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+            return stats;
+        }
+
+        private void reset() {
+            sent.reset();
+            dropped.reset();
+            totalWaitNanos.reset();
+            maxWaitNanos.reset();
+        }
+    }
+
     private EventSendPool() {
-        // load the settings
-        int queueSize = 1500;
-        int maxPoolSize = 1;
-        int corePoolSize = 1;
-        long keepAliveTime = 60;
-
-        TimeUnit timeUnit = TimeUnit.SECONDS;
-
-        boolean allowCoreThreadTimeOut = false;
-
-        executor = new ThreadPoolExecutor(corePoolSize, maxPoolSize, keepAliveTime, timeUnit,
-                new LinkedBlockingQueue<Runnable>(queueSize), new EventAbortPolicy()) {
-            @Override
-            protected void afterExecute(Runnable r, Throwable t) {
-                if (r instanceof Future<?>) {
-                    try {
-                        Future<?> future = (Future<?>) r;
-                        if (future.isDone()) {
-                            future.get();
-                        }
-                    } catch (Throwable e) {
-                        AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
-                    }
-                }
-                super.afterExecute(r, t);
-            }
-        };
-        executor.allowCoreThreadTimeOut(allowCoreThreadTimeOut);
-        executor.setThreadFactory(new ThreadFactory() {
-            @Override
-            public Thread newThread(Runnable r) {
-                Thread t = new Thread(Thread.currentThread().getThreadGroup(), r,
-                        "NR-CSEC-EventSender");
-                t.setDaemon(true);
-                return t;
-            }
-        });
+        this(event -> new EventSender(event).call());
+    }
+
+    EventSendPool(Sink sink) {
+        this.sink = sink;
+        sender = new Thread(Thread.currentThread().getThreadGroup(), this::drain, SENDER_THREAD_NAME);
+        sender.setDaemon(true);
+        sender.start();
     }
 
     /**
      * @return the instance
      */
     public static EventSendPool getInstance() {
-        if (instance == null)
-            instance = new EventSendPool();
+        if (instance == null) {
+            synchronized (lock) {
+                if (instance == null) {
+                    instance = new EventSendPool();
+                }
+                return instance;
+            }
+        }
         return instance;
     }
 
     public void sendEvent(String event) {
-        executor.submit(new EventSender(event));
+        offer(controlLane, event);
     }
 
     public void sendEvent(JavaAgentEventBean event) {
-        executor.submit(new EventSender(event));
+        offer(event.getIsIASTRequest() ? replayLane : liveLane, event);
         AgentInfo.getInstance().getJaHealthCheck().incrementEventSentCount();
     }
 
     public void sendEvent(Object event) {
-        executor.submit(new EventSender(event));
+        if (event instanceof JavaAgentEventBean) {
+            offer(((JavaAgentEventBean) event).getIsIASTRequest() ? replayLane : liveLane, event);
+        } else if (event instanceof ExitEventBean || event instanceof FuzzFailEvent) {
+            offer(replayLane, event);
+        } else {
+            offer(controlLane, event);
+        }
     }
 
-    public static void shutDownPool() {
-        if (instance != null) {
-            instance.shutDownThreadPoolExecutor();
+    private void offer(Lane lane, Object event) {
+        if (shutdown) {
+            return;
+        }
+        if (lane.queue.offer(new QueuedEvent(event))) {
+            queued.release();
+            return;
+        }
+        logger.log(LogLevel.FINER, "Event " + event.getClass().getSimpleName() + " rejected from full " + lane.name + " lane", EventSendPool.class.getName());
+        lane.dropped.increment();
+        AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+        AgentInfo.getInstance().getJaHealthCheck().incrementProcessedCount();
+        if (event instanceof JavaAgentEventBean) {
+            AgentInfo.getInstance().getJaHealthCheck().incrementDropCount(((JavaAgentEventBean) event).getCaseType());
         }
-        instance = null;
     }
 
-    public void shutDownThreadPoolExecutor() {
-
-        if (executor != null) {
+    private void drain() {
+        while (true) {
             try {
-                executor.shutdown(); // disable new tasks from being submitted
-                if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-                    // wait for termination for a timeout
-                    executor.shutdownNow(); // cancel currently executing tasks
-
-                    if (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
-                        logger.log(LogLevel.SEVERE, "Thread pool executor did not terminate",
-                                EventSendPool.class.getName());
+                if (batch.isEmpty()) {
+                    queued.acquire();
+                } else if (!queued.tryAcquire(Math.max(0, batch.remainingLingerNanos()), TimeUnit.NANOSECONDS)) {
+                    // No further event within the linger time of the batch
+                    if (!sendBatch()) {
+                        return;
                     }
+                    continue;
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+            QueuedEvent queuedEvent = poll();
+            if (queuedEvent == null) {
+                // Only the wake up permit of shutdown is left once all lanes are drained
+                if (shutdown) {
+                    sendBatch();
+                    return;
                 }
+                continue;
+            }
+            if (!batch.isEmpty() || WSUtils.getInstance().isEventBatchAccepted()) {
+                if (batch.add(queuedEvent.event) && !sendBatch()) {
+                    return;
+                }
+                continue;
+            }
+            activeCount.incrementAndGet();
+            try {
+                sink.send(queuedEvent.event);
             } catch (InterruptedException e) {
+                return;
+            } catch (Throwable e) {
+                AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+            } finally {
+                activeCount.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Sends the current batch, if any.
+     *
+     * @return {@code false} if interrupted.
+     */
+    private boolean sendBatch() {
+        int eventCount = batch.getEventCount();
+        activeCount.incrementAndGet();
+        try {
+            batch.send();
+        } catch (InterruptedException e) {
+            return false;
+        } catch (Throwable e) {
+            for (int i = 0; i < eventCount; i++) {
+                AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
+            }
+        } finally {
+            activeCount.decrementAndGet();
+        }
+        return true;
+    }
+
+    /**
+     * Takes the next event by weighted round robin. Called once per permit of {@link #queued}, so an event is queued
+     * in some lane and is found within a round.
+     */
+    private QueuedEvent poll() {
+        for (int i = 0; i <= lanes.length; i++) {
+            Lane lane = lanes[currentLane];
+            if (credit > 0) {
+                QueuedEvent queuedEvent = lane.queue.poll();
+                if (queuedEvent != null) {
+                    credit--;
+                    long waitNanos = System.nanoTime() - queuedEvent.queuedAt;
+                    lane.sent.increment();
+                    lane.totalWaitNanos.add(waitNanos);
+                    lane.maxWaitNanos.accumulate(waitNanos);
+                    return queuedEvent;
+                }
             }
+            currentLane = (currentLane + 1) % lanes.length;
+            credit = lanes[currentLane].weight;
+        }
+        return null;
+    }
+
+    /**
+     * @return per lane depth, sent and dropped counts, average and maximum wait in milliseconds since the last reset.
+     */
+    public Map<String, Object> getLaneStats() {
+        Map<String, Object> stats = new HashMap<>();
+        for (Lane lane : lanes) {
+            stats.put(lane.name, lane.stats());
+        }
+        return stats;
+    }
+
+    public void resetLaneStats() {
+        for (Lane lane : lanes) {
+            lane.reset();
         }
+    }
 
+    /**
+     * @return the number of queued events over all lanes.
+     */
+    public int getQueueSize() {
+        return queued.availablePermits();
     }
 
-    public static class EventAbortPolicy implements RejectedExecutionHandler {
-        /**
-         * Creates an {@code ValidationAbortPolicy}.
-         */
-        public EventAbortPolicy() {
+    public static void shutDownPool() {
+        EventSendPool pool;
+        synchronized (lock) {
+            pool = instance;
+            instance = null;
+        }
+        if (pool != null) {
+            pool.shutDownThreadPoolExecutor();
         }
+    }
 
-        /**
-         * Always throws RejectedExecutionException.
-         *
-         * @param r the runnable task requested to be executed
-         * @param e the executor attempting to execute this task
-         * @throws RejectedExecutionException always
-         */
-        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
-            logger.log(LogLevel.FINER, "Event Task " + r.toString() + " rejected from  " + e.toString(), EventSendPool.class.getName());
-            AgentInfo.getInstance().getJaHealthCheck().incrementDropCount();
-            AgentInfo.getInstance().getJaHealthCheck().incrementProcessedCount();
+    public void shutDownThreadPoolExecutor() {
+        shutdown = true;
+        queued.release();
+        try {
+            // Queued events are sent for up to a second, then the sender is interrupted
+            sender.join(TimeUnit.SECONDS.toMillis(1));
+            if (sender.isAlive()) {
+                sender.interrupt();
+                sender.join(TimeUnit.SECONDS.toMillis(1));
+            }
+            if (sender.isAlive()) {
+                logger.log(LogLevel.SEVERE, "Event sender thread did not terminate",
+                        EventSendPool.class.getName());
+            }
+        } catch (InterruptedException e) {
         }
     }
 
@@ -141,7 +354,10 @@ public class EventSendPool {
         return isWaiting;
     }
 
-    public ThreadPoolExecutor getExecutor() {
-        return executor;
+    /**
+     * @return the number of events or batches being sent, {@code 0} or {@code 1}.
+     */
+    public int getActiveCount() {
+        return activeCount.get();
     }
 }
@@ -2,6 +2,8 @@ package com.newrelic.agent.security.intcodeagent.websocket;
 
 import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
 
+import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.concurrent.Callable;
 
 /**
@@ -31,6 +33,29 @@ public class EventSender implements Callable<Boolean> {
      */
     @Override
     public Boolean call() throws Exception {
+        awaitReconnection();
+        if (event instanceof JavaAgentEventBean) {
+            ((JavaAgentEventBean) event).setEventGenerationTime(System.currentTimeMillis());
+        }
+        if (!StreamingEventSerializer.isEnabled()) {
+            WSClient.getInstance().send(JsonConverter.toJSON(event));
+            return true;
+        }
+        EventEncoder encoder = WSUtils.getInstance().getEventEncoder();
+        StreamingEventSerializer serializer = StreamingEventSerializer.forCurrentThread();
+        try {
+            List<ByteBuffer> fragments = serializer.serialize(event, encoder);
+            WSClient.getInstance().sendFragments(fragments, encoder.getOpcode());
+        } finally {
+            serializer.release();
+        }
+        return true;
+    }
+
+    /**
+     * Waits for the websocket to be reconnected, if reconnecting.
+     */
+    static void awaitReconnection() throws InterruptedException {
         if (WSUtils.getInstance().isReconnecting()) {
             synchronized (WSUtils.getInstance()) {
                 EventSendPool.getInstance().isWaiting().set(true);
@@ -38,11 +63,6 @@ public class EventSender implements Callable<Boolean> {
                 EventSendPool.getInstance().isWaiting().set(false);
             }
         }
-        if (event instanceof JavaAgentEventBean) {
-            ((JavaAgentEventBean) event).setEventGenerationTime(System.currentTimeMillis());
-        }
-        WSClient.getInstance().send(JsonConverter.toJSON(event));
-        return true;
     }
 
 }
@@ -68,6 +68,13 @@ public class JsonConverter {
         }
     }
 
+    /**
+     * @return {@code true} if events are serialized with Jackson, rather than the K2 reflective serializer.
+     */
+    public static boolean isJacksonSelected() {
+        return !"K2".equals(serializerSelection);
+    }
+
     public static String toJSONObjectMapper(Object obj) {
         try {
             return mapper.writeValueAsString(obj);
@@ -0,0 +1,48 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.java_websocket.enums.Opcode;
+
+/**
+ * Text JSON encoding, the default one, batches being JSON arrays.
+ */
+public class JsonEventEncoder implements EventEncoder {
+
+    public static final String NAME = "json";
+
+    private static final byte[] BATCH_START = {'['};
+
+    private static final byte[] BATCH_SEPARATOR = {','};
+
+    private static final byte[] BATCH_END = {']'};
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public Opcode getOpcode() {
+        return Opcode.TEXT;
+    }
+
+    @Override
+    public ObjectMapper getObjectMapper() {
+        return JsonConverter.getObjectMapper();
+    }
+
+    @Override
+    public byte[] getBatchStart() {
+        return BATCH_START.clone();
+    }
+
+    @Override
+    public byte[] getBatchSeparator() {
+        return BATCH_SEPARATOR.clone();
+    }
+
+    @Override
+    public byte[] getBatchEnd() {
+        return BATCH_END.clone();
+    }
+}
@@ -0,0 +1,61 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+import java.io.IOException;
+
+/**
+ * Serializer of the envelope fields sent with every event, such as the application UUID, pid or json version.
+ * <p>
+ * These values hardly ever change, so the last value is kept along with its JSON encoding, computed once and written
+ * as is by the generator. Jackson creates an instance per annotated property.
+ */
+public class PreEncodedValueSerializer extends StdSerializer<Object> {
+
+    private static final long serialVersionUID = 4718336109582276409L;
+
+    private transient volatile Encoded last;
+
+    public PreEncodedValueSerializer() {
+        super(Object.class);
+    }
+
+    @Override
+    public void serialize(Object value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        Encoded encoded = last;
+        if (encoded == null || !encoded.value.equals(value)) {
+            encoded = new Encoded(value);
+            last = encoded;
+        }
+        if (encoded.quoted) {
+            gen.writeString(encoded.encoded);
+        } else if (EventEncoders.writesJsonText(gen)) {
+            gen.writeRawValue(encoded.encoded);
+        } else {
+            // Binary encodings take no raw JSON
+            provider.defaultSerializeValue(value, gen);
+        }
+    }
+
+    private static final class Encoded {
+
+        private final Object value;
+
+        /**
+         * Strings are written quoted and escaped by the generator, other values (numbers, booleans) raw in JSON.
+         */
+        private final boolean quoted;
+
+        private final SerializableString encoded;
+
+        private Encoded(Object value) {
+            this.value = value;
+            this.quoted = value instanceof CharSequence;
+            this.encoded = new SerializedString(value.toString());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.newrelic.agent.security.instrumentator.utils.INRSettingsKey;
+import com.newrelic.api.agent.NewRelic;
+import org.java_websocket.enums.Opcode;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Serializes events straight into pooled byte chunks, handed as is to the websocket as the fragments of a message, see
+ * {@link WSClient#sendFragments(List, Opcode)}. Events are encoded by the given {@link EventEncoder}.
+ * <p>
+ * Each thread reuses its own generator and chunks, see {@link #forCurrentThread()}. Chunks of text encodings are only
+ * cut on char boundaries, as the websocket checks each text fragment to be valid UTF-8. With {@link EventEncoders#JSON},
+ * events are written as the same JSON values as {@link JsonConverter#toJSON(Object)} with the Jackson serializer,
+ * only chars outside the BMP are written as escaped surrogate pairs by the UTF-8 generator.
+ * <p>
+ * Instances are not thread safe.
+ */
+public class StreamingEventSerializer {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private static final int MAX_POOLED_CHUNKS = 16;
+
+    private static final ThreadLocal<StreamingEventSerializer> serializers = ThreadLocal.withInitial(StreamingEventSerializer::new);
+
+    private static volatile Boolean enabled;
+
+    private final ChunkedOutputStream out = new ChunkedOutputStream();
+
+    private JsonGenerator generator;
+
+    /**
+     * Encoder the generator was created for.
+     */
+    private EventEncoder generatorEncoder;
+
+    /**
+     * Encoder of the current batch.
+     */
+    private EventEncoder batchEncoder;
+
+    /**
+     * Number of events in the current batch.
+     */
+    private int batchSize;
+
+    private StreamingEventSerializer() {
+    }
+
+    public static StreamingEventSerializer forCurrentThread() {
+        return serializers.get();
+    }
+
+    /**
+     * @return {@code true} if events are streamed, through {@link INRSettingsKey#SECURITY_EVENT_STREAMING_SERIALIZATION}
+     * and as long as the Jackson serializer is selected.
+     */
+    public static boolean isEnabled() {
+        if (enabled == null) {
+            boolean configured = true;
+            try {
+                configured = NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_EVENT_STREAMING_SERIALIZATION, true);
+            } catch (Throwable ignored) {
+            }
+            enabled = configured && JsonConverter.isJacksonSelected();
+        }
+        return enabled;
+    }
+
+    /**
+     * Serializes the event into chunks, valid until the next call or {@link #release()}.
+     *
+     * @return the chunks, ready to be read, empty if the event could not be serialized.
+     */
+    public List<ByteBuffer> serialize(Object event, EventEncoder encoder) {
+        release();
+        try {
+            JsonGenerator gen = generator(encoder);
+            encoder.getObjectMapper().writeValue(gen, event);
+            gen.flush();
+            return out.finish();
+        } catch (Throwable e) {
+            // The generator may be left within the failed value, start over with a new one
+            generator = null;
+            release();
+            return Collections.emptyList();
+        }
+    }
+
+    /**
+     * Starts a batch of events, see {@link EventBatch}. The chunks of the last event or batch are released.
+     */
+    public void beginBatch(EventEncoder encoder) {
+        release();
+        batchEncoder = encoder;
+        write(encoder.getBatchStart());
+        batchSize = 0;
+    }
+
+    /**
+     * Appends an event to the current batch. An event that could not be serialized is left out of the batch.
+     *
+     * @return {@code true} if the event was appended.
+     */
+    public boolean appendToBatch(Object event) {
+        long mark = out.size();
+        try {
+            if (batchSize > 0) {
+                write(batchEncoder.getBatchSeparator());
+            }
+            // Flushed after each event, so that the separators are written in order with the events
+            batchEncoder.getObjectMapper().writeValue(generator(batchEncoder), event);
+            generator.flush();
+            batchSize++;
+            return true;
+        } catch (Throwable e) {
+            generator = null;
+            out.truncate(mark);
+            return false;
+        }
+    }
+
+    /**
+     * Ends the current batch.
+     *
+     * @return the chunks of the batch, ready to be read, valid until the next call or {@link #release()}.
+     */
+    public List<ByteBuffer> finishBatch() {
+        write(batchEncoder.getBatchEnd());
+        return out.finish();
+    }
+
+    private void write(byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * @return the number of bytes written since the last event or batch was started.
+     */
+    public long size() {
+        return out.size();
+    }
+
+    /**
+     * Returns the chunks of the last event or batch to the pool.
+     */
+    public void release() {
+        out.reset();
+    }
+
+    private JsonGenerator generator(EventEncoder encoder) throws IOException {
+        if (generator == null || generatorEncoder != encoder) {
+            generator = encoder.getObjectMapper().getFactory().createGenerator(out, JsonEncoding.UTF8);
+            generatorEncoder = encoder;
+            if (EventEncoders.writesJsonText(generator)) {
+                // Events are written one after the other as root values, without any separator
+                generator.setRootValueSeparator(null);
+            }
+        }
+        out.splitChars = encoder.getOpcode() == Opcode.TEXT;
+        return generator;
+    }
+
+    /**
+     * @return the UTF-8 decoding of the given chunks of a text message, for logging.
+     */
+    public static String toString(List<ByteBuffer> chunks) {
+        StringBuilder builder = new StringBuilder();
+        for (ByteBuffer chunk : chunks) {
+            builder.append(StandardCharsets.UTF_8.decode(chunk.duplicate()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Output stream writing into pooled chunks, cutting them on UTF-8 char boundaries for text encodings.
+     */
+    private static final class ChunkedOutputStream extends OutputStream {
+
+        private final ArrayDeque<ByteBuffer> pool = new ArrayDeque<>();
+
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+
+        private ByteBuffer current;
+
+        private long size;
+
+        private boolean splitChars = true;
+
+        @Override
+        public void write(int b) {
+            if (current == null || !current.hasRemaining()) {
+                nextChunk();
+            }
+            current.put((byte) b);
+            size++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            while (len > 0) {
+                if (current == null || !current.hasRemaining()) {
+                    nextChunk();
+                }
+                int count = Math.min(len, current.remaining());
+                current.put(b, off, count);
+                off += count;
+                len -= count;
+                size += count;
+            }
+        }
+
+        /**
+         * Starts a new chunk, moving to it the trailing bytes of a char split by the end of the current one.
+         */
+        private void nextChunk() {
+            ByteBuffer next = pool.isEmpty() ? ByteBuffer.allocate(CHUNK_SIZE) : pool.poll();
+            if (current != null && splitChars) {
+                int split = splitCharLength(current);
+                for (int i = current.position() - split; i < current.position(); i++) {
+                    next.put(current.get(i));
+                }
+                current.position(current.position() - split);
+            }
+            chunks.add(next);
+            current = next;
+        }
+
+        /**
+         * @return the number of bytes at the end of the buffer that start a char not complete in it.
+         */
+        private static int splitCharLength(ByteBuffer buffer) {
+            int end = buffer.position();
+            for (int back = 1; back <= 3 && back <= end; back++) {
+                int b = buffer.get(end - back) & 0xff;
+                if ((b & 0xc0) == 0x80) {
+                    // Continuation byte, keep looking for the lead byte
+                    continue;
+                }
+                int length = b >= 0xf0 ? 4 : b >= 0xe0 ? 3 : b >= 0xc0 ? 2 : 1;
+                return length > back ? back : 0;
+            }
+            return 0;
+        }
+
+        private List<ByteBuffer> finish() {
+            for (ByteBuffer chunk : chunks) {
+                chunk.flip();
+            }
+            current = null;
+            return chunks;
+        }
+
+        private long size() {
+            return size;
+        }
+
+        /**
+         * Drops the bytes written after the given size, which must fall on a char boundary.
+         */
+        private void truncate(long mark) {
+            long remaining = mark;
+            int last = 0;
+            for (; last < chunks.size(); last++) {
+                ByteBuffer chunk = chunks.get(last);
+                if (chunk.position() >= remaining) {
+                    chunk.position((int) remaining);
+                    break;
+                }
+                remaining -= chunk.position();
+            }
+            while (chunks.size() > last + 1) {
+                recycle(chunks.remove(chunks.size() - 1));
+            }
+            current = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+            size = mark;
+        }
+
+        private void recycle(ByteBuffer chunk) {
+            if (pool.size() < MAX_POOLED_CHUNKS) {
+                chunk.clear();
+                pool.offer(chunk);
+            }
+        }
+
+        private void reset() {
+            for (ByteBuffer chunk : chunks) {
+                recycle(chunk);
+            }
+            chunks.clear();
+            current = null;
+            size = 0;
+        }
+    }
+}
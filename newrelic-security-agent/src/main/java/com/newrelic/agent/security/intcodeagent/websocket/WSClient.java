@@ -15,6 +15,7 @@ import org.java_websocket.WebSocket;
 import org.java_websocket.WebSocketImpl;
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
 import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.framing.Framedata;
 import org.java_websocket.handshake.ServerHandshake;
@@ -26,6 +27,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.KeyStore;
@@ -35,6 +37,7 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.util.Collection;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
@@ -62,6 +65,16 @@ public class WSClient extends WebSocketClient {
 
     private WebSocketImpl connection = null;
 
+    /**
+     * Held while sending a message, so that no message is sent between the fragments of another.
+     */
+    private final Object sendLock = new Object();
+
+    /**
+     * Encoder of the events offered to the validator, see {@link EventEncoders}.
+     */
+    private final EventEncoder offeredEncoder = EventEncoders.getConfigured();
+
 
     private SSLContext createSSLContext() throws Exception {
         KeyStore keystore = KeyStore.getInstance(KeyStore.getDefaultType());
@@ -123,7 +136,7 @@ public class WSClient extends WebSocketClient {
 
     private WSClient() throws URISyntaxException {
         super(new URI(AgentConfig.getInstance().getConfig().getK2ServiceInfo().getValidatorServiceEndpointURL()),
-                new Draft_6455(), null, (int) TimeUnit.SECONDS.toMillis(15));
+                createDraft(), null, (int) TimeUnit.SECONDS.toMillis(15));
         this.setTcpNoDelay(true);
         this.setConnectionLostTimeout(30);
         this.addHeader("NR-CSEC-CONNECTION-TYPE", "LANGUAGE_COLLECTOR");
@@ -137,6 +150,15 @@ public class WSClient extends WebSocketClient {
         this.addHeader("NR-CSEC-JSON-VERSION", AgentInfo.getInstance().getBuildInfo().getJsonVersion());
         this.addHeader("NR-ACCOUNT-ID", AgentConfig.getInstance().getConfig().getCustomerInfo().getAccountId());
         this.addHeader("NR-CSEC-IAST-DATA-TRANSFER-MODE", "PULL");
+        if (EventBatch.isEnabled()) {
+            this.addHeader(EventBatch.EVENT_BATCH_HEADER, EventBatch.JSON_ARRAY);
+        }
+        if (offeredEncoder != EventEncoders.JSON) {
+            this.addHeader(EventEncoders.EVENT_ENCODING_HEADER, offeredEncoder.getName());
+        }
+        if (EventDeflateExtension.isEnabled() && EventDeflateExtension.getDictionaryId() != null) {
+            this.addHeader(EventDeflateExtension.DICTIONARY_HEADER, EventDeflateExtension.getDictionaryId());
+        }
         if (StringUtils.startsWithIgnoreCase(AgentConfig.getInstance().getConfig().getK2ServiceInfo().getValidatorServiceEndpointURL(), "wss:")) {
             try {
                 this.setSocketFactory(createSSLContext().getSocketFactory());
@@ -147,6 +169,17 @@ public class WSClient extends WebSocketClient {
         }
     }
 
+    /**
+     * @return the protocol draft, with the permessage-deflate extension if compression is enabled.
+     */
+    private static Draft_6455 createDraft() {
+        EventDeflateExtension compression = EventDeflateExtension.fromConfig();
+        if (compression != null) {
+            return new Draft_6455(compression);
+        }
+        return new Draft_6455();
+    }
+
     @Override
     public void addHeader(String key, String value) {
         String printValue = value;
@@ -178,7 +211,22 @@ public class WSClient extends WebSocketClient {
     public void onOpen(ServerHandshake handshakedata) {
         logger.logInit(LogLevel.INFO, String.format(IAgentConstants.WS_CONNECTION_SUCCESSFUL, this.getRemoteSocketAddress()), WSClient.class.getName());
         logger.logInit(LogLevel.INFO, String.format(IAgentConstants.SENDING_APPLICATION_INFO_ON_WS_CONNECT, AgentInfo.getInstance().getApplicationInfo()), WSClient.class.getName());
-        super.send(JsonConverter.toJSON(AgentInfo.getInstance().getApplicationInfo()));
+        synchronized (sendLock) {
+            super.send(JsonConverter.toJSON(AgentInfo.getInstance().getApplicationInfo()));
+        }
+        boolean eventBatchAccepted = EventBatch.isEnabled()
+                && StringUtils.equals(handshakedata.getFieldValue(EventBatch.EVENT_BATCH_HEADER), EventBatch.JSON_ARRAY);
+        WSUtils.getInstance().setEventBatchAccepted(eventBatchAccepted);
+        if (eventBatchAccepted) {
+            logger.logInit(LogLevel.INFO, "Events are sent in batches", WSClient.class.getName());
+        }
+        EventEncoder eventEncoder = EventEncoders.JSON;
+        if (offeredEncoder != EventEncoders.JSON
+                && StringUtils.equalsIgnoreCase(handshakedata.getFieldValue(EventEncoders.EVENT_ENCODING_HEADER), offeredEncoder.getName())) {
+            eventEncoder = offeredEncoder;
+        }
+        WSUtils.getInstance().setEventEncoder(eventEncoder);
+        logger.logInit(LogLevel.INFO, String.format("Events are encoded as %s", eventEncoder.getName()), WSClient.class.getName());
         WSUtils.getInstance().setReconnecting(false);
         synchronized (WSUtils.getInstance()) {
             WSUtils.getInstance().notifyAll();
@@ -205,6 +253,9 @@ public class WSClient extends WebSocketClient {
     @Override
     public void onClose(int code, String reason, boolean remote) {
         WSUtils.getInstance().setConnected(false);
+        WSUtils.getInstance().setEventBatchAccepted(false);
+        WSUtils.getInstance().setEventEncoder(EventEncoders.JSON);
+        EventDeflateExtension.resetNegotiated();
         logger.log(LogLevel.WARNING, CONNECTION_CLOSED_BY + (remote ? REMOTE_PEER : LOCAL) + CODE + code
                 + REASON + reason, WSClient.class.getName());
         if (code == CloseFrame.NEVER_CONNECTED) {
@@ -234,12 +285,51 @@ public class WSClient extends WebSocketClient {
         }
         if (this.isOpen()) {
             logger.log(LogLevel.FINER, SENDING_EVENT + text, WSClient.class.getName());
-            super.send(text);
+            synchronized (sendLock) {
+                super.send(text);
+            }
         } else {
             logger.log(LogLevel.FINER, UNABLE_TO_SEND_EVENT + text, WSClient.class.getName());
         }
     }
 
+    /**
+     * Sends a message given as fragments, as written by {@link StreamingEventSerializer}. Fragments of a text message
+     * are UTF-8, each cut on a char boundary. Fragments are copied into the outgoing frames before returning.
+     *
+     * @param fragments fragments of the message, in order
+     * @param opcode    {@link Opcode#TEXT} or {@link Opcode#BINARY}
+     */
+    public void sendFragments(List<ByteBuffer> fragments, Opcode opcode) {
+        if (fragments.isEmpty()) {
+            return;
+        }
+        if (this.isOpen()) {
+            if (logger.isLogLevelEnabled(LogLevel.FINER)) {
+                logger.log(LogLevel.FINER, SENDING_EVENT + describe(fragments, opcode), WSClient.class.getName());
+            }
+            synchronized (sendLock) {
+                int last = fragments.size() - 1;
+                for (int i = 0; i <= last; i++) {
+                    sendFragmentedFrame(opcode, fragments.get(i), i == last);
+                }
+            }
+        } else if (logger.isLogLevelEnabled(LogLevel.FINER)) {
+            logger.log(LogLevel.FINER, UNABLE_TO_SEND_EVENT + describe(fragments, opcode), WSClient.class.getName());
+        }
+    }
+
+    private static String describe(List<ByteBuffer> fragments, Opcode opcode) {
+        if (opcode == Opcode.TEXT) {
+            return StreamingEventSerializer.toString(fragments);
+        }
+        long size = 0;
+        for (ByteBuffer fragment : fragments) {
+            size += fragment.remaining();
+        }
+        return String.format("binary message of %s bytes", size);
+    }
+
     @Override
     public void onWebsocketPing(WebSocket conn, Framedata f) {
         logger.log(LogLevel.FINER, String.format(RECEIVED_PING_AT_S_SENDING_PONG, Instant.now().atZone(ZoneId.of("UTC")).toLocalTime()), WSClient.class.getName());
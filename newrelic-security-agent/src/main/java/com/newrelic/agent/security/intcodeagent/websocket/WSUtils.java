@@ -11,6 +11,16 @@ public class WSUtils {
     private boolean isConnected = false;
     private AtomicBoolean isReconnecting = new AtomicBoolean(false);
 
+    /**
+     * Whether the validator accepted batches of events on the current connection, see {@link EventBatch}.
+     */
+    private volatile boolean eventBatchAccepted = false;
+
+    /**
+     * Encoder of the events accepted by the validator on the current connection, see {@link EventEncoders}.
+     */
+    private volatile EventEncoder eventEncoder = EventEncoders.JSON;
+
     private WSUtils() {
     }
 
@@ -46,4 +56,20 @@ public class WSUtils {
         this.isReconnecting.set(isReconnecting);
     }
 
+    public boolean isEventBatchAccepted() {
+        return eventBatchAccepted;
+    }
+
+    void setEventBatchAccepted(boolean eventBatchAccepted) {
+        this.eventBatchAccepted = eventBatchAccepted;
+    }
+
+    public EventEncoder getEventEncoder() {
+        return eventEncoder;
+    }
+
+    void setEventEncoder(EventEncoder eventEncoder) {
+        this.eventEncoder = eventEncoder;
+    }
+
 }
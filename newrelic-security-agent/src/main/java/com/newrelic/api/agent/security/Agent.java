@@ -22,13 +22,14 @@ import com.newrelic.api.agent.Transaction;
 import com.newrelic.api.agent.security.schema.*;
 import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
 import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
+import com.newrelic.api.agent.security.schema.policy.PolicySnapshot;
 import org.apache.commons.lang3.StringUtils;
 
 import java.io.IOException;
 import java.lang.instrument.Instrumentation;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -119,6 +120,11 @@ public class Agent implements SecurityAgent {
         info.initialiseHC();
         config.populateAgentPolicy();
         config.populateAgentPolicyParameters();
+        DetectionSettings.refresh();
+        RequestBodyBuffer.setCaptureLimit(NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_REQUEST_BODY_LIMIT,
+                RequestBodyBuffer.DEFAULT_CAPTURE_LIMIT / 1024) * 1024);
+        ResponseBodyBuffer.setCaptureLimit(NewRelic.getAgent().getConfig().getValue(INRSettingsKey.SECURITY_RESPONSE_BODY_LIMIT,
+                ResponseBodyBuffer.DEFAULT_CAPTURE_LIMIT / 1024) * 1024);
         config.setupSnapshotDir();
         info.initStatusLogValues();
         setInitialised(true);
@@ -228,24 +234,23 @@ public class Agent implements SecurityAgent {
         if (operation == null || operation.isEmpty()) {
             return;
         }
-        String executionId = ExecutionIDGenerator.getExecutionId();
-        operation.setExecutionId(executionId);
+        ExecutionIDGenerator.assignExecutionId(operation);
         operation.setStartTime(Instant.now().toEpochMilli());
-        operation.setStackTrace(Thread.currentThread().getStackTrace());
         SecurityMetaData securityMetaData = NewRelicSecurity.getAgent().getSecurityMetaData();
-        setRequiredStackTrace(operation, securityMetaData);
-        setUserClassEntity(operation, securityMetaData);
-        processStackTrace(operation);
+        if (DetectionSettings.get().isDeferredEnrichmentEnabled() && !securityMetaData.getFuzzRequestIdentifier().getK2Request()) {
+            // Capture only what is gone once the hook returns, the dispatcher thread does the rest.
+            // IAST fuzz requests are enriched here, their exit events need the API ID right away.
+            DispatcherPool.getInstance().dispatchCapturedEvent(operation, securityMetaData,
+                    captureStackTrace(operation, securityMetaData));
+            logFirstEvent(securityMetaData);
+            return;
+        }
+        enrichOperation(operation, securityMetaData);
 //        boolean blockNeeded = checkIfBlockingNeeded(operation.getApiID());
 //        securityMetaData.getMetaData().setApiBlocked(blockNeeded);
         if (needToGenerateEvent(operation.getApiID())) {
             DispatcherPool.getInstance().dispatchEvent(operation, securityMetaData);
-            if (!firstEventProcessed.get()) {
-                logger.logInit(LogLevel.INFO,
-                        String.format(EVENT_ZERO_PROCESSED, securityMetaData.getRequest()),
-                        this.getClass().getName());
-                firstEventProcessed.set(true);
-            }
+            logFirstEvent(securityMetaData);
         } else {
             return;
         }
@@ -255,70 +260,113 @@ public class Agent implements SecurityAgent {
 //        checkIfClientIPBlocked();
     }
 
+    /**
+     * Completes an operation captured by {@link #registerOperation(AbstractOperation)} when enrichment is deferred,
+     * see {@link DetectionSettings#isDeferredEnrichmentEnabled()}. Runs on the dispatcher thread, RCI flags are set
+     * on the event's own metadata.
+     *
+     * @param capturedStackTrace stack trace captured by the hook, {@code null} for reflected XSS operations
+     * @return {@code true} if an event is to be generated for the operation
+     */
+    /**
+     * Sets the stack trace and API ID of an operation from within the hook, when enrichment is not deferred.
+     */
+    static void enrichOperation(AbstractOperation operation, SecurityMetaData securityMetaData) {
+        setStackTraceAndAPIId(operation, securityMetaData, captureStackTrace(operation, securityMetaData));
+    }
+
+    public static boolean completeCapturedOperation(AbstractOperation operation, SecurityMetaData securityMetaData,
+                                                    CapturedStackTrace capturedStackTrace) {
+        setStackTraceAndAPIId(operation, securityMetaData, capturedStackTrace);
+        return needToGenerateEvent(operation.getApiID());
+    }
+
+    private void logFirstEvent(SecurityMetaData securityMetaData) {
+        if (!firstEventProcessed.get()) {
+            logger.logInit(LogLevel.INFO,
+                    String.format(EVENT_ZERO_PROCESSED, securityMetaData.getRequest()),
+                    this.getClass().getName());
+            firstEventProcessed.set(true);
+        }
+    }
+
     private static boolean needToGenerateEvent(String apiID) {
-        return !(getInstance().getCurrentPolicy().getProtectionMode().getEnabled()
-                && getInstance().getCurrentPolicy().getProtectionMode().getApiBlocking().getEnabled()
-                && AgentUtils.getInstance().getAgentPolicyParameters().getAllowedApis().contains(apiID)
-        );
+        PolicySnapshot policySnapshot = AgentUtils.getInstance().getPolicySnapshot();
+        return !(policySnapshot.isApiBlockingEnabled() && policySnapshot.isAllowedApi(apiID));
     }
 
-    private void setUserClassEntity(AbstractOperation operation, SecurityMetaData securityMetaData) {
+    private static void setUserClassEntity(AbstractOperation operation, SecurityMetaData securityMetaData,
+                                           StackTraceElement userClassElement) {
         UserClassEntity userClassEntity = new UserClassEntity();
-        userClassEntity.setUserClassElement(operation.getStackTrace()[operation.getStackTrace().length - 2]);
+        userClassEntity.setUserClassElement(userClassElement);
         userClassEntity.setCalledByUserCode(securityMetaData.getMetaData().isUserLevelServiceMethodEncountered());
         operation.setUserClassEntity(userClassEntity);
     }
 
-    private void setRequiredStackTrace(AbstractOperation operation, SecurityMetaData securityMetaData) {
-        StackTraceElement[] currentStackTrace = null;
+    /**
+     * Captures the stack trace of the operation, bounded by the service trace. Reflected XSS operations are raised
+     * at the end of the request and use the service trace instead, {@code null} is returned for them.
+     */
+    static CapturedStackTrace captureStackTrace(AbstractOperation operation, SecurityMetaData securityMetaData) {
         if (operation instanceof RXSSOperation) {
-            currentStackTrace = securityMetaData.getMetaData().getServiceTrace();
-        } else {
-            currentStackTrace = Thread.currentThread().getStackTrace();
+            return null;
         }
-
-        int targetBottomStackLength = currentStackTrace.length - securityMetaData.getMetaData().getServiceTrace().length + 3;
-        currentStackTrace = Arrays.copyOfRange(currentStackTrace, 0, targetBottomStackLength);
-        operation.setStackTrace(currentStackTrace);
+        return StackTraceUtils.captureRequiredStackTrace(securityMetaData.getMetaData().getServiceTrace().length);
     }
 
-    private static void processStackTrace(AbstractOperation operation) {
-        StackTraceElement[] stackTrace = operation.getStackTrace();
-        int resetFactor = 0;
+    /**
+     * Sets the operation stack trace, bounded by the service trace and without the agent frames on top, along with
+     * the source method and API ID. Results are cached per call site, see {@link CallSiteCache}.
+     */
+    private static void setStackTraceAndAPIId(AbstractOperation operation, SecurityMetaData securityMetaData,
+                                              CapturedStackTrace capturedStackTrace) {
+        StackTraceElement[] serviceTrace = securityMetaData.getMetaData().getServiceTrace();
+        CallSiteInfo callSiteInfo;
+        if (capturedStackTrace == null) {
+            callSiteInfo = processStackTrace(StackTraceUtils.trimToRequiredStackTrace(serviceTrace, serviceTrace.length),
+                    StackTraceUtils.getRequiredUserClassElement(serviceTrace, serviceTrace.length), operation.getCaseType());
+        } else {
+            callSiteInfo = CallSiteCache.getInstance().get(operation.getCaseType(), capturedStackTrace);
+            if (callSiteInfo == null) {
+                StackTraceElement[] stackTrace = capturedStackTrace.getStackTrace();
+                callSiteInfo = processStackTrace(stackTrace, StackTraceUtils.getUserClassElement(stackTrace),
+                        operation.getCaseType());
+                CallSiteCache.getInstance().put(operation.getCaseType(), capturedStackTrace, callSiteInfo);
+            }
+        }
+        operation.setStackTrace(callSiteInfo.getStackTrace());
+        setUserClassEntity(operation, securityMetaData, callSiteInfo.getUserClassElement());
+        operation.setSourceMethod(callSiteInfo.getSourceMethod());
+        operation.setApiID(callSiteInfo.getApiID());
+
+        // Checks for RCI flagging.
+        if (!callSiteInfo.getRciMethodsCalls().isEmpty() && DetectionSettings.get().isRciEnabled()) {
+            AgentMetaData metaData = securityMetaData.getMetaData();
+            metaData.setTriggerViaRCI(true);
+            metaData.getRciMethodsCalls().addAll(callSiteInfo.getRciMethodsCalls());
+        }
+    }
 
+    private static CallSiteInfo processStackTrace(StackTraceElement[] stackTrace, StackTraceElement userClassElement,
+                                                  VulnerabilityCaseType vulnerabilityCaseType) {
         ArrayList<Integer> newTraceForIdCalc = new ArrayList<>(stackTrace.length);
+        List<String> rciMethodsCalls = new ArrayList<>();
 
-        resetFactor++;
         boolean markedForRemoval = false;
-        for (int i = 1, j = 0; i < stackTrace.length; i++) {
+        for (int i = 0; i < stackTrace.length; i++) {
             markedForRemoval = false;
 
-            // Only remove consecutive top com.newrelic and com.nr. elements from stack.
-            if (i - 1 == j && StringUtils.startsWithAny(stackTrace[i].getClassName(), "com.newrelic.", "com.nr.")) {
-                resetFactor++;
-                j++;
-                markedForRemoval = true;
-            }
-
             if (StringUtils.startsWithAny(stackTrace[i].getClassName(), SUN_REFLECT, COM_SUN)
                     || stackTrace[i].isNativeMethod() || stackTrace[i].getLineNumber() < 0 ||
                     !StringUtils.endsWith(stackTrace[i].getFileName(), ".java")) {
                 markedForRemoval = true;
 
-                // Checks for RCI flagging.
-                if (NewRelic.getAgent().getConfig()
-                        .getValue(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, true) && i > 0) {
-                    AgentMetaData metaData = NewRelicSecurity.getAgent().getSecurityMetaData().getMetaData();
-                    if (stackTrace[i - 1].getLineNumber() > 0 &&
-                            StringUtils.isNotBlank(stackTrace[i - 1].getFileName()) &&
-                            !StringUtils.startsWithAny(stackTrace[i - 1].getClassName(), "com.newrelic.", "com.nr.")
-                    ) {
-                        metaData.setTriggerViaRCI(true);
-                        metaData.getRciMethodsCalls()
-                                .add(AgentUtils.stackTraceElementToString(operation.getStackTrace()[i]));
-                        metaData.getRciMethodsCalls()
-                                .add(AgentUtils.stackTraceElementToString(operation.getStackTrace()[i - 1]));
-                    }
+                if (i > 0 && stackTrace[i - 1].getLineNumber() > 0 &&
+                        StringUtils.isNotBlank(stackTrace[i - 1].getFileName()) &&
+                        !StringUtils.startsWithAny(stackTrace[i - 1].getClassName(), "com.newrelic.", "com.nr.")
+                ) {
+                    rciMethodsCalls.add(AgentUtils.stackTraceElementToString(stackTrace[i]));
+                    rciMethodsCalls.add(AgentUtils.stackTraceElementToString(stackTrace[i - 1]));
                 }
             }
 
@@ -326,19 +374,20 @@ public class Agent implements SecurityAgent {
                 newTraceForIdCalc.add(stackTrace[i].hashCode());
             }
         }
-        stackTrace = Arrays.copyOfRange(stackTrace, resetFactor, stackTrace.length);
-        operation.setStackTrace(stackTrace);
-        operation.setSourceMethod(operation.getStackTrace()[0].toString());
-        setAPIId(operation, newTraceForIdCalc, operation.getCaseType());
+        String sourceMethod = stackTrace.length > 0 ? stackTrace[0].toString() : StringUtils.EMPTY;
+        String apiID = getAPIId(sourceMethod, userClassElement, newTraceForIdCalc, vulnerabilityCaseType);
+        return new CallSiteInfo(stackTrace, userClassElement, sourceMethod, apiID, Collections.unmodifiableList(rciMethodsCalls));
     }
 
-    private static void setAPIId(AbstractOperation operation, List<Integer> traceForIdCalc, VulnerabilityCaseType vulnerabilityCaseType) {
+    private static String getAPIId(String sourceMethod, StackTraceElement userClassElement, List<Integer> traceForIdCalc, VulnerabilityCaseType vulnerabilityCaseType) {
         try {
-            traceForIdCalc.add(operation.getSourceMethod().hashCode());
-            traceForIdCalc.add(operation.getUserClassEntity().getUserClassElement().hashCode());
-            operation.setApiID(vulnerabilityCaseType.getCaseType() + "-" + HashGenerator.getXxHash64Digest(traceForIdCalc.stream().mapToInt(Integer::intValue).toArray()));
+            traceForIdCalc.add(sourceMethod.hashCode());
+            if (userClassElement != null) {
+                traceForIdCalc.add(userClassElement.hashCode());
+            }
+            return vulnerabilityCaseType.getCaseType() + "-" + HashGenerator.getXxHash64Digest(traceForIdCalc.stream().mapToInt(Integer::intValue).toArray());
         } catch (IOException e) {
-            operation.setApiID("UNDEFINED");
+            return "UNDEFINED";
         }
     }
 
@@ -375,6 +424,11 @@ public class Agent implements SecurityAgent {
         return AgentUtils.getInstance().getAgentPolicy();
     }
 
+    @Override
+    public PolicySnapshot getCurrentPolicySnapshot() {
+        return AgentUtils.getInstance().getPolicySnapshot();
+    }
+
     @Override
     public SecurityMetaData getSecurityMetaData() {
         if(!isSecurityActive()){
@@ -391,7 +445,7 @@ public class Agent implements SecurityAgent {
         } catch (Throwable e) {
 //            e.printStackTrace();
         }
-        return new SecurityMetaData();
+        return NoContextSecurityMetaData.getInstance();
     }
 
     @Override
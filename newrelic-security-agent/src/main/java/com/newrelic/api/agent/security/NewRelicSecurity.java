@@ -30,8 +30,8 @@ public final class NewRelicSecurity {
      * {@code false} otherwise.
      */
     public static boolean isHookProcessingActive(){
-        return isAgentInitComplete && Agent.getInstance().isSecurityActive() &&
-                (Agent.getInstance().getSecurityMetaData() != null);
+        // Security metadata is available whenever security is active, the no-context one outside a transaction
+        return isAgentInitComplete && Agent.getInstance().isSecurityActive();
     }
 
     /**
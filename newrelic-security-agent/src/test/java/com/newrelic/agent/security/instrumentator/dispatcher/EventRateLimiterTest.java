@@ -0,0 +1,111 @@
+package com.newrelic.agent.security.instrumentator.dispatcher;
+
+import com.newrelic.agent.security.AgentInfo;
+import com.newrelic.api.agent.security.schema.AbstractOperation;
+import com.newrelic.api.agent.security.schema.HttpRequest;
+import com.newrelic.api.agent.security.schema.HttpResponse;
+import com.newrelic.api.agent.security.schema.SecurityMetaData;
+import com.newrelic.api.agent.security.schema.operation.FileOperation;
+import com.newrelic.api.agent.security.schema.operation.JSInjectionOperation;
+import com.newrelic.api.agent.security.schema.operation.LDAPOperation;
+import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
+import com.newrelic.api.agent.security.schema.operation.SQLOperation;
+import com.newrelic.api.agent.security.schema.operation.XPathOperation;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.util.HashMap;
+
+public class EventRateLimiterTest {
+
+    @BeforeClass
+    public static void initialiseHealthCheck() {
+        AgentInfo.getInstance().initialiseHC();
+    }
+
+    private static <T extends AbstractOperation> T withApiId(T operation, String apiId) {
+        operation.setApiID(apiId);
+        return operation;
+    }
+
+    private static SQLOperation sql(String query) {
+        SQLOperation operation = withApiId(new SQLOperation("Dao", "find"), "api-sql");
+        operation.setQuery(query);
+        operation.setParams(new HashMap<>());
+        return operation;
+    }
+
+    @Test
+    public void testDisabledByDefault() {
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+        for (int i = 0; i < 500; i++) {
+            Assert.assertTrue(EventRateLimiter.getInstance().tryAcquire(sql("select 1"), securityMetaData));
+        }
+    }
+
+    @Test
+    public void testRateLimited() {
+        EventRateLimiter limiter = new EventRateLimiter(true, 1, 3, 0);
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+        int limited = AgentInfo.getInstance().getJaHealthCheck().getEventRateLimitedCount();
+        int dispatched = 0;
+        for (int i = 0; i < 10; i++) {
+            if (limiter.tryAcquire(sql("select " + i), securityMetaData)) {
+                dispatched++;
+            }
+        }
+        Assert.assertEquals(3, dispatched);
+        Assert.assertEquals(limited + 7, AgentInfo.getInstance().getJaHealthCheck().getEventRateLimitedCount().intValue());
+    }
+
+    @Test
+    public void testDuplicatesSuppressed() {
+        EventRateLimiter limiter = new EventRateLimiter(true, 1000, 1000, 60_000);
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+
+        Assert.assertTrue(limiter.tryAcquire(sql("select 1"), securityMetaData));
+        Assert.assertFalse(limiter.tryAcquire(sql("select 1"), securityMetaData));
+        Assert.assertTrue(limiter.tryAcquire(sql("select 2"), securityMetaData));
+
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new LDAPOperation("cn", "(uid=a)", "Ldap", "search"), "api-ldap"), securityMetaData));
+        Assert.assertFalse(limiter.tryAcquire(withApiId(new LDAPOperation("cn", "(uid=a)", "Ldap", "search"), "api-ldap"), securityMetaData));
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new LDAPOperation("cn", "(uid=b)", "Ldap", "search"), "api-ldap"), securityMetaData));
+
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new XPathOperation("/a", "XPath", "evaluate"), "api-xpath"), securityMetaData));
+        Assert.assertFalse(limiter.tryAcquire(withApiId(new XPathOperation("/a", "XPath", "evaluate"), "api-xpath"), securityMetaData));
+
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new JSInjectionOperation("1+1", "Engine", "eval"), "api-js"), securityMetaData));
+        Assert.assertFalse(limiter.tryAcquire(withApiId(new JSInjectionOperation("1+1", "Engine", "eval"), "api-js"), securityMetaData));
+    }
+
+    @Test
+    public void testNoPayloadEqualityNotSuppressed() {
+        EventRateLimiter limiter = new EventRateLimiter(true, 1000, 1000, 60_000);
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new FileOperation("/tmp/a", "File", "exists", false), "api-file"), securityMetaData));
+        Assert.assertTrue(limiter.tryAcquire(withApiId(new FileOperation("/tmp/a", "File", "exists", false), "api-file"), securityMetaData));
+    }
+
+    @Test
+    public void testAttacksExempt() {
+        EventRateLimiter limiter = new EventRateLimiter(true, 1, 1, 60_000);
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+        Assert.assertTrue(limiter.tryAcquire(sql("select 1"), securityMetaData));
+        Assert.assertFalse(limiter.tryAcquire(sql("select 1"), securityMetaData));
+
+        SecurityMetaData rciMetaData = new SecurityMetaData();
+        rciMetaData.getMetaData().setTriggerViaRCI(true);
+        SecurityMetaData blockedMetaData = new SecurityMetaData();
+        blockedMetaData.getMetaData().setApiBlocked(true);
+        SecurityMetaData xxeMetaData = new SecurityMetaData();
+        xxeMetaData.getMetaData().setTriggerViaXXE(true);
+        for (int i = 0; i < 5; i++) {
+            Assert.assertTrue(limiter.tryAcquire(sql("select 1"), rciMetaData));
+            Assert.assertTrue(limiter.tryAcquire(sql("select 1"), blockedMetaData));
+            Assert.assertTrue(limiter.tryAcquire(sql("select 1"), xxeMetaData));
+            Assert.assertTrue(limiter.tryAcquire(withApiId(new RXSSOperation(new HttpRequest(), new HttpResponse(), "Servlet", "service"), "api-rxss"), securityMetaData));
+        }
+    }
+}
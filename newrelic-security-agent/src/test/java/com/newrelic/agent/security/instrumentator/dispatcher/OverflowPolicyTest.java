@@ -0,0 +1,22 @@
+package com.newrelic.agent.security.instrumentator.dispatcher;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class OverflowPolicyTest {
+
+    @Test
+    public void testForName() {
+        Assert.assertTrue(OverflowPolicy.forName("drop_newest", 50) instanceof OverflowPolicy.DropNewest);
+        Assert.assertTrue(OverflowPolicy.forName("DROP_OLDEST", 50) instanceof OverflowPolicy.DropOldest);
+        Assert.assertTrue(OverflowPolicy.forName("drop_lowest_priority", 50) instanceof OverflowPolicy.DropLowestPriority);
+        Assert.assertTrue(OverflowPolicy.forName("block", 50) instanceof OverflowPolicy.Block);
+    }
+
+    @Test
+    public void testBlockNotPickedUnlessNamed() {
+        Assert.assertNull(OverflowPolicy.forName(null, 50));
+        Assert.assertNull(OverflowPolicy.forName("", 50));
+        Assert.assertNull(OverflowPolicy.forName("blocking", 50));
+    }
+}
@@ -0,0 +1,126 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+public class AttackConstructMatcherTest {
+
+    @Test
+    public void testMatchIgnoringCase() {
+        AttackConstructMatcher matcher = new AttackConstructMatcher(Arrays.asList("<script>alert(1)", "<img src=x>"), false);
+
+        Assert.assertFalse(matcher.match("<html><SCRIPT>Alert(1)</script>"));
+        Assert.assertEquals(Collections.singleton("<script>alert(1)"), matcher.getMatched());
+    }
+
+    @Test
+    public void testOverlappingConstructs() {
+        AttackConstructMatcher matcher = new AttackConstructMatcher(Arrays.asList("abcd", "bc", "c", "bcde", "xyz"), false);
+
+        Assert.assertFalse(matcher.match("zabcdez"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("abcd", "bc", "c", "bcde")), matcher.getMatched());
+    }
+
+    @Test
+    public void testMatchesAccumulateAcrossTexts() {
+        AttackConstructMatcher matcher = new AttackConstructMatcher(Arrays.asList("one", "two"), false);
+
+        Assert.assertFalse(matcher.match("only one here"));
+        // A construct split over two texts is not found
+        Assert.assertFalse(matcher.match("t"));
+        Assert.assertFalse(matcher.match("wo"));
+        Assert.assertTrue(matcher.match("and two"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("one", "two")), matcher.getMatched());
+        // Done, further texts are not scanned
+        Assert.assertTrue(matcher.match("anything"));
+    }
+
+    @Test
+    public void testStopAtFirstMatch() {
+        AttackConstructMatcher matcher = new AttackConstructMatcher(Arrays.asList("one", "two"), true);
+
+        Assert.assertTrue(matcher.match("one and two"));
+        Assert.assertEquals(Collections.singleton("one"), matcher.getMatched());
+    }
+
+    @Test
+    public void testEmptyConstruct() {
+        AttackConstructMatcher matcher = new AttackConstructMatcher(Arrays.asList("", "x"), false);
+
+        Assert.assertEquals(Collections.singleton(""), matcher.getMatched());
+        Assert.assertTrue(matcher.match("x"));
+        Assert.assertTrue(new AttackConstructMatcher(Collections.<String>emptyList(), false).match("x"));
+    }
+
+    @Test
+    public void testManyTransitions() {
+        List<String> constructs = new ArrayList<>();
+        for (char c = 'a'; c <= 'z'; c++) {
+            constructs.add("<" + c + ">");
+        }
+        AttackConstructMatcher matcher = new AttackConstructMatcher(constructs, false);
+
+        Assert.assertFalse(matcher.match("<A><q><Z><1>"));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("<a>", "<q>", "<z>")), matcher.getMatched());
+    }
+
+    @Test
+    public void testNonAsciiFolding() {
+        // Kelvin sign, dotted and dotless i, sharp s, final sigma
+        List<String> constructs = Arrays.asList("\u212Aelvin", "\u0130d", "\u0131d", "stra\u00DFe", "\u03C3\u03C2");
+        String text = "kELVIN ID STRASSE stra\u1E9Ee \u03A3\u03A3";
+        AttackConstructMatcher matcher = new AttackConstructMatcher(constructs, false);
+        matcher.match(text);
+
+        Assert.assertEquals(containsIgnoreCase(constructs, text), matcher.getMatched());
+    }
+
+    /**
+     * Random constructs and texts over a small alphabet, so that constructs overlap and share prefixes, checked
+     * against {@link StringUtils#containsIgnoreCase(CharSequence, CharSequence)}.
+     */
+    @Test
+    public void testSameAsContainsIgnoreCase() {
+        char[] alphabet = "abAB<>\u00E9\u00C9K\u212Ak".toCharArray();
+        Random random = new Random(42);
+        for (int round = 0; round < 500; round++) {
+            List<String> constructs = new ArrayList<>();
+            int count = 1 + random.nextInt(8);
+            for (int i = 0; i < count; i++) {
+                constructs.add(randomString(random, alphabet, 1 + random.nextInt(5)));
+            }
+            String text = randomString(random, alphabet, random.nextInt(40));
+            AttackConstructMatcher matcher = new AttackConstructMatcher(constructs, false);
+            matcher.match(text);
+
+            Assert.assertEquals(constructs + " in " + text, containsIgnoreCase(constructs, text), matcher.getMatched());
+        }
+    }
+
+    private static Set<String> containsIgnoreCase(List<String> constructs, String text) {
+        Set<String> expected = new HashSet<>();
+        for (String construct : constructs) {
+            if (StringUtils.containsIgnoreCase(text, construct)) {
+                expected.add(construct);
+            }
+        }
+        return expected;
+    }
+
+    private static String randomString(Random random, char[] alphabet, int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet[random.nextInt(alphabet.length)]);
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,71 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+
+public class CallSiteCacheTest {
+
+    private static CapturedStackTrace stackTrace(String className, String methodName, int byteCodeIndex, long fingerprint) {
+        return new CapturedStackTrace(Collections.emptyList(), new String[]{className}, new String[]{methodName},
+                new int[]{byteCodeIndex}, fingerprint);
+    }
+
+    private static CallSiteInfo callSiteInfo(String apiId) {
+        return new CallSiteInfo(new StackTraceElement[0], null, "method", apiId, Collections.<String>emptyList());
+    }
+
+    @Test
+    public void testSameFrames() {
+        CallSiteCache cache = new CallSiteCache();
+        cache.put(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "find", 12, 42L), callSiteInfo("api-1"));
+
+        CallSiteInfo cached = cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "find", 12, 42L));
+        Assert.assertNotNull(cached);
+        Assert.assertEquals("api-1", cached.getApiID());
+        Assert.assertNull(cache.get(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Dao", "find", 12, 42L)));
+    }
+
+    @Test
+    public void testFingerprintCollision() {
+        CallSiteCache cache = new CallSiteCache();
+        cache.put(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "find", 12, 42L), callSiteInfo("api-1"));
+
+        Assert.assertNull(cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "find", 13, 42L)));
+        Assert.assertNull(cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "save", 12, 42L)));
+        Assert.assertNull(cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Other", "find", 12, 42L)));
+
+        cache.put(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Other", "find", 12, 42L), callSiteInfo("api-2"));
+        Assert.assertEquals("api-1", cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Dao", "find", 12, 42L)).getApiID());
+        Assert.assertEquals("api-2", cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, stackTrace("com.example.Other", "find", 12, 42L)).getApiID());
+    }
+
+    @Test
+    public void testLineNumbersAndByteCodeIndexesDiffer() {
+        CallSiteCache cache = new CallSiteCache();
+        CapturedStackTrace walked = stackTrace("com.example.Dao", "find", 12, 42L);
+        CapturedStackTrace elements = new CapturedStackTrace(new StackTraceElement[]{
+                new StackTraceElement("com.example.Dao", "find", "Dao.java", 12)});
+        cache.put(VulnerabilityCaseType.SQL_DB_COMMAND, walked, callSiteInfo("api-1"));
+
+        Assert.assertNull(cache.get(VulnerabilityCaseType.SQL_DB_COMMAND, elements));
+    }
+
+    @Test
+    public void testEviction() {
+        CallSiteCache cache = new CallSiteCache();
+        for (int i = 0; i < 10_000; i++) {
+            cache.put(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Files", "read", i, i), callSiteInfo("api-" + i));
+        }
+        Assert.assertTrue("Cache not bounded : " + cache.size(), cache.size() <= 2048);
+
+        // New call sites are still cached once full
+        cache.put(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Files", "write", 1, 7L), callSiteInfo("api-new"));
+        Assert.assertEquals("api-new", cache.get(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Files", "write", 1, 7L)).getApiID());
+        // Least recently used call sites are evicted first
+        Assert.assertNull(cache.get(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Files", "read", 0, 0L)));
+        Assert.assertNotNull(cache.get(VulnerabilityCaseType.FILE_OPERATION, stackTrace("com.example.Files", "read", 9_999, 9_999L)));
+    }
+}
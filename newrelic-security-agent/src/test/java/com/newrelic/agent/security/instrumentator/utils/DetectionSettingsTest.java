@@ -0,0 +1,95 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.Config;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+public class DetectionSettingsTest {
+
+    @After
+    public void reset() {
+        DetectionSettings.refresh();
+    }
+
+    private static Config config(Map<String, Object> values) {
+        return new Config() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getValue(String key) {
+                return (T) values.get(key);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> T getValue(String key, T defaultValue) {
+                return values.containsKey(key) ? (T) values.get(key) : defaultValue;
+            }
+        };
+    }
+
+    @Test
+    public void testReadFromConfig() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, false);
+        values.put(INRSettingsKey.SECURITY_DETECTION_DESERIALIZATION_ENABLED, false);
+        values.put(INRSettingsKey.SECURITY_DETECTION_RXSS_TIME_BUDGET_MS, 0);
+        values.put(INRSettingsKey.SECURITY_DISPATCHER_DEFERRED_ENRICHMENT, true);
+
+        DetectionSettings settings = DetectionSettings.refresh(config(values), 1000);
+        Assert.assertFalse(settings.isRciEnabled());
+        Assert.assertTrue(settings.isRxssEnabled());
+        Assert.assertFalse(settings.isDeserializationEnabled());
+        Assert.assertEquals(1, settings.getRxssTimeBudgetMillis());
+        Assert.assertTrue(settings.isDeferredEnrichmentEnabled());
+    }
+
+    @Test
+    public void testDefaults() {
+        DetectionSettings settings = DetectionSettings.refresh(config(new HashMap<>()), 1000);
+        Assert.assertTrue(settings.isRciEnabled());
+        Assert.assertTrue(settings.isRxssEnabled());
+        Assert.assertTrue(settings.isDeserializationEnabled());
+        Assert.assertEquals(50, settings.getRxssTimeBudgetMillis());
+        Assert.assertFalse(settings.isDeferredEnrichmentEnabled());
+
+        // Unreadable config
+        settings = DetectionSettings.refresh(null, 1000);
+        Assert.assertTrue(settings.isRciEnabled());
+        Assert.assertEquals(50, settings.getRxssTimeBudgetMillis());
+    }
+
+    @Test
+    public void testCachedUntilExpired() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, false);
+        long now = System.currentTimeMillis();
+        DetectionSettings settings = DetectionSettings.refresh(config(values), now);
+
+        Assert.assertSame(settings, DetectionSettings.get(now));
+        Assert.assertSame(settings, DetectionSettings.get(now + DetectionSettings.REFRESH_INTERVAL_MILLIS - 1));
+        Assert.assertSame(settings, DetectionSettings.get());
+
+        // Re-read from the agent config once expired
+        DetectionSettings refreshed = DetectionSettings.get(now + DetectionSettings.REFRESH_INTERVAL_MILLIS);
+        Assert.assertNotSame(settings, refreshed);
+        Assert.assertTrue(refreshed.isRciEnabled());
+        Assert.assertSame(refreshed, DetectionSettings.get(now + DetectionSettings.REFRESH_INTERVAL_MILLIS + 1));
+    }
+
+    @Test
+    public void testRefresh() {
+        Map<String, Object> values = new HashMap<>();
+        values.put(INRSettingsKey.SECURITY_DETECTION_RCI_ENABLED, false);
+        DetectionSettings settings = DetectionSettings.refresh(config(values), System.currentTimeMillis());
+        Assert.assertSame(settings, DetectionSettings.get());
+
+        DetectionSettings refreshed = DetectionSettings.refresh();
+        Assert.assertNotSame(settings, refreshed);
+        Assert.assertSame(refreshed, DetectionSettings.get());
+        Assert.assertTrue(refreshed.isRciEnabled());
+    }
+}
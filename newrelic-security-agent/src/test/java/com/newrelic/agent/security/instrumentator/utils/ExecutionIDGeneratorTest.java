@@ -0,0 +1,87 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.security.schema.HttpRequest;
+import com.newrelic.api.agent.security.schema.HttpResponse;
+import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ExecutionIDGeneratorTest {
+
+    @Test
+    public void testSequenceBlocks() {
+        long first = ExecutionIDGenerator.nextSequence();
+        int left = ExecutionIDGenerator.BLOCK_SIZE - (int) (first % ExecutionIDGenerator.BLOCK_SIZE) - 1;
+        long previous = first;
+        for (int i = 0; i < left; i++) {
+            long sequence = ExecutionIDGenerator.nextSequence();
+            Assert.assertEquals(previous + 1, sequence);
+            previous = sequence;
+        }
+
+        // The next block starts on a block boundary, past the ones reserved so far
+        long next = ExecutionIDGenerator.nextSequence();
+        Assert.assertTrue(next > previous);
+        Assert.assertEquals(0, next % ExecutionIDGenerator.BLOCK_SIZE);
+    }
+
+    /**
+     * Sequences are consecutive within a block, blocks are told apart by their first sequence.
+     */
+    @Test
+    public void testUniqueAcrossThreads() throws Exception {
+        int threads = 8;
+        int blocksPerThread = 500;
+        Set<Long> blockStarts = ConcurrentHashMap.newKeySet();
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                try {
+                    start.await();
+                    for (int block = 0; block < blocksPerThread; block++) {
+                        long first = ExecutionIDGenerator.nextSequence();
+                        Assert.assertEquals(0, first % ExecutionIDGenerator.BLOCK_SIZE);
+                        Assert.assertTrue("Duplicate block " + first, blockStarts.add(first));
+                        for (int i = 1; i < ExecutionIDGenerator.BLOCK_SIZE; i++) {
+                            Assert.assertEquals(first + i, ExecutionIDGenerator.nextSequence());
+                        }
+                    }
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join(30000);
+        }
+
+        Assert.assertNull(failure.get());
+        Assert.assertEquals(threads * blocksPerThread, blockStarts.size());
+    }
+
+    @Test
+    public void testExecutionId() {
+        // Away from the end of a block, for the following IDs to be consecutive
+        while (ExecutionIDGenerator.nextSequence() % ExecutionIDGenerator.BLOCK_SIZE > ExecutionIDGenerator.BLOCK_SIZE - 4) {
+        }
+        RXSSOperation operation = new RXSSOperation(new HttpRequest(), new HttpResponse(), "className", "methodName");
+        ExecutionIDGenerator.assignExecutionId(operation);
+        long next = ExecutionIDGenerator.nextSequence();
+
+        Assert.assertEquals(ExecutionIDGenerator.toExecutionId(Thread.currentThread().getId(), next - 1),
+                operation.getExecutionId());
+        Assert.assertEquals(Thread.currentThread().getId() + ":" + (next + 1), ExecutionIDGenerator.getExecutionId());
+    }
+}
@@ -0,0 +1,147 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.apache.commons.lang3.RegExUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.unbescape.html.HtmlEscape;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.newrelic.agent.security.instrumentator.utils.CallbackUtils.*;
+
+/**
+ * Regex based XSS construct extraction replaced by {@link XSSConstructScanner}, kept as is to check the scanner
+ * against it and to benchmark both.
+ */
+public class RegexXSSConstructExtractor {
+
+    private static final String HTML_COMMENT_END = "-->";
+    private static final String HTML_COMMENT_START = "!--";
+    private static final Pattern REGEX_SPACE = Pattern.compile("\\s+");
+
+    private static final Pattern tagNameRegex = Pattern.compile("<([a-zA-Z_\\-]+[0-9]*|!--)",
+            Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern attribRegex = Pattern.compile(
+            "([^(\\/\\s<'\">)]+?)(?:\\s*)=\\s*(('|\")([\\s\\S]*?)(?:(?=(\\\\?))\\5.)*?\\3|.+?(?=\\/>|>|\\?>|\\s|<\\/|$))",
+            Pattern.MULTILINE | Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    static Set<String> getXSSConstructs(String data) {
+        List<String> construct = new ArrayList<>();
+        boolean isAttackConstruct = false;
+
+        // indicates the actual current position in the data where the processing ptr is.
+        int currPos = 0;
+
+        //
+        int startPos = 0;
+
+        //
+        int tmpCurrPos = 0;
+
+        //
+        int tmpStartPos = 0;
+
+        // iterate over the complete data string.
+        while (currPos < data.length()) {
+            Matcher matcher = tagNameRegex.matcher(data);
+            if (!matcher.find(currPos)) {
+                return new HashSet<>(construct);
+            }
+            isAttackConstruct = false;
+            String tagName = matcher.group(1);
+            if (StringUtils.isBlank(tagName)) {
+                return new HashSet<>(construct);
+            }
+            startPos = matcher.start();
+            currPos = matcher.end() - 1;
+            if (StringUtils.equals(HTML_COMMENT_START, tagName)) {
+                tmpCurrPos = StringUtils.indexOf(data, HTML_COMMENT_END, startPos);
+                if (tmpCurrPos == -1) {
+                    break;
+                } else {
+                    currPos = tmpCurrPos;
+                    continue;
+                }
+            }
+            tmpStartPos = tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, startPos);
+
+            if (tmpCurrPos == -1) {
+                tmpStartPos = startPos;
+            }
+
+            Matcher attribMatcher = attribRegex.matcher(data);
+            while (attribMatcher.find(currPos)) {
+                String attribData = attribMatcher.group().trim();
+                currPos = attribMatcher.end() - 1;
+                tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, tmpStartPos);
+
+                if ((tmpCurrPos == -1 || attribMatcher.start() < tmpCurrPos)) {
+                    tmpStartPos = tmpCurrPos = attribMatcher.end() - 1;
+                    tmpStartPos++;
+                    if (StringUtils.isBlank(attribMatcher.group(3)) && attribMatcher.end() >= tmpCurrPos) {
+                        tmpStartPos = tmpCurrPos = StringUtils.indexOf(data, ANGLE_END, attribMatcher.start());
+                        if (tmpStartPos == -1) {
+                            tmpStartPos = data.length() - 1;
+                        }
+                        attribData = StringUtils.substring(attribData, 0, tmpStartPos);
+                    }
+
+                    String key = StringUtils.substringBefore(attribData, EQUALS);
+                    String val = StringUtils.substringAfter(attribData, EQUALS);
+
+                    if (StringUtils.isNotBlank(key) && (StringUtils.startsWithIgnoreCase(key, ON1)
+                            || StringUtils.equalsIgnoreCase(key, SRC) || StringUtils.equalsIgnoreCase(key, HREF)
+                            || StringUtils.equalsIgnoreCase(key, ACTION)
+                            || StringUtils.equalsIgnoreCase(key, FORMACTION)
+                            || StringUtils.equalsIgnoreCase(key, SRCDOC) || StringUtils.equalsIgnoreCase(key, DATA)
+                            || StringUtils.containsIgnoreCase(
+                            RegExUtils.removeAll(HtmlEscape.unescapeHtml(val), REGEX_SPACE), JAVASCRIPT))) {
+                        isAttackConstruct = true;
+                    }
+                } else {
+                    break;
+                }
+            }
+            if (tmpCurrPos > 0) {
+                currPos = tmpCurrPos;
+            }
+            if (data.charAt(currPos) != ANGLE_END_CHAR) {
+                int tmp = StringUtils.indexOf(data, ANGLE_END, currPos);
+
+                if (tmp != -1) {
+                    currPos = tmp;
+                } else if (!isAttackConstruct) {
+                    continue;
+                }
+            }
+            if (StringUtils.equalsIgnoreCase(tagName.trim(), SCRIPT)) {
+                int locationOfEndTag = StringUtils.indexOfIgnoreCase(data, SCRIPT_END, currPos);
+                if (locationOfEndTag != -1) {
+                    String body = StringUtils.substring(data, currPos + 1, locationOfEndTag);
+                    if (StringUtils.isNotBlank(body)) {
+                        construct.add(StringUtils.substring(data, startPos, currPos + 1) + body);
+
+                        continue;
+                    }
+                } else {
+                    String body = StringUtils.substring(data, currPos + 1);
+                    int tagEnd = StringUtils.indexOf(body, ANGLE_END);
+                    if (StringUtils.isNotBlank(body) && tagEnd != -1) {
+                        body = StringUtils.substring(body, tagEnd);
+                        construct.add(StringUtils.substring(data, startPos, currPos + 1) + body);
+                        break;
+                    }
+                }
+            }
+
+            if (isAttackConstruct) {
+                construct.add(StringUtils.substring(data, startPos, currPos + 1));
+            }
+        }
+        return new HashSet<>(construct);
+    }
+}
@@ -0,0 +1,100 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+public class StackTraceUtilsTest {
+
+    private static StackTraceElement frame(String className, String methodName) {
+        return new StackTraceElement(className, methodName, className.substring(className.lastIndexOf('.') + 1) + ".java", 10);
+    }
+
+    /**
+     * Service trace captured by the Jetty 9 instrumentation, from within the agent.
+     */
+    private static StackTraceElement[] jettyServiceTrace() {
+        return new StackTraceElement[]{
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("com.nr.instrumentation.security.jetty9.HttpServletHelper", "preprocessSecurityHook"),
+                frame("org.eclipse.jetty.server.Server", "handle"),
+                frame("org.eclipse.jetty.server.HttpChannel", "handle"),
+                frame("org.eclipse.jetty.util.thread.QueuedThreadPool$Runner", "run"),
+                frame("java.lang.Thread", "run")
+        };
+    }
+
+    @Test
+    public void testTrimmedToServiceBoundary() {
+        StackTraceElement[] serviceTrace = jettyServiceTrace();
+        StackTraceElement[] stackTrace = new StackTraceElement[]{
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("com.newrelic.api.agent.security.Agent", "registerOperation"),
+                frame("com.nr.instrumentation.security.javaio.File_Instrumentation", "<init>"),
+                frame("java.io.File", "<init>"),
+                frame("com.example.UserController", "upload"),
+                frame("org.eclipse.jetty.server.Server", "handle"),
+                frame("org.eclipse.jetty.server.HttpChannel", "handle"),
+                frame("org.eclipse.jetty.util.thread.QueuedThreadPool$Runner", "run"),
+                frame("java.lang.Thread", "run")
+        };
+
+        StackTraceElement[] trimmed = StackTraceUtils.trimToRequiredStackTrace(stackTrace, serviceTrace.length);
+        Assert.assertArrayEquals(Arrays.copyOfRange(stackTrace, 3, 6), trimmed);
+        Assert.assertEquals(stackTrace[4], StackTraceUtils.getUserClassElement(trimmed));
+        Assert.assertEquals(stackTrace[4], StackTraceUtils.getRequiredUserClassElement(stackTrace, serviceTrace.length));
+    }
+
+    @Test
+    public void testServiceTraceCapturedInAgent() {
+        StackTraceElement[] serviceTrace = jettyServiceTrace();
+
+        StackTraceElement[] trimmed = StackTraceUtils.trimToRequiredStackTrace(serviceTrace, serviceTrace.length);
+        Assert.assertArrayEquals(new StackTraceElement[]{serviceTrace[2]}, trimmed);
+        Assert.assertEquals(serviceTrace[2], StackTraceUtils.getUserClassElement(trimmed));
+        // Taken before the agent frames are dropped
+        Assert.assertEquals(serviceTrace[1], StackTraceUtils.getRequiredUserClassElement(serviceTrace, serviceTrace.length));
+    }
+
+    @Test
+    public void testNoFrameLeft() {
+        StackTraceElement[] serviceTrace = new StackTraceElement[]{
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("com.nr.instrumentation.security.jetty9.HttpServletHelper", "preprocessSecurityHook"),
+                frame("com.nr.instrumentation.security.jetty9.Server_Instrumentation", "handle")
+        };
+
+        StackTraceElement[] trimmed = StackTraceUtils.trimToRequiredStackTrace(serviceTrace, serviceTrace.length);
+        Assert.assertEquals(0, trimmed.length);
+        Assert.assertNull(StackTraceUtils.getUserClassElement(trimmed));
+        Assert.assertEquals(serviceTrace[1], StackTraceUtils.getRequiredUserClassElement(serviceTrace, serviceTrace.length));
+        Assert.assertNull(StackTraceUtils.getRequiredUserClassElement(new StackTraceElement[0], 0));
+    }
+
+    private static void assertSameAsThreadStackTrace(int serviceTraceLength) {
+        // Both taken on the same line, for the same line number of this frame
+        assertSame(StackTraceUtils.captureRequiredStackTrace(serviceTraceLength), Thread.currentThread().getStackTrace(),
+                serviceTraceLength);
+    }
+
+    private static void assertSame(CapturedStackTrace captured, StackTraceElement[] stackTrace, int serviceTraceLength) {
+        Assert.assertArrayEquals(StackTraceUtils.trimToRequiredStackTrace(stackTrace, serviceTraceLength),
+                captured.getStackTrace());
+    }
+
+    /**
+     * The frames walked by {@code StackWalker} on Java 9+, reflection frames included, are the frames of
+     * {@link Thread#getStackTrace()}.
+     */
+    @Test
+    public void testSameAsThreadStackTrace() throws Exception {
+        int depth = Thread.currentThread().getStackTrace().length;
+        for (int serviceTraceLength = 1; serviceTraceLength < depth + 2; serviceTraceLength++) {
+            assertSameAsThreadStackTrace(serviceTraceLength);
+        }
+        Method method = StackTraceUtilsTest.class.getDeclaredMethod("assertSameAsThreadStackTrace", int.class);
+        method.invoke(null, 4);
+    }
+}
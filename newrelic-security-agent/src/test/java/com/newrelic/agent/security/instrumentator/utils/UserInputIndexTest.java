@@ -0,0 +1,81 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import com.newrelic.api.agent.security.instrumentation.helpers.ServletHelper;
+import com.newrelic.api.agent.security.schema.HttpRequest;
+import com.newrelic.api.agent.security.schema.UserInputIndex;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Set;
+
+public class UserInputIndexTest {
+
+    private static HttpRequest request() {
+        HttpRequest request = new HttpRequest();
+        request.setMethod("POST");
+        request.setUrl("/search?q=%3Cb%3E");
+        request.getHeaders().put("referer", "%3Cimg%20src%3Dx%3E");
+        request.getHeaders().put("accept", "*/*");
+        request.getHeaders().put(ServletHelper.CSEC_IAST_FUZZ_REQUEST_ID, "<fuzz>");
+        request.getParameterMap().put("name", new String[]{"<i>john</i>", "doe"});
+        return request;
+    }
+
+    @Test
+    public void testMarkupInputs() {
+        HttpRequest request = request();
+        request.setContentType("application/json");
+        request.captureBody("{\"q\":\"\\u003cscript\\u003e\"}");
+
+        Set<String> inputs = CallbackUtils.getUserInputIndex(request).getMarkupInputs();
+        Assert.assertTrue(inputs.contains("<img src=x>"));
+        Assert.assertTrue(inputs.contains("/search?q=<b>"));
+        Assert.assertTrue(inputs.contains("<i>john</i>"));
+        Assert.assertTrue(inputs.contains("{\"q\":\"\\u003cscript\\u003e\"}"));
+        Assert.assertTrue(inputs.contains("{\"q\":\"<script>\"}"));
+        Assert.assertFalse(inputs.contains("*/*"));
+        Assert.assertFalse(inputs.contains("doe"));
+        Assert.assertFalse(inputs.contains("<fuzz>"));
+    }
+
+    @Test
+    public void testFormBodyDecodedTwice() {
+        HttpRequest request = request();
+        request.setContentType("application/x-www-form-urlencoded");
+        request.captureBody("q=%253Cb%253E");
+
+        Set<String> inputs = CallbackUtils.getUserInputIndex(request).getMarkupInputs();
+        Assert.assertTrue(inputs.contains("q=%3Cb%3E"));
+        Assert.assertTrue(inputs.contains("q=<b>"));
+    }
+
+    @Test
+    public void testCachedOnSnapshotOnly() {
+        HttpRequest request = request();
+        UserInputIndex index = CallbackUtils.getUserInputIndex(request);
+        Assert.assertNull(request.userInputIndex());
+        Assert.assertNotSame(index, CallbackUtils.getUserInputIndex(request));
+
+        HttpRequest snapshot = request.snapshot();
+        UserInputIndex snapshotIndex = CallbackUtils.getUserInputIndex(snapshot);
+        Assert.assertSame(snapshotIndex, snapshot.userInputIndex());
+        Assert.assertSame(snapshotIndex, CallbackUtils.getUserInputIndex(request.snapshot()));
+    }
+
+    @Test
+    public void testRebuiltOnceModified() {
+        HttpRequest request = request();
+        UserInputIndex index = CallbackUtils.getUserInputIndex(request.snapshot());
+        request.getParameterMap().put("name", new String[]{"<u>jane</u>"});
+
+        UserInputIndex rebuilt = CallbackUtils.getUserInputIndex(request.snapshot());
+        Assert.assertNotSame(index, rebuilt);
+        Assert.assertTrue(rebuilt.getMarkupInputs().contains("<u>jane</u>"));
+        Assert.assertFalse(rebuilt.getMarkupInputs().contains("<i>john</i>"));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testImmutable() {
+        CallbackUtils.getUserInputIndex(request()).getMarkupInputs().add("<x>");
+    }
+}
@@ -0,0 +1,126 @@
+package com.newrelic.agent.security.instrumentator.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+public class XSSConstructScannerTest {
+
+    private static final long NO_DEADLINE = Long.MAX_VALUE / 2;
+
+    private static final List<String> CORPUS = Arrays.asList(
+            "",
+            "plain text without markup",
+            "a < b and c > d",
+            "<b>bold</b>",
+            "<img src=x onerror=alert(1)>",
+            "<IMG SRC=\"javascript:alert('XSS');\">",
+            "<img src=\"x\" onerror=\"alert(1)\"/>",
+            "<a href='http://example.com'>link</a>",
+            "<a title=\"javascript:alert(1)\">x</a>",
+            "<a title=\"java&#115;cript:alert(1)\">x</a>",
+            "<a title=\"jav\tascript:alert(1)\">x</a>",
+            "<a title=\"safe\">x</a>",
+            "<svg onload=alert(1)>",
+            "<body onload=alert(1)>",
+            "<iframe srcdoc=\"<script>alert(1)</script>\"></iframe>",
+            "<form action=\"/x\"><button formaction=javascript:alert(1)>go</button></form>",
+            "<object data=\"x.swf\"></object>",
+            "<script>alert(1)</script>",
+            "<SCRIPT>alert(1)</SCRIPT>",
+            "<script src=//evil.example/x.js></script>",
+            "<script>   </script>",
+            "<script>alert(1)",
+            "<script>alert(1)<b>",
+            "<script type=\"text/javascript\">var a = 1;</script><script>alert(2)</script>",
+            "<!-- <img src=x onerror=alert(1)> -->",
+            "<!-- unterminated comment <img src=x onerror=alert(1)>",
+            "<div><p class=\"a\">text</p><img src=x onerror=alert(1)></div>",
+            "<input value='x' onfocus='alert(1)' autofocus>",
+            "<h1>title</h1><h2 onclick=\"alert(1)\">sub</h2>",
+            "<a href=x>one</a><a href=y>two</a>",
+            "name=<img src=x onerror=alert(1)>&other=value",
+            "{\"q\":\"<img src=x onerror=alert(1)>\"}",
+            "<details open ontoggle=alert(1)>",
+            "<img src=x onerror=alert(1)",
+            "<a href=\"unterminated>text"
+    );
+
+    private static Set<String> scan(String data) {
+        return XSSConstructScanner.scan(data, NO_DEADLINE);
+    }
+
+    @Test
+    public void testSameConstructsAsRegex() {
+        for (String data : CORPUS) {
+            Assert.assertEquals(data, RegexXSSConstructExtractor.getXSSConstructs(data), scan(data));
+        }
+    }
+
+    @Test
+    public void testConstructs() {
+        Assert.assertEquals(Collections.singleton("<img src=x onerror=alert(1)>"), scan("q=<img src=x onerror=alert(1)>"));
+        Assert.assertEquals(Collections.singleton("<script>alert(1)"), scan("<script>alert(1)</script>"));
+        Assert.assertTrue(scan("<b>bold</b><!-- <img src=x> -->").isEmpty());
+    }
+
+    /**
+     * Malformed input the scanner deliberately reads differently from the regex.
+     */
+    @Test
+    public void testKnownDifferences() {
+        // Whitespace around '=' does not hide the attribute name
+        Assert.assertTrue(RegexXSSConstructExtractor.getXSSConstructs("<img src = x>").isEmpty());
+        Assert.assertEquals(Collections.singleton("<img src = x>"), scan("<img src = x>"));
+        // An unquoted '<' ends the current tag, the nested tag is reported
+        Assert.assertEquals(Collections.singleton("<a<img src=x onerror=alert(1)>"),
+                RegexXSSConstructExtractor.getXSSConstructs("<a<img src=x onerror=alert(1)>"));
+        Assert.assertTrue(scan("<a<img src=x onerror=alert(1)>").contains("<img src=x onerror=alert(1)>"));
+    }
+
+    @Test
+    public void testManyUnclosedScriptTags() {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            data.append("<script>x");
+        }
+        Set<String> constructs = scan(data.toString());
+        Assert.assertEquals(1, constructs.size());
+
+        data.setLength(0);
+        for (int i = 0; i < 20_000; i++) {
+            data.append("<script src=x ");
+        }
+        long start = System.nanoTime();
+        constructs = scan(data.toString());
+        Assert.assertFalse(constructs.isEmpty());
+        Assert.assertTrue("Scan took " + (System.nanoTime() - start) / 1_000_000 + " ms",
+                System.nanoTime() - start < 2_000_000_000L);
+    }
+
+    @Test
+    public void testScriptEndTagReused() {
+        StringBuilder data = new StringBuilder();
+        for (int i = 0; i < 1_000; i++) {
+            data.append("<script> </script>");
+        }
+        data.append("<script>alert(1)</script>");
+
+        Assert.assertEquals(new HashSet<>(Collections.singletonList("<script>alert(1)")), scan(data.toString()));
+        Assert.assertEquals(RegexXSSConstructExtractor.getXSSConstructs(data.toString()), scan(data.toString()));
+    }
+
+    @Test
+    public void testDeadlineReturnsPartialResult() {
+        StringBuilder data = new StringBuilder("<img src=x onerror=alert(1)>");
+        for (int i = 0; i < 10_000; i++) {
+            data.append("<b>");
+        }
+        Assert.assertTrue(XSSConstructScanner.scan(data.toString(), System.nanoTime()).contains("<img src=x onerror=alert(1)>"));
+    }
+}
@@ -0,0 +1,253 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RingBufferTest {
+
+    static class Event {
+        private int value = -1;
+    }
+
+    /**
+     * Records the events handled, moving them out as the dispatcher pool does.
+     */
+    static class RecordingHandler implements RingBuffer.EventHandler<Event> {
+
+        final List<Integer> handled = new ArrayList<>();
+
+        final List<Integer> failed = new ArrayList<>();
+
+        @Override
+        public void moveOut(Event slot, Event holder) {
+            holder.value = slot.value;
+            slot.value = -1;
+        }
+
+        @Override
+        public void onEvent(Event event) throws Exception {
+            handled.add(event.value);
+        }
+
+        @Override
+        public void onException(Event event, Throwable throwable) {
+            failed.add(event.value);
+        }
+    }
+
+    private static RingBuffer<Event> ringBuffer(int capacity) {
+        return new RingBuffer<>(capacity, Event::new, WaitStrategy.forName(WaitStrategy.YIELDING));
+    }
+
+    private static Event[] holders(int count) {
+        Event[] holders = new Event[count];
+        for (int i = 0; i < count; i++) {
+            holders[i] = new Event();
+        }
+        return holders;
+    }
+
+    private static boolean offer(RingBuffer<Event> ringBuffer, int value) {
+        long sequence = ringBuffer.tryClaim();
+        if (sequence < 0) {
+            return false;
+        }
+        ringBuffer.get(sequence).value = value;
+        ringBuffer.publish(sequence);
+        return true;
+    }
+
+    @Test
+    public void testCapacityRoundedUp() {
+        Assert.assertEquals(8, ringBuffer(5).capacity());
+        Assert.assertEquals(8, ringBuffer(8).capacity());
+        Assert.assertEquals(2, ringBuffer(0).capacity());
+    }
+
+    @Test
+    public void testDrainInOrder() {
+        RingBuffer<Event> ringBuffer = ringBuffer(8);
+        RecordingHandler handler = new RecordingHandler();
+        for (int i = 0; i < 6; i++) {
+            Assert.assertTrue(offer(ringBuffer, i));
+        }
+        Assert.assertEquals(6, ringBuffer.size());
+
+        Assert.assertEquals(4, ringBuffer.drain(handler, holders(4)));
+        Assert.assertEquals(2, ringBuffer.drain(handler, holders(4)));
+        Assert.assertEquals(0, ringBuffer.drain(handler, holders(4)));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3, 4, 5), handler.handled);
+        Assert.assertFalse(ringBuffer.hasPublished());
+    }
+
+    @Test
+    public void testFullBuffer() {
+        RingBuffer<Event> ringBuffer = ringBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(offer(ringBuffer, i));
+        }
+        Assert.assertEquals(-1, ringBuffer.tryClaim());
+        Assert.assertEquals(-1, ringBuffer.claim(1, TimeUnit.MILLISECONDS));
+
+        ringBuffer.drain(new RecordingHandler(), holders(1));
+        Assert.assertTrue(offer(ringBuffer, 4));
+    }
+
+    @Test
+    public void testUnpublishedSlotStopsDrain() {
+        RingBuffer<Event> ringBuffer = ringBuffer(4);
+        RecordingHandler handler = new RecordingHandler();
+        long claimed = ringBuffer.tryClaim();
+        Assert.assertTrue(offer(ringBuffer, 1));
+
+        Assert.assertEquals(0, ringBuffer.drain(handler, holders(4)));
+        ringBuffer.get(claimed).value = 0;
+        ringBuffer.publish(claimed);
+        Assert.assertEquals(2, ringBuffer.drain(handler, holders(4)));
+        Assert.assertEquals(Arrays.asList(0, 1), handler.handled);
+    }
+
+    @Test
+    public void testSlotsFreedBeforeEventsHandled() {
+        final RingBuffer<Event> ringBuffer = ringBuffer(2);
+        offer(ringBuffer, 0);
+        offer(ringBuffer, 1);
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void onEvent(Event event) throws Exception {
+                // Both slots of the batch are free while the first event is handled
+                if (handled.isEmpty()) {
+                    Assert.assertTrue(offer(ringBuffer, 2));
+                    Assert.assertTrue(offer(ringBuffer, 3));
+                    Assert.assertEquals(-1, ringBuffer.tryClaim());
+                }
+                super.onEvent(event);
+            }
+        };
+
+        Assert.assertEquals(2, ringBuffer.drain(handler, holders(2)));
+        Assert.assertTrue(handler.failed.isEmpty());
+        Assert.assertEquals(Arrays.asList(0, 1), handler.handled);
+        Assert.assertEquals(2, ringBuffer.drain(handler, holders(2)));
+        Assert.assertEquals(Arrays.asList(0, 1, 2, 3), handler.handled);
+    }
+
+    @Test
+    public void testFailures() {
+        RingBuffer<Event> ringBuffer = ringBuffer(4);
+        RecordingHandler handler = new RecordingHandler() {
+            @Override
+            public void moveOut(Event slot, Event holder) {
+                super.moveOut(slot, holder);
+                if (holder.value == 1) {
+                    throw new IllegalStateException("move");
+                }
+            }
+
+            @Override
+            public void onEvent(Event event) throws Exception {
+                if (event.value == 2) {
+                    throw new Exception("handle");
+                }
+                super.onEvent(event);
+            }
+        };
+        for (int i = 0; i < 4; i++) {
+            offer(ringBuffer, i);
+        }
+
+        Assert.assertEquals(4, ringBuffer.drain(handler, holders(4)));
+        Assert.assertEquals(Arrays.asList(0, 3), handler.handled);
+        Assert.assertEquals(Arrays.asList(1, 2), handler.failed);
+        // All slots were freed despite the failures
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(offer(ringBuffer, i));
+        }
+    }
+
+    @Test
+    public void testReplace() {
+        RingBuffer<Event> ringBuffer = ringBuffer(4);
+        RecordingHandler handler = new RecordingHandler();
+        for (int i = 0; i < 3; i++) {
+            offer(ringBuffer, i);
+        }
+
+        Assert.assertTrue(ringBuffer.replace(event -> event.value % 2 == 1, event -> event.value = 10));
+        Assert.assertFalse(ringBuffer.replace(event -> event.value == 7, event -> event.value = 11));
+        ringBuffer.drain(handler, holders(4));
+        Assert.assertEquals(Arrays.asList(0, 10, 2), handler.handled);
+        Assert.assertFalse(ringBuffer.replace(event -> true, event -> event.value = 12));
+    }
+
+    @Test
+    public void testConcurrentProducersAndConsumers() throws InterruptedException {
+        final RingBuffer<Event> ringBuffer = ringBuffer(64);
+        final int producers = 8;
+        final int perProducer = 20_000;
+        final ConcurrentHashMap<Integer, Boolean> seen = new ConcurrentHashMap<>();
+        final AtomicInteger duplicates = new AtomicInteger();
+        final AtomicInteger handledCount = new AtomicInteger();
+        final RingBuffer.EventHandler<Event> handler = new RingBuffer.EventHandler<Event>() {
+            @Override
+            public void moveOut(Event slot, Event holder) {
+                holder.value = slot.value;
+            }
+
+            @Override
+            public void onEvent(Event event) {
+                if (seen.put(event.value, Boolean.TRUE) != null) {
+                    duplicates.incrementAndGet();
+                }
+                handledCount.incrementAndGet();
+            }
+
+            @Override
+            public void onException(Event event, Throwable throwable) {
+            }
+        };
+
+        final CountDownLatch producersDone = new CountDownLatch(producers);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            final int base = p * perProducer;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    long sequence = ringBuffer.claim(10, TimeUnit.SECONDS);
+                    ringBuffer.get(sequence).value = base + i;
+                    ringBuffer.publish(sequence);
+                }
+                producersDone.countDown();
+            }));
+        }
+        for (int c = 0; c < 3; c++) {
+            threads.add(new Thread(() -> {
+                Event[] holders = holders(4);
+                while (handledCount.get() < producers * perProducer) {
+                    if (ringBuffer.drain(handler, holders) == 0) {
+                        Thread.yield();
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+
+        Assert.assertEquals(0, producersDone.getCount());
+        Assert.assertEquals(0, duplicates.get());
+        Assert.assertEquals(producers * perProducer, seen.size());
+        Assert.assertEquals(0, ringBuffer.size());
+    }
+}
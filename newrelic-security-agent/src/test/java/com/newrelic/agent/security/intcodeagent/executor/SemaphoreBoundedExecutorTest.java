@@ -0,0 +1,231 @@
+package com.newrelic.agent.security.intcodeagent.executor;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+public class SemaphoreBoundedExecutorTest {
+
+    private final List<Runnable> rejected = new CopyOnWriteArrayList<>();
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private SemaphoreBoundedExecutor executor;
+
+    @After
+    public void stop() throws Exception {
+        release.countDown();
+        if (executor != null) {
+            executor.shutdownNow();
+            Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    private SemaphoreBoundedExecutor executor(int maxConcurrency, int maxQueued) {
+        return executor(Thread::new, maxConcurrency, maxQueued);
+    }
+
+    private SemaphoreBoundedExecutor executor(ThreadFactory threadFactory, int maxConcurrency, int maxQueued) {
+        executor = new SemaphoreBoundedExecutor(threadFactory, maxConcurrency, maxQueued, rejected::add);
+        return executor;
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.getAsBoolean()) {
+            Assert.assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * Task blocking until released, counting the tasks running at once.
+     */
+    private Runnable blocking(AtomicInteger running, AtomicInteger maxRunning, AtomicInteger done) {
+        return () -> {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+                done.incrementAndGet();
+            }
+        };
+    }
+
+    @Test
+    public void testConcurrencyBoundedByPermits() throws Exception {
+        SemaphoreBoundedExecutor executor = executor(2, 10);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        for (int i = 0; i < 6; i++) {
+            executor.execute(blocking(running, maxRunning, done));
+        }
+        waitFor(() -> executor.getActiveCount() == 2 && executor.getQueueSize() == 4);
+        Thread.sleep(50);
+        Assert.assertEquals(2, running.get());
+        Assert.assertEquals(2, executor.getActiveCount());
+        Assert.assertEquals(4, executor.getQueueSize());
+        Assert.assertEquals(6, executor.getRemainingCapacity());
+
+        release.countDown();
+        waitFor(() -> done.get() == 6);
+        waitFor(() -> executor.getActiveCount() == 0);
+        Assert.assertEquals(2, maxRunning.get());
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(10, executor.getRemainingCapacity());
+        Assert.assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void testRejectedBeyondMaxQueued() throws Exception {
+        SemaphoreBoundedExecutor executor = executor(1, 2);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+
+        executor.execute(blocking(running, maxRunning, done));
+        waitFor(() -> executor.getActiveCount() == 1 && executor.getQueueSize() == 0);
+        executor.execute(blocking(running, maxRunning, done));
+        executor.execute(blocking(running, maxRunning, done));
+        Assert.assertEquals(2, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getRemainingCapacity());
+
+        Runnable extra = () -> { };
+        executor.execute(extra);
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertSame(extra, rejected.get(0));
+        Assert.assertEquals(2, executor.getQueueSize());
+
+        release.countDown();
+        waitFor(() -> done.get() == 3);
+        waitFor(() -> executor.getQueueSize() == 0 && executor.getActiveCount() == 0);
+        Assert.assertEquals(1, maxRunning.get());
+        Assert.assertEquals(2, executor.getRemainingCapacity());
+    }
+
+    @Test
+    public void testRejectedWhenThreadNotStarted() {
+        SemaphoreBoundedExecutor executor = executor(r -> {
+            throw new IllegalStateException("no thread");
+        }, 1, 2);
+
+        Runnable task = () -> { };
+        executor.execute(task);
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertSame(task, rejected.get(0));
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(2, executor.getRemainingCapacity());
+    }
+
+    @Test
+    public void testShutdownRunsQueuedTasks() throws Exception {
+        SemaphoreBoundedExecutor executor = executor(1, 5);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        AtomicInteger done = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            executor.execute(blocking(running, maxRunning, done));
+        }
+        waitFor(() -> executor.getActiveCount() == 1 && executor.getQueueSize() == 2);
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isShutdown());
+        Assert.assertFalse(executor.isTerminated());
+        Runnable late = () -> { };
+        executor.execute(late);
+        Assert.assertEquals(1, rejected.size());
+        Assert.assertSame(late, rejected.get(0));
+        Assert.assertFalse(executor.awaitTermination(50, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(3, done.get());
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getActiveCount());
+    }
+
+    @Test
+    public void testShutdownNowInterruptsTasks() throws Exception {
+        SemaphoreBoundedExecutor executor = executor(1, 5);
+        AtomicInteger interrupted = new AtomicInteger();
+        AtomicInteger waitingRan = new AtomicInteger();
+        executor.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        waitFor(() -> executor.getActiveCount() == 1);
+        for (int i = 0; i < 2; i++) {
+            executor.execute(waitingRan::incrementAndGet);
+        }
+        waitFor(() -> executor.getQueueSize() == 2);
+
+        Assert.assertTrue(executor.shutdownNow().isEmpty());
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertEquals(1, interrupted.get());
+        // The tasks waiting for a permit are dropped, unless a thread got the permit before its interruption
+        Assert.assertTrue(waitingRan.get() <= 2);
+        Assert.assertEquals(0, executor.getQueueSize());
+        Assert.assertEquals(0, executor.getActiveCount());
+        Assert.assertTrue(rejected.isEmpty());
+    }
+
+    @Test
+    public void testTerminatedWithoutTasks() throws Exception {
+        SemaphoreBoundedExecutor executor = executor(1, 1);
+        Assert.assertFalse(executor.isTerminated());
+
+        executor.shutdown();
+        Assert.assertTrue(executor.isTerminated());
+        Assert.assertTrue(executor.awaitTermination(0, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testExecuteHooks() throws Exception {
+        List<Object> calls = new CopyOnWriteArrayList<>();
+        AtomicInteger finished = new AtomicInteger();
+        RuntimeException failure = new IllegalStateException("failed");
+        executor = new SemaphoreBoundedExecutor(Thread::new, 1, 2, rejected::add) {
+            @Override
+            protected void beforeExecute(Thread t, Runnable r) {
+                calls.add(t == Thread.currentThread());
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                calls.add(String.valueOf(t));
+                finished.incrementAndGet();
+            }
+        };
+        executor.execute(() -> { });
+        waitFor(() -> finished.get() == 1);
+        executor.execute(() -> {
+            Thread.currentThread().setUncaughtExceptionHandler((t, e) -> { });
+            throw failure;
+        });
+        waitFor(() -> finished.get() == 2);
+
+        Assert.assertEquals(4, calls.size());
+        Assert.assertEquals(true, calls.get(0));
+        Assert.assertEquals("null", calls.get(1));
+        Assert.assertEquals(true, calls.get(2));
+        Assert.assertEquals(String.valueOf(failure), calls.get(3));
+    }
+}
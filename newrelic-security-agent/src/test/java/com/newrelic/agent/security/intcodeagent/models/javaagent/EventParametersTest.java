@@ -0,0 +1,157 @@
+package com.newrelic.agent.security.intcodeagent.models.javaagent;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.newrelic.agent.security.intcodeagent.websocket.JsonConverter;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Parameters serialize to the same JSON as the json-simple arrays they replaced, through Jackson as well as through
+ * {@link EventParameters#toString()}, which the K2 serializer uses.
+ */
+public class EventParametersTest {
+
+    private static final ObjectMapper MAPPER = JsonConverter.getObjectMapper();
+
+    private static final String TEXT = "a \"quoted\" \\ path/to\n\u00e9\u4e2d\ud83d\ude00 <b>";
+
+    @SuppressWarnings("unchecked")
+    private static JSONArray array(Object... values) {
+        JSONArray array = new JSONArray();
+        array.addAll(Arrays.asList(values));
+        return array;
+    }
+
+    private static void assertSameLayout(JSONArray expected, EventParameters parameters) throws Exception {
+        JsonNode expectedNode = MAPPER.readTree(expected.toJSONString());
+        // Events were serialized through Jackson, which wrote the json-simple array as a list
+        Assert.assertEquals(expectedNode, MAPPER.readTree(MAPPER.writeValueAsString(expected)));
+
+        Assert.assertEquals(expectedNode, MAPPER.readTree(MAPPER.writeValueAsString(parameters)));
+        Assert.assertEquals(expectedNode, MAPPER.readTree(parameters.toString()));
+
+        JavaAgentEventBean event = new JavaAgentEventBean();
+        event.setId("4242:1");
+        event.setParameters(parameters);
+        Assert.assertEquals(expectedNode, MAPPER.readTree(JsonConverter.toJSONObjectMapper(event)).get("parameters"));
+        Assert.assertEquals(expectedNode, MAPPER.readTree(JsonConverter.toJSONK2Impl(event)).get("parameters"));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        List<String> fileNames = Arrays.asList("/tmp/a.txt", TEXT);
+        assertSameLayout(array(fileNames.toArray()), EventParameters.of(fileNames));
+        assertSameLayout(array("SHA-256", "SUN"), EventParameters.of("SHA-256", "SUN"));
+        assertSameLayout(array("key", null), EventParameters.of("key", null));
+        assertSameLayout(array(), EventParameters.of(Collections.emptyList()));
+    }
+
+    @Test
+    public void testReflectedXss() throws Exception {
+        Set<String> constructs = new LinkedHashSet<>(Arrays.asList("<b>", "<script>alert(1)</script>"));
+        String body = "<html>" + TEXT + "</html>";
+
+        JSONArray expected = array(constructs.toArray());
+        expected.add(body);
+        assertSameLayout(expected, EventParameters.of(constructs, body));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSystemCommand() throws Exception {
+        Map<String, String> environment = new LinkedHashMap<>();
+        environment.put("PATH", "/usr/bin");
+        environment.put("VALUE", TEXT);
+
+        assertSameLayout(array("ls -l", new JSONObject(environment)), EventParameters.of("ls -l", environment));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testSqlQueries() throws Exception {
+        Map<String, String> sqlParameters = new LinkedHashMap<>();
+        sqlParameters.put("1", "jane");
+        sqlParameters.put("2", TEXT);
+
+        JSONObject first = new JSONObject();
+        first.put("query", "select * from users where name = ? and city = ?");
+        first.put("parameters", new JSONObject(sqlParameters));
+        JSONObject second = new JSONObject();
+        second.put("query", "select 1");
+
+        assertSameLayout(array(first, second), EventParameters.of(Arrays.asList(
+                new EventParameters.SQLQuery("select * from users where name = ? and city = ?", sqlParameters),
+                new EventParameters.SQLQuery("select 1", null))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testLdapQuery() throws Exception {
+        JSONObject query = new JSONObject();
+        query.put("name", "ou=people,dc=example");
+        query.put("filter", "(uid=" + TEXT + ")");
+
+        assertSameLayout(array(query), EventParameters.of(
+                new EventParameters.LDAPQuery("ou=people,dc=example", "(uid=" + TEXT + ")")));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testNoSqlPayloads() throws Exception {
+        List<String> payloads = Arrays.asList(
+                "{\"filter\":{\"age\":{\"$gt\":21},\"name\":\"jo\\u00e9 \\\"x\\\"\"},\"limit\":12345678901,\"ratio\":1.5}",
+                "[{\"$match\":{\"tags\":[true,false,null,[],{}]}}]");
+
+        JSONArray expected = new JSONArray();
+        JSONParser parser = new JSONParser();
+        for (String payload : payloads) {
+            JSONObject object = new JSONObject();
+            object.put("payload", parser.parse(payload));
+            object.put("payloadType", "find");
+            expected.add(object);
+        }
+        assertSameLayout(expected, EventParameters.of(Arrays.asList(
+                EventParameters.NoSQLPayload.of(payloads.get(0), "find"),
+                EventParameters.NoSQLPayload.ofRendered(payloads.get(1), "find"))));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testDynamoDbRequests() throws Exception {
+        Map<String, Object> key = new LinkedHashMap<>();
+        key.put("id", Collections.singletonMap("S", TEXT));
+        Map<String, Object> request = new LinkedHashMap<>();
+        request.put("tableName", "users");
+        request.put("key", key);
+        request.put("attributesToGet", Arrays.asList("name", "city"));
+
+        JSONObject expectedRequest = new JSONObject();
+        expectedRequest.put("tableName", "users");
+        expectedRequest.put("key", new JSONObject(Collections.singletonMap("id", new JSONObject(Collections.singletonMap("S", TEXT)))));
+        expectedRequest.put("attributesToGet", array("name", "city"));
+        assertSameLayout(array(expectedRequest), EventParameters.of(Collections.singletonList(request)));
+    }
+
+    @Test
+    public void testInvalidNoSqlPayloadRejected() {
+        for (String payload : Arrays.asList(null, "", "{\"a\":", "{} {}", "{\"a\":1}]")) {
+            try {
+                EventParameters.NoSQLPayload.of(payload, "find");
+                Assert.fail("Accepted " + payload);
+            } catch (java.io.IOException expected) {
+            }
+        }
+    }
+}
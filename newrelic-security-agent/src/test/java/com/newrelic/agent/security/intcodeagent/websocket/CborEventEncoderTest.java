@@ -0,0 +1,171 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.EventParameters;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.ExitEventBean;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
+import com.newrelic.api.agent.security.schema.HttpRequest;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events serialized with {@link EventEncoders#CBOR} decode to the same values as their JSON serialization.
+ */
+public class CborEventEncoderTest {
+
+    private static final String NOSQL_PAYLOAD = "{\"filter\":{\"age\":{\"$gt\":21},\"name\":\"jo\\u00e9 \\\"x\\\"\"}," +
+            "\"limit\":12345678901234,\"big\":123456789012345678901234567890,\"ratio\":1.5,\"tiny\":1.0E-300," +
+            "\"tags\":[true,false,null,[],{}]}";
+
+    @After
+    public void release() {
+        StreamingEventSerializer.forCurrentThread().release();
+    }
+
+    private static JavaAgentEventBean event() throws Exception {
+        JavaAgentEventBean event = new JavaAgentEventBean();
+        event.setPid(4242);
+        event.setApplicationUUID("8deb9d4b-c899-41d4-89b0-beae3fe3bd8f");
+        event.setStartTime(1700000000000L);
+        event.setEventGenerationTime(1700000000123L);
+        event.setSourceMethod("com.mongodb.client.internal.MongoCollectionImpl.find");
+        event.setUserAPIInfo(42, "com.example.UserController", "search");
+        event.setId("4242:1");
+        event.setCaseType("NOSQL_DB_COMMAND");
+        event.setEventCategory("MONGO");
+        event.setStacktrace(new StackTraceElement[]{
+                new StackTraceElement("com.example.UserController", "search", "UserController.java", 42),
+                new StackTraceElement("com.example.Main", "main", null, -1)
+        });
+
+        Map<String, String> sqlParameters = new LinkedHashMap<>();
+        sqlParameters.put("1", "jane");
+        sqlParameters.put("2", "\u4e2d\ud83d\ude00");
+        Map<String, Object> environment = new LinkedHashMap<>();
+        environment.put("PATH", "/usr/bin");
+        environment.put("count", 3);
+        event.setParameters(EventParameters.of(
+                "plain",
+                null,
+                environment,
+                new EventParameters.SQLQuery("select * from users where name = ? and city = ?", sqlParameters),
+                new EventParameters.LDAPQuery("ou=people,dc=example", "(uid=jane)"),
+                EventParameters.NoSQLPayload.of(NOSQL_PAYLOAD, "find"),
+                EventParameters.NoSQLPayload.ofRendered("[{\"$match\":{\"_id\":{\"$oid\":\"5f1d7a8e2c3b4a5d6e7f8091\"}}}]", "aggregate")));
+
+        HttpRequest request = new HttpRequest();
+        request.setMethod("POST");
+        request.setUrl("/users?name=jane");
+        request.setClientIP("10.0.0.1");
+        request.getHeaders().put("content-type", "application/json");
+        request.getParameterMap().put("name", new String[]{"jane", "<b>"});
+        event.setHttpRequest(request);
+        return event;
+    }
+
+    private static byte[] serialize(Object event, EventEncoder encoder) {
+        List<ByteBuffer> chunks = StreamingEventSerializer.forCurrentThread().serialize(event, encoder);
+        Assert.assertFalse(chunks.isEmpty());
+        return concat(chunks);
+    }
+
+    private static byte[] concat(List<ByteBuffer> chunks) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks) {
+            byte[] b = new byte[chunk.remaining()];
+            chunk.duplicate().get(b);
+            bytes.write(b, 0, b.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static JsonNode decodeCbor(byte[] bytes) throws Exception {
+        return EventEncoders.CBOR.getObjectMapper().readTree(bytes);
+    }
+
+    private static JsonNode json(Object event) throws Exception {
+        return JsonConverter.getObjectMapper().readTree(JsonConverter.toJSON(event));
+    }
+
+    @Test
+    public void testEventSameAsJson() throws Exception {
+        JavaAgentEventBean event = event();
+        JsonNode expected = json(event);
+
+        Assert.assertEquals(expected, decodeCbor(serialize(event, EventEncoders.CBOR)));
+        Assert.assertEquals(expected, JsonConverter.getObjectMapper().readTree(serialize(event, EventEncoders.JSON)));
+        // Again, with the envelope values cached by the pre-encoded value serializers
+        Assert.assertEquals(expected, decodeCbor(serialize(event, EventEncoders.CBOR)));
+    }
+
+    @Test
+    public void testTypedParameters() throws Exception {
+        JsonNode parameters = decodeCbor(serialize(event(), EventEncoders.CBOR)).get("parameters");
+
+        Assert.assertEquals(7, parameters.size());
+        Assert.assertTrue(parameters.get(1).isNull());
+        Assert.assertEquals(3, parameters.get(2).get("count").asInt());
+        Assert.assertEquals("\u4e2d\ud83d\ude00", parameters.get(3).get("parameters").get("2").asText());
+        Assert.assertEquals("(uid=jane)", parameters.get(4).get("filter").asText());
+
+        // NoSQL payloads are values of the event, not JSON strings
+        JsonNode payload = parameters.get(5).get(EventParameters.NoSQLPayload.PAYLOAD);
+        Assert.assertEquals(JsonConverter.getObjectMapper().readTree(NOSQL_PAYLOAD), payload);
+        Assert.assertEquals(21, payload.get("filter").get("age").get("$gt").asInt());
+        Assert.assertTrue(payload.get("limit").isLong());
+        Assert.assertEquals(new BigInteger("123456789012345678901234567890"), payload.get("big").bigIntegerValue());
+        Assert.assertEquals(1.0E-300, payload.get("tiny").doubleValue(), 0);
+        Assert.assertEquals("find", parameters.get(5).get(EventParameters.NoSQLPayload.PAYLOAD_TYPE).asText());
+        Assert.assertEquals("5f1d7a8e2c3b4a5d6e7f8091",
+                parameters.get(6).get(EventParameters.NoSQLPayload.PAYLOAD).get(0).get("$match").get("_id").get("$oid").asText());
+    }
+
+    @Test
+    public void testExitEventSameAsJson() throws Exception {
+        ExitEventBean event = new ExitEventBean("4242:1", "NOSQL_DB_COMMAND");
+
+        Assert.assertEquals(json(event), decodeCbor(serialize(event, EventEncoders.CBOR)));
+    }
+
+    @Test
+    public void testSmallerThanJson() throws Exception {
+        JavaAgentEventBean event = event();
+
+        Assert.assertTrue(serialize(event, EventEncoders.CBOR).length < serialize(event, EventEncoders.JSON).length);
+    }
+
+    @Test
+    public void testBatchSameAsJson() throws Exception {
+        List<Object> events = Arrays.asList(event(), new ExitEventBean("4242:2", "FILE_OPERATION"), event());
+        StreamingEventSerializer serializer = StreamingEventSerializer.forCurrentThread();
+        serializer.beginBatch(EventEncoders.CBOR);
+        for (Object event : events) {
+            Assert.assertTrue(serializer.appendToBatch(event));
+        }
+
+        JsonNode batch = decodeCbor(concat(serializer.finishBatch()));
+        Assert.assertEquals(events.size(), batch.size());
+        for (int i = 0; i < events.size(); i++) {
+            Assert.assertEquals(json(events.get(i)), batch.get(i));
+        }
+    }
+
+    @Test
+    public void testMalformedRenderedPayloadFailsEvent() throws Exception {
+        JavaAgentEventBean event = event();
+        event.setParameters(EventParameters.of(Collections.singletonList(
+                EventParameters.NoSQLPayload.ofRendered("{\"a\":", "find"))));
+
+        Assert.assertTrue(StreamingEventSerializer.forCurrentThread().serialize(event, EventEncoders.CBOR).isEmpty());
+    }
+}
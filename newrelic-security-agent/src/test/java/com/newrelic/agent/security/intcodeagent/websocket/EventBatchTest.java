@@ -0,0 +1,109 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+public class EventBatchTest {
+
+    @After
+    public void reset() {
+        WSUtils.getInstance().setEventEncoder(EventEncoders.JSON);
+        StreamingEventSerializer.forCurrentThread().release();
+    }
+
+    private static Map<String, Object> event(int id) {
+        return Collections.singletonMap("id", id);
+    }
+
+    private static byte[] finish() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : StreamingEventSerializer.forCurrentThread().finishBatch()) {
+            byte[] b = new byte[chunk.remaining()];
+            chunk.duplicate().get(b);
+            bytes.write(b, 0, b.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertIds(JsonNode batch, int... ids) {
+        Assert.assertTrue(batch.isArray());
+        Assert.assertEquals(ids.length, batch.size());
+        for (int i = 0; i < ids.length; i++) {
+            Assert.assertEquals(ids[i], batch.get(i).get("id").asInt());
+        }
+    }
+
+    @Test
+    public void testJsonArray() throws Exception {
+        EventBatch batch = new EventBatch();
+        Assert.assertTrue(batch.isEmpty());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertFalse(batch.add(event(i)));
+        }
+
+        Assert.assertEquals(3, batch.getEventCount());
+        byte[] bytes = finish();
+        Assert.assertEquals("[{\"id\":0},{\"id\":1},{\"id\":2}]", new String(bytes, "UTF-8"));
+        assertIds(JsonConverter.getObjectMapper().readTree(bytes), 0, 1, 2);
+    }
+
+    @Test
+    public void testFailedEventsLeftOut() throws Exception {
+        EventBatch batch = new EventBatch();
+        batch.add(new StreamingEventSerializerTest.Failing());
+        batch.add(event(0));
+        batch.add(new StreamingEventSerializerTest.Failing());
+        batch.add(event(1));
+        batch.add(new StreamingEventSerializerTest.Failing());
+
+        Assert.assertEquals(2, batch.getEventCount());
+        assertIds(JsonConverter.getObjectMapper().readTree(finish()), 0, 1);
+    }
+
+    @Test
+    public void testCborArray() throws Exception {
+        WSUtils.getInstance().setEventEncoder(EventEncoders.CBOR);
+        EventBatch batch = new EventBatch();
+        batch.add(new StreamingEventSerializerTest.Failing());
+        for (int i = 0; i < 3; i++) {
+            batch.add(event(i));
+        }
+
+        byte[] bytes = finish();
+        Assert.assertEquals((byte) 0x9f, bytes[0]);
+        Assert.assertEquals((byte) 0xff, bytes[bytes.length - 1]);
+        assertIds(EventEncoders.CBOR.getObjectMapper().readTree(bytes), 0, 1, 2);
+    }
+
+    @Test
+    public void testFullAtMaxEvents() {
+        EventBatch batch = new EventBatch();
+        for (int i = 1; i < 100; i++) {
+            Assert.assertFalse(batch.add(event(i)));
+        }
+        Assert.assertTrue(batch.add(event(100)));
+    }
+
+    @Test
+    public void testFullAtMaxBytes() throws Exception {
+        EventBatch batch = new EventBatch();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100 * 1024; i++) {
+            value.append('x');
+        }
+        Map<String, Object> event = Collections.singletonMap("value", value.toString());
+
+        // 256 KB reached with the third event
+        Assert.assertFalse(batch.add(event));
+        Assert.assertFalse(batch.add(event));
+        Assert.assertTrue(batch.add(event));
+        Assert.assertEquals(3, JsonConverter.getObjectMapper().readTree(finish()).size());
+    }
+}
@@ -0,0 +1,261 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.enums.Opcode;
+import org.java_websocket.exceptions.InvalidDataException;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.framing.DataFrame;
+import org.java_websocket.framing.Framedata;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+
+/**
+ * Handshake and messages between a client using the extension and a server using the stock
+ * {@link PerMessageDeflateExtension} of Java-WebSocket.
+ */
+public class EventDeflateExtensionTest {
+
+    private static final int THRESHOLD = 1024;
+
+    /**
+     * Number of compressed messages received by the server.
+     */
+    private final AtomicInteger compressedMessages = new AtomicInteger();
+
+    private Server server;
+
+    private Client client;
+
+    @Before
+    public void start() throws Exception {
+        EventDeflateExtension.resetStats();
+        server = new Server(new Draft_6455(new RecordingDeflateExtension(compressedMessages)));
+        server.start();
+        Assert.assertTrue(server.started.await(10, TimeUnit.SECONDS));
+    }
+
+    @After
+    public void stop() throws Exception {
+        if (client != null) {
+            client.closeBlocking();
+        }
+        server.stop(1000);
+        EventDeflateExtension.resetNegotiated();
+    }
+
+    private void connect(boolean offerNoContextTakeover) throws Exception {
+        client = new Client(URI.create("ws://127.0.0.1:" + server.getPort()),
+                new EventDeflateExtension(Deflater.DEFAULT_COMPRESSION, THRESHOLD, offerNoContextTakeover));
+        Assert.assertTrue(client.connectBlocking(10, TimeUnit.SECONDS));
+        Assert.assertEquals(true, EventDeflateExtension.getStats().get("negotiated"));
+    }
+
+    private static String event(int id) {
+        StringBuilder event = new StringBuilder("[");
+        for (int i = 0; i < 200; i++) {
+            if (i > 0) {
+                event.append(',');
+            }
+            event.append("{\"id\":").append(id).append(",\"sourceMethod\":\"java.io.File.<init>\",\"line\":").append(i).append('}');
+        }
+        return event.append(']').toString();
+    }
+
+    private String receivedText() throws InterruptedException {
+        Object message = server.received.poll(10, TimeUnit.SECONDS);
+        Assert.assertTrue(message instanceof String);
+        return (String) message;
+    }
+
+    @Test
+    public void testMessagesOverThresholdCompressed() throws Exception {
+        connect(false);
+
+        client.send(event(1));
+        Assert.assertEquals(event(1), receivedText());
+        client.send("small");
+        Assert.assertEquals("small", receivedText());
+        // The deflate context is kept from the first message
+        client.send(event(2));
+        Assert.assertEquals(event(2), receivedText());
+
+        // Frames without RSV1 bypass the extension of the server, only the large messages reach it
+        Assert.assertEquals(2, compressedMessages.get());
+        long in = (Long) EventDeflateExtension.getStats().get("bytesIn");
+        long onWire = (Long) EventDeflateExtension.getStats().get("bytesOnWire");
+        Assert.assertEquals(event(1).length() + "small".length() + event(2).length(), in);
+        Assert.assertTrue(onWire * 5 < in);
+    }
+
+    @Test
+    public void testNoContextTakeover() throws Exception {
+        connect(true);
+
+        for (int i = 0; i < 3; i++) {
+            client.send(event(i));
+            Assert.assertEquals(event(i), receivedText());
+        }
+    }
+
+    /**
+     * Fragments wrapping part of larger buffers, as the pooled chunks of {@link StreamingEventSerializer}, are
+     * compressed as one message, small as they are.
+     */
+    @Test
+    public void testFragmentedMessage() throws Exception {
+        connect(false);
+        byte[] bytes = ("#####" + event(3) + "#####").getBytes(StandardCharsets.UTF_8);
+        int half = bytes.length / 2;
+
+        ByteBuffer first = ByteBuffer.wrap(bytes, 5, half - 5).slice();
+        ByteBuffer second = ByteBuffer.wrap(bytes, half, 10);
+        ByteBuffer third = ByteBuffer.wrap(bytes, half + 10, bytes.length - half - 15);
+        client.sendFragmentedFrame(Opcode.TEXT, first, false);
+        client.sendFragmentedFrame(Opcode.TEXT, second, false);
+        client.sendFragmentedFrame(Opcode.TEXT, third, true);
+
+        Assert.assertEquals(event(3), receivedText());
+        Assert.assertEquals(1, compressedMessages.get());
+
+        client.sendFragmentedFrame(Opcode.BINARY, ByteBuffer.wrap(new byte[]{1, 2}), false);
+        client.sendFragmentedFrame(Opcode.BINARY, ByteBuffer.wrap(new byte[]{3}), true);
+        Object message = server.received.poll(10, TimeUnit.SECONDS);
+        Assert.assertTrue(message instanceof ByteBuffer);
+        Assert.assertEquals(ByteBuffer.wrap(new byte[]{1, 2, 3}), message);
+        Assert.assertEquals(2, compressedMessages.get());
+    }
+
+    @Test
+    public void testCompressedMessagesFromServer() throws Exception {
+        connect(false);
+
+        for (int i = 0; i < 2; i++) {
+            server.broadcast(event(i));
+            Assert.assertEquals(event(i), client.received.poll(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testNotNegotiatedWithoutServerSupport() throws Exception {
+        server.stop(1000);
+        server = new Server(new Draft_6455());
+        server.start();
+        Assert.assertTrue(server.started.await(10, TimeUnit.SECONDS));
+
+        client = new Client(URI.create("ws://127.0.0.1:" + server.getPort()),
+                new EventDeflateExtension(Deflater.DEFAULT_COMPRESSION, THRESHOLD, false));
+        Assert.assertTrue(client.connectBlocking(10, TimeUnit.SECONDS));
+        Assert.assertEquals(false, EventDeflateExtension.getStats().get("negotiated"));
+        client.send(event(4));
+        Assert.assertEquals(event(4), receivedText());
+    }
+
+    private static class Client extends WebSocketClient {
+
+        private final BlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+        Client(URI uri, EventDeflateExtension extension) {
+            super(uri, new Draft_6455(extension));
+        }
+
+        @Override
+        public void onOpen(ServerHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(String message) {
+            received.add(message);
+        }
+
+        @Override
+        public void onClose(int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(Exception ex) {
+        }
+    }
+
+    private static class Server extends WebSocketServer {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+        Server(Draft_6455 draft) {
+            super(new InetSocketAddress("127.0.0.1", 0), Collections.singletonList(draft));
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String message) {
+            received.add(message);
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, ByteBuffer message) {
+            received.add(message);
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+    }
+
+    /**
+     * Stock extension of the server, counting the messages whose first frame is flagged as compressed.
+     */
+    private static class RecordingDeflateExtension extends PerMessageDeflateExtension {
+
+        private final AtomicInteger compressedMessages;
+
+        RecordingDeflateExtension(AtomicInteger compressedMessages) {
+            this.compressedMessages = compressedMessages;
+        }
+
+        @Override
+        public void decodeFrame(Framedata inputFrame) throws InvalidDataException {
+            if (inputFrame instanceof DataFrame && inputFrame.getOpcode() != Opcode.CONTINUOUS && inputFrame.isRSV1()) {
+                compressedMessages.incrementAndGet();
+            }
+            super.decodeFrame(inputFrame);
+        }
+
+        @Override
+        public IExtension copyInstance() {
+            return new RecordingDeflateExtension(compressedMessages);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.newrelic.agent.security.AgentInfo;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.ExitEventBean;
+import com.newrelic.agent.security.intcodeagent.models.javaagent.JavaAgentEventBean;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class EventSendPoolTest {
+
+    /**
+     * Names of the sent events, in order.
+     */
+    private final List<String> sent = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * Holds the sender on the first event, until all events of a test are queued.
+     */
+    private final CountDownLatch gate = new CountDownLatch(1);
+
+    private final CountDownLatch gateReached = new CountDownLatch(1);
+
+    private EventSendPool pool;
+
+    @After
+    public void shutDown() {
+        gate.countDown();
+        if (pool != null) {
+            pool.shutDownThreadPoolExecutor();
+        }
+    }
+
+    private void start() throws InterruptedException {
+        pool = new EventSendPool(event -> {
+            if (gateReached.getCount() > 0) {
+                gateReached.countDown();
+                gate.await();
+                return;
+            }
+            sent.add(name(event));
+        });
+        pool.sendEvent("gate");
+        Assert.assertTrue(gateReached.await(10, TimeUnit.SECONDS));
+    }
+
+    private static String name(Object event) {
+        if (event instanceof JavaAgentEventBean) {
+            return ((JavaAgentEventBean) event).getId();
+        }
+        if (event instanceof ExitEventBean) {
+            return ((ExitEventBean) event).getExecutionId();
+        }
+        return String.valueOf(event);
+    }
+
+    private static JavaAgentEventBean event(String id, boolean iast) {
+        JavaAgentEventBean event = new JavaAgentEventBean();
+        event.setId(id);
+        event.setCaseType("FILE_OPERATION");
+        event.setIsIASTRequest(iast);
+        return event;
+    }
+
+    private void awaitSent(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sent.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(count, sent.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> laneStats(String lane) {
+        return (Map<String, Object>) pool.getLaneStats().get(lane);
+    }
+
+    /**
+     * Control, live and replay lanes send up to 8, 4 and 1 events in a row. The gate event took one of the control
+     * lane credits.
+     */
+    @Test
+    public void testWeightedRoundRobin() throws Exception {
+        start();
+        for (int i = 0; i < 10; i++) {
+            pool.sendEvent("c" + i);
+            pool.sendEvent((Object) event("l" + i, false));
+        }
+        for (int i = 0; i < 3; i++) {
+            pool.sendEvent((Object) event("r" + i, true));
+        }
+        Assert.assertEquals(23, pool.getQueueSize());
+        gate.countDown();
+
+        awaitSent(23);
+        Assert.assertEquals(Arrays.asList(
+                "c0", "c1", "c2", "c3", "c4", "c5", "c6",
+                "l0", "l1", "l2", "l3",
+                "r0",
+                "c7", "c8", "c9",
+                "l4", "l5", "l6", "l7",
+                "r1",
+                "l8", "l9",
+                "r2"), sent);
+        Assert.assertEquals(0, pool.getQueueSize());
+        Assert.assertEquals(3L, laneStats(EventSendPool.REPLAY).get("sent"));
+    }
+
+    @Test
+    public void testLanesOfEvents() throws Exception {
+        start();
+        pool.sendEvent((Object) new ExitEventBean("exit", "FILE_OPERATION"));
+        pool.sendEvent((Object) event("live", false));
+        pool.sendEvent((Object) Collections.singletonMap("control", true));
+        gate.countDown();
+
+        awaitSent(3);
+        Assert.assertEquals(Arrays.asList("{control=true}", "live", "exit"), sent);
+        Assert.assertEquals(1L, laneStats(EventSendPool.REPLAY).get("sent"));
+        Assert.assertEquals(1L, laneStats(EventSendPool.LIVE).get("sent"));
+    }
+
+    @Test
+    public void testFullLaneDrops() throws Exception {
+        if (AgentInfo.getInstance().getJaHealthCheck() == null) {
+            AgentInfo.getInstance().initialiseHC();
+        }
+        int dropCount = AgentInfo.getInstance().getJaHealthCheck().getEventDropCount();
+        start();
+        for (int i = 0; i < 1501; i++) {
+            pool.sendEvent((Object) event("l" + i, false));
+        }
+        pool.sendEvent((Object) event("r0", true));
+
+        Map<String, Object> live = laneStats(EventSendPool.LIVE);
+        Assert.assertEquals(1500, live.get("depth"));
+        Assert.assertEquals(1L, live.get("dropped"));
+        Assert.assertEquals(0L, laneStats(EventSendPool.REPLAY).get("dropped"));
+        Assert.assertEquals(1501, pool.getQueueSize());
+        Assert.assertEquals(dropCount + 1, (int) AgentInfo.getInstance().getJaHealthCheck().getEventDropCount());
+
+        gate.countDown();
+        awaitSent(1501);
+        Assert.assertFalse(sent.contains("l1500"));
+        Assert.assertTrue(sent.contains("r0"));
+    }
+
+    @Test
+    public void testShutdownDrainsLanes() throws Exception {
+        start();
+        for (int i = 0; i < 5; i++) {
+            pool.sendEvent("c" + i);
+            pool.sendEvent((Object) event("r" + i, true));
+        }
+        gate.countDown();
+        pool.shutDownThreadPoolExecutor();
+
+        Assert.assertEquals(10, sent.size());
+        Assert.assertEquals(0, pool.getQueueSize());
+        pool.sendEvent("after");
+        Assert.assertEquals(0, pool.getQueueSize());
+    }
+
+    /**
+     * A sender stuck on an event is interrupted.
+     */
+    @Test
+    public void testShutdownInterruptsSender() throws Exception {
+        start();
+        pool.sendEvent("c0");
+
+        long start = System.nanoTime();
+        pool.shutDownThreadPoolExecutor();
+        Assert.assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(2));
+        Assert.assertTrue(sent.isEmpty());
+        Assert.assertEquals(0, pool.getActiveCount());
+    }
+}
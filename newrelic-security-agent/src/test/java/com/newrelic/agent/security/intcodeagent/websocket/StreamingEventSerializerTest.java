@@ -0,0 +1,149 @@
+package com.newrelic.agent.security.intcodeagent.websocket;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+public class StreamingEventSerializerTest {
+
+    /**
+     * Chars of 1, 2, 3 and 4 bytes in UTF-8, 10 bytes in all.
+     */
+    private static final String MIXED = "a\u00e9\u4e2d\ud83d\ude00";
+
+    private final StreamingEventSerializer serializer = StreamingEventSerializer.forCurrentThread();
+
+    @After
+    public void release() {
+        serializer.release();
+    }
+
+    private static Map<String, Object> event(String value) {
+        return Collections.singletonMap("value", value);
+    }
+
+    /**
+     * A value spanning a few chunks, shifted by the given number of bytes.
+     */
+    private static String mixedValue(int shift) {
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < shift; i++) {
+            value.append('x');
+        }
+        while (value.length() < StreamingEventSerializer.CHUNK_SIZE) {
+            value.append(MIXED);
+        }
+        return value.toString();
+    }
+
+    private static byte[] concat(List<ByteBuffer> chunks) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (ByteBuffer chunk : chunks) {
+            ByteBuffer copy = chunk.duplicate();
+            byte[] b = new byte[copy.remaining()];
+            copy.get(b);
+            bytes.write(b, 0, b.length);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void assertValidUtf8(ByteBuffer chunk) {
+        try {
+            StandardCharsets.UTF_8.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPORT)
+                    .onUnmappableCharacter(CodingErrorAction.REPORT)
+                    .decode(chunk.duplicate());
+        } catch (CharacterCodingException e) {
+            Assert.fail("Chunk is not valid UTF-8: " + e);
+        }
+    }
+
+    /**
+     * Shifting the value byte by byte puts a chunk end within each byte of the multi byte chars.
+     */
+    @Test
+    public void testTextChunksCutOnCharBoundaries() throws Exception {
+        for (int shift = 0; shift < 10; shift++) {
+            String value = mixedValue(shift);
+            List<ByteBuffer> chunks = serializer.serialize(event(value), EventEncoders.JSON);
+
+            Assert.assertTrue(chunks.size() > 1);
+            for (int i = 0; i < chunks.size(); i++) {
+                assertValidUtf8(chunks.get(i));
+                if (i < chunks.size() - 1) {
+                    // At most the 3 leading bytes of a 4 byte char are moved to the next chunk
+                    Assert.assertTrue(chunks.get(i).remaining() > StreamingEventSerializer.CHUNK_SIZE - 4);
+                }
+            }
+            JsonNode node = JsonConverter.getObjectMapper().readTree(concat(chunks));
+            Assert.assertEquals("Shift " + shift, value, node.get("value").asText());
+        }
+    }
+
+    @Test
+    public void testSameValueAsJsonConverter() throws Exception {
+        Map<String, Object> event = event(mixedValue(3));
+        List<ByteBuffer> chunks = serializer.serialize(event, EventEncoders.JSON);
+
+        Assert.assertEquals(JsonConverter.getObjectMapper().readTree(JsonConverter.toJSON(event)),
+                JsonConverter.getObjectMapper().readTree(concat(chunks)));
+        Assert.assertEquals(concat(chunks).length, serializer.size());
+    }
+
+    @Test
+    public void testBinaryChunksFilled() throws Exception {
+        String value = mixedValue(1);
+        List<ByteBuffer> chunks = serializer.serialize(event(value), EventEncoders.CBOR);
+
+        Assert.assertTrue(chunks.size() > 1);
+        for (int i = 0; i < chunks.size() - 1; i++) {
+            Assert.assertEquals(StreamingEventSerializer.CHUNK_SIZE, chunks.get(i).remaining());
+        }
+        JsonNode node = EventEncoders.CBOR.getObjectMapper().readTree(concat(chunks));
+        Assert.assertEquals(value, node.get("value").asText());
+    }
+
+    @Test
+    public void testChunksReused() {
+        List<ByteBuffer> chunks = serializer.serialize(event(mixedValue(0)), EventEncoders.JSON);
+        ByteBuffer first = chunks.get(0);
+
+        chunks = serializer.serialize(event("small"), EventEncoders.JSON);
+        Assert.assertEquals(1, chunks.size());
+        Assert.assertSame(first, chunks.get(0));
+        Assert.assertEquals("{\"value\":\"small\"}", StreamingEventSerializer.toString(chunks));
+    }
+
+    @Test
+    public void testFailedEventLeavesSerializerUsable() {
+        Assert.assertTrue(serializer.serialize(new Failing(), EventEncoders.JSON).isEmpty());
+        Assert.assertEquals(0, serializer.size());
+
+        Assert.assertEquals("{\"value\":\"after\"}",
+                StreamingEventSerializer.toString(serializer.serialize(event("after"), EventEncoders.JSON)));
+    }
+
+    /**
+     * Event failing half way through its serialization.
+     */
+    static class Failing {
+
+        public String getFirst() {
+            return mixedValue(0);
+        }
+
+        public String getSecond() {
+            throw new IllegalStateException("failed");
+        }
+    }
+}
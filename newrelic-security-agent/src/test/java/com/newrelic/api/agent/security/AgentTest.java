@@ -0,0 +1,117 @@
+package com.newrelic.api.agent.security;
+
+import com.newrelic.agent.security.instrumentator.utils.CallSiteCache;
+import com.newrelic.agent.security.instrumentator.utils.CapturedStackTrace;
+import com.newrelic.api.agent.security.schema.AbstractOperation;
+import com.newrelic.api.agent.security.schema.HttpRequest;
+import com.newrelic.api.agent.security.schema.HttpResponse;
+import com.newrelic.api.agent.security.schema.SecurityMetaData;
+import com.newrelic.api.agent.security.schema.operation.FileOperation;
+import com.newrelic.api.agent.security.schema.operation.RXSSOperation;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AgentTest {
+
+    private static StackTraceElement frame(String className, String methodName) {
+        return new StackTraceElement(className, methodName, className.substring(className.lastIndexOf('.') + 1) + ".java", 10);
+    }
+
+    private static RXSSOperation rxssOperation(StackTraceElement[] serviceTrace, SecurityMetaData securityMetaData) {
+        securityMetaData.getMetaData().setServiceTrace(serviceTrace);
+        RXSSOperation operation = new RXSSOperation(new HttpRequest(), new HttpResponse(),
+                "org.eclipse.jetty.server.Server", "handle");
+        Agent.completeCapturedOperation(operation, securityMetaData, null);
+        return operation;
+    }
+
+    /**
+     * The Jetty 9 service trace is captured from within the instrumentation, a single frame is left once trimmed.
+     */
+    @Test
+    public void testRxssServiceTraceCapturedInAgent() {
+        StackTraceElement[] serviceTrace = new StackTraceElement[]{
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("com.nr.instrumentation.security.jetty9.HttpServletHelper", "preprocessSecurityHook"),
+                frame("org.eclipse.jetty.server.Server", "handle"),
+                frame("org.eclipse.jetty.server.HttpChannel", "handle"),
+                frame("java.lang.Thread", "run")
+        };
+
+        RXSSOperation operation = rxssOperation(serviceTrace, new SecurityMetaData());
+        Assert.assertArrayEquals(new StackTraceElement[]{serviceTrace[2]}, operation.getStackTrace());
+        Assert.assertEquals(serviceTrace[2].toString(), operation.getSourceMethod());
+        Assert.assertEquals(serviceTrace[1], operation.getUserClassEntity().getUserClassElement());
+        Assert.assertTrue(operation.getApiID().startsWith("REFLECTED_XSS-"));
+    }
+
+    @Test
+    public void testRxssServiceTraceWithoutUserFrame() {
+        StackTraceElement[] serviceTrace = new StackTraceElement[]{
+                frame("java.lang.Thread", "getStackTrace"),
+                frame("com.nr.instrumentation.security.jetty9.HttpServletHelper", "preprocessSecurityHook"),
+                frame("com.nr.instrumentation.security.jetty9.Server_Instrumentation", "handle")
+        };
+
+        RXSSOperation operation = rxssOperation(serviceTrace, new SecurityMetaData());
+        Assert.assertEquals(0, operation.getStackTrace().length);
+        Assert.assertEquals("", operation.getSourceMethod());
+        Assert.assertEquals(serviceTrace[1], operation.getUserClassEntity().getUserClassElement());
+        Assert.assertTrue(operation.getApiID().startsWith("REFLECTED_XSS-"));
+    }
+
+    /**
+     * Hooks the same call site inline and deferred, the deferred operation being completed on another thread with a
+     * copy of the metadata.
+     */
+    private static List<AbstractOperation> hook(SecurityMetaData securityMetaData) throws Exception {
+        List<AbstractOperation> operations = new ArrayList<>();
+        List<CapturedStackTrace> captured = new ArrayList<>();
+        for (boolean deferred : new boolean[]{false, true}) {
+            FileOperation operation = new FileOperation("/tmp/file", "java.io.File", "<init>", false);
+            // Called from a non agent frame, as from user code
+            Collections.singletonList(operation).forEach(hooked -> {
+                if (deferred) {
+                    captured.add(Agent.captureStackTrace(hooked, securityMetaData));
+                } else {
+                    Agent.enrichOperation(hooked, securityMetaData);
+                }
+            });
+            operations.add(operation);
+        }
+
+        // Processed again rather than found in the call site cache
+        CallSiteCache.getInstance().clear();
+        ExecutorService dispatcher = Executors.newSingleThreadExecutor();
+        try {
+            Assert.assertTrue(dispatcher.submit(() -> Agent.completeCapturedOperation(operations.get(1),
+                    new SecurityMetaData(securityMetaData), captured.get(0))).get());
+        } finally {
+            dispatcher.shutdown();
+        }
+        return operations;
+    }
+
+    @Test
+    public void testCapturedOperationSameAsInline() throws Exception {
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+        securityMetaData.getMetaData().setServiceTrace(Thread.currentThread().getStackTrace());
+
+        List<AbstractOperation> operations = hook(securityMetaData);
+        AbstractOperation inline = operations.get(0);
+        AbstractOperation deferred = operations.get(1);
+        Assert.assertTrue(inline.getApiID().startsWith("FILE_OPERATION-"));
+        Assert.assertEquals(inline.getApiID(), deferred.getApiID());
+        Assert.assertEquals(inline.getSourceMethod(), deferred.getSourceMethod());
+        Assert.assertTrue(inline.getSourceMethod().contains("forEach"));
+        Assert.assertArrayEquals(inline.getStackTrace(), deferred.getStackTrace());
+        Assert.assertEquals(inline.getUserClassEntity().getUserClassElement(),
+                deferred.getUserClassEntity().getUserClassElement());
+    }
+}
@@ -0,0 +1,40 @@
+package com.newrelic.api.agent.security.instrumentation.helpers;
+
+import com.newrelic.api.agent.security.NewRelicSecurity;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GenericHelperTest {
+
+    private static final int LOCK_ID = GenericHelper.getLockId("GENERIC_HELPER_TEST_LOCK-");
+
+    @Test
+    public void testReleasedWhenProcessingInactive() {
+        Assert.assertFalse(NewRelicSecurity.isHookProcessingActive());
+        // Acquired while processing was still active
+        Assert.assertTrue(ReentrancyGuard.get().acquire(LOCK_ID, 42));
+
+        GenericHelper.releaseLock(LOCK_ID, 42);
+
+        Assert.assertFalse(ReentrancyGuard.get().isAcquired(LOCK_ID, 42));
+        Assert.assertTrue(ReentrancyGuard.get().acquire(LOCK_ID, 42));
+        ReentrancyGuard.get().release(LOCK_ID, 42);
+    }
+
+    @Test
+    public void testGuardPerHashCode() {
+        ReentrancyGuard guard = ReentrancyGuard.get();
+        Assert.assertTrue(guard.acquire(LOCK_ID, 1));
+        Assert.assertFalse(guard.acquire(LOCK_ID, 1));
+        Assert.assertTrue(guard.acquire(LOCK_ID, 2));
+        Assert.assertTrue(guard.acquire(LOCK_ID, 3));
+
+        guard.release(LOCK_ID, 1);
+        Assert.assertFalse(guard.isAcquired(LOCK_ID, 1));
+        Assert.assertTrue(guard.isAcquired(LOCK_ID, 2));
+        Assert.assertTrue(guard.isAcquired(LOCK_ID, 3));
+        guard.release(LOCK_ID, 2);
+        guard.release(LOCK_ID, 3);
+        Assert.assertFalse(guard.isAcquired(LOCK_ID, 3));
+    }
+}
@@ -0,0 +1,74 @@
+package com.newrelic.api.agent.security.instrumentation.helpers;
+
+import com.newrelic.api.agent.security.schema.SecurityMetaData;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ServletHelperTest {
+
+    @After
+    public void reset() {
+        ServletHelper.setRxssEnabled(true);
+    }
+
+    private static SecurityMetaData request(String url, String responseContentType) {
+        SecurityMetaData securityMetaData = new SecurityMetaData();
+        securityMetaData.getRequest().setUrl(url);
+        securityMetaData.getRequest().setMethod("GET");
+        securityMetaData.getResponse().setResponseContentType(responseContentType);
+        return securityMetaData;
+    }
+
+    @Test
+    public void testContainsMarkup() {
+        Assert.assertTrue(ServletHelper.containsMarkup("<script>"));
+        Assert.assertTrue(ServletHelper.containsMarkup("q=%3Cscript"));
+        Assert.assertTrue(ServletHelper.containsMarkup("q=%253cscript"));
+        Assert.assertTrue(ServletHelper.containsMarkup("&LT;script"));
+        Assert.assertTrue(ServletHelper.containsMarkup("&#60;script"));
+        Assert.assertTrue(ServletHelper.containsMarkup("&#x3C;script"));
+        Assert.assertTrue(ServletHelper.containsMarkup("\\u003cscript"));
+        Assert.assertTrue(ServletHelper.containsMarkup("\\x3cscript"));
+
+        Assert.assertFalse(ServletHelper.containsMarkup(null));
+        Assert.assertFalse(ServletHelper.containsMarkup("a > b & c %20 \\n"));
+        // Escapes cut short at the end
+        Assert.assertFalse(ServletHelper.containsMarkup("q=%3"));
+        Assert.assertFalse(ServletHelper.containsMarkup("&l"));
+        Assert.assertFalse(ServletHelper.containsMarkup("\\u003"));
+    }
+
+    @Test
+    public void testCaptureRequiredForMarkupInput() {
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "text/html")));
+        Assert.assertFalse(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=b", "text/html")));
+
+        SecurityMetaData securityMetaData = request("/search", "");
+        securityMetaData.getRequest().getHeaders().put("referer", "/?q=%3Cb%3E");
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(securityMetaData));
+
+        securityMetaData = request("/search", "application/xhtml+xml");
+        securityMetaData.getRequest().getParameterMap().put("q", new String[]{"b", "&lt;b&gt;"});
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(securityMetaData));
+
+        securityMetaData = request("/search", "text/html; charset=UTF-8");
+        securityMetaData.getRequest().getBody().append("{\"q\":\"\\u003cb\\u003e\"}");
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(securityMetaData));
+    }
+
+    @Test
+    public void testCaptureNotRequiredForOtherContentTypes() {
+        Assert.assertFalse(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "application/json")));
+        Assert.assertFalse(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "image/svg")));
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "image/svg+xml")));
+        Assert.assertTrue(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "text/xml")));
+    }
+
+    @Test
+    public void testCaptureNotRequiredWhenRxssDisabled() {
+        ServletHelper.setRxssEnabled(false);
+
+        Assert.assertFalse(ServletHelper.isResponseBodyCaptureRequired(request("/search?q=<b>", "text/html")));
+    }
+}
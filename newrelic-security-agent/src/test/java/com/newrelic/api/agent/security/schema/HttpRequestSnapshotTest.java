@@ -0,0 +1,131 @@
+package com.newrelic.api.agent.security.schema;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+public class HttpRequestSnapshotTest {
+
+    private static HttpRequest request() {
+        HttpRequest request = new HttpRequest();
+        request.setMethod("GET");
+        request.setUrl("/search");
+        request.getHeaders().put("host", "localhost");
+        request.getParameterMap().put("q", new String[]{"first"});
+        return request;
+    }
+
+    @Test
+    public void testSnapshotReused() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+
+        Assert.assertSame(snapshot, request.snapshot());
+        Assert.assertNotSame(request, snapshot);
+        Assert.assertEquals("localhost", snapshot.getHeaders().get("host"));
+    }
+
+    @Test
+    public void testHeaderReplacedInPlace() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+        request.getHeaders().put("host", "example.com");
+
+        HttpRequest next = request.snapshot();
+        Assert.assertNotSame(snapshot, next);
+        Assert.assertEquals("localhost", snapshot.getHeaders().get("host"));
+        Assert.assertEquals("example.com", next.getHeaders().get("host"));
+    }
+
+    @Test
+    public void testParameterReplacedInPlace() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+        request.getParameterMap().put("q", new String[]{"second"});
+
+        Assert.assertNotSame(snapshot, request.snapshot());
+        Assert.assertEquals("second", request.snapshot().getParameterMap().get("q")[0]);
+    }
+
+    @Test
+    public void testEntryValueSetThroughView() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            header.setValue("example.com");
+        }
+
+        Assert.assertNotSame(snapshot, request.snapshot());
+        Assert.assertEquals("example.com", request.snapshot().getHeaders().get("host"));
+    }
+
+    @Test
+    public void testEntryRemovedThroughIterator() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+        Iterator<String> names = request.getHeaders().keySet().iterator();
+        names.next();
+        names.remove();
+
+        Assert.assertNotSame(snapshot, request.snapshot());
+        Assert.assertTrue(request.snapshot().getHeaders().isEmpty());
+    }
+
+    @Test
+    public void testReplacedMapWithFewerModifications() {
+        HttpRequest request = request();
+        request.getHeaders().put("accept", "*/*");
+        HttpRequest snapshot = request.snapshot();
+        Map<String, String> headers = new HashMap<>();
+        headers.put("host", "localhost");
+        request.setHeaders(headers);
+
+        Assert.assertNotSame(snapshot, request.snapshot());
+        Assert.assertNull(request.snapshot().getHeaders().get("accept"));
+    }
+
+    @Test
+    public void testPathParameterSetInPlace() {
+        HttpRequest request = request();
+        request.setPathParameterMap(new HashMap<String, String>());
+        HttpRequest snapshot = request.snapshot();
+        request.getPathParameterMap().put("id", "1");
+
+        Assert.assertNotSame(snapshot, request.snapshot());
+    }
+
+    @Test
+    public void testBodyAppended() {
+        HttpRequest request = request();
+        HttpRequest snapshot = request.snapshot();
+        request.captureBody("a=1");
+
+        HttpRequest next = request.snapshot();
+        Assert.assertNotSame(snapshot, next);
+        Assert.assertEquals("a=1", next.getBody().toString());
+    }
+
+    @Test
+    public void testResponseHeaderReplacedInPlace() {
+        HttpResponse response = new HttpResponse();
+        response.getHeaders().put("content-type", "text/plain");
+        HttpResponse snapshot = response.snapshot();
+        Assert.assertSame(snapshot, response.snapshot());
+
+        response.getHeaders().put("content-type", "text/html");
+        Assert.assertNotSame(snapshot, response.snapshot());
+        Assert.assertEquals("text/html", response.snapshot().getHeaders().get("content-type"));
+    }
+
+    @Test
+    public void testNoContextNotCached() {
+        SecurityMetaData securityMetaData = NoContextSecurityMetaData.getInstance();
+
+        Assert.assertNotSame(securityMetaData.getRequest().snapshot(), securityMetaData.getRequest().snapshot());
+        Assert.assertNotSame(securityMetaData.getResponse().snapshot(), securityMetaData.getResponse().snapshot());
+        Assert.assertTrue(securityMetaData.getRequest().snapshot().cacheUserInputIndex(null));
+    }
+}
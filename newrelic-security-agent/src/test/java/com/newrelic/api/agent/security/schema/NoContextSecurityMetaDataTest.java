@@ -0,0 +1,49 @@
+package com.newrelic.api.agent.security.schema;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NoContextSecurityMetaDataTest {
+
+    @Test
+    public void testBodiesNotShared() {
+        SecurityMetaData securityMetaData = NoContextSecurityMetaData.getInstance();
+
+        Assert.assertNotSame(securityMetaData.getRequest().getBody(), securityMetaData.getRequest().getBody());
+        Assert.assertNotSame(securityMetaData.getResponse().getResponseBody(), securityMetaData.getResponse().getResponseBody());
+    }
+
+    @Test
+    public void testCapturedBodiesDiscarded() {
+        HttpRequest request = NoContextSecurityMetaData.getInstance().getRequest();
+        request.captureBody('a');
+        request.captureBody(new char[]{'a', 'b'}, 0, 2);
+        request.captureBody("body");
+        request.captureBody(new byte[]{'a', 'b'}, 0, 2);
+        HttpResponse response = NoContextSecurityMetaData.getInstance().getResponse();
+        response.captureBody("body", 0, 4);
+        response.captureBody(new byte[]{'a', 'b'}, 0, 2);
+
+        Assert.assertEquals(0, request.getBody().length());
+        Assert.assertEquals(0, response.getResponseBody().length());
+    }
+
+    @Test
+    public void testAppendedBodyNotKept() {
+        NoContextSecurityMetaData.getInstance().getRequest().getBody().append("leaked");
+        NoContextSecurityMetaData.getInstance().getResponse().getResponseBody().append("leaked");
+
+        Assert.assertEquals(0, NoContextSecurityMetaData.getInstance().getRequest().getBody().length());
+        Assert.assertEquals(0, NoContextSecurityMetaData.getInstance().getResponse().getResponseBody().length());
+    }
+
+    @Test
+    public void testCapturedBody() {
+        HttpRequest request = new HttpRequest();
+        request.captureBody('a');
+        request.captureBody(new char[]{'x', 'b', 'c'}, 1, 2);
+        request.captureBody("de");
+
+        Assert.assertEquals("abcde", request.getBody().toString());
+    }
+}
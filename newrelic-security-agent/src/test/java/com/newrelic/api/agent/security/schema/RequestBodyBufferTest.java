@@ -0,0 +1,172 @@
+package com.newrelic.api.agent.security.schema;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class RequestBodyBufferTest {
+
+    /**
+     * Chars of 1, 2, 3 and 4 bytes in UTF-8, 10 bytes in all.
+     */
+    private static final String MIXED = "a\u00e9\u4e2d\ud83d\ude00";
+
+    @After
+    public void reset() {
+        RequestBodyBuffer.setCaptureLimit(RequestBodyBuffer.DEFAULT_CAPTURE_LIMIT);
+    }
+
+    /**
+     * A body spanning a few chunks, shifted by the given number of bytes.
+     */
+    private static String body(int shift) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < shift; i++) {
+            body.append('x');
+        }
+        while (body.length() < RequestBodyBuffer.CHUNK_SIZE * 2) {
+            body.append(MIXED);
+        }
+        return body.toString();
+    }
+
+    private static HttpRequest jsonRequest() {
+        HttpRequest request = new HttpRequest();
+        request.setContentType("application/json");
+        return request;
+    }
+
+    /**
+     * Shifting the body byte by byte puts a chunk end within each byte of the multi byte chars.
+     */
+    @Test
+    public void testCharsSplitAcrossChunks() {
+        for (int shift = 0; shift < 10; shift++) {
+            String body = body(shift);
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            RequestBodyBuffer buffer = new RequestBodyBuffer();
+            buffer.write(bytes, 0, bytes.length);
+            Assert.assertEquals(bytes.length, buffer.pending());
+
+            StringBuilder target = new StringBuilder();
+            buffer.drainTo(target, StandardCharsets.UTF_8);
+            Assert.assertEquals("Shift " + shift, body, target.toString());
+            Assert.assertEquals(0, buffer.pending());
+        }
+    }
+
+    /**
+     * An incomplete char left at the end of a drain is completed by the bytes of the next one.
+     */
+    @Test
+    public void testCharSplitAcrossDrains() {
+        byte[] bytes = MIXED.getBytes(StandardCharsets.UTF_8);
+        for (int split = 1; split < bytes.length; split++) {
+            RequestBodyBuffer buffer = new RequestBodyBuffer();
+            StringBuilder target = new StringBuilder();
+            buffer.write(bytes, 0, split);
+            buffer.drainTo(target, StandardCharsets.UTF_8);
+            for (int i = split; i < bytes.length; i++) {
+                buffer.write(bytes[i]);
+            }
+            buffer.drainTo(target, StandardCharsets.UTF_8);
+
+            Assert.assertEquals("Split " + split, MIXED, target.toString());
+        }
+    }
+
+    @Test
+    public void testDrainedMoreThanOnce() {
+        HttpRequest request = jsonRequest();
+        byte[] first = ("{\"name\":\"" + MIXED).getBytes(StandardCharsets.UTF_8);
+        request.captureBody(first, 0, first.length);
+        Assert.assertEquals("{\"name\":\"" + MIXED, request.getBody().toString());
+        Assert.assertEquals("{\"name\":\"" + MIXED, request.getBody().toString());
+
+        byte[] second = (MIXED + "\"}").getBytes(StandardCharsets.UTF_8);
+        request.captureBody(second, 0, second.length);
+        request.captureBody('\n');
+        Assert.assertEquals("{\"name\":\"" + MIXED + MIXED + "\"}\n", request.getBody().toString());
+    }
+
+    @Test
+    public void testCharsetOfContentType() {
+        byte[] bytes = MIXED.getBytes(StandardCharsets.UTF_8);
+        HttpRequest request = new HttpRequest();
+        request.setContentType("text/plain; charset=\"UTF-8\"");
+        request.captureBody(bytes, 0, bytes.length);
+        Assert.assertEquals(MIXED, request.getBody().toString());
+
+        // Each byte as the char of the same value by default
+        request = new HttpRequest();
+        request.setContentType("application/x-www-form-urlencoded");
+        request.captureBody(bytes, 0, bytes.length);
+        Assert.assertEquals(new String(bytes, StandardCharsets.ISO_8859_1), request.getBody().toString());
+    }
+
+    @Test
+    public void testCaptureLimit() {
+        RequestBodyBuffer.setCaptureLimit(RequestBodyBuffer.CHUNK_SIZE + 10);
+        byte[] bytes = new byte[RequestBodyBuffer.CHUNK_SIZE];
+        HttpRequest request = jsonRequest();
+
+        request.captureBody(bytes, 0, bytes.length);
+        request.captureBody(bytes, 0, 9);
+        request.captureBody((int) 'a');
+        Assert.assertFalse(request.isDataTruncated());
+        Assert.assertEquals(RequestBodyBuffer.CHUNK_SIZE + 10, request.getBody().length());
+
+        request.captureBody((int) 'b');
+        Assert.assertTrue(request.isDataTruncated());
+        request.captureBody(bytes, 0, bytes.length);
+        Assert.assertEquals(RequestBodyBuffer.CHUNK_SIZE + 10, request.getBody().length());
+    }
+
+    @Test
+    public void testCaptureLimitInOneWrite() {
+        RequestBodyBuffer.setCaptureLimit(10);
+        byte[] bytes = "0123456789ab".getBytes(StandardCharsets.UTF_8);
+
+        HttpRequest request = jsonRequest();
+        request.captureBody(bytes, 0, 10);
+        Assert.assertFalse(request.isDataTruncated());
+
+        request = jsonRequest();
+        request.captureBody(bytes, 0, 11);
+        Assert.assertTrue(request.isDataTruncated());
+        Assert.assertEquals("0123456789", request.getBody().toString());
+    }
+
+    @Test
+    public void testSkippedContentTypes() {
+        Assert.assertTrue(RequestBodyBuffer.isSkippedContentType("multipart/form-data"));
+        Assert.assertTrue(RequestBodyBuffer.isSkippedContentType("image/png"));
+        Assert.assertTrue(RequestBodyBuffer.isSkippedContentType("video/mp4"));
+        Assert.assertTrue(RequestBodyBuffer.isSkippedContentType("application/octet-stream"));
+        Assert.assertTrue(RequestBodyBuffer.isSkippedContentType("application/grpc+proto"));
+        Assert.assertFalse(RequestBodyBuffer.isSkippedContentType("application/json"));
+        Assert.assertFalse(RequestBodyBuffer.isSkippedContentType("text/plain"));
+        Assert.assertFalse(RequestBodyBuffer.isSkippedContentType(""));
+        Assert.assertFalse(RequestBodyBuffer.isSkippedContentType(null));
+
+        HttpRequest request = new HttpRequest();
+        request.setContentType("multipart/form-data; boundary=----x");
+        byte[] bytes = "------x".getBytes(StandardCharsets.UTF_8);
+        request.captureBody(bytes, 0, bytes.length);
+        request.captureBody((int) 'a');
+        Assert.assertEquals(0, request.getBody().length());
+        Assert.assertFalse(request.isDataTruncated());
+    }
+
+    @Test
+    public void testDiscardedOnBodyReplaced() {
+        HttpRequest request = jsonRequest();
+        byte[] bytes = "{}".getBytes(StandardCharsets.UTF_8);
+        request.captureBody(bytes, 0, bytes.length);
+        request.setBody(new StringBuilder("replaced"));
+
+        Assert.assertEquals("replaced", request.getBody().toString());
+    }
+}
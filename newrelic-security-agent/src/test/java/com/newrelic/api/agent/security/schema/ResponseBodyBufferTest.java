@@ -0,0 +1,136 @@
+package com.newrelic.api.agent.security.schema;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+public class ResponseBodyBufferTest {
+
+    /**
+     * Chars of 1, 2, 3 and 4 bytes in UTF-8, 10 bytes in all.
+     */
+    private static final String MIXED = "a\u00e9\u4e2d\ud83d\ude00";
+
+    @After
+    public void reset() {
+        ResponseBodyBuffer.setCaptureLimit(ResponseBodyBuffer.DEFAULT_CAPTURE_LIMIT);
+    }
+
+    /**
+     * A body spanning a few chunks, shifted by the given number of chars.
+     */
+    private static String body(int shift) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < shift; i++) {
+            body.append('x');
+        }
+        while (body.length() < ResponseBodyBuffer.CHUNK_SIZE * 2) {
+            body.append(MIXED);
+        }
+        return body.toString();
+    }
+
+    private static String drained(ResponseBodyBuffer buffer) {
+        StringBuilder target = new StringBuilder();
+        buffer.drainTo(target);
+        Assert.assertEquals(0, buffer.pending());
+        return target.toString();
+    }
+
+    /**
+     * Surrogate pairs split across chunks are joined again.
+     */
+    @Test
+    public void testCharsSplitAcrossChunks() {
+        for (int shift = 0; shift < MIXED.length(); shift++) {
+            String body = body(shift);
+            ResponseBodyBuffer buffer = new ResponseBodyBuffer();
+            buffer.append(body, 0, body.length());
+            Assert.assertEquals("Shift " + shift, body, drained(buffer));
+
+            buffer.append(new StringBuilder(body), 0, body.length());
+            Assert.assertEquals("Shift " + shift, body, drained(buffer));
+
+            buffer.append(body.toCharArray(), 0, body.length());
+            Assert.assertEquals("Shift " + shift, body, drained(buffer));
+        }
+    }
+
+    /**
+     * Bytes written to the output stream are kept one char per byte, multi byte chars split across chunks decode
+     * back to the same text.
+     */
+    @Test
+    public void testBytesSplitAcrossChunks() {
+        for (int shift = 0; shift < 10; shift++) {
+            String body = body(shift);
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            ResponseBodyBuffer buffer = new ResponseBodyBuffer();
+            buffer.append(bytes, 0, bytes.length);
+
+            String drained = drained(buffer);
+            Assert.assertEquals(bytes.length, drained.length());
+            Assert.assertEquals("Shift " + shift, body, new String(drained.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testDrainedMoreThanOnce() {
+        HttpResponse response = new HttpResponse();
+        response.captureBody("<html>");
+        Assert.assertEquals("<html>", response.getResponseBody().toString());
+        Assert.assertEquals("<html>", response.getResponseBody().toString());
+
+        response.captureBody('<');
+        response.captureBody(new char[]{'b', 'r', '>'}, 0, 3);
+        response.captureBody(MIXED, 1, 3);
+        response.captureBody(null);
+        Assert.assertEquals("<html><br>\u00e9\u4e2dnull", response.getResponseBody().toString());
+    }
+
+    @Test
+    public void testCaptureLimit() {
+        ResponseBodyBuffer.setCaptureLimit(ResponseBodyBuffer.CHUNK_SIZE + 10);
+        String body = body(0);
+        ResponseBodyBuffer buffer = new ResponseBodyBuffer();
+
+        buffer.append(body, 0, ResponseBodyBuffer.CHUNK_SIZE);
+        buffer.append(body.toCharArray(), 0, 9);
+        buffer.append('a');
+        Assert.assertFalse(buffer.isTruncated());
+        Assert.assertEquals(ResponseBodyBuffer.CHUNK_SIZE + 10, buffer.pending());
+
+        buffer.append('b');
+        Assert.assertTrue(buffer.isTruncated());
+        buffer.append(new byte[]{'c'}, 0, 1);
+        String drained = drained(buffer);
+        Assert.assertEquals(ResponseBodyBuffer.CHUNK_SIZE + 10, drained.length());
+        Assert.assertTrue(drained.endsWith("a"));
+    }
+
+    @Test
+    public void testCaptureLimitInOneAppend() {
+        ResponseBodyBuffer.setCaptureLimit(10);
+
+        ResponseBodyBuffer buffer = new ResponseBodyBuffer();
+        buffer.append("0123456789", 0, 10);
+        buffer.append("", 0, 0);
+        Assert.assertFalse(buffer.isTruncated());
+
+        buffer = new ResponseBodyBuffer();
+        buffer.append("0123456789ab", 0, 12);
+        Assert.assertTrue(buffer.isTruncated());
+        Assert.assertEquals("0123456789", drained(buffer));
+    }
+
+    @Test
+    public void testDiscardedOnBodyReplaced() {
+        HttpResponse response = new HttpResponse();
+        response.captureBody("<html>");
+        response.setResponseBody(new StringBuilder("replaced"));
+
+        Assert.assertEquals("replaced", response.getResponseBody().toString());
+    }
+}
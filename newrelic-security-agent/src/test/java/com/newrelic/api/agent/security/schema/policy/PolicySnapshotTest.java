@@ -0,0 +1,129 @@
+package com.newrelic.api.agent.security.schema.policy;
+
+import com.newrelic.agent.security.instrumentator.utils.AgentUtils;
+import com.newrelic.agent.security.intcodeagent.models.config.AgentPolicyParameters;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+public class PolicySnapshotTest {
+
+    @After
+    public void reset() {
+        AgentUtils.getInstance().setAgentPolicy(new AgentPolicy());
+        AgentUtils.getInstance().setAgentPolicyParameters(new AgentPolicyParameters());
+    }
+
+    private static AgentPolicy policy(boolean protectionMode, boolean ipBlocking, boolean apiBlocking) {
+        AgentPolicy policy = new AgentPolicy(new VulnerabilityScan(true, new IASTScan(true), true),
+                new ProtectionMode(protectionMode, new IpBlocking(ipBlocking, true, true),
+                        new ApiBlocking(apiBlocking, false, false, false)));
+        policy.setVersion("7");
+        return policy;
+    }
+
+    @Test
+    public void testDefault() {
+        PolicySnapshot snapshot = PolicySnapshot.getDefault();
+
+        Assert.assertFalse(snapshot.isIastScanEnabled());
+        Assert.assertFalse(snapshot.isProtectionModeEnabled());
+        Assert.assertFalse(snapshot.isIpBlockingEnabled());
+        Assert.assertFalse(snapshot.isApiBlockingEnabled());
+        Assert.assertFalse(snapshot.isAllowedApi("FILE_OPERATION-1"));
+        Assert.assertTrue(snapshot.getBlockedIps().isEmpty());
+        Assert.assertFalse(PolicySnapshot.compile(null).isIastScanEnabled());
+    }
+
+    @Test
+    public void testSwitchesCombined() {
+        PolicySnapshot snapshot = PolicySnapshot.compile(policy(true, true, true));
+        Assert.assertEquals("7", snapshot.getVersion());
+        Assert.assertTrue(snapshot.isIastScanEnabled());
+        Assert.assertTrue(snapshot.isProtectionModeEnabled());
+        Assert.assertTrue(snapshot.isIpBlockingEnabled());
+        Assert.assertTrue(snapshot.isAttackerIpBlocking());
+        Assert.assertTrue(snapshot.isIpDetectViaXFF());
+        Assert.assertTrue(snapshot.isApiBlockingEnabled());
+
+        // Nested switches are off along with protection mode
+        snapshot = PolicySnapshot.compile(policy(false, true, true));
+        Assert.assertFalse(snapshot.isIpBlockingEnabled());
+        Assert.assertFalse(snapshot.isAttackerIpBlocking());
+        Assert.assertFalse(snapshot.isIpDetectViaXFF());
+        Assert.assertFalse(snapshot.isApiBlockingEnabled());
+
+        snapshot = PolicySnapshot.compile(policy(true, false, true));
+        Assert.assertFalse(snapshot.isIpDetectViaXFF());
+        Assert.assertTrue(snapshot.isApiBlockingEnabled());
+
+        AgentPolicy policy = policy(true, true, true);
+        policy.getVulnerabilityScan().setEnabled(false);
+        Assert.assertFalse(PolicySnapshot.compile(policy).isIastScanEnabled());
+        policy.getVulnerabilityScan().setEnabled(true);
+        policy.getVulnerabilityScan().setIastScan(null);
+        Assert.assertFalse(PolicySnapshot.compile(policy).isIastScanEnabled());
+        policy.getProtectionMode().setIpBlocking(null);
+        policy.getProtectionMode().setApiBlocking(null);
+        Assert.assertFalse(PolicySnapshot.compile(policy).isIpBlockingEnabled());
+        Assert.assertFalse(PolicySnapshot.compile(policy).isApiBlockingEnabled());
+    }
+
+    @Test
+    public void testLookups() {
+        PolicySnapshot snapshot = PolicySnapshot.compile(policy(true, true, true),
+                Arrays.asList("10.0.0.1", "10.0.0.2"), Collections.singletonList("10.0.0.3"),
+                Collections.singletonList("SQL_DB_COMMAND-1"), null);
+
+        Assert.assertTrue(snapshot.isAllowedIp("10.0.0.2"));
+        Assert.assertFalse(snapshot.isAllowedIp("10.0.0.3"));
+        Assert.assertTrue(snapshot.isBlockedIp("10.0.0.3"));
+        Assert.assertFalse(snapshot.isBlockedIp("10.0.0.1"));
+        Assert.assertTrue(snapshot.isAllowedApi("SQL_DB_COMMAND-1"));
+        Assert.assertFalse(snapshot.isAllowedApi("SQL_DB_COMMAND-2"));
+        Assert.assertFalse(snapshot.isAllowedApi(null));
+        Assert.assertFalse(snapshot.isBlockedApi("SQL_DB_COMMAND-1"));
+    }
+
+    @Test
+    public void testCollectionsCopied() {
+        List<String> allowedApis = new ArrayList<>(Collections.singletonList("SQL_DB_COMMAND-1"));
+        PolicySnapshot snapshot = PolicySnapshot.compile(null, null, null, allowedApis, null);
+        allowedApis.add("SQL_DB_COMMAND-2");
+
+        Assert.assertFalse(snapshot.isAllowedApi("SQL_DB_COMMAND-2"));
+        try {
+            snapshot.getAllowedApis().add("SQL_DB_COMMAND-2");
+            Assert.fail("Snapshot sets are immutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testPublishedOnPolicyAndParametersChange() {
+        PolicySnapshot before = AgentUtils.getInstance().getPolicySnapshot();
+        AgentUtils.getInstance().setAgentPolicy(policy(true, true, true));
+        PolicySnapshot snapshot = AgentUtils.getInstance().getPolicySnapshot();
+        Assert.assertNotSame(before, snapshot);
+        Assert.assertTrue(snapshot.isApiBlockingEnabled());
+
+        AgentPolicyParameters parameters = new AgentPolicyParameters();
+        parameters.getAllowedApis().add("SQL_DB_COMMAND-1");
+        AgentUtils.getInstance().setAgentPolicyParameters(parameters);
+        Assert.assertTrue(AgentUtils.getInstance().getPolicySnapshot().isAllowedApi("SQL_DB_COMMAND-1"));
+        Assert.assertTrue(AgentUtils.getInstance().getPolicySnapshot().isApiBlockingEnabled());
+        // Snapshots already handed out are left as they are
+        Assert.assertFalse(snapshot.isAllowedApi("SQL_DB_COMMAND-1"));
+
+        // In place changes are seen once published
+        AgentUtils.getInstance().getAgentPolicy().getProtectionMode().setEnabled(false);
+        Assert.assertTrue(AgentUtils.getInstance().getPolicySnapshot().isApiBlockingEnabled());
+        AgentUtils.getInstance().publishPolicySnapshot();
+        Assert.assertFalse(AgentUtils.getInstance().getPolicySnapshot().isApiBlockingEnabled());
+    }
+}
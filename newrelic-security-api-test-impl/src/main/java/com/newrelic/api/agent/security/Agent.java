@@ -5,6 +5,7 @@ import com.newrelic.api.agent.Transaction;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
+import com.newrelic.api.agent.security.schema.policy.PolicySnapshot;
 
 import java.lang.instrument.Instrumentation;
 import java.net.URL;
@@ -82,6 +83,12 @@ public class Agent implements SecurityAgent {
         return policy;
     }
 
+    @Override
+    public PolicySnapshot getCurrentPolicySnapshot() {
+        // Compiled on each call as tests may modify the policy after setting it
+        return PolicySnapshot.compile(policy);
+    }
+
     public static void setPolicy(AgentPolicy policy) {
         instance.policy = policy;
     }
@@ -10,6 +10,7 @@ package com.newrelic.api.agent.security;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
+import com.newrelic.api.agent.security.schema.policy.PolicySnapshot;
 
 import java.lang.instrument.Instrumentation;
 import java.net.URL;
@@ -52,6 +53,11 @@ class NoOpAgent implements SecurityAgent {
         return new AgentPolicy();
     }
 
+    @Override
+    public PolicySnapshot getCurrentPolicySnapshot() {
+        return PolicySnapshot.getDefault();
+    }
+
     @Override
     public SecurityMetaData getSecurityMetaData() {
         return null;
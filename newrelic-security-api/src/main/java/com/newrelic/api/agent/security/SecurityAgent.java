@@ -10,6 +10,7 @@ package com.newrelic.api.agent.security;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.policy.AgentPolicy;
+import com.newrelic.api.agent.security.schema.policy.PolicySnapshot;
 
 import java.lang.instrument.Instrumentation;
 import java.net.URL;
@@ -31,6 +32,13 @@ public interface SecurityAgent {
 
     AgentPolicy getCurrentPolicy();
 
+    /**
+     * Returns the compiled snapshot of the currently applied policy and its parameters.
+     *
+     * @return {@link PolicySnapshot} of the current policy, never {@code null}.
+     */
+    PolicySnapshot getCurrentPolicySnapshot();
+
     /**
      * Returns the associated security related metadata from the current transaction in the context.
      *
@@ -5,54 +5,102 @@ import com.newrelic.api.agent.security.NewRelicSecurity;
 public class GenericHelper {
 
     public static boolean skipExistsEvent() {
-        if (!(NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getEnabled() &&
-                NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getIastScan().getEnabled())) {
+        if (!NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIastScanEnabled()) {
             return true;
         }
 
         return false;
     }
 
-    private static String getNrSecCustomAttribName(String nrSecCustomAttrName, int hashCode) {
-        return nrSecCustomAttrName + Thread.currentThread().getId() + hashCode;
+    /**
+     * Returns the {@link ReentrancyGuard} id for a lock name. Meant to be resolved once into a static final field.
+     */
+    public static int getLockId(String nrSecCustomAttrName) {
+        return ReentrancyGuard.getGuardId(nrSecCustomAttrName);
     }
 
-    public static boolean isLockAcquired(String nrSecCustomAttrName) {
-        return isLockAcquired(nrSecCustomAttrName, 0);
+    public static boolean isLockAcquired(int lockId) {
+        return isLockAcquired(lockId, 0);
     }
 
-    public static boolean isLockAcquired(String nrSecCustomAttrName, int hashCode) {
+    public static boolean isLockAcquired(int lockId, int hashCode) {
         try {
             return NewRelicSecurity.isHookProcessingActive() &&
-                    Boolean.TRUE.equals(NewRelicSecurity.getAgent().getSecurityMetaData().getCustomAttribute(getNrSecCustomAttribName(nrSecCustomAttrName, hashCode), Boolean.class));
+                    ReentrancyGuard.get().isAcquired(lockId, hashCode);
         } catch (Throwable ignored) {}
         return false;
     }
 
-    public static boolean acquireLockIfPossible(String nrSecCustomAttrName, int hashCode) {
+    public static boolean acquireLockIfPossible(int lockId, int hashCode) {
         try {
-            if (NewRelicSecurity.isHookProcessingActive() &&
-                    !isLockAcquired(nrSecCustomAttrName, hashCode)) {
-                NewRelicSecurity.getAgent().getSecurityMetaData().addCustomAttribute(getNrSecCustomAttribName(nrSecCustomAttrName, hashCode), true);
-                return true;
-            }
+            return NewRelicSecurity.isHookProcessingActive() &&
+                    ReentrancyGuard.get().acquire(lockId, hashCode);
         } catch (Throwable ignored){}
         return false;
     }
 
-    public static void releaseLock(String nrSecCustomAttrName, int hashCode) {
+    /**
+     * Releases the guard whatever the agent state, as processing may have been switched off since it was acquired.
+     */
+    public static void releaseLock(int lockId, int hashCode) {
         try {
-            if(NewRelicSecurity.isHookProcessingActive()) {
-                NewRelicSecurity.getAgent().getSecurityMetaData().addCustomAttribute(getNrSecCustomAttribName(nrSecCustomAttrName, hashCode), null);
-            }
+            ReentrancyGuard.get().release(lockId, hashCode);
         } catch (Throwable ignored){}
     }
 
+    public static boolean acquireLockIfPossible(int lockId) {
+        return acquireLockIfPossible(lockId, 0);
+    }
+
+    public static void releaseLock(int lockId) {
+        releaseLock(lockId, 0);
+    }
+
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #isLockAcquired(int)}.
+     */
+    @Deprecated
+    public static boolean isLockAcquired(String nrSecCustomAttrName) {
+        return isLockAcquired(getLockId(nrSecCustomAttrName), 0);
+    }
+
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #isLockAcquired(int, int)}.
+     */
+    @Deprecated
+    public static boolean isLockAcquired(String nrSecCustomAttrName, int hashCode) {
+        return isLockAcquired(getLockId(nrSecCustomAttrName), hashCode);
+    }
+
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #acquireLockIfPossible(int, int)}.
+     */
+    @Deprecated
+    public static boolean acquireLockIfPossible(String nrSecCustomAttrName, int hashCode) {
+        return acquireLockIfPossible(getLockId(nrSecCustomAttrName), hashCode);
+    }
+
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #releaseLock(int, int)}.
+     */
+    @Deprecated
+    public static void releaseLock(String nrSecCustomAttrName, int hashCode) {
+        releaseLock(getLockId(nrSecCustomAttrName), hashCode);
+    }
+
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #acquireLockIfPossible(int)}.
+     */
+    @Deprecated
     public static boolean acquireLockIfPossible(String nrSecCustomAttrName) {
-        return acquireLockIfPossible(nrSecCustomAttrName, 0);
+        return acquireLockIfPossible(getLockId(nrSecCustomAttrName), 0);
     }
 
+    /**
+     * @deprecated resolve the lock id once using {@link #getLockId(String)} and use {@link #releaseLock(int)}.
+     */
+    @Deprecated
     public static void releaseLock(String nrSecCustomAttrName) {
-        releaseLock(nrSecCustomAttrName, 0);
+        releaseLock(getLockId(nrSecCustomAttrName), 0);
     }
 }
@@ -0,0 +1,119 @@
+package com.newrelic.api.agent.security.instrumentation.helpers;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per thread reentrancy guards used by hooks to skip nested processing of the same operation.
+ * <p>
+ * Each guard is identified by a small integer obtained once through {@link #getGuardId(String)}, typically into a
+ * static final field of the helper owning the guard. Guards with the same name share the same id across
+ * instrumentation modules. A guard can be held for several objects at once, distinguished by their hash code.
+ * Acquire and release only touch arrays local to the current thread.
+ */
+public final class ReentrancyGuard {
+
+    private static final int INITIAL_GUARDS = 64;
+
+    private static final int INITIAL_HOLDERS = 2;
+
+    private static final Map<String, Integer> guardIds = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<ReentrancyGuard> guards = ThreadLocal.withInitial(ReentrancyGuard::new);
+
+    private int[][] holders = new int[INITIAL_GUARDS][];
+
+    private int[] counts = new int[INITIAL_GUARDS];
+
+    private ReentrancyGuard() {
+    }
+
+    /**
+     * Returns the id of the guard with the given name, registering it on first use.
+     *
+     * @param name name of the guard
+     * @return id of the guard
+     */
+    public static int getGuardId(String name) {
+        Integer guardId = guardIds.get(name);
+        if (guardId != null) {
+            return guardId;
+        }
+        synchronized (guardIds) {
+            return guardIds.computeIfAbsent(name, key -> guardIds.size());
+        }
+    }
+
+    /**
+     * Returns the guards of the current thread.
+     */
+    public static ReentrancyGuard get() {
+        return guards.get();
+    }
+
+    public boolean isAcquired(int guardId, int hashCode) {
+        if (guardId >= counts.length) {
+            return false;
+        }
+        return indexOf(guardId, hashCode) >= 0;
+    }
+
+    /**
+     * Acquires the guard for the given hash code on the current thread.
+     *
+     * @return {@code true} if the guard was acquired, {@code false} if it was already held.
+     */
+    public boolean acquire(int guardId, int hashCode) {
+        if (guardId >= counts.length) {
+            grow(guardId);
+        } else if (indexOf(guardId, hashCode) >= 0) {
+            return false;
+        }
+        int[] guardHolders = holders[guardId];
+        int count = counts[guardId];
+        if (guardHolders == null) {
+            guardHolders = holders[guardId] = new int[INITIAL_HOLDERS];
+        } else if (count == guardHolders.length) {
+            int[] newHolders = new int[count * 2];
+            System.arraycopy(guardHolders, 0, newHolders, 0, count);
+            guardHolders = holders[guardId] = newHolders;
+        }
+        guardHolders[count] = hashCode;
+        counts[guardId] = count + 1;
+        return true;
+    }
+
+    public void release(int guardId, int hashCode) {
+        if (guardId >= counts.length) {
+            return;
+        }
+        int index = indexOf(guardId, hashCode);
+        if (index >= 0) {
+            int last = --counts[guardId];
+            holders[guardId][index] = holders[guardId][last];
+        }
+    }
+
+    private int indexOf(int guardId, int hashCode) {
+        int[] guardHolders = holders[guardId];
+        for (int i = counts[guardId] - 1; i >= 0; i--) {
+            if (guardHolders[i] == hashCode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void grow(int guardId) {
+        int size = counts.length;
+        while (size <= guardId) {
+            size *= 2;
+        }
+        int[][] newHolders = new int[size][];
+        System.arraycopy(holders, 0, newHolders, 0, holders.length);
+        int[] newCounts = new int[size];
+        System.arraycopy(counts, 0, newCounts, 0, counts.length);
+        holders = newHolders;
+        counts = newCounts;
+    }
+}
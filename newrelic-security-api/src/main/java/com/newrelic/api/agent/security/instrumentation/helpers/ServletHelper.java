@@ -2,6 +2,7 @@ package com.newrelic.api.agent.security.instrumentation.helpers;
 
 import com.newrelic.api.agent.security.NewRelicSecurity;
 import com.newrelic.api.agent.security.schema.APIRecordStatus;
+import com.newrelic.api.agent.security.schema.HttpRequest;
 import com.newrelic.api.agent.security.schema.K2RequestIdentifier;
 import com.newrelic.api.agent.security.schema.SecurityMetaData;
 import com.newrelic.api.agent.security.schema.StringUtils;
@@ -9,6 +10,7 @@ import com.newrelic.api.agent.security.schema.StringUtils;
 import java.io.File;
 import java.nio.file.Files;
 import java.util.Arrays;
+import java.util.Map;
 
 public class ServletHelper {
     public static final String SEPARATOR_SEMICOLON = ":IAST:";
@@ -18,9 +20,120 @@ public class ServletHelper {
 
     public static final String CSEC_DISTRIBUTED_TRACING_HEADER = "NR-CSEC-TRACING-DATA";
     public static final String SERVLET_GET_IS_OPERATION_LOCK = "SERVLET_GET_IS_OPERATION_LOCK-";
+    public static final int SERVLET_GET_IS_OPERATION_LOCK_ID = GenericHelper.getLockId(SERVLET_GET_IS_OPERATION_LOCK);
     public static final String SERVLET_GET_READER_OPERATION_LOCK = "SERVLET_GET_READER_OPERATION_LOCK-";
+    public static final int SERVLET_GET_READER_OPERATION_LOCK_ID = GenericHelper.getLockId(SERVLET_GET_READER_OPERATION_LOCK);
     public static final String SERVLET_GET_OS_OPERATION_LOCK = "SERVLET_GET_OS_OPERATION_LOCK-";
+    public static final int SERVLET_GET_OS_OPERATION_LOCK_ID = GenericHelper.getLockId(SERVLET_GET_OS_OPERATION_LOCK);
     public static final String SERVLET_GET_WRITER_OPERATION_LOCK = "SERVLET_GET_WRITER_OPERATION_LOCK-";
+    public static final int SERVLET_GET_WRITER_OPERATION_LOCK_ID = GenericHelper.getLockId(SERVLET_GET_WRITER_OPERATION_LOCK);
+
+    private static volatile boolean rxssEnabled = true;
+
+    /**
+     * Sets whether the reflected XSS check is enabled, response bodies are not captured otherwise.
+     */
+    public static void setRxssEnabled(boolean rxssEnabled) {
+        ServletHelper.rxssEnabled = rxssEnabled;
+    }
+
+    /**
+     * Checks whether the body of the current response is to be captured for the reflected XSS check. That is the case
+     * when the check is enabled, the response content type is HTML like or not yet known, and either IAST scan is
+     * enabled or at least one request input contains markup, plain or encoded.
+     * <p>
+     * To be called once the response content type is set, i.e. when the response output stream or writer is obtained.
+     */
+    public static boolean isResponseBodyCaptureRequired(SecurityMetaData securityMetaData) {
+        if (!rxssEnabled || !isMarkupContentType(securityMetaData.getResponse().getResponseContentType())) {
+            return false;
+        }
+        if (NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIastScanEnabled()) {
+            return true;
+        }
+        return containsMarkup(securityMetaData.getRequest());
+    }
+
+    private static boolean isMarkupContentType(String contentType) {
+        return StringUtils.isBlank(contentType)
+                || contentType.equals("text/html")
+                || contentType.equals("application/xhtml+xml")
+                || contentType.equals("text/xml")
+                || contentType.equals("application/xml")
+                || contentType.endsWith("+xml");
+    }
+
+    private static boolean containsMarkup(HttpRequest request) {
+        if (containsMarkup(request.getUrl())) {
+            return true;
+        }
+        for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+            if (containsMarkup(header.getKey()) || containsMarkup(header.getValue())) {
+                return true;
+            }
+        }
+        if (request.getParameterMap() != null) {
+            for (Map.Entry<String, String[]> parameter : request.getParameterMap().entrySet()) {
+                if (containsMarkup(parameter.getKey())) {
+                    return true;
+                }
+                if (parameter.getValue() != null) {
+                    for (String value : parameter.getValue()) {
+                        if (containsMarkup(value)) {
+                            return true;
+                        }
+                    }
+                }
+            }
+        }
+        return containsMarkup(request.getBody());
+    }
+
+    /**
+     * Looks for an opening angle bracket, either plain or URL, double URL, HTML or unicode escaped.
+     */
+    static boolean containsMarkup(CharSequence data) {
+        if (data == null) {
+            return false;
+        }
+        int length = data.length();
+        for (int i = 0; i < length; i++) {
+            switch (data.charAt(i)) {
+                case '<':
+                    return true;
+                case '%':
+                    if (regionMatches(data, i + 1, "3c") || regionMatches(data, i + 1, "253c")) {
+                        return true;
+                    }
+                    break;
+                case '&':
+                    if (regionMatches(data, i + 1, "lt") || regionMatches(data, i + 1, "#60")
+                            || regionMatches(data, i + 1, "#x3c")) {
+                        return true;
+                    }
+                    break;
+                case '\\':
+                    if (regionMatches(data, i + 1, "u003c") || regionMatches(data, i + 1, "x3c")) {
+                        return true;
+                    }
+                    break;
+                default:
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence data, int offset, String lowerCase) {
+        if (offset + lowerCase.length() > data.length()) {
+            return false;
+        }
+        for (int i = 0; i < lowerCase.length(); i++) {
+            if (Character.toLowerCase(data.charAt(offset + i)) != lowerCase.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
 
     public static K2RequestIdentifier parseFuzzRequestIdentifierHeader(String requestHeaderVal) {
         K2RequestIdentifier k2RequestIdentifierInstance = new K2RequestIdentifier();
@@ -30,8 +143,7 @@ public class ServletHelper {
         }
         if (StringUtils.isNotBlank(requestHeaderVal)) {
             k2RequestIdentifierInstance.setRaw(requestHeaderVal);
-            if (!(NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getEnabled()
-                    && NewRelicSecurity.getAgent().getCurrentPolicy().getVulnerabilityScan().getIastScan().getEnabled())) {
+            if (!NewRelicSecurity.getAgent().getCurrentPolicySnapshot().isIastScanEnabled()) {
                 return k2RequestIdentifierInstance;
             }
             String[] data = StringUtils.splitByWholeSeparatorWorker(requestHeaderVal, SEPARATOR_SEMICOLON, -1, false);
@@ -13,6 +13,10 @@ public abstract class AbstractOperation {
 
     private String executionId;
 
+    private long executionThreadId;
+
+    private long executionSequence = -1L;
+
     private long startTime;
 
     private long blockingEndTime;
@@ -58,11 +62,36 @@ public abstract class AbstractOperation {
     }
 
     public String getExecutionId() {
+        if (executionId == null && executionSequence >= 0) {
+            executionId = executionThreadId + ":" + executionSequence;
+        }
         return executionId;
     }
 
     public void setExecutionId(String executionId) {
         this.executionId = executionId;
+        this.executionSequence = -1L;
+    }
+
+    /**
+     * Sets the execution ID in its numeric form. The string form {@code <threadId>:<sequence>} is built on first
+     * access through {@link #getExecutionId()}.
+     */
+    public void setExecutionId(long threadId, long sequence) {
+        this.executionId = null;
+        this.executionThreadId = threadId;
+        this.executionSequence = sequence;
+    }
+
+    public long getExecutionThreadId() {
+        return executionThreadId;
+    }
+
+    /**
+     * @return the sequence part of a numeric execution ID, or {@code -1} if the ID was set as a string.
+     */
+    public long getExecutionSequence() {
+        return executionSequence;
     }
 
     public long getStartTime() {
@@ -1,5 +1,7 @@
 package com.newrelic.api.agent.security.schema;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -22,6 +24,10 @@ public class HttpRequest {
 
     private String contentType;
 
+    private Charset bodyCharset;
+
+    private RequestBodyBuffer bodyBuffer;
+
     private String protocol;
 
     private int serverPort;
@@ -32,41 +38,114 @@ public class HttpRequest {
 
     private boolean isRequestParsed;
 
+    private volatile int mutationEpoch;
+
+    private volatile HttpRequest snapshot;
+
+    /**
+     * State of the request the snapshot was taken from, kept on the snapshot so that it is published along with it.
+     */
+    private int snapshotEpoch;
+
+    private int snapshotBodyLength;
+
+    private boolean isSnapshot;
+
+    private volatile UserInputIndex userInputIndex;
+
     public HttpRequest() {
         this.clientIP = StringUtils.EMPTY;
         this.body = new StringBuilder();
         this.dataTruncated = false;
         this.method = StringUtils.EMPTY;
         this.url = StringUtils.EMPTY;
-        this.headers = new ConcurrentHashMap<>();
+        this.headers = MutationTrackingMap.track(new ConcurrentHashMap<String, String>());
         this.serverPort = -1;
         this.contentType = StringUtils.EMPTY;
+        this.bodyCharset = StandardCharsets.ISO_8859_1;
         this.protocol = HTTP;
         this.clientPort = StringUtils.EMPTY;
-        this.parameterMap = new HashMap<>();
+        this.parameterMap = MutationTrackingMap.track(new HashMap<String, String[]>());
         this.isRequestParsed = false;
     }
 
     public HttpRequest(HttpRequest servletInfo) {
-        this.clientIP = new String(servletInfo.clientIP.trim());
+        this.clientIP = servletInfo.clientIP.trim();
         this.body = new StringBuilder(servletInfo.getBody());
         this.dataTruncated = servletInfo.isDataTruncated();
-        this.method = new String(servletInfo.getMethod().trim());
-        this.url = new String(servletInfo.getUrl().trim());
-        this.headers = new ConcurrentHashMap<>(servletInfo.getHeaders());
+        this.method = servletInfo.getMethod().trim();
+        this.url = servletInfo.getUrl().trim();
+        this.headers = MutationTrackingMap.track(new ConcurrentHashMap<>(servletInfo.getHeaders()));
         this.serverPort = servletInfo.serverPort;
-        this.contentType = new String(servletInfo.contentType.trim());
-        this.parameterMap = new HashMap<>(servletInfo.parameterMap);
-        this.protocol = new String(servletInfo.protocol);
-        this.clientPort = new String(servletInfo.clientPort);
+        this.contentType = servletInfo.contentType.trim();
+        this.bodyCharset = servletInfo.bodyCharset;
+        this.parameterMap = MutationTrackingMap.track(new HashMap<>(servletInfo.parameterMap));
+        this.protocol = servletInfo.protocol;
+        this.clientPort = servletInfo.clientPort;
         this.isRequestParsed = servletInfo.isRequestParsed;
     }
 
+    /**
+     * Returns a copy of this request to be shared by the events dispatched for it.
+     * <p>
+     * The copy is taken once and reused until this request is modified, i.e. a setter is called, an entry of the
+     * headers, parameters or path parameters is put, replaced or removed, or the body grows, as happens while it is
+     * still being read. The body is only ever appended to, its length tells whether it changed. Events already
+     * dispatched keep referring to the previous copy. The returned copy must not be modified.
+     *
+     * @return the shared copy of this request
+     */
+    public HttpRequest snapshot() {
+        StringBuilder body = getBody();
+        int bodyLength = body != null ? body.length() : 0;
+        int epoch = mutationEpoch + MutationTrackingMap.modifications(headers)
+                + MutationTrackingMap.modifications(parameterMap) + MutationTrackingMap.modifications(pathParameterMap);
+        HttpRequest current = snapshot;
+        if (current == null || current.snapshotEpoch != epoch || current.snapshotBodyLength != bodyLength) {
+            current = newSnapshot();
+            current.snapshotEpoch = epoch;
+            current.snapshotBodyLength = bodyLength;
+            snapshot = current;
+        }
+        return current;
+    }
+
+    /**
+     * @return a new copy of this request, flagged as a snapshot.
+     */
+    HttpRequest newSnapshot() {
+        HttpRequest copy = new HttpRequest(this);
+        copy.isSnapshot = true;
+        return copy;
+    }
+
+    /**
+     * @return the user input index cached on this request, or {@code null} if none was built yet.
+     */
+    public UserInputIndex userInputIndex() {
+        return userInputIndex;
+    }
+
+    /**
+     * Caches the user input index built for this request. Only snapshots cache it, as they are not modified
+     * afterwards, so that the events dispatched for the same request state share a single index.
+     *
+     * @return {@code true} if the index was cached
+     */
+    public boolean cacheUserInputIndex(UserInputIndex userInputIndex) {
+        if (!isSnapshot) {
+            return false;
+        }
+        this.userInputIndex = userInputIndex;
+        return true;
+    }
+
     public String getMethod() {
         return method;
     }
 
     public void setMethod(String method) {
+        mutationEpoch++;
         this.method = method;
     }
 
@@ -75,6 +154,7 @@ public class HttpRequest {
     }
 
     public void setUrl(String url) {
+        mutationEpoch++;
         this.url = url;
     }
 
@@ -83,21 +163,94 @@ public class HttpRequest {
     }
 
     public void setHeaders(Map<String, String> headers) {
-        this.headers = headers;
+        // The modifications of the replaced map are carried over, so that the epoch still grows
+        mutationEpoch += 1 + MutationTrackingMap.modifications(this.headers);
+        this.headers = MutationTrackingMap.track(headers);
     }
 
     /**
+     * Returns the body, decoding any bytes captured through {@link #captureBody(byte[], int, int)} first.
+     *
      * @return the body
      */
     public StringBuilder getBody() {
+        if (bodyBuffer != null && bodyBuffer.pending() > 0 && this.body != null) {
+            bodyBuffer.drainTo(this.body, bodyCharset);
+        }
         return this.body;
     }
 
+    /**
+     * Captures a single byte of the body as read by the application.
+     * Bytes are decoded lazily with the charset of the request content type.
+     */
+    public void captureBody(int b) {
+        RequestBodyBuffer buffer = getBodyBuffer();
+        if (buffer != null) {
+            buffer.write(b);
+            markTruncated(buffer);
+        }
+    }
+
+    /**
+     * Captures a part of the body as read by the application.
+     * Bytes beyond {@link RequestBodyBuffer#getCaptureLimit()} are dropped and the request is marked as truncated.
+     */
+    public void captureBody(byte[] b, int off, int len) {
+        RequestBodyBuffer buffer = getBodyBuffer();
+        if (buffer != null && len > 0) {
+            buffer.write(b, off, len);
+            markTruncated(buffer);
+        }
+    }
+
+    /**
+     * Captures a single char of the body as read by the application through a reader.
+     */
+    public void captureBody(char c) {
+        getBody().append(c);
+    }
+
+    /**
+     * Captures a part of the body as read by the application through a reader.
+     */
+    public void captureBody(char[] cbuf, int off, int len) {
+        if (len > 0) {
+            getBody().append(cbuf, off, len);
+        }
+    }
+
+    /**
+     * Captures a part of the body already decoded by the application or the server.
+     */
+    public void captureBody(CharSequence csq) {
+        if (csq != null) {
+            getBody().append(csq);
+        }
+    }
+
+    private RequestBodyBuffer getBodyBuffer() {
+        if (bodyBuffer == null) {
+            if (RequestBodyBuffer.isSkippedContentType(contentType)) {
+                return null;
+            }
+            bodyBuffer = new RequestBodyBuffer();
+        }
+        return bodyBuffer;
+    }
+
+    private void markTruncated(RequestBodyBuffer buffer) {
+        if (buffer.isTruncated() && !dataTruncated) {
+            setDataTruncated(true);
+        }
+    }
+
     public int getServerPort() {
         return serverPort;
     }
 
     public void setServerPort(int serverPort) {
+        mutationEpoch++;
         this.serverPort = serverPort;
     }
 
@@ -106,7 +259,9 @@ public class HttpRequest {
     }
 
     public void setParameterMap(Map<String, String[]> parameterMap) {
-        this.parameterMap = parameterMap;
+        // The modifications of the replaced map are carried over, so that the epoch still grows
+        mutationEpoch += 1 + MutationTrackingMap.modifications(this.parameterMap);
+        this.parameterMap = MutationTrackingMap.track(parameterMap);
     }
 
     /**
@@ -120,6 +275,7 @@ public class HttpRequest {
      * @param dataTruncated the dataTruncated to set
      */
     public void setDataTruncated(boolean dataTruncated) {
+        mutationEpoch++;
         this.dataTruncated = dataTruncated;
     }
 
@@ -134,10 +290,15 @@ public class HttpRequest {
      * @param clientIP the clientIP to set
      */
     public void setClientIP(String clientIP) {
+        mutationEpoch++;
         this.clientIP = clientIP;
     }
 
     public void setBody(StringBuilder body) {
+        mutationEpoch++;
+        if (bodyBuffer != null) {
+            bodyBuffer.discard();
+        }
         this.body = body;
     }
 
@@ -146,11 +307,37 @@ public class HttpRequest {
     }
 
     public void setContentType(String contentType) {
+        mutationEpoch++;
         if (StringUtils.isNotBlank(contentType)) {
             this.contentType = StringUtils.substringBefore(contentType, ";").trim().toLowerCase();
         } else {
             this.contentType = StringUtils.EMPTY;
         }
+        this.bodyCharset = parseCharset(contentType, this.contentType);
+    }
+
+    /**
+     * Resolves the charset of the body from the {@code charset} parameter of the content type. JSON defaults to UTF-8,
+     * anything else to ISO-8859-1, which maps each byte to the char of the same value.
+     */
+    private static Charset parseCharset(String contentType, String mediaType) {
+        if (contentType != null) {
+            int index = contentType.toLowerCase().indexOf("charset=");
+            if (index >= 0) {
+                String name = StringUtils.substringBefore(contentType.substring(index + 8), ";").trim();
+                if (name.length() > 1 && name.charAt(0) == '"' && name.charAt(name.length() - 1) == '"') {
+                    name = name.substring(1, name.length() - 1);
+                }
+                try {
+                    return Charset.forName(name);
+                } catch (Exception ignored) {
+                }
+            }
+        }
+        if (mediaType.endsWith("json")) {
+            return StandardCharsets.UTF_8;
+        }
+        return StandardCharsets.ISO_8859_1;
     }
 
     public boolean isEmpty() {
@@ -168,7 +355,9 @@ public class HttpRequest {
      * @param pathParameterMap the pathParameterMap to set
      */
     public void setPathParameterMap(Map<String, String> pathParameterMap) {
-        this.pathParameterMap = pathParameterMap;
+        // The modifications of the replaced map are carried over, so that the epoch still grows
+        mutationEpoch += 1 + MutationTrackingMap.modifications(this.pathParameterMap);
+        this.pathParameterMap = MutationTrackingMap.track(pathParameterMap);
     }
 
     public String getProtocol() {
@@ -176,6 +365,7 @@ public class HttpRequest {
     }
 
     public void setProtocol(String protocol) {
+        mutationEpoch++;
         if (StringUtils.isNotBlank(protocol)) {
             this.protocol = protocol;
         }
@@ -186,6 +376,7 @@ public class HttpRequest {
     }
 
     public void setClientPort(String clientPort) {
+        mutationEpoch++;
         this.clientPort = clientPort;
     }
 
@@ -194,6 +385,7 @@ public class HttpRequest {
     }
 
     public void setRequestParsed(boolean requestParsed) {
+        mutationEpoch++;
         isRequestParsed = requestParsed;
     }
 }
@@ -11,16 +11,49 @@ public class HttpResponse {
 
     private String responseContentType;
 
+    private ResponseBodyBuffer bodyBuffer;
+
+    private volatile int mutationEpoch;
+
+    private volatile HttpResponse snapshot;
+
+    /**
+     * State of the response the snapshot was taken from, kept on the snapshot so that it is published along with it.
+     */
+    private int snapshotEpoch;
+
+    private int snapshotBodyLength;
+
     public HttpResponse() {
-        this.headers = new ConcurrentHashMap<>();
+        this.headers = MutationTrackingMap.track(new ConcurrentHashMap<String, String>());
         this.responseBody = new StringBuilder();
         this.responseContentType = StringUtils.EMPTY;
     }
 
     public HttpResponse(HttpResponse httpResponse) {
-        this.headers = new ConcurrentHashMap<>(httpResponse.getHeaders());
+        this.headers = MutationTrackingMap.track(new ConcurrentHashMap<>(httpResponse.getHeaders()));
         this.responseBody = new StringBuilder(httpResponse.responseBody);
-        this.responseContentType = new String(httpResponse.responseContentType.trim());
+        this.responseContentType = httpResponse.responseContentType.trim();
+    }
+
+    /**
+     * Returns a copy of this response to be shared by the events dispatched for it, taken again only once this
+     * response has been modified. See {@link HttpRequest#snapshot()}.
+     *
+     * @return the shared copy of this response
+     */
+    public HttpResponse snapshot() {
+        StringBuilder responseBody = getResponseBody();
+        int bodyLength = responseBody != null ? responseBody.length() : 0;
+        int epoch = mutationEpoch + MutationTrackingMap.modifications(headers);
+        HttpResponse current = snapshot;
+        if (current == null || current.snapshotEpoch != epoch || current.snapshotBodyLength != bodyLength) {
+            current = new HttpResponse(this);
+            current.snapshotEpoch = epoch;
+            current.snapshotBodyLength = bodyLength;
+            snapshot = current;
+        }
+        return current;
     }
 
     public Map<String, String> getHeaders() {
@@ -28,22 +61,78 @@ public class HttpResponse {
     }
 
     public void setHeaders(Map<String, String> headers) {
-        this.headers = headers;
+        // The modifications of the replaced map are carried over, so that the epoch still grows
+        mutationEpoch += 1 + MutationTrackingMap.modifications(this.headers);
+        this.headers = MutationTrackingMap.track(headers);
     }
 
+    /**
+     * Returns the body, including the chars captured through the {@code captureBody} methods.
+     */
     public StringBuilder getResponseBody() {
+        if (bodyBuffer != null && bodyBuffer.pending() > 0 && this.responseBody != null) {
+            bodyBuffer.drainTo(this.responseBody);
+        }
         return this.responseBody;
     }
 
     public void setResponseBody(StringBuilder responseBody) {
+        mutationEpoch++;
+        if (bodyBuffer != null) {
+            bodyBuffer.discard();
+        }
         this.responseBody = responseBody;
     }
 
+    /**
+     * Captures a part of the body as written by the application. Chars beyond
+     * {@link ResponseBodyBuffer#getCaptureLimit()} are dropped.
+     */
+    public void captureBody(CharSequence csq) {
+        if (csq == null) {
+            csq = "null";
+        }
+        captureBody(csq, 0, csq.length());
+    }
+
+    /**
+     * Captures the chars of {@code csq} between {@code start} and {@code end}.
+     */
+    public void captureBody(CharSequence csq, int start, int end) {
+        if (csq == null) {
+            csq = "null";
+        }
+        getBodyBuffer().append(csq, start, end);
+    }
+
+    public void captureBody(char c) {
+        getBodyBuffer().append(c);
+    }
+
+    public void captureBody(char[] str, int off, int len) {
+        getBodyBuffer().append(str, off, len);
+    }
+
+    /**
+     * Captures bytes written to the response output stream, each byte as the char of the same value.
+     */
+    public void captureBody(byte[] b, int off, int len) {
+        getBodyBuffer().append(b, off, len);
+    }
+
+    private ResponseBodyBuffer getBodyBuffer() {
+        if (bodyBuffer == null) {
+            bodyBuffer = new ResponseBodyBuffer();
+        }
+        return bodyBuffer;
+    }
+
     public String getResponseContentType() {
         return responseContentType;
     }
 
     public void setResponseContentType(String responseContentType) {
+        mutationEpoch++;
         if (StringUtils.isNotBlank(responseContentType)) {
             this.responseContentType = StringUtils.substringBefore(responseContentType, ";").trim().toLowerCase();
         } else {
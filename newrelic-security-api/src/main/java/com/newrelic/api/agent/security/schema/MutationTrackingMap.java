@@ -0,0 +1,187 @@
+package com.newrelic.api.agent.security.schema;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Map counting its modifications, so that {@link HttpRequest#snapshot()} and {@link HttpResponse#snapshot()} notice
+ * entries put, replaced or removed in place through the map returned by the getters.
+ * <p>
+ * Every write goes through {@link #put(Object, Object)}, {@link #remove(Object)}, {@link #clear()}, the iterators of
+ * the views or {@link Map.Entry#setValue(Object)}, the default methods of {@link Map} being built upon them. Reads
+ * and null handling are those of the wrapped map. Arrays held as values are not tracked.
+ */
+final class MutationTrackingMap<K, V> extends AbstractMap<K, V> {
+
+    private final Map<K, V> map;
+
+    private volatile int modifications;
+
+    private Set<Map.Entry<K, V>> entrySet;
+
+    MutationTrackingMap(Map<K, V> map) {
+        this.map = map;
+    }
+
+    /**
+     * @return the map tracked, {@code null} if {@code map} is.
+     */
+    static <K, V> Map<K, V> track(Map<K, V> map) {
+        if (map == null || map instanceof MutationTrackingMap) {
+            return map;
+        }
+        return new MutationTrackingMap<>(map);
+    }
+
+    /**
+     * @return the number of modifications of {@code map} if it is tracked, {@code 0} otherwise.
+     */
+    static int modifications(Map<?, ?> map) {
+        if (map instanceof MutationTrackingMap) {
+            return ((MutationTrackingMap<?, ?>) map).modifications;
+        }
+        return 0;
+    }
+
+    private void modified() {
+        modifications++;
+    }
+
+    @Override
+    public int size() {
+        return map.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return map.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return map.containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+        return map.containsValue(value);
+    }
+
+    @Override
+    public V get(Object key) {
+        return map.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        V previous = map.put(key, value);
+        modified();
+        return previous;
+    }
+
+    @Override
+    public V remove(Object key) {
+        V previous = map.remove(key);
+        modified();
+        return previous;
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        map.putAll(m);
+        modified();
+    }
+
+    @Override
+    public void clear() {
+        map.clear();
+        modified();
+    }
+
+    @Override
+    public Set<Map.Entry<K, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new EntrySet();
+        }
+        return entrySet;
+    }
+
+    private final class EntrySet extends AbstractSet<Map.Entry<K, V>> {
+
+        @Override
+        public Iterator<Map.Entry<K, V>> iterator() {
+            final Iterator<Map.Entry<K, V>> iterator = map.entrySet().iterator();
+            return new Iterator<Map.Entry<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Map.Entry<K, V> next() {
+                    return new TrackedEntry(iterator.next());
+                }
+
+                @Override
+                public void remove() {
+                    iterator.remove();
+                    modified();
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return map.size();
+        }
+
+        @Override
+        public void clear() {
+            MutationTrackingMap.this.clear();
+        }
+    }
+
+    private final class TrackedEntry implements Map.Entry<K, V> {
+
+        private final Map.Entry<K, V> entry;
+
+        private TrackedEntry(Map.Entry<K, V> entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public K getKey() {
+            return entry.getKey();
+        }
+
+        @Override
+        public V getValue() {
+            return entry.getValue();
+        }
+
+        @Override
+        public V setValue(V value) {
+            V previous = entry.setValue(value);
+            modified();
+            return previous;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return entry.equals(o);
+        }
+
+        @Override
+        public int hashCode() {
+            return entry.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return entry.toString();
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package com.newrelic.api.agent.security.schema;
+
+import com.newrelic.api.agent.security.schema.operation.FileIntegrityOperation;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Shared, read only {@link SecurityMetaData} returned when there is no transaction at hand.
+ * <p>
+ * Writes are discarded, so that hooks running outside a transaction behave as they would on a fresh
+ * {@link SecurityMetaData} without allocating one per call. Collections are empty and immutable.
+ * {@link HttpRequest#getBody()} and {@link HttpResponse#getResponseBody()} return a new empty buffer on each call, as a
+ * shared one could be appended to by concurrent callers: bodies are captured through the {@code captureBody} methods,
+ * discarded here.
+ */
+public final class NoContextSecurityMetaData extends SecurityMetaData {
+
+    private static final NoContextSecurityMetaData instance = new NoContextSecurityMetaData();
+
+    private final HttpRequest request = new NoContextHttpRequest();
+
+    private final HttpResponse response = new NoContextHttpResponse();
+
+    private final AgentMetaData metaData = new NoContextAgentMetaData();
+
+    private final K2RequestIdentifier fuzzRequestIdentifier = new NoContextK2RequestIdentifier();
+
+    private NoContextSecurityMetaData() {
+    }
+
+    public static NoContextSecurityMetaData getInstance() {
+        return instance;
+    }
+
+    public static boolean isNoContext(SecurityMetaData securityMetaData) {
+        return securityMetaData == instance;
+    }
+
+    @Override
+    public HttpRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public void setRequest(HttpRequest request) {
+    }
+
+    @Override
+    public HttpResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public void setResponse(HttpResponse response) {
+    }
+
+    @Override
+    public AgentMetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public void setMetaData(AgentMetaData metaData) {
+    }
+
+    @Override
+    public String getTracingHeaderValue() {
+        return EMPTY;
+    }
+
+    @Override
+    public void setTracingHeaderValue(String tracingHeaderValue) {
+    }
+
+    @Override
+    public Map<String, FileIntegrityOperation> getFileLocalMap() {
+        return Collections.emptyMap();
+    }
+
+    @Override
+    public void setFileLocalMap(Map<String, FileIntegrityOperation> fileLocalMap) {
+    }
+
+    @Override
+    public K2RequestIdentifier getFuzzRequestIdentifier() {
+        return fuzzRequestIdentifier;
+    }
+
+    @Override
+    public void setFuzzRequestIdentifier(K2RequestIdentifier fuzzRequestIdentifier) {
+    }
+
+    @Override
+    public void addCustomAttribute(String key, Object value) {
+    }
+
+    @Override
+    public <T> T getCustomAttribute(String key, Class<? extends T> klass) {
+        return null;
+    }
+
+    @Override
+    public void removeCustomAttribute(String key) {
+    }
+
+    private static final class NoContextHttpRequest extends HttpRequest {
+
+        /**
+         * Not cached, the instance being shared by all threads.
+         */
+        @Override
+        public HttpRequest snapshot() {
+            return newSnapshot();
+        }
+
+        @Override
+        public void setMethod(String method) {
+        }
+
+        @Override
+        public void setUrl(String url) {
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setHeaders(Map<String, String> headers) {
+        }
+
+        @Override
+        public StringBuilder getBody() {
+            return new StringBuilder(0);
+        }
+
+        @Override
+        public void captureBody(int b) {
+        }
+
+        @Override
+        public void captureBody(char c) {
+        }
+
+        @Override
+        public void captureBody(char[] cbuf, int off, int len) {
+        }
+
+        @Override
+        public void captureBody(CharSequence csq) {
+        }
+
+        @Override
+        public void captureBody(byte[] b, int off, int len) {
+        }
+
+        @Override
+        public void setServerPort(int serverPort) {
+        }
+
+        @Override
+        public Map<String, String[]> getParameterMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setParameterMap(Map<String, String[]> parameterMap) {
+        }
+
+        @Override
+        public void setDataTruncated(boolean dataTruncated) {
+        }
+
+        @Override
+        public void setClientIP(String clientIP) {
+        }
+
+        @Override
+        public void setBody(StringBuilder body) {
+        }
+
+        @Override
+        public void setContentType(String contentType) {
+        }
+
+        @Override
+        public Map<String, String> getPathParameterMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setPathParameterMap(Map<String, String> pathParameterMap) {
+        }
+
+        @Override
+        public void setProtocol(String protocol) {
+        }
+
+        @Override
+        public void setClientPort(String clientPort) {
+        }
+
+        @Override
+        public void setRequestParsed(boolean requestParsed) {
+        }
+    }
+
+    private static final class NoContextHttpResponse extends HttpResponse {
+
+        /**
+         * Not cached, the instance being shared by all threads.
+         */
+        @Override
+        public HttpResponse snapshot() {
+            return new HttpResponse(this);
+        }
+
+        @Override
+        public Map<String, String> getHeaders() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setHeaders(Map<String, String> headers) {
+        }
+
+        @Override
+        public StringBuilder getResponseBody() {
+            return new StringBuilder(0);
+        }
+
+        @Override
+        public void captureBody(CharSequence csq, int start, int end) {
+        }
+
+        @Override
+        public void captureBody(char c) {
+        }
+
+        @Override
+        public void captureBody(char[] str, int off, int len) {
+        }
+
+        @Override
+        public void captureBody(byte[] b, int off, int len) {
+        }
+
+        @Override
+        public void setResponseBody(StringBuilder responseBody) {
+        }
+
+        @Override
+        public void setResponseContentType(String responseContentType) {
+        }
+    }
+
+    private static final class NoContextAgentMetaData extends AgentMetaData {
+
+        @Override
+        public void setTriggerViaRCI(boolean triggerViaRCI) {
+        }
+
+        @Override
+        public void setTriggerViaDeserialisation(boolean triggerViaDeserialisation) {
+        }
+
+        @Override
+        public void setTriggerViaXXE(boolean triggerViaXXE) {
+        }
+
+        @Override
+        public Set<String> getRciMethodsCalls() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void setRciMethodsCalls(Set<String> rciMethodsCalls) {
+        }
+
+        @Override
+        public void setClientDetectedFromXFF(boolean clientDetectedFromXFF) {
+        }
+
+        @Override
+        public Map<String, String> getReflectedMetaData() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setReflectedMetaData(Map<String, String> reflectedMetaData) {
+        }
+
+        @Override
+        public void setServiceTrace(StackTraceElement[] serviceTrace) {
+        }
+
+        @Override
+        public Set<String> getIps() {
+            return Collections.emptySet();
+        }
+
+        @Override
+        public void setIps(Set<String> ips) {
+        }
+
+        @Override
+        public void setApiBlocked(boolean apiBlocked) {
+        }
+
+        @Override
+        public Map<String, String> getUserDataTranslationMap() {
+            return Collections.emptyMap();
+        }
+
+        @Override
+        public void setUserDataTranslationMap(Map<String, String> userDataTranslationMap) {
+        }
+
+        @Override
+        public void setUserLevelServiceMethodEncountered(boolean userLevelServiceMethodEncountered) {
+        }
+    }
+
+    private static final class NoContextK2RequestIdentifier extends K2RequestIdentifier {
+
+        @Override
+        public void setRefId(String refId) {
+        }
+
+        @Override
+        public void setRefValue(String refValue) {
+        }
+
+        @Override
+        public void setApiRecordId(String apiRecordId) {
+        }
+
+        @Override
+        public void setK2Request(boolean k2Request) {
+        }
+
+        @Override
+        public void setNextStage(APIRecordStatus nextStage) {
+        }
+
+        @Override
+        public List<String> getTempFiles() {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void setTempFiles(List<String> tempFiles) {
+        }
+
+        @Override
+        public void setRaw(String raw) {
+        }
+
+        @Override
+        public void setRecordIndex(Integer recordIndex) {
+        }
+
+        @Override
+        public void setRefKey(String refKey) {
+        }
+    }
+}
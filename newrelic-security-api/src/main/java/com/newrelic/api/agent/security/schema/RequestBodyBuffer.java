@@ -0,0 +1,215 @@
+package com.newrelic.api.agent.security.schema;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Byte level capture of a request body, as read by the application through the request input stream.
+ * <p>
+ * Bytes are stored in fixed size chunks taken from a shared pool and are only decoded when the body is needed, see
+ * {@link HttpRequest#getBody()}. Decoding returns the chunks to the pool. At most {@link #getCaptureLimit()} bytes are
+ * captured per request, the remaining bytes are dropped and the request is marked as truncated.
+ * <p>
+ * Instances are not thread safe, a request body is read by a single thread at a time.
+ */
+public class RequestBodyBuffer {
+
+    public static final int DEFAULT_CAPTURE_LIMIT = 500 * 1024;
+
+    static final int CHUNK_SIZE = 4096;
+
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final Queue<byte[]> pool = new ArrayBlockingQueue<>(MAX_POOLED_CHUNKS);
+
+    private static volatile int captureLimit = DEFAULT_CAPTURE_LIMIT;
+
+    private byte[][] chunks = new byte[4][];
+
+    private int chunkCount;
+
+    /**
+     * Number of bytes used in the last chunk.
+     */
+    private int position;
+
+    /**
+     * Total number of bytes accepted since the buffer was created, drained or not.
+     */
+    private int captured;
+
+    private boolean truncated;
+
+    private CharsetDecoder decoder;
+
+    /**
+     * Bytes of an incomplete character left over from the previous drain.
+     */
+    private byte[] carry;
+
+    public static int getCaptureLimit() {
+        return captureLimit;
+    }
+
+    /**
+     * Sets the maximum number of body bytes captured per request.
+     */
+    public static void setCaptureLimit(int captureLimit) {
+        RequestBodyBuffer.captureLimit = Math.max(0, captureLimit);
+    }
+
+    /**
+     * @return {@code true} if the body of a request with the given content type is not to be captured,
+     * e.g. multipart uploads or binary content.
+     */
+    public static boolean isSkippedContentType(String contentType) {
+        if (contentType == null || contentType.isEmpty()) {
+            return false;
+        }
+        return contentType.startsWith("multipart/")
+                || contentType.startsWith("image/")
+                || contentType.startsWith("audio/")
+                || contentType.startsWith("video/")
+                || contentType.startsWith("font/")
+                || contentType.equals("application/octet-stream")
+                || contentType.equals("application/zip")
+                || contentType.equals("application/gzip")
+                || contentType.equals("application/pdf")
+                || contentType.equals("application/x-protobuf")
+                || contentType.startsWith("application/grpc");
+    }
+
+    public void write(int b) {
+        if (!reserve(1)) {
+            return;
+        }
+        byte[] chunk = currentChunk();
+        chunk[position++] = (byte) b;
+    }
+
+    public void write(byte[] b, int off, int len) {
+        len = Math.min(len, available(len));
+        while (len > 0) {
+            byte[] chunk = currentChunk();
+            int count = Math.min(len, CHUNK_SIZE - position);
+            System.arraycopy(b, off, chunk, position, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * @return {@code true} if bytes were dropped because of the capture limit.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the number of captured bytes not yet drained.
+     */
+    public int pending() {
+        return chunkCount == 0 ? 0 : (chunkCount - 1) * CHUNK_SIZE + position;
+    }
+
+    /**
+     * Decodes the pending bytes with the given charset, appends them to {@code target} and releases the chunks.
+     * An incomplete multi-byte character at the end is kept until the next drain.
+     */
+    public void drainTo(StringBuilder target, Charset charset) {
+        if (chunkCount == 0) {
+            return;
+        }
+        if (decoder == null || !decoder.charset().equals(charset)) {
+            decoder = charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        CharBuffer out = CharBuffer.allocate(CHUNK_SIZE);
+        for (int i = 0; i < chunkCount; i++) {
+            int length = i == chunkCount - 1 ? position : CHUNK_SIZE;
+            ByteBuffer in;
+            if (carry != null) {
+                byte[] joined = Arrays.copyOf(carry, carry.length + length);
+                System.arraycopy(chunks[i], 0, joined, carry.length, length);
+                in = ByteBuffer.wrap(joined);
+                carry = null;
+            } else {
+                in = ByteBuffer.wrap(chunks[i], 0, length);
+            }
+            CoderResult result;
+            do {
+                result = decoder.decode(in, out, false);
+                out.flip();
+                target.append(out);
+                out.clear();
+            } while (result.isOverflow());
+            if (in.hasRemaining()) {
+                carry = new byte[in.remaining()];
+                in.get(carry);
+            }
+            release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        position = 0;
+    }
+
+    /**
+     * Returns the chunks to the pool without decoding them.
+     */
+    public void discard() {
+        for (int i = 0; i < chunkCount; i++) {
+            release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        position = 0;
+        carry = null;
+    }
+
+    private boolean reserve(int len) {
+        return available(len) == len;
+    }
+
+    /**
+     * Accounts up to {@code len} bytes against the capture limit and returns the number of bytes that may be written.
+     */
+    private int available(int len) {
+        int accepted = Math.max(0, Math.min(len, captureLimit - captured));
+        if (accepted < len) {
+            truncated = true;
+        }
+        captured += accepted;
+        return accepted;
+    }
+
+    private byte[] currentChunk() {
+        if (chunkCount == 0 || position == CHUNK_SIZE) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            chunks[chunkCount++] = acquire();
+            position = 0;
+        }
+        return chunks[chunkCount - 1];
+    }
+
+    private static byte[] acquire() {
+        byte[] chunk = pool.poll();
+        return chunk != null ? chunk : new byte[CHUNK_SIZE];
+    }
+
+    private static void release(byte[] chunk) {
+        // Dropped when the pool is full
+        pool.offer(chunk);
+    }
+}
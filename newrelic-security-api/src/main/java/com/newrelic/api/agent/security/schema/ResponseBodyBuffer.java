@@ -0,0 +1,187 @@
+package com.newrelic.api.agent.security.schema;
+
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * Bounded capture of a response body, as written by the application through the response output stream or writer.
+ * <p>
+ * Chars are stored in fixed size chunks taken from a shared pool and are only copied into the response body when it is
+ * needed, see {@link HttpResponse#getResponseBody()}. At most {@link #getCaptureLimit()} chars are captured per
+ * response, anything written afterwards is dropped.
+ * <p>
+ * Instances are not thread safe, a response is written by a single thread at a time.
+ */
+public class ResponseBodyBuffer {
+
+    public static final int DEFAULT_CAPTURE_LIMIT = 500 * 1024;
+
+    static final int CHUNK_SIZE = 4096;
+
+    private static final int MAX_POOLED_CHUNKS = 256;
+
+    private static final Queue<char[]> pool = new ArrayBlockingQueue<>(MAX_POOLED_CHUNKS);
+
+    private static volatile int captureLimit = DEFAULT_CAPTURE_LIMIT;
+
+    private char[][] chunks = new char[4][];
+
+    private int chunkCount;
+
+    /**
+     * Number of chars used in the last chunk.
+     */
+    private int position;
+
+    /**
+     * Total number of chars accepted since the buffer was created, drained or not.
+     */
+    private int captured;
+
+    private boolean truncated;
+
+    public static int getCaptureLimit() {
+        return captureLimit;
+    }
+
+    /**
+     * Sets the maximum number of body chars captured per response.
+     */
+    public static void setCaptureLimit(int captureLimit) {
+        ResponseBodyBuffer.captureLimit = Math.max(0, captureLimit);
+    }
+
+    public void append(char c) {
+        if (available(1) == 0) {
+            return;
+        }
+        char[] chunk = currentChunk();
+        chunk[position++] = c;
+    }
+
+    /**
+     * Appends the chars of {@code csq} between {@code start} and {@code end}, as {@link StringBuilder#append(CharSequence, int, int)}.
+     */
+    public void append(CharSequence csq, int start, int end) {
+        int len = available(end - start);
+        while (len > 0) {
+            char[] chunk = currentChunk();
+            int count = Math.min(len, CHUNK_SIZE - position);
+            if (csq instanceof String) {
+                ((String) csq).getChars(start, start + count, chunk, position);
+            } else {
+                for (int i = 0; i < count; i++) {
+                    chunk[position + i] = csq.charAt(start + i);
+                }
+            }
+            position += count;
+            start += count;
+            len -= count;
+        }
+    }
+
+    public void append(char[] str, int off, int len) {
+        len = available(len);
+        while (len > 0) {
+            char[] chunk = currentChunk();
+            int count = Math.min(len, CHUNK_SIZE - position);
+            System.arraycopy(str, off, chunk, position, count);
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * Appends each byte as the char of the same value, i.e. as ISO-8859-1.
+     */
+    public void append(byte[] b, int off, int len) {
+        len = available(len);
+        while (len > 0) {
+            char[] chunk = currentChunk();
+            int count = Math.min(len, CHUNK_SIZE - position);
+            for (int i = 0; i < count; i++) {
+                chunk[position + i] = (char) (b[off + i] & 0xff);
+            }
+            position += count;
+            off += count;
+            len -= count;
+        }
+    }
+
+    /**
+     * @return {@code true} if chars were dropped because of the capture limit.
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the number of captured chars not yet drained.
+     */
+    public int pending() {
+        return chunkCount == 0 ? 0 : (chunkCount - 1) * CHUNK_SIZE + position;
+    }
+
+    /**
+     * Appends the pending chars to {@code target} and releases the chunks.
+     */
+    public void drainTo(StringBuilder target) {
+        for (int i = 0; i < chunkCount; i++) {
+            target.append(chunks[i], 0, i == chunkCount - 1 ? position : CHUNK_SIZE);
+            release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        position = 0;
+    }
+
+    /**
+     * Returns the chunks to the pool without draining them.
+     */
+    public void discard() {
+        for (int i = 0; i < chunkCount; i++) {
+            release(chunks[i]);
+            chunks[i] = null;
+        }
+        chunkCount = 0;
+        position = 0;
+    }
+
+    /**
+     * Accounts up to {@code len} chars against the capture limit and returns the number of chars that may be written.
+     */
+    private int available(int len) {
+        if (len <= 0) {
+            return 0;
+        }
+        int accepted = Math.max(0, Math.min(len, captureLimit - captured));
+        if (accepted < len) {
+            truncated = true;
+        }
+        captured += accepted;
+        return accepted;
+    }
+
+    private char[] currentChunk() {
+        if (chunkCount == 0 || position == CHUNK_SIZE) {
+            if (chunkCount == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            }
+            chunks[chunkCount++] = acquire();
+            position = 0;
+        }
+        return chunks[chunkCount - 1];
+    }
+
+    private static char[] acquire() {
+        char[] chunk = pool.poll();
+        return chunk != null ? chunk : new char[CHUNK_SIZE];
+    }
+
+    private static void release(char[] chunk) {
+        // Dropped when the pool is full
+        pool.offer(chunk);
+    }
+}
@@ -37,9 +37,14 @@ public class SecurityMetaData {
         customData = new ConcurrentHashMap<>();
     }
 
+    /**
+     * Creates the metadata of an event dispatched for the given transaction metadata.
+     * The request and response are shared with other events of the same transaction until they are modified,
+     * see {@link HttpRequest#snapshot()}.
+     */
     public SecurityMetaData(SecurityMetaData securityMetaData) {
-        request = new HttpRequest(securityMetaData.getRequest());
-        response = new HttpResponse(securityMetaData.getResponse());
+        request = securityMetaData.getRequest().snapshot();
+        response = securityMetaData.getResponse().snapshot();
         metaData = new AgentMetaData(securityMetaData.getMetaData());
         tracingHeaderValue = EMPTY;
         fileLocalMap = new HashMap<>(securityMetaData.getFileLocalMap());
@@ -0,0 +1,32 @@
+package com.newrelic.api.agent.security.schema;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Decoded user inputs of a request checked for reflected XSS, built once per request snapshot and shared by the
+ * events dispatched for it, see {@link HttpRequest#userInputIndex()}.
+ * <p>
+ * Holds the raw and decoded forms of the headers, parameters, URL and body that may carry markup.
+ * <p>
+ * Instances are immutable and safe to share between threads.
+ */
+public class UserInputIndex {
+
+    private final Set<String> markupInputs;
+
+    /**
+     * @param markupInputs the forms of the request inputs that may carry markup
+     */
+    public UserInputIndex(Set<String> markupInputs) {
+        this.markupInputs = Collections.unmodifiableSet(new HashSet<>(markupInputs));
+    }
+
+    /**
+     * @return the forms of the request inputs that may carry markup.
+     */
+    public Set<String> getMarkupInputs() {
+        return markupInputs;
+    }
+}
@@ -3,6 +3,8 @@ package com.newrelic.api.agent.security.schema.operation;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
 
+import java.util.Objects;
+
 public class JSInjectionOperation extends AbstractOperation {
 
     private String javaScriptCode;
@@ -26,6 +28,21 @@ public class JSInjectionOperation extends AbstractOperation {
         return (javaScriptCode == null || javaScriptCode.trim().isEmpty());
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        JSInjectionOperation that = (JSInjectionOperation) o;
+        return Objects.equals(javaScriptCode, that.javaScriptCode);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(javaScriptCode);
+    }
+
     @Override
     public String toString() {
         return "expression : " + javaScriptCode;
@@ -3,6 +3,8 @@ package com.newrelic.api.agent.security.schema.operation;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
 
+import java.util.Objects;
+
 public class LDAPOperation extends AbstractOperation {
 
     private String name;
@@ -52,6 +54,21 @@ public class LDAPOperation extends AbstractOperation {
         return (filter == null || filter.trim().isEmpty());
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        LDAPOperation that = (LDAPOperation) o;
+        return Objects.equals(name, that.name) && Objects.equals(filter, that.filter);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(name, filter);
+    }
+
     @Override
     public String toString() {
         return "name : " + name + ", filter: " + filter;
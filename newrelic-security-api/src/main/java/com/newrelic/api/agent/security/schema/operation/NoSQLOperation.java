@@ -4,6 +4,7 @@ import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class NoSQLOperation extends AbstractOperation {
@@ -11,6 +12,8 @@ public class NoSQLOperation extends AbstractOperation {
 
     private List<String> payload = new ArrayList<>();
 
+    private final List<DeferredPayload> deferredPayload = new ArrayList<>();
+
     private String nameSpace;
 
     private String collection;
@@ -31,15 +34,54 @@ public class NoSQLOperation extends AbstractOperation {
         this.payloadType = payloadType;
     }
 
+    /**
+     * Creates an operation without payload, payloads are then added through {@link #addDeferredPayload(DeferredPayload)}.
+     */
+    public NoSQLOperation(String payloadType, String className, String methodName) {
+        super(className, methodName);
+        this.setCaseType(VulnerabilityCaseType.NOSQL_DB_COMMAND);
+        this.payloadType = payloadType;
+    }
+
     @Override
     public boolean isEmpty() {
-        return payload.isEmpty();
+        return payload.isEmpty() && deferredPayload.isEmpty();
     }
 
+    /**
+     * @return the JSON payloads, followed by the rendering of the deferred payloads. Deferred payloads are rendered on
+     * each call, the event dispatcher uses {@link #getJsonPayload()} and {@link #getDeferredPayload()} instead.
+     */
     public List<String> getPayload() {
+        if (deferredPayload.isEmpty()) {
+            return payload;
+        }
+        List<String> all = new ArrayList<>(payload.size() + deferredPayload.size());
+        all.addAll(payload);
+        for (DeferredPayload data : deferredPayload) {
+            all.add(data.toJson());
+        }
+        return all;
+    }
+
+    /**
+     * @return the payloads given as JSON strings.
+     */
+    public List<String> getJsonPayload() {
         return payload;
     }
 
+    /**
+     * @return the payloads captured to be rendered as JSON later, off the application thread.
+     */
+    public List<DeferredPayload> getDeferredPayload() {
+        return Collections.unmodifiableList(deferredPayload);
+    }
+
+    public void addDeferredPayload(DeferredPayload payload) {
+        this.deferredPayload.add(payload);
+    }
+
     public void setPayload(List<String> payload) {
         this.payload = payload;
     }
@@ -67,5 +109,14 @@ public class NoSQLOperation extends AbstractOperation {
     public void setPayloadType(String payloadType) {
         this.payloadType = payloadType;
     }
-}
 
+    /**
+     * Immutable capture of a payload, rendered as JSON only when the event is dispatched.
+     * <p>
+     * Implementations must not keep references to objects the application may still modify, and must render a single
+     * well formed JSON value, as it is embedded as is into the event.
+     */
+    public interface DeferredPayload {
+        String toJson();
+    }
+}
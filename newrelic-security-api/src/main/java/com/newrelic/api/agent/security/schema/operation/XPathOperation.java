@@ -3,6 +3,8 @@ package com.newrelic.api.agent.security.schema.operation;
 import com.newrelic.api.agent.security.schema.AbstractOperation;
 import com.newrelic.api.agent.security.schema.VulnerabilityCaseType;
 
+import java.util.Objects;
+
 public class XPathOperation extends AbstractOperation {
 
     private String expression;
@@ -32,6 +34,21 @@ public class XPathOperation extends AbstractOperation {
         return (expression == null || expression.trim().isEmpty());
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        XPathOperation that = (XPathOperation) o;
+        return Objects.equals(expression, that.expression);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(expression);
+    }
+
     @Override
     public String toString() {
         return "expression : " + expression;
@@ -0,0 +1,169 @@
+package com.newrelic.api.agent.security.schema.policy;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Flat, immutable view of an applied {@link AgentPolicy} along with its policy parameters, used for hook time decisions.
+ * <p>
+ * Nested switches are pre-combined, e.g. {@link #isIpDetectViaXFF()} already accounts for protection mode and IP
+ * blocking being enabled. A new snapshot is compiled whenever the policy or its parameters change, so a hook always
+ * observes a consistent combination of both.
+ */
+public final class PolicySnapshot {
+
+    private static final PolicySnapshot DEFAULT = compile(new AgentPolicy());
+
+    private final String version;
+
+    private final boolean iastScanEnabled;
+
+    private final boolean protectionModeEnabled;
+
+    private final boolean ipBlockingEnabled;
+
+    private final boolean attackerIpBlocking;
+
+    private final boolean ipDetectViaXFF;
+
+    private final boolean apiBlockingEnabled;
+
+    private final Set<String> allowedIps;
+
+    private final Set<String> blockedIps;
+
+    private final Set<String> allowedApis;
+
+    private final Set<String> blockedApis;
+
+    private PolicySnapshot(AgentPolicy policy, Collection<String> allowedIps, Collection<String> blockedIps,
+                           Collection<String> allowedApis, Collection<String> blockedApis) {
+        VulnerabilityScan vulnerabilityScan = policy.getVulnerabilityScan();
+        ProtectionMode protectionMode = policy.getProtectionMode();
+        this.version = policy.getVersion();
+        this.iastScanEnabled = vulnerabilityScan != null && isTrue(vulnerabilityScan.getEnabled())
+                && vulnerabilityScan.getIastScan() != null && isTrue(vulnerabilityScan.getIastScan().getEnabled());
+        this.protectionModeEnabled = protectionMode != null && isTrue(protectionMode.getEnabled());
+        IpBlocking ipBlocking = protectionModeEnabled ? protectionMode.getIpBlocking() : null;
+        this.ipBlockingEnabled = ipBlocking != null && isTrue(ipBlocking.getEnabled());
+        this.attackerIpBlocking = ipBlockingEnabled && isTrue(ipBlocking.getAttackerIpBlocking());
+        this.ipDetectViaXFF = ipBlockingEnabled && isTrue(ipBlocking.getIpDetectViaXFF());
+        ApiBlocking apiBlocking = protectionModeEnabled ? protectionMode.getApiBlocking() : null;
+        this.apiBlockingEnabled = apiBlocking != null && isTrue(apiBlocking.getEnabled());
+        this.allowedIps = toImmutableSet(allowedIps);
+        this.blockedIps = toImmutableSet(blockedIps);
+        this.allowedApis = toImmutableSet(allowedApis);
+        this.blockedApis = toImmutableSet(blockedApis);
+    }
+
+    /**
+     * Returns the snapshot of a default {@link AgentPolicy} without any parameters.
+     */
+    public static PolicySnapshot getDefault() {
+        return DEFAULT;
+    }
+
+    public static PolicySnapshot compile(AgentPolicy policy) {
+        return compile(policy, null, null, null, null);
+    }
+
+    /**
+     * Compiles the given policy and its parameters. The given collections are copied.
+     *
+     * @param policy      policy to compile, a default policy is used if {@code null}
+     * @param allowedIps  IPs allowed by the policy parameters, may be {@code null}
+     * @param blockedIps  IPs blocked by the policy parameters, may be {@code null}
+     * @param allowedApis API IDs allowed by the policy parameters, may be {@code null}
+     * @param blockedApis API IDs blocked by the policy parameters, may be {@code null}
+     * @return the compiled snapshot
+     */
+    public static PolicySnapshot compile(AgentPolicy policy, Collection<String> allowedIps, Collection<String> blockedIps,
+                                         Collection<String> allowedApis, Collection<String> blockedApis) {
+        return new PolicySnapshot(policy != null ? policy : new AgentPolicy(), allowedIps, blockedIps, allowedApis, blockedApis);
+    }
+
+    private static boolean isTrue(Boolean value) {
+        return value != null && value;
+    }
+
+    private static Set<String> toImmutableSet(Collection<String> values) {
+        if (values == null || values.isEmpty()) {
+            return Collections.emptySet();
+        }
+        return Collections.unmodifiableSet(new HashSet<>(values));
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return {@code true} if both vulnerability scan and IAST scan are enabled.
+     */
+    public boolean isIastScanEnabled() {
+        return iastScanEnabled;
+    }
+
+    public boolean isProtectionModeEnabled() {
+        return protectionModeEnabled;
+    }
+
+    /**
+     * @return {@code true} if protection mode and IP blocking are enabled.
+     */
+    public boolean isIpBlockingEnabled() {
+        return ipBlockingEnabled;
+    }
+
+    public boolean isAttackerIpBlocking() {
+        return attackerIpBlocking;
+    }
+
+    /**
+     * @return {@code true} if the client IP is to be detected via X-Forwarded-For while IP blocking is enabled.
+     */
+    public boolean isIpDetectViaXFF() {
+        return ipDetectViaXFF;
+    }
+
+    /**
+     * @return {@code true} if protection mode and API blocking are enabled.
+     */
+    public boolean isApiBlockingEnabled() {
+        return apiBlockingEnabled;
+    }
+
+    public boolean isAllowedIp(String ip) {
+        return allowedIps.contains(ip);
+    }
+
+    public boolean isBlockedIp(String ip) {
+        return blockedIps.contains(ip);
+    }
+
+    public boolean isAllowedApi(String apiId) {
+        return allowedApis.contains(apiId);
+    }
+
+    public boolean isBlockedApi(String apiId) {
+        return blockedApis.contains(apiId);
+    }
+
+    public Set<String> getAllowedIps() {
+        return allowedIps;
+    }
+
+    public Set<String> getBlockedIps() {
+        return blockedIps;
+    }
+
+    public Set<String> getAllowedApis() {
+        return allowedApis;
+    }
+
+    public Set<String> getBlockedApis() {
+        return blockedApis;
+    }
+}